@@ -18,6 +18,8 @@ module org.eclipse.jetty.client
 
     requires transitive org.eclipse.jetty.http;
 
+    // Only required if using brotli.
+    requires static brotli4j;
     // Only required if using JMX.
     requires static java.management;
     // Only required if using SPNEGO.
@@ -23,6 +23,7 @@ import java.util.Queue;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.stream.Collectors;
 
 import org.eclipse.jetty.client.api.Connection;
@@ -47,6 +48,7 @@ public abstract class AbstractConnectionPool extends ContainerLifeCycle implemen
     private static final Logger LOG = LoggerFactory.getLogger(AbstractConnectionPool.class);
 
     private final AtomicInteger pending = new AtomicInteger();
+    private final LongAdder acquisitions = new LongAdder();
     private final HttpDestination destination;
     private final Callback requester;
     private final Pool<Connection> pool;
@@ -75,9 +77,15 @@ public abstract class AbstractConnectionPool extends ContainerLifeCycle implemen
     @Override
     protected void doStop() throws Exception
     {
+        super.doStop();
         pool.close();
     }
 
+    HttpDestination getHttpDestination()
+    {
+        return destination;
+    }
+
     @Override
     public CompletableFuture<Void> preCreateConnections(int connectionCount)
     {
@@ -308,11 +316,24 @@ public abstract class AbstractConnectionPool extends ContainerLifeCycle implemen
         requester.succeeded();
     }
 
+    /**
+     * <p>Acquires an entry from the given pool, on behalf of {@link #activate()}.</p>
+     * <p>Subclasses may override this method to choose the connection to acquire
+     * with a strategy that is not based on the position of the entries in the pool.</p>
+     *
+     * @param pool the pool of this connection pool
+     * @return an acquired entry, or null if no entries are available
+     */
+    protected Pool<Connection>.Entry acquireEntry(Pool<Connection> pool)
+    {
+        return pool.acquire();
+    }
+
     protected Connection activate()
     {
         while (true)
         {
-            Pool<Connection>.Entry entry = pool.acquire();
+            Pool<Connection>.Entry entry = acquireEntry(pool);
             if (entry != null)
             {
                 Connection connection = entry.getPooled();
@@ -334,6 +355,7 @@ public abstract class AbstractConnectionPool extends ContainerLifeCycle implemen
 
                 if (LOG.isDebugEnabled())
                     LOG.debug("Activated {} {}", entry, pool);
+                acquisitions.increment();
                 acquired(connection);
                 return connection;
             }
@@ -438,6 +460,39 @@ public abstract class AbstractConnectionPool extends ContainerLifeCycle implemen
     {
     }
 
+    /**
+     * @return the total number of times a connection has been acquired from this pool
+     */
+    long getAcquisitionCount()
+    {
+        return acquisitions.sum();
+    }
+
+    /**
+     * <p>Removes and closes one idle connection, if any.</p>
+     * <p>The connection is acquired before being removed, so that it is not
+     * closed while a request is being sent on it. Multiplexed connections are
+     * not closed, because acquiring them does not guarantee that they are idle.</p>
+     *
+     * @return whether an idle connection has been closed
+     */
+    boolean closeIdleConnection()
+    {
+        if (getMaxMultiplex() > 1)
+            return false;
+        Pool<Connection>.Entry entry = pool.acquire();
+        if (entry == null)
+            return false;
+        Connection connection = entry.getPooled();
+        acquired(connection);
+        boolean canClose = remove(connection);
+        if (canClose)
+            IO.close(connection);
+        if (LOG.isDebugEnabled())
+            LOG.debug("Idle connection removed{} {} {}", (canClose ? " and closed" : ""), entry, pool);
+        return canClose;
+    }
+
     Queue<Connection> getIdleConnections()
     {
         return pool.values().stream()
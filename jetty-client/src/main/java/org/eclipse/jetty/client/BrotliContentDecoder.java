@@ -0,0 +1,178 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.client;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+
+import com.aayushatharva.brotli4j.Brotli4jLoader;
+import com.aayushatharva.brotli4j.decoder.DecoderJNI;
+import org.eclipse.jetty.io.ByteBufferPool;
+import org.eclipse.jetty.io.RuntimeIOException;
+import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.component.Destroyable;
+
+/**
+ * <p>{@link ContentDecoder} for the "br" encoding.</p>
+ * <p>Decoding is performed by the native brotli library, via the optional
+ * {@code com.aayushatharva.brotli4j:brotli4j} dependency and its native
+ * library artifact for the current platform; see {@link #isAvailable()}.</p>
+ */
+public class BrotliContentDecoder implements ContentDecoder, Destroyable
+{
+    public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    private final ByteBufferPool byteBufferPool;
+    private DecoderJNI.Wrapper decoder;
+
+    public BrotliContentDecoder()
+    {
+        this(null, DEFAULT_BUFFER_SIZE);
+    }
+
+    public BrotliContentDecoder(ByteBufferPool byteBufferPool, int bufferSize)
+    {
+        this.byteBufferPool = byteBufferPool;
+        try
+        {
+            this.decoder = new DecoderJNI.Wrapper(bufferSize);
+        }
+        catch (IOException x)
+        {
+            throw new RuntimeIOException(x);
+        }
+    }
+
+    /**
+     * @return whether the brotli library is available in the class-path and
+     * its native library has been loaded
+     */
+    public static boolean isAvailable()
+    {
+        try
+        {
+            return Brotli4jLoader.isAvailable();
+        }
+        catch (Throwable x)
+        {
+            // The optional dependency is missing.
+            return false;
+        }
+    }
+
+    @Override
+    public ByteBuffer decode(ByteBuffer buffer)
+    {
+        while (true)
+        {
+            if (decoder.hasOutput())
+            {
+                ByteBuffer output = decoder.pull();
+                ByteBuffer decoded = acquire(output.remaining());
+                BufferUtil.append(decoded, output);
+                return decoded;
+            }
+
+            switch (decoder.getStatus())
+            {
+                case OK:
+                {
+                    decoder.push(0);
+                    break;
+                }
+                case NEEDS_MORE_INPUT:
+                {
+                    if (!buffer.hasRemaining())
+                        return BufferUtil.EMPTY_BUFFER;
+                    ByteBuffer input = decoder.getInputBuffer();
+                    input.clear();
+                    int length = Math.min(buffer.remaining(), input.remaining());
+                    ByteBuffer slice = buffer.slice();
+                    slice.limit(length);
+                    input.put(slice);
+                    buffer.position(buffer.position() + length);
+                    decoder.push(length);
+                    break;
+                }
+                case DONE:
+                {
+                    // Ignore bytes past the end of the compressed stream.
+                    buffer.position(buffer.limit());
+                    return BufferUtil.EMPTY_BUFFER;
+                }
+                default:
+                {
+                    throw new RuntimeException(new DataFormatException("Invalid brotli content"));
+                }
+            }
+        }
+    }
+
+    private ByteBuffer acquire(int capacity)
+    {
+        return byteBufferPool == null ? BufferUtil.allocate(capacity) : byteBufferPool.acquire(capacity, false);
+    }
+
+    @Override
+    public void release(ByteBuffer decoded)
+    {
+        if (byteBufferPool != null && !BufferUtil.isTheEmptyBuffer(decoded))
+            byteBufferPool.release(decoded);
+    }
+
+    @Override
+    public void destroy()
+    {
+        if (decoder != null)
+        {
+            decoder.destroy();
+            decoder = null;
+        }
+    }
+
+    /**
+     * <p>Specialized {@link ContentDecoder.Factory} for the "br" encoding.</p>
+     * <p>Native brotli decoders cannot be reset, so a decoder is created per response,
+     * while the buffers holding the decoded bytes come from the {@link ByteBufferPool}.</p>
+     */
+    public static class Factory extends ContentDecoder.Factory
+    {
+        private final ByteBufferPool byteBufferPool;
+        private final int bufferSize;
+
+        public Factory()
+        {
+            this(null);
+        }
+
+        public Factory(ByteBufferPool byteBufferPool)
+        {
+            this(byteBufferPool, DEFAULT_BUFFER_SIZE);
+        }
+
+        public Factory(ByteBufferPool byteBufferPool, int bufferSize)
+        {
+            super("br");
+            this.byteBufferPool = byteBufferPool;
+            this.bufferSize = bufferSize;
+        }
+
+        @Override
+        public ContentDecoder newContentDecoder()
+        {
+            return new BrotliContentDecoder(byteBufferPool, bufferSize);
+        }
+    }
+}
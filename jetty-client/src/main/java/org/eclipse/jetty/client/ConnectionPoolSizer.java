@@ -0,0 +1,259 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.client;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.component.AbstractLifeCycle;
+import org.eclipse.jetty.util.thread.Scheduler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>Periodically adjusts the number of connections of an {@link AbstractConnectionPool}
+ * to the traffic towards its destination, so that connections are opened ahead of
+ * traffic bursts rather than while requests wait for them.</p>
+ * <p>Every {@link #getPeriod() period}, the demand of connections is computed from the
+ * number of active connections and the number of requests queued in the destination.
+ * The demand and the request rate are smoothed with an exponentially weighted moving
+ * average, and the target number of connections is the larger of the current and the
+ * smoothed demand, scaled up when the request rate grows faster than its average, plus
+ * a {@link #getHeadroom() headroom}.
+ * Connections are pre-created up to the target in one go, while connections in excess
+ * of the target are closed one per period, so that the pool shrinks gradually.</p>
+ * <p>The target never goes below {@link #getMinConnections()} nor above
+ * the max connection count of the pool.
+ * Multiplexed connections are pre-created but not closed by this sizer,
+ * and are left to the idle timeout.</p>
+ * <p>Typical usage is to add the sizer as a bean to the connection pool:</p>
+ * <pre>
+ * transport.setConnectionPoolFactory(destination -&gt;
+ * {
+ *     DuplexConnectionPool pool = new DuplexConnectionPool(destination, 64, destination);
+ *     pool.addBean(new ConnectionPoolSizer(pool));
+ *     return pool;
+ * });
+ * </pre>
+ */
+@ManagedObject
+public class ConnectionPoolSizer extends AbstractLifeCycle implements Runnable
+{
+    private static final Logger LOG = LoggerFactory.getLogger(ConnectionPoolSizer.class);
+
+    private final AtomicReference<Scheduler.Task> task = new AtomicReference<>();
+    private final AbstractConnectionPool connectionPool;
+    private long period = 1000;
+    private int minConnections;
+    private double headroom = 0.25;
+    private double smoothing = 0.2;
+    private long lastNanoTime;
+    private long lastAcquisitions;
+    private volatile double requestRate;
+    private volatile double demand;
+    private volatile int targetConnections;
+
+    public ConnectionPoolSizer(AbstractConnectionPool connectionPool)
+    {
+        this.connectionPool = connectionPool;
+    }
+
+    @ManagedAttribute("The period in milliseconds between pool adjustments")
+    public long getPeriod()
+    {
+        return period;
+    }
+
+    /**
+     * @param period the period in milliseconds between pool adjustments
+     */
+    public void setPeriod(long period)
+    {
+        if (period <= 0)
+            throw new IllegalArgumentException("Invalid period " + period);
+        this.period = period;
+    }
+
+    @ManagedAttribute("The min number of connections kept in the pool")
+    public int getMinConnections()
+    {
+        return minConnections;
+    }
+
+    /**
+     * @param minConnections the min number of connections kept in the pool, even without traffic
+     */
+    public void setMinConnections(int minConnections)
+    {
+        this.minConnections = minConnections;
+    }
+
+    @ManagedAttribute("The fraction of connections in excess of the demand kept in the pool")
+    public double getHeadroom()
+    {
+        return headroom;
+    }
+
+    /**
+     * @param headroom the fraction of connections in excess of the demand kept in the pool,
+     * for example {@code 0.25} to keep 25% more connections than the demand
+     */
+    public void setHeadroom(double headroom)
+    {
+        if (headroom < 0)
+            throw new IllegalArgumentException("Invalid headroom " + headroom);
+        this.headroom = headroom;
+    }
+
+    @ManagedAttribute("The weight of the last sample in the moving averages")
+    public double getSmoothing()
+    {
+        return smoothing;
+    }
+
+    /**
+     * @param smoothing the weight, between 0 (excluded) and 1, of the last sample in the moving
+     * averages: higher values follow the traffic faster, lower values shrink the pool slower
+     */
+    public void setSmoothing(double smoothing)
+    {
+        if (smoothing <= 0 || smoothing > 1)
+            throw new IllegalArgumentException("Invalid smoothing " + smoothing);
+        this.smoothing = smoothing;
+    }
+
+    @ManagedAttribute(value = "The average request rate in requests per second", readonly = true)
+    public double getRequestRate()
+    {
+        return requestRate;
+    }
+
+    @ManagedAttribute(value = "The average demand of connections", readonly = true)
+    public double getDemand()
+    {
+        return demand;
+    }
+
+    @ManagedAttribute(value = "The target number of connections", readonly = true)
+    public int getTargetConnections()
+    {
+        return targetConnections;
+    }
+
+    @Override
+    protected void doStart() throws Exception
+    {
+        super.doStart();
+        lastNanoTime = System.nanoTime();
+        lastAcquisitions = connectionPool.getAcquisitionCount();
+        activate();
+    }
+
+    @Override
+    protected void doStop() throws Exception
+    {
+        deactivate();
+        super.doStop();
+    }
+
+    @Override
+    public void run()
+    {
+        try
+        {
+            resize();
+        }
+        catch (Throwable x)
+        {
+            LOG.info("Exception while resizing {}", connectionPool, x);
+        }
+        activate();
+    }
+
+    /**
+     * <p>Computes the target number of connections and opens
+     * or closes connections to move the pool towards it.</p>
+     */
+    protected void resize()
+    {
+        if (connectionPool.isClosed())
+            return;
+
+        long now = System.nanoTime();
+        long acquisitions = connectionPool.getAcquisitionCount();
+        long elapsed = Math.max(1, now - lastNanoTime);
+        double rate = (acquisitions - lastAcquisitions) * (double)TimeUnit.SECONDS.toNanos(1) / elapsed;
+        lastNanoTime = now;
+        lastAcquisitions = acquisitions;
+
+        HttpDestination destination = connectionPool.getHttpDestination();
+        int maxMultiplex = Math.max(1, connectionPool.getMaxMultiplex());
+        int queued = destination.getQueuedRequestCount();
+        int active = connectionPool.getActiveConnectionCount();
+        double sample = active + (queued + maxMultiplex - 1) / maxMultiplex;
+
+        // The growth of the request rate over its average anticipates the demand
+        // at the beginning of a burst, before requests queue up in the destination.
+        double previousRate = requestRate;
+        double growth = previousRate > 0 ? Math.min(2, Math.max(1, rate / previousRate)) : 1;
+        requestRate = previousRate + smoothing * (rate - previousRate);
+        double previousDemand = demand;
+        demand = previousDemand + smoothing * (sample - previousDemand);
+
+        double projected = Math.max(sample, demand) * growth;
+        int maxConnections = connectionPool.getMaxConnectionCount();
+        int target = (int)Math.ceil(projected * (1 + headroom));
+        target = Math.min(maxConnections, Math.max(minConnections, target));
+        targetConnections = target;
+
+        int connections = connectionPool.getConnectionCount();
+        if (LOG.isDebugEnabled())
+            LOG.debug("Resizing rate={}/s demand={} target={} connections={} queued={} {}", rate, sample, target, connections, queued, connectionPool);
+
+        if (connections < target)
+        {
+            connectionPool.preCreateConnections(target - connections);
+        }
+        else if (connections > target && connectionPool.getIdleConnectionCount() > 0)
+        {
+            connectionPool.closeIdleConnection();
+        }
+    }
+
+    private void activate()
+    {
+        if (isRunning())
+            task.set(connectionPool.getHttpDestination().getHttpClient().getScheduler().schedule(this, period, TimeUnit.MILLISECONDS));
+    }
+
+    private void deactivate()
+    {
+        Scheduler.Task t = task.getAndSet(null);
+        if (t != null)
+            t.cancel();
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x[rate=%.2f,demand=%.2f,target=%d]",
+            getClass().getSimpleName(),
+            hashCode(),
+            getRequestRate(),
+            getDemand(),
+            getTargetConnections());
+    }
+}
@@ -68,9 +68,13 @@ import org.eclipse.jetty.util.Promise;
 import org.eclipse.jetty.util.SocketAddressResolver;
 import org.eclipse.jetty.util.annotation.ManagedAttribute;
 import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.annotation.Name;
 import org.eclipse.jetty.util.component.ContainerLifeCycle;
 import org.eclipse.jetty.util.component.DumpableCollection;
+import org.eclipse.jetty.util.compression.ZstdDecompressorPool;
 import org.eclipse.jetty.util.ssl.SslContextFactory;
+import org.eclipse.jetty.util.statistic.HistogramStatistic;
 import org.eclipse.jetty.util.thread.QueuedThreadPool;
 import org.eclipse.jetty.util.thread.ScheduledExecutorScheduler;
 import org.eclipse.jetty.util.thread.Scheduler;
@@ -125,6 +129,7 @@ public class HttpClient extends ContainerLifeCycle
     private final List<Request.Listener> requestListeners = new ArrayList<>();
     private final Set<ContentDecoder.Factory> decoderFactories = new ContentDecoderFactorySet();
     private final ProxyConfiguration proxyConfig = new ProxyConfiguration();
+    private final HistogramStatistic requestTimeStats = new HistogramStatistic(TimeUnit.HOURS.toNanos(1));
     private final HttpClientTransport transport;
     private final ClientConnector connector;
     private AuthenticationStore authenticationStore = new HttpAuthenticationStore();
@@ -217,6 +222,15 @@ public class HttpClient extends ContainerLifeCycle
         handlers.put(new UpgradeProtocolHandler());
 
         decoderFactories.add(new GZIPContentDecoder.Factory(byteBufferPool));
+        ZstdDecompressorPool zstdDecompressorPool = getBean(ZstdDecompressorPool.class);
+        if (zstdDecompressorPool == null)
+        {
+            zstdDecompressorPool = new ZstdDecompressorPool(ProcessorUtils.availableProcessors());
+            addBean(zstdDecompressorPool);
+        }
+        decoderFactories.add(new ZstdContentDecoder.Factory(zstdDecompressorPool, byteBufferPool));
+        if (BrotliContentDecoder.isAvailable())
+            decoderFactories.add(new BrotliContentDecoder.Factory(byteBufferPool));
 
         cookieManager = newCookieManager();
         cookieStore = cookieManager.getCookieStore();
@@ -1108,6 +1122,56 @@ public class HttpClient extends ContainerLifeCycle
         this.useOutputDirectByteBuffers = useOutputDirectByteBuffers;
     }
 
+    /**
+     * @return the distribution of the time, in nanoseconds, from when a request
+     * is queued for sending until its exchange completes, successfully or not
+     */
+    public HistogramStatistic getRequestTimeHistogram()
+    {
+        return requestTimeStats;
+    }
+
+    @ManagedAttribute("The median request time, in nanoseconds")
+    public long getRequestTimeP50()
+    {
+        return requestTimeStats.getValueAtPercentile(50);
+    }
+
+    @ManagedAttribute("The 99th percentile of the request time, in nanoseconds")
+    public long getRequestTimeP99()
+    {
+        return requestTimeStats.getValueAtPercentile(99);
+    }
+
+    @ManagedAttribute("The 99.9th percentile of the request time, in nanoseconds")
+    public long getRequestTimeP999()
+    {
+        return requestTimeStats.getValueAtPercentile(99.9);
+    }
+
+    @ManagedOperation("The request time at the given percentile, in nanoseconds")
+    public long getRequestTimePercentile(@Name("percentile") double percentile)
+    {
+        return requestTimeStats.getValueAtPercentile(percentile);
+    }
+
+    @ManagedOperation(value = "The distribution of the request time, in nanoseconds, since the previous invocation of this method", impact = "ACTION")
+    public String takeRequestTimeIntervalSnapshot()
+    {
+        return requestTimeStats.takeIntervalSnapshot().toString();
+    }
+
+    @ManagedOperation(value = "Resets the request time statistics", impact = "ACTION")
+    public void resetRequestTimeStatistics()
+    {
+        requestTimeStats.reset();
+    }
+
+    void recordRequestTime(long nanos)
+    {
+        requestTimeStats.record(nanos);
+    }
+
     /**
      * @return the forward proxy configuration
      */
@@ -32,6 +32,7 @@ public class HttpExchange implements CyclicTimeouts.Expirable
     private final HttpRequest request;
     private final List<Response.ResponseListener> listeners;
     private final HttpResponse response;
+    private final long createdNanoTime;
     private State requestState = State.PENDING;
     private State responseState = State.PENDING;
     private HttpChannel _channel;
@@ -39,8 +40,14 @@ public class HttpExchange implements CyclicTimeouts.Expirable
     private Throwable responseFailure;
 
     public HttpExchange(HttpDestination destination, HttpRequest request, List<Response.ResponseListener> listeners)
+    {
+        this(destination, request, listeners, System.nanoTime());
+    }
+
+    private HttpExchange(HttpDestination destination, HttpRequest request, List<Response.ResponseListener> listeners, long createdNanoTime)
     {
         this.destination = destination;
+        this.createdNanoTime = createdNanoTime;
         this.request = request;
         this.listeners = listeners;
         this.response = new HttpResponse(request, listeners);
@@ -199,6 +206,9 @@ public class HttpExchange implements CyclicTimeouts.Expirable
                 result = new Result(getRequest(), requestFailure, getResponse(), responseFailure);
         }
 
+        if (result != null)
+            recordRequestTime();
+
         if (LOG.isDebugEnabled())
             LOG.debug("Terminated request for {}, result: {}", this, result);
 
@@ -216,12 +226,36 @@ public class HttpExchange implements CyclicTimeouts.Expirable
                 result = new Result(getRequest(), requestFailure, getResponse(), responseFailure);
         }
 
+        if (result != null)
+            recordRequestTime();
+
         if (LOG.isDebugEnabled())
             LOG.debug("Terminated response for {}, result: {}", this, result);
 
         return result;
     }
 
+    /**
+     * <p>Terminates this completed exchange without producing a result,
+     * and returns a new exchange to send the same request again.</p>
+     * <p>The time of this exchange is not recorded, and the time
+     * of the new exchange starts when this exchange was created.</p>
+     *
+     * @return a new exchange for the same request
+     */
+    public HttpExchange retry()
+    {
+        try (AutoLock l = lock.lock())
+        {
+            requestState = State.TERMINATED;
+            responseState = State.TERMINATED;
+        }
+        if (LOG.isDebugEnabled())
+            LOG.debug("Terminated for retry {}", this);
+        request.getConversation().getExchanges().remove(this);
+        return new HttpExchange(destination, request, listeners, createdNanoTime);
+    }
+
     public boolean abort(Throwable failure)
     {
         // Atomically change the state of this exchange to be completed.
@@ -278,6 +312,7 @@ public class HttpExchange implements CyclicTimeouts.Expirable
 
     private void notifyFailureComplete(Throwable failure)
     {
+        recordRequestTime();
         destination.getRequestNotifier().notifyFailure(request, failure);
         List<Response.ResponseListener> listeners = getConversation().getResponseListeners();
         ResponseNotifier responseNotifier = destination.getResponseNotifier();
@@ -285,6 +320,11 @@ public class HttpExchange implements CyclicTimeouts.Expirable
         responseNotifier.notifyComplete(listeners, new Result(request, failure, response, failure));
     }
 
+    private void recordRequestTime()
+    {
+        destination.getHttpClient().recordRequestTime(System.nanoTime() - createdNanoTime);
+    }
+
     public void resetResponse()
     {
         try (AutoLock l = lock.lock())
@@ -0,0 +1,199 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.client;
+
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.client.api.Connection;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.Pool;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.thread.AutoLock;
+
+/**
+ * <p>A {@link ConnectionPool} that provides the connections that respond faster.</p>
+ * <p>For each connection, this pool tracks the number of requests in flight and
+ * an exponentially weighted moving average of the response latency, where a
+ * request is in flight from the time its connection is acquired until the time
+ * the connection is released.
+ * The average follows immediately a latency higher than the average, and decays
+ * towards lower latencies, so that a connection to a slow or congested server
+ * is quickly avoided.
+ * The average also decays while the connection is not used, so that a connection
+ * that was slow is eventually tried again.</p>
+ * <p>The cost of a connection is its average latency multiplied by the number of
+ * requests in flight plus one, and this pool provides the connection with the lower
+ * cost among two connections chosen at random, see {@link Pool#acquireBestOfTwo(Comparator)}.</p>
+ * <p>For multiplexed connections, the latency of a response is estimated from the
+ * average time the requests in flight on the connection have been started.</p>
+ */
+@ManagedObject
+public class LeastLatencyConnectionPool extends MultiplexConnectionPool
+{
+    private final Map<Connection, Latency> latencies = new ConcurrentHashMap<>();
+    private final Comparator<Connection> comparator = Comparator.comparingDouble(this::getCost);
+    private final long decayNanos;
+
+    public LeastLatencyConnectionPool(HttpDestination destination, int maxConnections, Callback requester)
+    {
+        this(destination, maxConnections, requester, 1);
+    }
+
+    public LeastLatencyConnectionPool(HttpDestination destination, int maxConnections, Callback requester, int maxMultiplex)
+    {
+        this(destination, maxConnections, requester, maxMultiplex, 10000);
+    }
+
+    /**
+     * @param destination the destination of this pool
+     * @param maxConnections the max number of connections
+     * @param requester the callback to notify about new connections
+     * @param maxMultiplex the multiplexing factor of the connections
+     * @param decayTime the time, in milliseconds, over which the latency average decays
+     */
+    public LeastLatencyConnectionPool(HttpDestination destination, int maxConnections, Callback requester, int maxMultiplex, long decayTime)
+    {
+        super(destination, Pool.StrategyType.RANDOM, maxConnections, false, requester, maxMultiplex);
+        this.decayNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, decayTime));
+    }
+
+    @ManagedAttribute(value = "The time, in milliseconds, over which the latency average decays", readonly = true)
+    public long getDecayTime()
+    {
+        return TimeUnit.NANOSECONDS.toMillis(decayNanos);
+    }
+
+    /**
+     * @param connection the connection
+     * @return the average response latency of the given connection, in nanoseconds
+     */
+    public long getLatency(Connection connection)
+    {
+        Latency latency = latencies.get(connection);
+        return latency == null ? 0 : (long)latency.getAverage(System.nanoTime());
+    }
+
+    /**
+     * @param connection the connection
+     * @return the number of requests in flight on the given connection
+     */
+    public int getInFlight(Connection connection)
+    {
+        Latency latency = latencies.get(connection);
+        return latency == null ? 0 : latency.inFlight;
+    }
+
+    protected double getCost(Connection connection)
+    {
+        Latency latency = latencies.get(connection);
+        if (latency == null)
+            return 0;
+        return (latency.getAverage(System.nanoTime()) + 1) * (latency.inFlight + 1);
+    }
+
+    @Override
+    protected Pool<Connection>.Entry acquireEntry(Pool<Connection> pool)
+    {
+        return pool.acquireBestOfTwo(comparator);
+    }
+
+    @Override
+    protected void onCreated(Connection connection)
+    {
+        latencies.put(connection, new Latency());
+        super.onCreated(connection);
+    }
+
+    @Override
+    protected void acquired(Connection connection)
+    {
+        super.acquired(connection);
+        latencies.computeIfAbsent(connection, c -> new Latency()).start(System.nanoTime());
+    }
+
+    @Override
+    protected void released(Connection connection)
+    {
+        Latency latency = latencies.get(connection);
+        if (latency != null)
+            latency.end(System.nanoTime());
+        super.released(connection);
+    }
+
+    @Override
+    protected void removed(Connection connection)
+    {
+        latencies.remove(connection);
+        super.removed(connection);
+    }
+
+    private class Latency
+    {
+        private final AutoLock lock = new AutoLock();
+        private long startSum;
+        private volatile int inFlight;
+        private volatile double average;
+        private volatile long updated = System.nanoTime();
+
+        private void start(long now)
+        {
+            try (AutoLock l = lock.lock())
+            {
+                startSum += now;
+                ++inFlight;
+            }
+        }
+
+        private void end(long now)
+        {
+            try (AutoLock l = lock.lock())
+            {
+                int count = inFlight;
+                if (count == 0)
+                    return;
+                long start = startSum / count;
+                startSum -= start;
+                inFlight = count - 1;
+                long sample = now - start;
+                double previous = average;
+                // Follow immediately higher latencies, decay towards lower latencies.
+                if (sample > previous)
+                {
+                    average = sample;
+                }
+                else
+                {
+                    double weight = weight(now - updated);
+                    average = previous * weight + sample * (1 - weight);
+                }
+                updated = now;
+            }
+        }
+
+        private double getAverage(long now)
+        {
+            // Decay towards zero while not updated, so that the connection is tried again.
+            return average * weight(now - updated);
+        }
+
+        private double weight(long elapsed)
+        {
+            return Math.exp(-(double)Math.max(0, elapsed) / decayNanos);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.client;
+
+import java.nio.ByteBuffer;
+
+import org.eclipse.jetty.io.ByteBufferPool;
+import org.eclipse.jetty.util.compression.ZstdDecompressorPool;
+
+/**
+ * {@link ContentDecoder} for the "zstd" encoding.
+ */
+public class ZstdContentDecoder extends org.eclipse.jetty.http.ZstdContentDecoder implements ContentDecoder
+{
+    public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    public ZstdContentDecoder()
+    {
+        this(DEFAULT_BUFFER_SIZE);
+    }
+
+    public ZstdContentDecoder(int bufferSize)
+    {
+        this(null, bufferSize);
+    }
+
+    public ZstdContentDecoder(ByteBufferPool byteBufferPool, int bufferSize)
+    {
+        super(byteBufferPool, bufferSize);
+    }
+
+    public ZstdContentDecoder(ZstdDecompressorPool decompressorPool, ByteBufferPool byteBufferPool, int bufferSize)
+    {
+        super(decompressorPool, byteBufferPool, bufferSize);
+    }
+
+    @Override
+    protected boolean decodedChunk(ByteBuffer chunk)
+    {
+        super.decodedChunk(chunk);
+        return true;
+    }
+
+    /**
+     * <p>Specialized {@link ContentDecoder.Factory} for the "zstd" encoding.</p>
+     * <p>The decoders created by this factory share the given {@link ZstdDecompressorPool},
+     * so that the decompression window of a decoder is reused by the following decoders.</p>
+     */
+    public static class Factory extends ContentDecoder.Factory
+    {
+        private final ZstdDecompressorPool decompressorPool;
+        private final ByteBufferPool byteBufferPool;
+        private final int bufferSize;
+
+        public Factory()
+        {
+            this(null, null);
+        }
+
+        public Factory(ZstdDecompressorPool decompressorPool, ByteBufferPool byteBufferPool)
+        {
+            this(decompressorPool, byteBufferPool, DEFAULT_BUFFER_SIZE);
+        }
+
+        public Factory(ZstdDecompressorPool decompressorPool, ByteBufferPool byteBufferPool, int bufferSize)
+        {
+            super("zstd");
+            this.decompressorPool = decompressorPool == null ? new ZstdDecompressorPool(0) : decompressorPool;
+            this.byteBufferPool = byteBufferPool;
+            this.bufferSize = bufferSize;
+        }
+
+        @Override
+        public ContentDecoder newContentDecoder()
+        {
+            return new ZstdContentDecoder(decompressorPool, byteBufferPool, bufferSize);
+        }
+    }
+}
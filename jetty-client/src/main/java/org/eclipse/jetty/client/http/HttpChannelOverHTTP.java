@@ -76,13 +76,16 @@ public class HttpChannelOverHTTP extends HttpChannel
     public void send(HttpExchange exchange)
     {
         outMessages.increment();
-        sender.send(exchange);
+        if (connection.isPipelined())
+            connection.pipeline(this);
+        else
+            sender.send(exchange);
     }
 
     @Override
     public void release()
     {
-        connection.release();
+        connection.release(this);
     }
 
     public void receive()
@@ -93,6 +96,14 @@ public class HttpChannelOverHTTP extends HttpChannel
     @Override
     public void exchangeTerminated(HttpExchange exchange, Result result)
     {
+        // A pipelined request that failed before being written
+        // does not affect the other requests on the connection.
+        if (result.isFailed() && connection.unqueue(this))
+        {
+            super.exchangeTerminated(exchange, result);
+            return;
+        }
+
         super.exchangeTerminated(exchange, result);
 
         Response response = result.getResponse();
@@ -22,6 +22,7 @@ import org.eclipse.jetty.client.DuplexConnectionPool;
 import org.eclipse.jetty.client.DuplexHttpDestination;
 import org.eclipse.jetty.client.HttpDestination;
 import org.eclipse.jetty.client.HttpRequest;
+import org.eclipse.jetty.client.MultiplexConnectionPool;
 import org.eclipse.jetty.client.Origin;
 import org.eclipse.jetty.io.ClientConnectionFactory;
 import org.eclipse.jetty.io.ClientConnector;
@@ -41,6 +42,7 @@ public class HttpClientTransportOverHTTP extends AbstractConnectorHttpClientTran
     private final ClientConnectionFactory factory = new HttpClientConnectionFactory();
     private int headerCacheSize = 1024;
     private boolean headerCacheCaseSensitive;
+    private int maxRequestsPipelined = 1;
 
     public HttpClientTransportOverHTTP()
     {
@@ -56,7 +58,14 @@ public class HttpClientTransportOverHTTP extends AbstractConnectorHttpClientTran
     public HttpClientTransportOverHTTP(ClientConnector connector)
     {
         super(connector);
-        setConnectionPoolFactory(destination -> new DuplexConnectionPool(destination, getHttpClient().getMaxConnectionsPerDestination(), destination));
+        setConnectionPoolFactory(destination ->
+        {
+            int maxConnections = getHttpClient().getMaxConnectionsPerDestination();
+            int maxPipelined = getMaxRequestsPipelined();
+            if (maxPipelined > 1)
+                return new MultiplexConnectionPool(destination, maxConnections, destination, maxPipelined);
+            return new DuplexConnectionPool(destination, maxConnections, destination);
+        });
     }
 
     @Override
@@ -101,4 +110,39 @@ public class HttpClientTransportOverHTTP extends AbstractConnectorHttpClientTran
     {
         this.headerCacheCaseSensitive = headerCacheCaseSensitive;
     }
+
+    @ManagedAttribute("The max number of requests pipelined on a connection")
+    public int getMaxRequestsPipelined()
+    {
+        return maxRequestsPipelined;
+    }
+
+    /**
+     * <p>Sets the max number of requests that are sent on a connection
+     * without waiting for the responses of the previous requests.</p>
+     * <p>HTTP/1.1 pipelining is disabled by default, and should only be enabled
+     * for servers that are known to support it, because responses must arrive
+     * in the same order of the requests, so a slow response delays the responses
+     * of all the requests pipelined after it.</p>
+     * <p>Requests are written one after the other as soon as the previous request
+     * is written, while requests that are not idempotent, that expect a
+     * {@code 100 Continue} response or that upgrade the connection are never
+     * pipelined: they are written only when all the previous responses have been
+     * received, and following requests are written only after their response
+     * has been received.</p>
+     * <p>When a pipelined connection is closed, for example because the server
+     * closed it after a response, the requests that were not written are sent
+     * again on another connection, as well as the idempotent requests with
+     * reproducible content that were written but whose response was not received.</p>
+     * <p>Per-request idle timeouts are not applied to pipelined connections.</p>
+     * <p>This value must be set before sending requests, since it is used to
+     * create the connection pool of destinations.</p>
+     *
+     * @param maxRequestsPipelined the max number of requests pipelined on a connection,
+     * or {@code 1} to disable pipelining
+     */
+    public void setMaxRequestsPipelined(int maxRequestsPipelined)
+    {
+        this.maxRequestsPipelined = maxRequestsPipelined;
+    }
 }
@@ -15,9 +15,17 @@ package org.eclipse.jetty.client.http;
 
 import java.nio.ByteBuffer;
 import java.nio.channels.AsynchronousCloseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -38,12 +46,15 @@ import org.eclipse.jetty.client.SendFailure;
 import org.eclipse.jetty.client.api.Connection;
 import org.eclipse.jetty.client.api.Request;
 import org.eclipse.jetty.client.api.Response;
+import org.eclipse.jetty.http.HttpFields;
 import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpMethod;
 import org.eclipse.jetty.http.HttpVersion;
 import org.eclipse.jetty.io.AbstractConnection;
 import org.eclipse.jetty.io.EndPoint;
 import org.eclipse.jetty.util.Attachable;
 import org.eclipse.jetty.util.Promise;
+import org.eclipse.jetty.util.thread.AutoLock;
 import org.eclipse.jetty.util.thread.Sweeper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -52,6 +63,7 @@ public class HttpConnectionOverHTTP extends AbstractConnection implements IConne
 {
     private static final Logger LOG = LoggerFactory.getLogger(HttpConnectionOverHTTP.class);
 
+    private final AutoLock lock = new AutoLock();
     private final AtomicBoolean closed = new AtomicBoolean();
     private final AtomicInteger sweeps = new AtomicInteger();
     private final Promise<Connection> promise;
@@ -59,6 +71,14 @@ public class HttpConnectionOverHTTP extends AbstractConnection implements IConne
     private final HttpChannelOverHTTP channel;
     private final LongAdder bytesIn = new LongAdder();
     private final LongAdder bytesOut = new LongAdder();
+    private final boolean pipelined;
+    private final List<HttpChannelOverHTTP> channels = new CopyOnWriteArrayList<>();
+    private final Queue<HttpChannelOverHTTP> idleChannels = new ArrayDeque<>();
+    private final Queue<HttpChannelOverHTTP> sendQueue = new ArrayDeque<>();
+    private final Deque<HttpChannelOverHTTP> receiveQueue = new ArrayDeque<>();
+    private final Set<HttpChannelOverHTTP> releasing = new HashSet<>();
+    private HttpChannelOverHTTP sending;
+    private boolean barrier;
     private long idleTimeout;
 
     public HttpConnectionOverHTTP(EndPoint endPoint, Map<String, Object> context)
@@ -82,7 +102,12 @@ public class HttpConnectionOverHTTP extends AbstractConnection implements IConne
         super(endPoint, destination.getHttpClient().getExecutor());
         this.promise = promise;
         this.delegate = new Delegate(destination);
+        HttpClientTransport transport = destination.getHttpClient().getTransport();
+        this.pipelined = transport instanceof HttpClientTransportOverHTTP && ((HttpClientTransportOverHTTP)transport).getMaxRequestsPipelined() > 1;
         this.channel = newHttpChannel();
+        this.channels.add(channel);
+        if (pipelined)
+            this.idleChannels.offer(channel);
     }
 
     protected HttpChannelOverHTTP newHttpChannel()
@@ -100,6 +125,15 @@ public class HttpConnectionOverHTTP extends AbstractConnection implements IConne
         return delegate.getHttpDestination();
     }
 
+    /**
+     * @return whether this connection pipelines requests
+     * @see HttpClientTransportOverHTTP#setMaxRequestsPipelined(int)
+     */
+    public boolean isPipelined()
+    {
+        return pipelined;
+    }
+
     @Override
     public long getBytesIn()
     {
@@ -125,13 +159,23 @@ public class HttpConnectionOverHTTP extends AbstractConnection implements IConne
     @Override
     public long getMessagesIn()
     {
-        return getHttpChannel().getMessagesIn();
+        long messages = 0;
+        for (HttpChannelOverHTTP channel : channels)
+        {
+            messages += channel.getMessagesIn();
+        }
+        return messages;
     }
 
     @Override
     public long getMessagesOut()
     {
-        return getHttpChannel().getMessagesOut();
+        long messages = 0;
+        for (HttpChannelOverHTTP channel : channels)
+        {
+            messages += channel.getMessagesOut();
+        }
+        return messages;
     }
 
     @Override
@@ -190,23 +234,253 @@ public class HttpConnectionOverHTTP extends AbstractConnection implements IConne
     @Override
     public void onFillable()
     {
-        channel.receive();
+        getReceivingHttpChannel().receive();
     }
 
     @Override
     public ByteBuffer onUpgradeFrom()
     {
-        HttpReceiverOverHTTP receiver = channel.getHttpReceiver();
+        HttpReceiverOverHTTP receiver = getReceivingHttpChannel().getHttpReceiver();
         return receiver.onUpgradeFrom();
     }
 
+    /**
+     * @return the channel that receives the next response
+     */
+    private HttpChannelOverHTTP getReceivingHttpChannel()
+    {
+        if (!pipelined)
+            return channel;
+        try (AutoLock l = lock.lock())
+        {
+            HttpChannelOverHTTP receiving = receiveQueue.peek();
+            return receiving == null ? channel : receiving;
+        }
+    }
+
     public void release()
     {
         // Restore idle timeout
-        getEndPoint().setIdleTimeout(idleTimeout);
+        if (!pipelined)
+            getEndPoint().setIdleTimeout(idleTimeout);
         getHttpDestination().release(this);
     }
 
+    void release(HttpChannelOverHTTP channel)
+    {
+        if (pipelined)
+        {
+            try (AutoLock l = lock.lock())
+            {
+                // The exchange may terminate before the channel is
+                // dequeued, for example from the parser callbacks,
+                // so the channel becomes idle only once dequeued.
+                if (sendQueue.contains(channel) || receiveQueue.contains(channel))
+                    releasing.add(channel);
+                else
+                    idleChannels.offer(channel);
+            }
+        }
+        release();
+    }
+
+    /**
+     * <p>Removes the given channel, whose exchange has failed before
+     * its request has been written, from the channels waiting to
+     * write their request.</p>
+     * <p>The connection remains usable for the other requests,
+     * while the channel, whose sender has failed, is discarded.</p>
+     *
+     * @param channel the channel to remove
+     * @return whether the channel was waiting to write its request
+     */
+    boolean unqueue(HttpChannelOverHTTP channel)
+    {
+        if (!pipelined)
+            return false;
+        try (AutoLock l = lock.lock())
+        {
+            if (!sendQueue.remove(channel))
+                return false;
+        }
+        channels.remove(channel);
+        channel.destroy();
+        if (LOG.isDebugEnabled())
+            LOG.debug("Unqueued pipelined {} from {}", channel, this);
+        release();
+        sendNext();
+        return true;
+    }
+
+    private HttpChannelOverHTTP acquireHttpChannel()
+    {
+        HttpChannelOverHTTP channel;
+        try (AutoLock l = lock.lock())
+        {
+            channel = idleChannels.poll();
+        }
+        if (channel == null)
+        {
+            channel = newHttpChannel();
+            channels.add(channel);
+        }
+        return channel;
+    }
+
+    /**
+     * <p>Queues the request of the exchange associated to the given channel,
+     * to be written after the requests previously queued on this connection.</p>
+     *
+     * @param channel the channel with the exchange to send
+     */
+    void pipeline(HttpChannelOverHTTP channel)
+    {
+        boolean retry;
+        try (AutoLock l = lock.lock())
+        {
+            retry = isClosed();
+            if (!retry)
+                sendQueue.offer(channel);
+        }
+        if (retry)
+            retry(channel);
+        else
+            sendNext();
+    }
+
+    private void sendNext()
+    {
+        HttpChannelOverHTTP next;
+        HttpExchange exchange;
+        try (AutoLock l = lock.lock())
+        {
+            if (isClosed() || sending != null)
+                return;
+            next = sendQueue.peek();
+            if (next == null)
+                return;
+            exchange = next.getHttpExchange();
+            if (exchange != null)
+            {
+                // Requests are not pipelined after a barrier request,
+                // and barrier requests are not pipelined after others.
+                boolean pipelinable = isPipelinable(exchange.getRequest());
+                if (barrier || (!pipelinable && !receiveQueue.isEmpty()))
+                    return;
+                barrier = !pipelinable;
+                sending = next;
+                receiveQueue.offer(next);
+            }
+            sendQueue.poll();
+        }
+        if (LOG.isDebugEnabled())
+            LOG.debug("Sending pipelined {} on {}", exchange, this);
+        if (exchange == null)
+            sendNext();
+        else
+            next.getHttpSender().send(exchange);
+    }
+
+    /**
+     * <p>Called when the request of the exchange associated
+     * to the given channel has been written.</p>
+     *
+     * @param channel the channel that wrote the request
+     */
+    void requestComplete(HttpChannelOverHTTP channel)
+    {
+        if (!pipelined)
+            return;
+        try (AutoLock l = lock.lock())
+        {
+            if (sending == channel)
+                sending = null;
+        }
+        sendNext();
+    }
+
+    /**
+     * <p>Called when the response of the exchange associated
+     * to the given channel has been received.</p>
+     *
+     * @param channel the channel that received the response
+     * @return the channel that receives the next response, or null
+     * if there are no other pipelined requests waiting for a response
+     */
+    HttpChannelOverHTTP responseComplete(HttpChannelOverHTTP channel)
+    {
+        HttpChannelOverHTTP next;
+        try (AutoLock l = lock.lock())
+        {
+            if (receiveQueue.peek() == channel)
+            {
+                receiveQueue.poll();
+                if (releasing.remove(channel))
+                    idleChannels.offer(channel);
+            }
+            if (receiveQueue.isEmpty())
+                barrier = false;
+            next = receiveQueue.peek();
+        }
+        sendNext();
+        return next;
+    }
+
+    private static boolean isPipelinable(HttpRequest request)
+    {
+        if (request.getVersion() != HttpVersion.HTTP_1_1)
+            return false;
+        if (request instanceof HttpUpgrader.Factory || request instanceof HttpProxy.TunnelRequest)
+            return false;
+        HttpMethod method = HttpMethod.fromString(request.getMethod());
+        if (method == null || method == HttpMethod.CONNECT || !method.isIdempotent())
+            return false;
+        HttpFields headers = request.getHeaders();
+        return !headers.contains(HttpHeader.EXPECT) && !headers.contains(HttpHeader.UPGRADE);
+    }
+
+    private static boolean isRetriable(HttpRequest request)
+    {
+        HttpMethod method = HttpMethod.fromString(request.getMethod());
+        if (method == null || !method.isIdempotent())
+            return false;
+        Request.Content content = request.getBody();
+        return content == null || content.isReproducible();
+    }
+
+    /**
+     * <p>Sends again, likely on another connection, the exchange
+     * associated to the given channel of this closed connection.</p>
+     * <p>The exchange is terminated without notifying the listeners,
+     * and a new exchange for the same request is sent.</p>
+     *
+     * @param channel the channel with the exchange to retry
+     * @return whether the exchange has been retried
+     */
+    private boolean retry(HttpChannelOverHTTP channel)
+    {
+        HttpExchange exchange = channel.getHttpExchange();
+        if (exchange == null)
+            return false;
+        // Complete the exchange only if it has not been completed
+        // already, for example by a concurrent abort or response.
+        if (!exchange.responseComplete(null))
+            return false;
+        exchange.requestComplete(null);
+        // Terminate without producing a result, so that
+        // the request time is recorded only once.
+        HttpExchange retry = exchange.retry();
+        channel.disassociate(exchange);
+        // The exchange will not terminate on this connection,
+        // so give back to the pool its use of this connection.
+        getHttpDestination().remove(this);
+
+        if (LOG.isDebugEnabled())
+            LOG.debug("Retrying pipelined {} from {}", exchange.getRequest(), this);
+        getHttpDestination().send(retry);
+        return true;
+    }
+
     @Override
     public void close()
     {
@@ -218,8 +492,10 @@ public class HttpConnectionOverHTTP extends AbstractConnection implements IConne
         if (closed.compareAndSet(false, true))
         {
             getHttpDestination().remove(this);
+            if (pipelined)
+                retry();
             abort(failure);
-            channel.destroy();
+            channels.forEach(HttpChannelOverHTTP::destroy);
             getEndPoint().shutdownOutput();
             if (LOG.isDebugEnabled())
                 LOG.debug("Shutdown {}", this);
@@ -227,12 +503,53 @@ public class HttpConnectionOverHTTP extends AbstractConnection implements IConne
             if (LOG.isDebugEnabled())
                 LOG.debug("Closed {}", this);
         }
+        else if (pipelined)
+        {
+            // The other pipelined exchanges terminating on this closed
+            // connection give back to the pool their use of this connection,
+            // so that the connection is removed from the pool.
+            getHttpDestination().remove(this);
+        }
+    }
+
+    private void retry()
+    {
+        List<HttpChannelOverHTTP> unsent;
+        List<HttpChannelOverHTTP> unanswered;
+        try (AutoLock l = lock.lock())
+        {
+            unsent = new ArrayList<>(sendQueue);
+            sendQueue.clear();
+            // The first channel may be receiving its response, or it is the one
+            // that failed, so it is not retried; the others have been written
+            // but did not receive their response.
+            unanswered = new ArrayList<>(receiveQueue);
+            if (!unanswered.isEmpty())
+                unanswered.remove(0);
+        }
+        // Requests that have not been written are always retried.
+        for (HttpChannelOverHTTP channel : unsent)
+        {
+            retry(channel);
+        }
+        for (HttpChannelOverHTTP channel : unanswered)
+        {
+            HttpExchange exchange = channel.getHttpExchange();
+            if (exchange != null && isRetriable(exchange.getRequest()))
+                retry(channel);
+        }
     }
 
     protected boolean abort(Throwable failure)
     {
-        HttpExchange exchange = channel.getHttpExchange();
-        return exchange != null && exchange.getRequest().abort(failure);
+        boolean aborted = false;
+        for (HttpChannelOverHTTP channel : channels)
+        {
+            HttpExchange exchange = channel.getHttpExchange();
+            if (exchange != null && exchange.getRequest().abort(failure))
+                aborted = true;
+        }
+        return aborted;
     }
 
     @Override
@@ -272,6 +589,8 @@ public class HttpConnectionOverHTTP extends AbstractConnection implements IConne
         @Override
         protected Iterator<HttpChannel> getHttpChannels()
         {
+            if (pipelined)
+                return Collections.<HttpChannel>unmodifiableList(channels).iterator();
             return Collections.<HttpChannel>singleton(channel).iterator();
         }
 
@@ -281,6 +600,11 @@ public class HttpConnectionOverHTTP extends AbstractConnection implements IConne
             HttpRequest request = exchange.getRequest();
             normalizeRequest(request);
 
+            // One channel for each pipelined request,
+            // the channel queues the request to be sent.
+            if (pipelined)
+                return send(acquireHttpChannel(), exchange);
+
             // Save the old idle timeout to restore it.
             EndPoint endPoint = getEndPoint();
             idleTimeout = endPoint.getIdleTimeout();
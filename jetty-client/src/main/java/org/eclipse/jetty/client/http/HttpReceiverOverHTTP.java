@@ -48,6 +48,7 @@ public class HttpReceiverOverHTTP extends HttpReceiver implements HttpParser.Res
     private boolean shutdown;
     private boolean complete;
     private boolean unsolicited;
+    private boolean handoff;
     private int status;
 
     public HttpReceiverOverHTTP(HttpChannelOverHTTP channel)
@@ -85,9 +86,15 @@ public class HttpReceiverOverHTTP extends HttpReceiver implements HttpParser.Res
     @Override
     public void receive()
     {
-        if (networkBuffer == null)
-            acquireNetworkBuffer();
-        process();
+        // With pipelining, the receiver that completes a response
+        // hands off the network buffer to the next receiver.
+        HttpReceiverOverHTTP receiver = this;
+        while (receiver != null)
+        {
+            if (receiver.networkBuffer == null)
+                receiver.acquireNetworkBuffer();
+            receiver = receiver.process();
+        }
     }
 
     private void acquireNetworkBuffer()
@@ -143,7 +150,10 @@ public class HttpReceiverOverHTTP extends HttpReceiver implements HttpParser.Res
         return upgradeBuffer;
     }
 
-    private void process()
+    /**
+     * @return the receiver of the next pipelined response, or null
+     */
+    private HttpReceiverOverHTTP process()
     {
         HttpConnectionOverHTTP connection = getHttpConnection();
         EndPoint endPoint = connection.getEndPoint();
@@ -154,9 +164,14 @@ public class HttpReceiverOverHTTP extends HttpReceiver implements HttpParser.Res
                 // Always parse even empty buffers to advance the parser.
                 if (parse())
                 {
+                    if (handoff)
+                    {
+                        handoff = false;
+                        return handoff();
+                    }
                     // Return immediately, as this thread may be in a race
                     // with e.g. another thread demanding more content.
-                    return;
+                    return null;
                 }
 
                 // Connection may be closed in a parser callback.
@@ -165,7 +180,7 @@ public class HttpReceiverOverHTTP extends HttpReceiver implements HttpParser.Res
                     if (LOG.isDebugEnabled())
                         LOG.debug("Closed {}", connection);
                     releaseNetworkBuffer();
-                    return;
+                    return null;
                 }
 
                 if (networkBuffer.isRetained())
@@ -184,13 +199,13 @@ public class HttpReceiverOverHTTP extends HttpReceiver implements HttpParser.Res
                 {
                     releaseNetworkBuffer();
                     fillInterested();
-                    return;
+                    return null;
                 }
                 else
                 {
                     releaseNetworkBuffer();
                     shutdown();
-                    return;
+                    return null;
                 }
             }
         }
@@ -200,9 +215,41 @@ public class HttpReceiverOverHTTP extends HttpReceiver implements HttpParser.Res
                 LOG.debug("Error processing {}", endPoint, x);
             releaseNetworkBuffer();
             failAndClose(x);
+            return null;
         }
     }
 
+    /**
+     * <p>Hands off the network buffer, that may contain the next pipelined
+     * responses, to the receiver of the next pipelined response.</p>
+     *
+     * @return the receiver of the next pipelined response, or null
+     */
+    private HttpReceiverOverHTTP handoff()
+    {
+        HttpConnectionOverHTTP connection = getHttpConnection();
+        HttpChannelOverHTTP next = connection.responseComplete(getHttpChannel());
+        if (LOG.isDebugEnabled())
+            LOG.debug("Handing off {} to {}", networkBuffer, next);
+        if (next == null || connection.isClosed())
+        {
+            if (networkBuffer.hasRemaining() && LOG.isDebugEnabled())
+                LOG.debug("Discarding unexpected content after response: {}", networkBuffer);
+            releaseNetworkBuffer();
+            if (!connection.isClosed())
+                fillInterested();
+            return null;
+        }
+        HttpReceiverOverHTTP receiver = next.getHttpReceiver();
+        if (receiver != this)
+        {
+            receiver.releaseNetworkBuffer();
+            receiver.networkBuffer = networkBuffer;
+            networkBuffer = null;
+        }
+        return receiver;
+    }
+
     /**
      * Parses an HTTP response in the receivers buffer.
      *
@@ -234,6 +281,12 @@ public class HttpReceiverOverHTTP extends HttpReceiver implements HttpParser.Res
                 this.status = 0;
                 if (status == HttpStatus.SWITCHING_PROTOCOLS_101)
                     return true;
+                // The next pipelined response is parsed by another receiver.
+                if (getHttpConnection().isPipelined())
+                {
+                    handoff = true;
+                    return true;
+                }
             }
 
             if (networkBuffer.isEmpty())
@@ -107,6 +107,16 @@ public class HttpSenderOverHTTP extends HttpSender
         }
     }
 
+    @Override
+    protected boolean someToSuccess(HttpExchange exchange)
+    {
+        boolean result = super.someToSuccess(exchange);
+        // Write the next pipelined request, if any.
+        if (result)
+            getHttpChannel().getHttpConnection().requestComplete(getHttpChannel());
+        return result;
+    }
+
     @Override
     protected void reset()
     {
@@ -0,0 +1,153 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.client;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jetty.client.api.Connection;
+import org.eclipse.jetty.client.api.Request;
+import org.eclipse.jetty.client.api.Response;
+import org.eclipse.jetty.util.Attachable;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.Promise;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+public class ConnectionPoolSizerTest
+{
+    private final AtomicInteger closed = new AtomicInteger();
+    private HttpDestination destination;
+    private DuplexConnectionPool pool;
+
+    @BeforeEach
+    public void prepare()
+    {
+        HttpClient httpClient = new HttpClient()
+        {
+            @Override
+            protected void newConnection(HttpDestination destination, Promise<Connection> promise)
+            {
+                promise.succeeded(new MockConnection());
+            }
+        };
+        destination = new HttpDestination(httpClient, new Origin("http", "localhost", 8080))
+        {
+        };
+        pool = new DuplexConnectionPool(destination, 8, Callback.NOOP);
+    }
+
+    @AfterEach
+    public void dispose()
+    {
+        pool.close();
+    }
+
+    @Test
+    public void testPoolGrowsAheadOfDemandAndShrinksGradually()
+    {
+        ConnectionPoolSizer sizer = new ConnectionPoolSizer(pool);
+        sizer.setMinConnections(2);
+        sizer.setHeadroom(0.5);
+        sizer.setSmoothing(1);
+
+        // Without traffic, the pool is warmed up to the min connections.
+        sizer.resize();
+        assertEquals(2, sizer.getTargetConnections());
+        assertEquals(2, pool.getConnectionCount());
+
+        List<Connection> connections = new ArrayList<>();
+        for (int i = 0; i < 4; ++i)
+        {
+            Connection connection = pool.acquire(true);
+            assertNotNull(connection);
+            connections.add(connection);
+        }
+
+        // With 4 active connections, the pool keeps 50% more.
+        sizer.resize();
+        assertEquals(6, sizer.getTargetConnections());
+        assertEquals(6, pool.getConnectionCount());
+        assertEquals(2, pool.getIdleConnectionCount());
+
+        connections.forEach(pool::release);
+
+        // Without traffic, the pool shrinks one connection at a time.
+        for (int expected = 5; expected >= 2; --expected)
+        {
+            sizer.resize();
+            assertEquals(2, sizer.getTargetConnections());
+            assertEquals(expected, pool.getConnectionCount());
+        }
+        sizer.resize();
+        assertEquals(2, pool.getConnectionCount());
+        assertEquals(4, closed.get());
+    }
+
+    @Test
+    public void testTargetDoesNotExceedMaxConnections()
+    {
+        ConnectionPoolSizer sizer = new ConnectionPoolSizer(pool);
+        sizer.setHeadroom(1);
+        sizer.setSmoothing(1);
+
+        for (int i = 0; i < 6; ++i)
+        {
+            assertNotNull(pool.acquire(true));
+        }
+
+        sizer.resize();
+        assertEquals(pool.getMaxConnectionCount(), sizer.getTargetConnections());
+        assertEquals(pool.getMaxConnectionCount(), pool.getConnectionCount());
+    }
+
+    private class MockConnection implements Connection, Attachable
+    {
+        private Object attachment;
+
+        @Override
+        public void close()
+        {
+            closed.incrementAndGet();
+        }
+
+        @Override
+        public boolean isClosed()
+        {
+            return false;
+        }
+
+        @Override
+        public void send(Request request, Response.CompleteListener listener)
+        {
+        }
+
+        @Override
+        public void setAttachment(Object obj)
+        {
+            attachment = obj;
+        }
+
+        @Override
+        public Object getAttachment()
+        {
+            return attachment;
+        }
+    }
+}
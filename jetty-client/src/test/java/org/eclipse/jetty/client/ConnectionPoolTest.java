@@ -69,20 +69,21 @@ public class ConnectionPoolTest
         return pool;
     });
     private static final ConnectionPoolFactory ROUND_ROBIN = new ConnectionPoolFactory("round-robin", destination -> new RoundRobinConnectionPool(destination, destination.getHttpClient().getMaxConnectionsPerDestination(), destination));
+    private static final ConnectionPoolFactory LEAST_LATENCY = new ConnectionPoolFactory("least-latency", destination -> new LeastLatencyConnectionPool(destination, destination.getHttpClient().getMaxConnectionsPerDestination(), destination));
 
     public static Stream<ConnectionPoolFactory> pools()
     {
-        return Stream.of(DUPLEX, MULTIPLEX, RANDOM, DUPLEX_MAX_DURATION, ROUND_ROBIN);
+        return Stream.of(DUPLEX, MULTIPLEX, RANDOM, DUPLEX_MAX_DURATION, ROUND_ROBIN, LEAST_LATENCY);
     }
 
     public static Stream<ConnectionPoolFactory> poolsNoMaxDuration()
     {
-        return Stream.of(DUPLEX, MULTIPLEX, RANDOM, ROUND_ROBIN);
+        return Stream.of(DUPLEX, MULTIPLEX, RANDOM, ROUND_ROBIN, LEAST_LATENCY);
     }
 
     public static Stream<ConnectionPoolFactory> poolsNoRoundRobin()
     {
-        return Stream.of(DUPLEX, MULTIPLEX, RANDOM, DUPLEX_MAX_DURATION);
+        return Stream.of(DUPLEX, MULTIPLEX, RANDOM, DUPLEX_MAX_DURATION, LEAST_LATENCY);
     }
 
     private Server server;
@@ -0,0 +1,218 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.client;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.client.api.Result;
+import org.eclipse.jetty.client.http.HttpClientTransportOverHTTP;
+import org.eclipse.jetty.client.util.AsyncRequestContent;
+import org.eclipse.jetty.client.util.StringRequestContent;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpHeaderValue;
+import org.eclipse.jetty.http.HttpMethod;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.eclipse.jetty.util.IO;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ArgumentsSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HttpClientPipeliningTest extends AbstractHttpClientServerTest
+{
+    private void startPipelined(Scenario scenario, int maxRequestsPipelined) throws Exception
+    {
+        startClient(scenario, clientConnector ->
+        {
+            HttpClientTransportOverHTTP transport = new HttpClientTransportOverHTTP(clientConnector);
+            transport.setMaxRequestsPipelined(maxRequestsPipelined);
+            return transport;
+        }, httpClient -> httpClient.setMaxConnectionsPerDestination(1));
+    }
+
+    private List<Result> send(Scenario scenario, int count, boolean post) throws Exception
+    {
+        List<Result> results = new CopyOnWriteArrayList<>();
+        CountDownLatch latch = new CountDownLatch(count);
+        for (int i = 0; i < count; ++i)
+        {
+            org.eclipse.jetty.client.api.Request request = client.newRequest("localhost", connector.getLocalPort())
+                .scheme(scenario.getScheme())
+                .path("/" + i)
+                .timeout(5, TimeUnit.SECONDS);
+            if (post && i % 2 == 1)
+                request.method(HttpMethod.POST).body(new StringRequestContent("content-" + i));
+            request.send(result ->
+            {
+                results.add(result);
+                latch.countDown();
+            });
+        }
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        return results;
+    }
+
+    private void assertSucceeded(List<Result> results)
+    {
+        for (Result result : results)
+        {
+            assertTrue(result.isSucceeded(), String.valueOf(result.getFailure()));
+            assertEquals(HttpStatus.OK_200, result.getResponse().getStatus());
+            assertEquals(result.getRequest().getPath(), result.getResponse().getHeaders().get("X-Path"));
+        }
+    }
+
+    @ParameterizedTest
+    @ArgumentsSource(ScenarioProvider.class)
+    public void testPipelinedRequestsOnOneConnection(Scenario scenario) throws Exception
+    {
+        startServer(scenario, new PathHandler());
+        startPipelined(scenario, 4);
+
+        int count = 16;
+        List<Result> results = send(scenario, count, false);
+
+        assertEquals(count, results.size());
+        assertSucceeded(results);
+        HttpDestination destination = (HttpDestination)client.getDestinations().get(0);
+        AbstractConnectionPool connectionPool = (AbstractConnectionPool)destination.getConnectionPool();
+        assertEquals(1, connectionPool.getConnectionCount());
+    }
+
+    @ParameterizedTest
+    @ArgumentsSource(ScenarioProvider.class)
+    public void testNonIdempotentRequestsAreNotPipelined(Scenario scenario) throws Exception
+    {
+        startServer(scenario, new PathHandler());
+        startPipelined(scenario, 4);
+
+        int count = 8;
+        List<Result> results = send(scenario, count, true);
+
+        assertEquals(count, results.size());
+        assertSucceeded(results);
+    }
+
+    @ParameterizedTest
+    @ArgumentsSource(ScenarioProvider.class)
+    public void testPipelinedRequestsRetriedWhenServerClosesConnection(Scenario scenario) throws Exception
+    {
+        startServer(scenario, new PathHandler()
+        {
+            @Override
+            public void handle(String target, Request jettyRequest, HttpServletRequest request, HttpServletResponse response) throws IOException
+            {
+                // The server closes the connection after the first
+                // response, so the pipelined requests must be retried.
+                if ("/0".equals(target))
+                    response.setHeader(HttpHeader.CONNECTION.asString(), HttpHeaderValue.CLOSE.asString());
+                super.handle(target, jettyRequest, request, response);
+            }
+        });
+        startPipelined(scenario, 4);
+
+        int count = 4;
+        List<Result> results = send(scenario, count, false);
+
+        assertEquals(count, results.size());
+        assertSucceeded(results);
+        // Retried requests are recorded only once.
+        assertEquals(count, client.getRequestTimeHistogram().getCount());
+    }
+
+    @ParameterizedTest
+    @ArgumentsSource(ScenarioProvider.class)
+    public void testAbortRequestQueuedBehindInFlightRequest(Scenario scenario) throws Exception
+    {
+        CountDownLatch serverLatch = new CountDownLatch(1);
+        startServer(scenario, new PathHandler()
+        {
+            @Override
+            public void handle(String target, Request jettyRequest, HttpServletRequest request, HttpServletResponse response) throws IOException
+            {
+                if ("/0".equals(target))
+                    serverLatch.countDown();
+                super.handle(target, jettyRequest, request, response);
+            }
+        });
+        startPipelined(scenario, 4);
+
+        // The content of the first request is not complete,
+        // so the second request waits to be written.
+        AsyncRequestContent content = new AsyncRequestContent();
+        CountDownLatch firstLatch = new CountDownLatch(1);
+        AtomicReference<Result> firstResult = new AtomicReference<>();
+        client.newRequest("localhost", connector.getLocalPort())
+            .scheme(scenario.getScheme())
+            .path("/0")
+            .body(content)
+            .timeout(5, TimeUnit.SECONDS)
+            .send(result ->
+            {
+                firstResult.set(result);
+                firstLatch.countDown();
+            });
+        content.offer(ByteBuffer.wrap(new byte[]{'0'}));
+        assertTrue(serverLatch.await(5, TimeUnit.SECONDS));
+
+        CountDownLatch queuedLatch = new CountDownLatch(1);
+        AtomicReference<Result> queuedResult = new AtomicReference<>();
+        org.eclipse.jetty.client.api.Request queued = client.newRequest("localhost", connector.getLocalPort())
+            .scheme(scenario.getScheme())
+            .path("/1")
+            .timeout(5, TimeUnit.SECONDS);
+        queued.send(result ->
+        {
+            queuedResult.set(result);
+            queuedLatch.countDown();
+        });
+        queued.abort(new Exception("explicitly_aborted_by_test"));
+        assertTrue(queuedLatch.await(5, TimeUnit.SECONDS));
+        assertTrue(queuedResult.get().isFailed());
+
+        // The in-flight request is not affected by the aborted request.
+        content.close();
+        assertTrue(firstLatch.await(5, TimeUnit.SECONDS));
+        assertSucceeded(List.of(firstResult.get()));
+
+        // The connection is still usable.
+        List<Result> results = send(scenario, 4, false);
+        assertSucceeded(results);
+        HttpDestination destination = (HttpDestination)client.getDestinations().get(0);
+        AbstractConnectionPool connectionPool = (AbstractConnectionPool)destination.getConnectionPool();
+        assertEquals(1, connectionPool.getConnectionCount());
+    }
+
+    private static class PathHandler extends AbstractHandler
+    {
+        @Override
+        public void handle(String target, Request jettyRequest, HttpServletRequest request, HttpServletResponse response) throws IOException
+        {
+            jettyRequest.setHandled(true);
+            IO.copy(request.getInputStream(), IO.getNullStream());
+            response.setHeader("X-Path", target);
+        }
+    }
+}
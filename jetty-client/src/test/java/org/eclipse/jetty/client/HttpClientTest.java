@@ -16,6 +16,7 @@ package org.eclipse.jetty.client;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.net.HttpCookie;
 import java.net.InetSocketAddress;
@@ -96,6 +97,7 @@ import org.junit.jupiter.params.provider.ArgumentsSource;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
 import static org.hamcrest.Matchers.instanceOf;
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -178,6 +180,42 @@ public class HttpClientTest extends AbstractHttpClientServerTest
         assertEquals(200, response.getStatus());
     }
 
+    @ParameterizedTest
+    @ArgumentsSource(ScenarioProvider.class)
+    public void testRequestTimeHistogram(Scenario scenario) throws Exception
+    {
+        long delay = 100;
+        start(scenario, new EmptyServerHandler()
+        {
+            @Override
+            protected void service(String target, org.eclipse.jetty.server.Request jettyRequest, HttpServletRequest request, HttpServletResponse response) throws IOException
+            {
+                try
+                {
+                    TimeUnit.MILLISECONDS.sleep(delay);
+                }
+                catch (InterruptedException x)
+                {
+                    throw new InterruptedIOException();
+                }
+            }
+        });
+
+        for (int i = 0; i < 2; ++i)
+        {
+            ContentResponse response = client.newRequest("localhost", connector.getLocalPort())
+                .scheme(scenario.getScheme())
+                .timeout(5, TimeUnit.SECONDS)
+                .send();
+            assertEquals(200, response.getStatus());
+        }
+
+        assertEquals(2, client.getRequestTimeHistogram().getCount());
+        assertThat(client.getRequestTimeP50(), greaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(delay)));
+        assertThat(client.takeRequestTimeIntervalSnapshot(), containsString("count=2"));
+        assertThat(client.takeRequestTimeIntervalSnapshot(), containsString("count=0"));
+    }
+
     @ParameterizedTest
     @ArgumentsSource(ScenarioProvider.class)
     public void testGETResponseWithContent(Scenario scenario) throws Exception
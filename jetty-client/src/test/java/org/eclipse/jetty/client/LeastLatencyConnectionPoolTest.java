@@ -0,0 +1,144 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.client;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.client.api.Connection;
+import org.eclipse.jetty.client.api.Request;
+import org.eclipse.jetty.client.api.Response;
+import org.eclipse.jetty.util.Attachable;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.Promise;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+public class LeastLatencyConnectionPoolTest
+{
+    private HttpDestination destination;
+    private LeastLatencyConnectionPool pool;
+
+    @BeforeEach
+    public void prepare()
+    {
+        HttpClient httpClient = new HttpClient()
+        {
+            @Override
+            protected void newConnection(HttpDestination destination, Promise<Connection> promise)
+            {
+                promise.succeeded(new MockConnection());
+            }
+        };
+        destination = new HttpDestination(httpClient, new Origin("http", "localhost", 8080))
+        {
+        };
+    }
+
+    @AfterEach
+    public void dispose()
+    {
+        if (pool != null)
+            pool.close();
+    }
+
+    @Test
+    public void testSlowConnectionAvoided() throws Exception
+    {
+        pool = new LeastLatencyConnectionPool(destination, 4, Callback.NOOP, 1, 60000);
+        pool.preCreateConnections(4).get(5, TimeUnit.SECONDS);
+
+        Connection slow = pool.acquire(false);
+        assertNotNull(slow);
+        assertEquals(1, pool.getInFlight(slow));
+        Thread.sleep(50);
+        pool.release(slow);
+        assertEquals(0, pool.getInFlight(slow));
+        assertThat(pool.getLatency(slow), greaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(40)));
+
+        for (int i = 0; i < 100; ++i)
+        {
+            Connection connection = pool.acquire(false);
+            assertNotNull(connection);
+            // The slow connection is never the best of two connections.
+            assertThat(connection, not(sameInstance(slow)));
+            pool.release(connection);
+        }
+    }
+
+    @Test
+    public void testSlowConnectionTriedAgainAfterDecay() throws Exception
+    {
+        pool = new LeastLatencyConnectionPool(destination, 2, Callback.NOOP, 1, 10);
+        pool.preCreateConnections(2).get(5, TimeUnit.SECONDS);
+
+        Connection slow = pool.acquire(false);
+        Thread.sleep(50);
+        pool.release(slow);
+
+        // Let the average latency of the slow connection decay.
+        Thread.sleep(500);
+
+        int slowCount = 0;
+        for (int i = 0; i < 100; ++i)
+        {
+            Connection connection = pool.acquire(false);
+            if (connection == slow)
+                ++slowCount;
+            pool.release(connection);
+        }
+        assertThat(slowCount, greaterThan(0));
+    }
+
+    private static class MockConnection implements Connection, Attachable
+    {
+        private Object attachment;
+
+        @Override
+        public void close()
+        {
+        }
+
+        @Override
+        public boolean isClosed()
+        {
+            return false;
+        }
+
+        @Override
+        public void send(Request request, Response.CompleteListener listener)
+        {
+        }
+
+        @Override
+        public void setAttachment(Object obj)
+        {
+            attachment = obj;
+        }
+
+        @Override
+        public Object getAttachment()
+        {
+            return attachment;
+        }
+    }
+}
@@ -0,0 +1,236 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.http;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.eclipse.jetty.util.FrequencySketch;
+import org.eclipse.jetty.util.Index;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.thread.AutoLock;
+
+/**
+ * <p>A cache of the fields parsed most frequently, shared by many {@link HttpParser}s.</p>
+ * <p>The static cache of {@link HttpParser} only contains well known fields, and the
+ * per-connection cache of {@link HttpParser} only helps fields that repeat on the same
+ * connection. This cache learns, at runtime and across all connections, the fields that
+ * are the most frequent for the traffic of a server, for example the {@code User-Agent},
+ * {@code Accept} or {@code X-Forwarded-Proto} fields sent by the most common clients.
+ * A field line that is found in this cache is parsed into the shared, immutable
+ * {@link HttpField} instance of the cache, without the allocation of any string.</p>
+ * <p>The fields parsed are sampled, and the frequencies of the samples are estimated
+ * with a {@link FrequencySketch}, whose counters decay over time, so that this cache
+ * adapts to changes of the traffic.
+ * Periodically, the most frequent fields are published as an immutable {@link Index},
+ * so that lookups do not require any synchronization.</p>
+ * <p>Fields that carry credentials, such as {@code Authorization} or {@code Cookie},
+ * are never learnt by this cache.</p>
+ */
+@ManagedObject("A cache of the most frequent HTTP fields")
+public class AdaptiveFieldCache
+{
+    private static final EnumSet<HttpHeader> UNCACHEABLE = EnumSet.of(
+        HttpHeader.AUTHORIZATION,
+        HttpHeader.PROXY_AUTHORIZATION,
+        HttpHeader.COOKIE,
+        HttpHeader.SET_COOKIE,
+        HttpHeader.SET_COOKIE2);
+
+    private final AutoLock _lock = new AutoLock();
+    private final Map<HttpField, HttpField> _candidates = new HashMap<>();
+    private final FrequencySketch _sketch;
+    private final int _capacity;
+    private final int _maxValueLength;
+    private final int _sampleMask;
+    private final int _minFrequency;
+    private volatile Index<HttpField> _index;
+    private int _samples;
+    private long _rebuilds;
+
+    public AdaptiveFieldCache()
+    {
+        this(256, 256, 16, 4);
+    }
+
+    /**
+     * @param capacity the max number of fields in the cache
+     * @param maxValueLength the max length of the value of a cached field
+     * @param samplingPeriod the average number of fields parsed for each field sampled, rounded up to a power of 2
+     * @param minFrequency the min estimated frequency, between 1 and 15, of a sampled field before it is cached
+     */
+    public AdaptiveFieldCache(int capacity, int maxValueLength, int samplingPeriod, int minFrequency)
+    {
+        _capacity = Math.max(1, capacity);
+        _maxValueLength = maxValueLength;
+        _sampleMask = samplingPeriod <= 1 ? 0 : Integer.highestOneBit(samplingPeriod - 1) * 2 - 1;
+        _minFrequency = Math.max(1, Math.min(15, minFrequency));
+        _sketch = new FrequencySketch(4 * _capacity);
+        _index = new Index.Builder<HttpField>().caseSensitive(true).build();
+    }
+
+    @ManagedAttribute("The max number of fields in the cache")
+    public int getCapacity()
+    {
+        return _capacity;
+    }
+
+    @ManagedAttribute("The number of fields in the cache")
+    public int getSize()
+    {
+        return _index.size();
+    }
+
+    @ManagedAttribute("The number of times the cache has been rebuilt")
+    public long getRebuilds()
+    {
+        try (AutoLock l = _lock.lock())
+        {
+            return _rebuilds;
+        }
+    }
+
+    /**
+     * <p>Looks up the longest cached field line that is a prefix of the given buffer.</p>
+     *
+     * @param buffer the buffer to look up
+     * @param offset the offset, relative to the buffer position, of the field line
+     * @param length the max number of bytes to look up
+     * @return the cached field, or null if no cached field matches
+     * @see Index#getBest(ByteBuffer, int, int)
+     */
+    public HttpField getBest(ByteBuffer buffer, int offset, int length)
+    {
+        return _index.getBest(buffer, offset, length);
+    }
+
+    /**
+     * @param field the field to look up
+     * @return whether the given field is cached
+     */
+    public boolean contains(HttpField field)
+    {
+        return _index.get(field.toString()) != null;
+    }
+
+    /**
+     * <p>Records that the given field has been parsed.</p>
+     * <p>Only a sample of the fields recorded are taken into account, and samples
+     * may be dropped if another thread is recording, so that this method is cheap
+     * enough to be called for every field parsed.</p>
+     *
+     * @param field the parsed field
+     */
+    public void learn(HttpField field)
+    {
+        if ((ThreadLocalRandom.current().nextInt() & _sampleMask) != 0)
+            return;
+        if (!isCacheable(field))
+            return;
+
+        try (AutoLock l = _lock.tryLock())
+        {
+            // Lossy sampling, rather than contending for the lock.
+            if (l == null)
+                return;
+
+            _sketch.increment(field);
+            if (_candidates.size() < 4 * _capacity)
+                _candidates.putIfAbsent(field, field);
+
+            if (++_samples >= 4 * _capacity)
+            {
+                _samples = 0;
+                rebuild();
+            }
+        }
+    }
+
+    /**
+     * <p>Discards the cached fields and the frequencies recorded so far.</p>
+     */
+    public void clear()
+    {
+        try (AutoLock l = _lock.lock())
+        {
+            _candidates.clear();
+            _sketch.clear();
+            _samples = 0;
+            _index = new Index.Builder<HttpField>().caseSensitive(true).build();
+        }
+    }
+
+    protected boolean isCacheable(HttpField field)
+    {
+        HttpHeader header = field.getHeader();
+        if (header != null && (header.isPseudo() || UNCACHEABLE.contains(header)))
+            return false;
+        String value = field.getValue();
+        if (value == null || value.isEmpty() || value.length() > _maxValueLength)
+            return false;
+        return isVisibleAscii(field.getName()) && isVisibleAscii(value);
+    }
+
+    private void rebuild()
+    {
+        assert _lock.isHeldByCurrentThread();
+
+        List<Map.Entry<HttpField, Integer>> frequencies = new ArrayList<>(_candidates.size());
+        for (HttpField field : _candidates.keySet())
+        {
+            frequencies.add(Map.entry(field, _sketch.frequency(field)));
+        }
+        frequencies.sort(Map.Entry.<HttpField, Integer>comparingByValue().reversed());
+
+        // Keep the most frequent candidates, so that there is room for new ones.
+        _candidates.clear();
+        Index.Builder<HttpField> builder = new Index.Builder<HttpField>().caseSensitive(true);
+        for (int i = 0; i < frequencies.size() && i < 2 * _capacity; ++i)
+        {
+            Map.Entry<HttpField, Integer> entry = frequencies.get(i);
+            int frequency = entry.getValue();
+            if (frequency == 0)
+                break;
+            HttpField field = entry.getKey();
+            _candidates.put(field, field);
+            if (i < _capacity && frequency >= _minFrequency)
+                builder.with(field);
+        }
+        _index = builder.build();
+        ++_rebuilds;
+    }
+
+    private static boolean isVisibleAscii(String string)
+    {
+        for (int i = 0; i < string.length(); ++i)
+        {
+            char c = string.charAt(i);
+            if (c < HttpTokens.SPACE || c > '~')
+                return false;
+        }
+        return true;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{size=%d/%d}", getClass().getSimpleName(), hashCode(), getSize(), getCapacity());
+    }
+}
@@ -29,4 +29,19 @@ public interface HttpFieldPreEncoder
     HttpVersion getHttpVersion();
 
     byte[] getEncodedField(HttpHeader header, String headerString, String value);
+
+    /**
+     * <p>Encodes a field that is part of a {@link PreEncodedHttpFields} template.</p>
+     * <p>The bytes of a template are copied as they are for every message,
+     * so they must not depend on, nor modify, the state of the connection.</p>
+     *
+     * @param header the field header, or null for an unknown header
+     * @param headerString the field name
+     * @param value the field value
+     * @return the encoded field
+     */
+    default byte[] getEncodedTemplateField(HttpHeader header, String headerString, String value)
+    {
+        return getEncodedField(header, headerString, value);
+    }
 }
@@ -662,6 +662,23 @@ public interface HttpFields extends Iterable<HttpField>
             return this;
         }
 
+        /**
+         * <p>Adds the fields of the given template, so that they can be
+         * written with a single copy by the generators.</p>
+         *
+         * @param template the template of fields to add
+         * @return this builder
+         */
+        public Mutable add(PreEncodedHttpFields template)
+        {
+            int size = template.size();
+            if (_size + size > _fields.length)
+                _fields = Arrays.copyOf(_fields, _size + size + 4);
+            template.copyTo(_fields, _size);
+            _size += size;
+            return this;
+        }
+
         /**
          * Add comma separated values, but only if not already
          * present.
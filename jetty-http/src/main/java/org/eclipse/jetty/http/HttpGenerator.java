@@ -597,6 +597,19 @@ public class HttpGenerator
             int n = fields.size();
             for (int f = 0; f < n; f++)
             {
+                // Write the templates of pre encoded fields with a single copy.
+                PreEncodedHttpFields template = PreEncodedHttpFields.getTemplate(fields, f);
+                if (template != null)
+                {
+                    template.putTo(header, HttpVersion.HTTP_1_0);
+                    if (template.contains(HttpHeader.CONTENT_TYPE))
+                        contentType = true;
+                    if (template.contains(HttpHeader.SERVER))
+                        send = send & ~SEND_SERVER;
+                    f += template.size() - 1;
+                    continue;
+                }
+
                 HttpField field = fields.getField(f);
                 HttpHeader h = field.getHeader();
                 if (h == null)
@@ -220,6 +220,7 @@ public class HttpParser
     private final HttpCompliance _complianceMode;
     private final Utf8StringBuilder _uri = new Utf8StringBuilder(INITIAL_URI_LENGTH);
     private final FieldCache _fieldCache = new FieldCache();
+    private AdaptiveFieldCache _adaptiveFieldCache;
     private HttpField _field;
     private HttpHeader _header;
     private String _headerString;
@@ -322,6 +323,22 @@ public class HttpParser
         _fieldCache.setCaseSensitive(headerCacheCaseSensitive);
     }
 
+    public AdaptiveFieldCache getAdaptiveFieldCache()
+    {
+        return _adaptiveFieldCache;
+    }
+
+    /**
+     * <p>Sets a cache of fields, typically shared with other parsers, that learns the most
+     * frequent fields, and that is looked up before the static cache of well known fields.</p>
+     *
+     * @param adaptiveFieldCache the adaptive field cache, or null for no adaptive field cache
+     */
+    public void setAdaptiveFieldCache(AdaptiveFieldCache adaptiveFieldCache)
+    {
+        _adaptiveFieldCache = adaptiveFieldCache;
+    }
+
     protected void checkViolation(Violation violation) throws BadMessageException
     {
         if (violation.isAllowedBy(_complianceMode))
@@ -709,12 +726,7 @@ public class HttpParser
                                 {
                                     byte[] array = buffer.array();
                                     int p = buffer.arrayOffset() + buffer.position();
-                                    int l = buffer.arrayOffset() + buffer.limit();
-                                    int i = p;
-                                    while (i < l && array[i] > HttpTokens.SPACE)
-                                    {
-                                        i++;
-                                    }
+                                    int i = buffer.arrayOffset() + HttpTokens.indexOfSpaceOrNonAscii(buffer, buffer.position(), buffer.limit());
 
                                     int len = i - p;
                                     _headerBytes += len;
@@ -1070,7 +1082,11 @@ public class HttpParser
                     _fieldCache.add(_field);
                 }
             }
-            _handler.parsedHeader(_field != null ? _field : new HttpField(_header, _headerString, _valueString));
+
+            HttpField field = _field != null ? _field : new HttpField(_header, _headerString, _valueString);
+            if (_adaptiveFieldCache != null)
+                _adaptiveFieldCache.learn(field);
+            _handler.parsedHeader(field);
         }
 
         _headerString = _valueString = null;
@@ -1247,6 +1263,8 @@ public class HttpParser
                             {
                                 // Try a look ahead for the known header name and value.
                                 HttpField cachedField = _fieldCache.getBest(buffer, -1, buffer.remaining());
+                                if (cachedField == null && _adaptiveFieldCache != null)
+                                    cachedField = _adaptiveFieldCache.getBest(buffer, -1, buffer.remaining());
                                 if (cachedField == null)
                                     cachedField = CACHE.getBest(buffer, -1, buffer.remaining());
 
@@ -1319,7 +1337,7 @@ public class HttpParser
                             setState(FieldState.IN_NAME);
                             _string.setLength(0);
                             _string.append(t.getChar());
-                            _length = 1;
+                            scanFieldName(buffer);
                             break;
                         }
 
@@ -1371,7 +1389,7 @@ public class HttpParser
                         case DIGIT:
                         case TCHAR:
                             _string.append(t.getChar());
-                            _length = _string.length();
+                            scanFieldName(buffer);
                             break;
 
                         default:
@@ -1429,6 +1447,7 @@ public class HttpParser
                             _string.append(t.getChar());
                             _length = _string.length();
                             setState(FieldState.IN_VALUE);
+                            scanFieldValue(buffer);
                             break;
 
                         default:
@@ -1461,6 +1480,7 @@ public class HttpParser
                         case OTEXT: // TODO review? should this be a utf8 string?
                             _string.append(t.getChar());
                             _length = _string.length();
+                            scanFieldValue(buffer);
                             break;
 
                         default:
@@ -1476,6 +1496,71 @@ public class HttpParser
         return false;
     }
 
+    /**
+     * <p>Appends the token characters of a field name that follow in the buffer,
+     * without going through the state machine for each character.</p>
+     * <p>The scan stops at the first non token character, which is then
+     * processed by the state machine.</p>
+     *
+     * @param buffer the buffer positioned after the last character of the name appended so far
+     */
+    private void scanFieldName(ByteBuffer buffer)
+    {
+        int from = buffer.position();
+        int to = scanLimit(buffer);
+        int i = from;
+        while (i < to)
+        {
+            HttpTokens.Token t = HttpTokens.TOKENS[0xff & buffer.get(i)];
+            HttpTokens.Type type = t.getType();
+            if (type != HttpTokens.Type.ALPHA && type != HttpTokens.Type.DIGIT && type != HttpTokens.Type.TCHAR)
+                break;
+            _string.append(t.getChar());
+            ++i;
+        }
+        scanned(buffer, i - from);
+        _length = _string.length();
+    }
+
+    /**
+     * <p>Appends the characters of a field value that follow in the buffer,
+     * locating them in bulk with {@link HttpTokens#indexOfControl(ByteBuffer, int, int)},
+     * without going through the state machine for each character.</p>
+     * <p>The scan stops at the first control character (for example CR, LF or HTAB),
+     * which is then processed by the state machine.</p>
+     *
+     * @param buffer the buffer positioned after the last character of the value appended so far
+     */
+    private void scanFieldValue(ByteBuffer buffer)
+    {
+        int from = buffer.position();
+        int to = HttpTokens.indexOfControl(buffer, from, scanLimit(buffer));
+        for (int i = from; i < to; ++i)
+        {
+            char c = (char)(0xff & buffer.get(i));
+            _string.append(c);
+            // Trailing spaces are not part of the value.
+            if (c != ' ')
+                _length = _string.length();
+        }
+        scanned(buffer, to - from);
+    }
+
+    private int scanLimit(ByteBuffer buffer)
+    {
+        // Leave the byte exceeding the max header bytes to the state machine, that reports the error.
+        if (_maxHeaderBytes > 0)
+            return Math.min(buffer.limit(), buffer.position() + Math.max(0, _maxHeaderBytes - _headerBytes));
+        return buffer.limit();
+    }
+
+    private void scanned(ByteBuffer buffer, int length)
+    {
+        if (_maxHeaderBytes > 0)
+            _headerBytes += length;
+        buffer.position(buffer.position() + length);
+    }
+
     /**
      * Parse until next Event.
      *
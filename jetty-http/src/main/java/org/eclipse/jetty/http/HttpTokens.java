@@ -13,6 +13,9 @@
 
 package org.eclipse.jetty.http;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
 import org.eclipse.jetty.util.TypeUtil;
 
 /**
@@ -27,6 +30,11 @@ public class HttpTokens
     static final byte SPACE = 0x20;
     static final byte[] CRLF = {CARRIAGE_RETURN, LINE_FEED};
 
+    // Constants to scan 8 bytes at a time (SWAR, SIMD within a register).
+    private static final long ONES = 0x0101_0101_0101_0101L;
+    private static final long HIGH_BITS = 0x8080_8080_8080_8080L;
+    private static final long LOW_BITS = 0x7F7F_7F7F_7F7F_7F7FL;
+
     public enum EndOfContent
     {
         UNKNOWN_CONTENT, NO_CONTENT, EOF_CONTENT, CONTENT_LENGTH, CHUNKED_CONTENT
@@ -183,5 +191,71 @@ public class HttpTokens
             }
         }
     }
-}
 
+    /**
+     * <p>Finds the first byte that may not be part of a field value without
+     * further processing, that is a control character (including HTAB, CR and LF)
+     * or DEL; visible characters, spaces and obsolete text are skipped.</p>
+     * <p>The bytes are scanned 8 at a time, so that field values can be
+     * located in bulk before the parser state machine processes their end.</p>
+     *
+     * @param buffer the buffer to scan
+     * @param from the index of the first byte to scan
+     * @param to the index after the last byte to scan
+     * @return the index of the first control byte, or {@code to} if there is no such byte
+     */
+    static int indexOfControl(ByteBuffer buffer, int from, int to)
+    {
+        boolean bigEndian = buffer.order() == ByteOrder.BIG_ENDIAN;
+        int i = from;
+        for (; i + Long.BYTES <= to; i += Long.BYTES)
+        {
+            long word = buffer.getLong(i);
+            long low = word & LOW_BITS;
+            // High bit set in the bytes less than 0x20, without carries between bytes.
+            long controls = ~((low + 0x60 * ONES) | word);
+            // High bit set in the bytes equal to 0x7F.
+            long delete = (low + ONES) & ~word;
+            long mask = (controls | delete) & HIGH_BITS;
+            if (mask != 0)
+                return i + (bigEndian ? Long.numberOfLeadingZeros(mask) : Long.numberOfTrailingZeros(mask)) / Byte.SIZE;
+        }
+        for (; i < to; ++i)
+        {
+            int b = buffer.get(i) & 0xFF;
+            if (b < SPACE || b == 0x7F)
+                return i;
+        }
+        return to;
+    }
+
+    /**
+     * <p>Finds the first byte that is a space, a control character
+     * or not an US-ASCII character, scanning 8 bytes at a time.</p>
+     *
+     * @param buffer the buffer to scan
+     * @param from the index of the first byte to scan
+     * @param to the index after the last byte to scan
+     * @return the index of the first such byte, or {@code to} if there is no such byte
+     * @see #indexOfControl(ByteBuffer, int, int)
+     */
+    static int indexOfSpaceOrNonAscii(ByteBuffer buffer, int from, int to)
+    {
+        boolean bigEndian = buffer.order() == ByteOrder.BIG_ENDIAN;
+        int i = from;
+        for (; i + Long.BYTES <= to; i += Long.BYTES)
+        {
+            long word = buffer.getLong(i);
+            // High bit set in the bytes less than or equal to 0x20, or greater than 0x7F.
+            long mask = (~((word & LOW_BITS) + 0x5F * ONES) | word) & HIGH_BITS;
+            if (mask != 0)
+                return i + (bigEndian ? Long.numberOfLeadingZeros(mask) : Long.numberOfTrailingZeros(mask)) / Byte.SIZE;
+        }
+        for (; i < to; ++i)
+        {
+            if (buffer.get(i) <= SPACE)
+                return i;
+        }
+        return to;
+    }
+}
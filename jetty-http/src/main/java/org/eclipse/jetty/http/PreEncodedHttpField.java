@@ -71,7 +71,12 @@ public class PreEncodedHttpField extends HttpField
             __encoders[0] = new Http1FieldPreEncoder();
     }
 
-    private static int index(HttpVersion version)
+    static HttpFieldPreEncoder[] getEncoders()
+    {
+        return __encoders;
+    }
+
+    static int index(HttpVersion version)
     {
         switch (version)
         {
@@ -0,0 +1,195 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.http;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * <p>A template of pre encoded fields.</p>
+ * <p>A set of fields that is sent unchanged in many messages, for example the
+ * {@code Server}, {@code Cache-Control} and CORS response headers, can be created
+ * as a {@link PreEncodedHttpFields} and added to the message fields with
+ * {@link HttpFields.Mutable#add(PreEncodedHttpFields)}.
+ * The fields of the template are pre-encoded as a single block for each version
+ * of HTTP, so that the generators can write the whole block with a single copy,
+ * provided that the fields are still contiguous and unmodified in the message.
+ * Otherwise, each field is written like a {@link PreEncodedHttpField}.</p>
+ * <p>The block for HTTP/2 uses literal representations that are not added to the
+ * HPACK dynamic table, so that it is independent of the connection state.
+ * This trades a few octets per message for the time to encode the fields.</p>
+ * <p>Fields that are interpreted by the generators, such as {@code Content-Length},
+ * {@code Transfer-Encoding} or {@code Connection}, cannot be part of a template.</p>
+ */
+public class PreEncodedHttpFields implements Iterable<HttpField>
+{
+    private static final EnumSet<HttpHeader> UNSUPPORTED = EnumSet.of(
+        HttpHeader.CONTENT_LENGTH,
+        HttpHeader.TRANSFER_ENCODING,
+        HttpHeader.CONNECTION,
+        HttpHeader.KEEP_ALIVE,
+        HttpHeader.PROXY_CONNECTION,
+        HttpHeader.UPGRADE,
+        HttpHeader.TE);
+
+    private final Field[] _fields;
+    private final byte[][] _encodedFields;
+    private final EnumSet<HttpHeader> _headers = EnumSet.noneOf(HttpHeader.class);
+
+    public PreEncodedHttpFields(HttpField... fields)
+    {
+        this(Arrays.asList(fields));
+    }
+
+    public PreEncodedHttpFields(HttpFields fields)
+    {
+        this(fields.stream().toArray(HttpField[]::new));
+    }
+
+    public PreEncodedHttpFields(List<HttpField> fields)
+    {
+        HttpFieldPreEncoder[] encoders = PreEncodedHttpField.getEncoders();
+        _fields = new Field[fields.size()];
+        _encodedFields = new byte[encoders.length][];
+        ByteArrayOutputStream[] blocks = new ByteArrayOutputStream[encoders.length];
+        for (int i = 0; i < blocks.length; ++i)
+        {
+            blocks[i] = new ByteArrayOutputStream();
+        }
+
+        for (int f = 0; f < _fields.length; ++f)
+        {
+            HttpField field = fields.get(f);
+            HttpHeader header = field.getHeader();
+            if (header != null)
+            {
+                if (header.isPseudo() || UNSUPPORTED.contains(header))
+                    throw new IllegalArgumentException("Unsupported template field " + field);
+                _headers.add(header);
+            }
+            String value = field.getValue() == null ? "" : field.getValue();
+            _fields[f] = new Field(this, f, header, field.getName(), value);
+            for (int i = 0; i < encoders.length; ++i)
+            {
+                blocks[i].writeBytes(encoders[i].getEncodedTemplateField(header, field.getName(), value));
+            }
+        }
+
+        for (int i = 0; i < blocks.length; ++i)
+        {
+            _encodedFields[i] = blocks[i].toByteArray();
+        }
+    }
+
+    /**
+     * @return the number of fields of this template
+     */
+    public int size()
+    {
+        return _fields.length;
+    }
+
+    /**
+     * @param index the index of the field
+     * @return the field at the given index
+     */
+    public HttpField getField(int index)
+    {
+        return _fields[index];
+    }
+
+    /**
+     * @param header the header to look for
+     * @return whether this template contains a field with the given header
+     */
+    public boolean contains(HttpHeader header)
+    {
+        return _headers.contains(header);
+    }
+
+    /**
+     * <p>Writes the pre-encoded block of fields of this template.</p>
+     *
+     * @param bufferInFillMode the buffer to write to
+     * @param version the HTTP version of the encoding
+     */
+    public void putTo(ByteBuffer bufferInFillMode, HttpVersion version)
+    {
+        bufferInFillMode.put(_encodedFields[PreEncodedHttpField.index(version)]);
+    }
+
+    @Override
+    public Iterator<HttpField> iterator()
+    {
+        return Arrays.<HttpField>asList(_fields).iterator();
+    }
+
+    void copyTo(HttpField[] fields, int offset)
+    {
+        System.arraycopy(_fields, 0, fields, offset, _fields.length);
+    }
+
+    /**
+     * <p>Returns the template whose fields are found, contiguous and in order,
+     * in the given fields starting at the given index.</p>
+     * <p>Generators use this method to write the whole template with a single
+     * copy, and then skip the {@link #size()} fields of the template.</p>
+     *
+     * @param fields the fields of a message
+     * @param index the index of the field that may start a template
+     * @return the template starting at the given index, or null if there is no such template
+     */
+    public static PreEncodedHttpFields getTemplate(HttpFields fields, int index)
+    {
+        HttpField field = fields.getField(index);
+        if (!(field instanceof Field))
+            return null;
+        Field first = (Field)field;
+        if (first._index != 0)
+            return null;
+        PreEncodedHttpFields template = first._template;
+        int size = template.size();
+        if (index + size > fields.size())
+            return null;
+        for (int i = 1; i < size; ++i)
+        {
+            if (fields.getField(index + i) != template._fields[i])
+                return null;
+        }
+        return template;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x%s", getClass().getSimpleName(), hashCode(), Arrays.toString(_fields));
+    }
+
+    private static class Field extends PreEncodedHttpField
+    {
+        private final PreEncodedHttpFields _template;
+        private final int _index;
+
+        private Field(PreEncodedHttpFields template, int index, HttpHeader header, String name, String value)
+        {
+            super(header, name, value);
+            _template = template;
+            _index = index;
+        }
+    }
+}
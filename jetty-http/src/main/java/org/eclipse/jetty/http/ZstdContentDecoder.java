@@ -0,0 +1,235 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.http;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.ZipException;
+
+import org.eclipse.jetty.io.ByteBufferPool;
+import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.component.Destroyable;
+import org.eclipse.jetty.util.compression.ZstdDecompressor;
+import org.eclipse.jetty.util.compression.ZstdDecompressorPool;
+
+/**
+ * <p>Decoder for the "zstd" content encoding.</p>
+ * <p>This decoder decompresses Zstandard compressed data, and has
+ * been optimized for async usage with minimal data copies.</p>
+ */
+public class ZstdContentDecoder implements Destroyable
+{
+    private final List<ByteBuffer> _decodeds = new ArrayList<>();
+    private final ByteBufferPool _pool;
+    private final int _bufferSize;
+    private ZstdDecompressorPool.Entry _decompressorEntry;
+    private ZstdDecompressor _decompressor;
+    private ByteBuffer _decoded;
+
+    public ZstdContentDecoder()
+    {
+        this(null, 2048);
+    }
+
+    public ZstdContentDecoder(int bufferSize)
+    {
+        this(null, bufferSize);
+    }
+
+    public ZstdContentDecoder(ByteBufferPool pool, int bufferSize)
+    {
+        this(new ZstdDecompressorPool(0), pool, bufferSize);
+    }
+
+    public ZstdContentDecoder(ZstdDecompressorPool decompressorPool, ByteBufferPool pool, int bufferSize)
+    {
+        _decompressorEntry = decompressorPool.acquire();
+        _decompressor = _decompressorEntry.get();
+        _bufferSize = bufferSize;
+        _pool = pool;
+    }
+
+    /**
+     * <p>Decompresses compressed data from a buffer.</p>
+     * <p>The buffers returned by this method should be released
+     * via {@link #release(ByteBuffer)}.</p>
+     * <p>This method may fully consume the input buffer, but return
+     * only a chunk of the decompressed bytes, to allow applications to
+     * consume the decompressed chunk before performing further decompression,
+     * applying backpressure. In this case, this method should be
+     * invoked again with the same input buffer (even if
+     * it's already fully consumed) and that will produce another
+     * chunk of decompressed bytes. Termination happens when the input
+     * buffer is fully consumed, and the returned buffer is empty.</p>
+     *
+     * @param compressed the buffer containing compressed data.
+     * @return a buffer containing decompressed data.
+     */
+    public ByteBuffer decode(ByteBuffer compressed)
+    {
+        decodeChunks(compressed);
+
+        if (_decodeds.isEmpty())
+        {
+            if (BufferUtil.isEmpty(_decoded))
+                return BufferUtil.EMPTY_BUFFER;
+            ByteBuffer result = _decoded;
+            _decoded = null;
+            return result;
+        }
+        else
+        {
+            _decodeds.add(_decoded);
+            _decoded = null;
+            int length = _decodeds.stream().mapToInt(Buffer::remaining).sum();
+            ByteBuffer result = acquire(length);
+            for (ByteBuffer buffer : _decodeds)
+            {
+                BufferUtil.append(result, buffer);
+                release(buffer);
+            }
+            _decodeds.clear();
+            return result;
+        }
+    }
+
+    /**
+     * <p>Called when a chunk of data is decompressed.</p>
+     * <p>The default implementation aggregates all the chunks
+     * into a single buffer returned from {@link #decode(ByteBuffer)}.</p>
+     * <p>Derived implementations may choose to consume decompressed chunks
+     * individually and return {@code true} from this method to prevent
+     * further decompression until a subsequent call to {@link #decode(ByteBuffer)}
+     * or {@link #decodeChunks(ByteBuffer)} is made.
+     *
+     * @param chunk the decompressed chunk of data
+     * @return false if decompressing should continue, or true if the call
+     * to {@link #decodeChunks(ByteBuffer)} or {@link #decode(ByteBuffer)}
+     * should return, allowing to consume the decompressed chunk and apply
+     * backpressure
+     */
+    protected boolean decodedChunk(ByteBuffer chunk)
+    {
+        if (_decoded == null)
+        {
+            _decoded = chunk;
+        }
+        else
+        {
+            if (BufferUtil.space(_decoded) >= chunk.remaining())
+            {
+                BufferUtil.append(_decoded, chunk);
+                release(chunk);
+            }
+            else
+            {
+                _decodeds.add(_decoded);
+                _decoded = chunk;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * <p>Decompresses compressed data.</p>
+     * <p>Decompression continues until there is no more compressed data
+     * or a call to {@link #decodedChunk(ByteBuffer)} returns true.</p>
+     *
+     * @param compressed the buffer of compressed data to decompress
+     */
+    protected void decodeChunks(ByteBuffer compressed)
+    {
+        ByteBuffer buffer = null;
+        try
+        {
+            while (true)
+            {
+                if (buffer == null)
+                    buffer = acquire(_bufferSize);
+
+                try
+                {
+                    int pos = BufferUtil.flipToFill(buffer);
+                    _decompressor.decompress(compressed, buffer);
+                    BufferUtil.flipToFlush(buffer, pos);
+                }
+                catch (DataFormatException x)
+                {
+                    throw new ZipException(x.getMessage());
+                }
+
+                if (buffer.hasRemaining())
+                {
+                    ByteBuffer chunk = buffer;
+                    buffer = null;
+                    if (decodedChunk(chunk))
+                        return;
+                }
+                else if (!compressed.hasRemaining())
+                {
+                    return;
+                }
+            }
+        }
+        catch (ZipException x)
+        {
+            throw new RuntimeException(x);
+        }
+        finally
+        {
+            if (buffer != null)
+                release(buffer);
+        }
+    }
+
+    @Override
+    public void destroy()
+    {
+        _decompressorEntry.release();
+        _decompressorEntry = null;
+        _decompressor = null;
+    }
+
+    public boolean isFinished()
+    {
+        return _decompressor.isFinished();
+    }
+
+    /**
+     * @param capacity capacity of the ByteBuffer to acquire
+     * @return a heap buffer of the configured capacity either from the pool or freshly allocated.
+     */
+    public ByteBuffer acquire(int capacity)
+    {
+        return _pool == null ? BufferUtil.allocate(capacity) : _pool.acquire(capacity, false);
+    }
+
+    /**
+     * <p>Releases an allocated buffer.</p>
+     * <p>This method calls {@link ByteBufferPool#release(ByteBuffer)} if a buffer pool has
+     * been configured.</p>
+     * <p>This method should be called once for all buffers returned from {@link #decode(ByteBuffer)}
+     * or passed to {@link #decodedChunk(ByteBuffer)}.</p>
+     *
+     * @param buffer the buffer to release.
+     */
+    public void release(ByteBuffer buffer)
+    {
+        if (_pool != null && !BufferUtil.isTheEmptyBuffer(buffer))
+            _pool.release(buffer);
+    }
+}
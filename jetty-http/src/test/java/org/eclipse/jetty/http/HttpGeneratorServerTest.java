@@ -24,6 +24,7 @@ import static org.hamcrest.Matchers.endsWith;
 import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.startsWith;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
@@ -880,4 +881,63 @@ public class HttpGeneratorServerTest
         assertThat(headers, containsString("Connection: other, close\r\n"));
         assertThat(headers, not(containsString("keep-alive")));
     }
+
+    @Test
+    public void testPreEncodedHttpFields() throws Exception
+    {
+        PreEncodedHttpFields template = new PreEncodedHttpFields(
+            new HttpField(HttpHeader.SERVER, "test"),
+            new HttpField(HttpHeader.CACHE_CONTROL, "no-cache"),
+            new HttpField("Access-Control-Allow-Origin", "*"));
+
+        HttpFields.Mutable fields = HttpFields.build()
+            .add(HttpHeader.CONTENT_TYPE, "text/plain")
+            .add(template)
+            .add("X-Request", "1");
+        assertSame(template, PreEncodedHttpFields.getTemplate(fields, 1));
+        String response = generate(fields);
+
+        assertThat(response, containsString("Content-Type: text/plain\r\n" +
+            "Server: test\r\n" +
+            "Cache-Control: no-cache\r\n" +
+            "Access-Control-Allow-Origin: *\r\n" +
+            "X-Request: 1\r\n"));
+        // The Server header of the template replaces the default one.
+        assertThat(response, not(containsString("Server: Jetty")));
+    }
+
+    @Test
+    public void testModifiedPreEncodedHttpFields() throws Exception
+    {
+        PreEncodedHttpFields template = new PreEncodedHttpFields(
+            new HttpField(HttpHeader.CACHE_CONTROL, "no-cache"),
+            new HttpField(HttpHeader.VARY, "Origin"));
+
+        HttpFields.Mutable fields = HttpFields.build()
+            .add(template)
+            .put(HttpHeader.VARY, "Accept-Encoding");
+        // The fields of the template have been modified, so they are generated one by one.
+        assertNull(PreEncodedHttpFields.getTemplate(fields, 0));
+        String response = generate(fields);
+
+        assertThat(response, containsString("Cache-Control: no-cache\r\n"));
+        assertThat(response, containsString("Vary: Accept-Encoding\r\n"));
+        assertThat(response, not(containsString("Origin")));
+    }
+
+    @Test
+    public void testPreEncodedHttpFieldsUnsupportedField()
+    {
+        assertThrows(IllegalArgumentException.class, () -> new PreEncodedHttpFields(new HttpField(HttpHeader.CONTENT_LENGTH, "10")));
+    }
+
+    private static String generate(HttpFields fields) throws Exception
+    {
+        ByteBuffer header = BufferUtil.allocate(8096);
+        HttpGenerator gen = new HttpGenerator(true, false);
+        MetaData.Response info = new MetaData.Response(HttpVersion.HTTP_1_1, 200, null, fields, 0);
+        HttpGenerator.Result result = gen.generateResponse(info, false, header, null, null, true);
+        assertEquals(HttpGenerator.Result.FLUSH, result);
+        return BufferUtil.toString(header);
+    }
 }
@@ -893,6 +893,46 @@ public class HttpParserTest
         assertThat(_complianceViolation, contains(CASE_SENSITIVE_FIELD_NAME, CASE_SENSITIVE_FIELD_NAME));
     }
 
+    @Test
+    public void testSplitLongHeaderValuesParse()
+    {
+        // Long names and values, with spaces, tabs and obsolete text at various
+        // offsets, to exercise the bulk scanning of names and values.
+        String value1 = "Mozilla/5.0 (X11; Linux x86_64; rv:94.0) Gecko/20100101 Firefox/94.0";
+        String value2 = "text/html,application/xhtml+xml,application/xml;q=0.9,\timage/webp,*/*;q=0.8";
+        String value3 = "caf\u00e9 au lait   \t trailing";
+        String request = "GET /path/to/resource?query=value HTTP/1.1\r\n" +
+            "Host: localhost\r\n" +
+            "User-Agent: " + value1 + "   \r\n" +
+            "X-Very-Long-Custom-Header-Name-For-Testing: " + value2 + "\r\n" +
+            "X-Obsolete-Text:\t" + value3 + " \t \r\n" +
+            "\r\n";
+        ByteBuffer buffer = BufferUtil.toBuffer(request, StandardCharsets.ISO_8859_1);
+
+        for (int i = 0; i < buffer.capacity(); i++)
+        {
+            HttpParser.RequestHandler handler = new Handler();
+            HttpParser parser = new HttpParser(handler);
+
+            buffer.position(0);
+            buffer.limit(i);
+            if (!parser.parseNext(buffer))
+            {
+                buffer.limit(buffer.capacity());
+                parser.parseNext(buffer);
+            }
+
+            assertEquals("/path/to/resource?query=value", _uriOrStatus);
+            assertEquals("User-Agent", _hdr[1]);
+            assertEquals(value1, _val[1]);
+            assertEquals("X-Very-Long-Custom-Header-Name-For-Testing", _hdr[2]);
+            assertEquals(value2, _val[2]);
+            assertEquals("X-Obsolete-Text", _hdr[3]);
+            assertEquals(value3, _val[3]);
+            assertEquals(3, _headers);
+        }
+    }
+
     @Test
     public void testSplitHeaderParse()
     {
@@ -0,0 +1,104 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.http;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class HttpTokensTest
+{
+    public static Stream<Arguments> buffers()
+    {
+        return Stream.of(
+            Arguments.of(false, ByteOrder.BIG_ENDIAN),
+            Arguments.of(false, ByteOrder.LITTLE_ENDIAN),
+            Arguments.of(true, ByteOrder.BIG_ENDIAN),
+            Arguments.of(true, ByteOrder.LITTLE_ENDIAN)
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource("buffers")
+    public void testIndexOfControl(boolean direct, ByteOrder order)
+    {
+        Random random = new Random(1234);
+        for (int b = 0; b < 256; ++b)
+        {
+            for (int position = 0; position < 20; ++position)
+            {
+                ByteBuffer buffer = newBuffer(direct, order, random, position, (byte)b);
+                int from = random.nextInt(position + 1);
+                int expected = from;
+                while (expected < buffer.limit() && !isControl(buffer.get(expected)))
+                {
+                    ++expected;
+                }
+                assertEquals(expected, HttpTokens.indexOfControl(buffer, from, buffer.limit()), "byte=" + b + " position=" + position);
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("buffers")
+    public void testIndexOfSpaceOrNonAscii(boolean direct, ByteOrder order)
+    {
+        Random random = new Random(1234);
+        for (int b = 0; b < 256; ++b)
+        {
+            for (int position = 0; position < 20; ++position)
+            {
+                ByteBuffer buffer = newBuffer(direct, order, random, position, (byte)b);
+                int from = random.nextInt(position + 1);
+                int expected = from;
+                while (expected < buffer.limit() && buffer.get(expected) > HttpTokens.SPACE)
+                {
+                    ++expected;
+                }
+                assertEquals(expected, HttpTokens.indexOfSpaceOrNonAscii(buffer, from, buffer.limit()), "byte=" + b + " position=" + position);
+            }
+        }
+    }
+
+    private static ByteBuffer newBuffer(boolean direct, ByteOrder order, Random random, int position, byte b)
+    {
+        // Visible characters, followed by the byte to find, followed by random bytes.
+        int length = position + 1 + random.nextInt(16);
+        ByteBuffer buffer = direct ? ByteBuffer.allocateDirect(length) : ByteBuffer.allocate(length);
+        buffer.order(order);
+        for (int i = 0; i < length; ++i)
+        {
+            if (i < position)
+                buffer.put(i, (byte)('!' + random.nextInt('~' - '!')));
+            else if (i == position)
+                buffer.put(i, b);
+            else
+                buffer.put(i, (byte)random.nextInt(256));
+        }
+        return buffer;
+    }
+
+    private static boolean isControl(byte b)
+    {
+        int c = b & 0xFF;
+        return c < 0x20 || c == 0x7F;
+    }
+}
@@ -0,0 +1,200 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.http;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jetty.io.ArrayByteBufferPool;
+import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.IO;
+import org.eclipse.jetty.util.TypeUtil;
+import org.eclipse.jetty.util.compression.ZstdDecompressor;
+import org.eclipse.jetty.util.compression.ZstdDecompressorPool;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ZstdContentDecoderTest
+{
+    // "hello world", as a single raw block.
+    private static final String HELLO_WORLD = "28b52ffd200b59000068656c6c6f20776f726c64";
+    // "hello " and "world", as two concatenated frames.
+    private static final String CONCATENATED = "28b52ffd200631000068656c6c6f2028b52ffd2005290000776f726c64";
+
+    private ArrayByteBufferPool pool;
+    private final AtomicInteger buffers = new AtomicInteger();
+
+    @BeforeEach
+    public void before()
+    {
+        buffers.set(0);
+        pool = new ArrayByteBufferPool()
+        {
+            @Override
+            public ByteBuffer acquire(int size, boolean direct)
+            {
+                buffers.incrementAndGet();
+                return super.acquire(size, direct);
+            }
+
+            @Override
+            public void release(ByteBuffer buffer)
+            {
+                buffers.decrementAndGet();
+                super.release(buffer);
+            }
+        };
+    }
+
+    @AfterEach
+    public void after()
+    {
+        assertEquals(0, buffers.get());
+    }
+
+    private static String lines()
+    {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 500; ++i)
+        {
+            builder.append("line ").append(i).append(": the quick brown fox jumps over the lazy dog\n");
+        }
+        return builder.toString();
+    }
+
+    private static byte[] compressedLines() throws Exception
+    {
+        // Compressed at level 19, with Huffman literals and FSE sequences.
+        try (InputStream input = ZstdContentDecoderTest.class.getResourceAsStream("/lines.txt.zst"))
+        {
+            return IO.readBytes(input);
+        }
+    }
+
+    @Test
+    public void testSmallFrame()
+    {
+        ZstdContentDecoder decoder = new ZstdContentDecoder(pool, 2048);
+        ByteBuffer buffer = decoder.decode(ByteBuffer.wrap(TypeUtil.fromHexString(HELLO_WORLD)));
+        assertEquals("hello world", BufferUtil.toString(buffer));
+        decoder.release(buffer);
+        assertTrue(decoder.isFinished());
+        decoder.destroy();
+    }
+
+    @Test
+    public void testConcatenatedFrames()
+    {
+        ZstdContentDecoder decoder = new ZstdContentDecoder(pool, 2048);
+        ByteBuffer buffer = decoder.decode(ByteBuffer.wrap(TypeUtil.fromHexString(CONCATENATED)));
+        assertEquals("hello world", BufferUtil.toString(buffer));
+        decoder.release(buffer);
+        decoder.destroy();
+    }
+
+    @Test
+    public void testCompressedBlocks() throws Exception
+    {
+        ZstdContentDecoder decoder = new ZstdContentDecoder(pool, 2048);
+        ByteBuffer buffer = decoder.decode(ByteBuffer.wrap(compressedLines()));
+        assertEquals(lines(), BufferUtil.toString(buffer, StandardCharsets.UTF_8));
+        decoder.release(buffer);
+        assertTrue(decoder.isFinished());
+        decoder.destroy();
+    }
+
+    @Test
+    public void testCompressedBlocksOneByteAtATime() throws Exception
+    {
+        ZstdContentDecoder decoder = new ZstdContentDecoder(pool, 2048);
+        StringBuilder result = new StringBuilder();
+        for (byte b : compressedLines())
+        {
+            ByteBuffer buffer = decoder.decode(ByteBuffer.wrap(new byte[]{b}));
+            result.append(BufferUtil.toString(buffer, StandardCharsets.UTF_8));
+            decoder.release(buffer);
+        }
+        assertEquals(lines(), result.toString());
+        assertTrue(decoder.isFinished());
+        decoder.destroy();
+    }
+
+    @Test
+    public void testDecodedChunks() throws Exception
+    {
+        StringBuilder result = new StringBuilder();
+        AtomicInteger chunks = new AtomicInteger();
+        ZstdContentDecoder decoder = new ZstdContentDecoder(pool, 1024)
+        {
+            @Override
+            protected boolean decodedChunk(ByteBuffer chunk)
+            {
+                chunks.incrementAndGet();
+                result.append(BufferUtil.toString(chunk, StandardCharsets.UTF_8));
+                release(chunk);
+                return false;
+            }
+        };
+        decoder.decodeChunks(ByteBuffer.wrap(compressedLines()));
+        assertEquals(lines(), result.toString());
+        assertTrue(chunks.get() > 1);
+        decoder.destroy();
+    }
+
+    @Test
+    public void testDecompressorIsPooled() throws Exception
+    {
+        ZstdDecompressorPool decompressorPool = new ZstdDecompressorPool(1);
+        decompressorPool.start();
+        try
+        {
+            ZstdDecompressorPool.Entry entry = decompressorPool.acquire();
+            ZstdDecompressor decompressor = entry.get();
+            entry.release();
+
+            ZstdContentDecoder decoder = new ZstdContentDecoder(decompressorPool, pool, 2048);
+            ByteBuffer buffer = decoder.decode(ByteBuffer.wrap(compressedLines()));
+            assertEquals(lines(), BufferUtil.toString(buffer, StandardCharsets.UTF_8));
+            decoder.release(buffer);
+            decoder.destroy();
+
+            // The decompressor, and its window, is reused.
+            entry = decompressorPool.acquire();
+            assertSame(decompressor, entry.get());
+            assertTrue(entry.get().isFinished());
+            entry.release();
+        }
+        finally
+        {
+            decompressorPool.stop();
+        }
+    }
+
+    @Test
+    public void testInvalidMagicNumber()
+    {
+        ZstdContentDecoder decoder = new ZstdContentDecoder(pool, 2048);
+        ByteBuffer compressed = BufferUtil.toBuffer("not zstd");
+        assertThrows(RuntimeException.class, () -> decoder.decode(compressed));
+        decoder.destroy();
+    }
+}
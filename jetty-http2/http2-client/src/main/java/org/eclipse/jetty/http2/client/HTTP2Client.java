@@ -18,6 +18,7 @@ import java.nio.channels.SocketChannel;
 import java.time.Duration;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
@@ -28,6 +29,7 @@ import org.eclipse.jetty.http2.FlowControlStrategy;
 import org.eclipse.jetty.http2.api.Session;
 import org.eclipse.jetty.http2.frames.Frame;
 import org.eclipse.jetty.http2.frames.SettingsFrame;
+import org.eclipse.jetty.http2.hpack.HpackEncoder;
 import org.eclipse.jetty.io.ByteBufferPool;
 import org.eclipse.jetty.io.ClientConnectionFactory;
 import org.eclipse.jetty.io.ClientConnector;
@@ -112,6 +114,7 @@ public class HTTP2Client extends ContainerLifeCycle
     private int maxDynamicTableSize = 4096;
     private int maxHeaderBlockFragment = 0;
     private FlowControlStrategy.Factory flowControlStrategyFactory = () -> new BufferingFlowControlStrategy(0.5F);
+    private HpackEncoder.IndexingPolicy.Factory hpackIndexingPolicyFactory = HpackEncoder.IndexingPolicy.Factory.DEFAULT;
     private long streamIdleTimeout;
     private boolean useInputDirectByteBuffers = true;
     private boolean useOutputDirectByteBuffers = true;
@@ -173,6 +176,25 @@ public class HTTP2Client extends ContainerLifeCycle
         this.flowControlStrategyFactory = flowControlStrategyFactory;
     }
 
+    /**
+     * @return the factory of the policies that decide which fields are added to the HPACK dynamic table
+     */
+    public HpackEncoder.IndexingPolicy.Factory getHpackIndexingPolicyFactory()
+    {
+        return hpackIndexingPolicyFactory;
+    }
+
+    /**
+     * <p>Sets the factory of the policies that decide which fields are added to the
+     * HPACK dynamic table, for example {@code AdaptiveIndexingPolicy::new}.</p>
+     *
+     * @param hpackIndexingPolicyFactory the factory of HPACK indexing policies
+     */
+    public void setHpackIndexingPolicyFactory(HpackEncoder.IndexingPolicy.Factory hpackIndexingPolicyFactory)
+    {
+        this.hpackIndexingPolicyFactory = Objects.requireNonNull(hpackIndexingPolicyFactory);
+    }
+
     @ManagedAttribute("The number of selectors")
     public int getSelectors()
     {
@@ -949,6 +949,39 @@ public abstract class HTTP2Session extends ContainerLifeCycle implements ISessio
         return recvWindow.get();
     }
 
+    // The HPACK statistics are updated by the thread that generates the
+    // frames, and are read here without synchronization, so they are approximate.
+
+    @ManagedAttribute(value = "The number of header fields encoded by HPACK", readonly = true)
+    public long getHpackEncodedFields()
+    {
+        return generator.getHpackEncoder().getEncodedFields();
+    }
+
+    @ManagedAttribute(value = "The number of header fields encoded as a reference to an HPACK table", readonly = true)
+    public long getHpackReferencedFields()
+    {
+        return generator.getHpackEncoder().getReferencedFields();
+    }
+
+    @ManagedAttribute(value = "The number of header fields added to the HPACK dynamic table", readonly = true)
+    public long getHpackIndexedFields()
+    {
+        return generator.getHpackEncoder().getIndexedFields();
+    }
+
+    @ManagedAttribute(value = "The number of header fields evicted from the HPACK dynamic table", readonly = true)
+    public long getHpackEvictedFields()
+    {
+        return generator.getHpackEncoder().getEvictedFields();
+    }
+
+    @ManagedAttribute(value = "The ratio of HPACK encoded bytes over HTTP/1.1 header bytes", readonly = true)
+    public double getHpackCompressionRatio()
+    {
+        return generator.getHpackEncoder().getCompressionRatio();
+    }
+
     @Override
     public int updateSendWindow(int delta)
     {
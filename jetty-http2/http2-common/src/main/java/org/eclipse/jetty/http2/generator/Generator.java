@@ -66,6 +66,16 @@ public class Generator
         return byteBufferPool;
     }
 
+    public HpackEncoder getHpackEncoder()
+    {
+        return hpackEncoder;
+    }
+
+    public void setHpackIndexingPolicy(HpackEncoder.IndexingPolicy indexingPolicy)
+    {
+        hpackEncoder.setIndexingPolicy(indexingPolicy);
+    }
+
     public void setValidateHpackEncoding(boolean validateEncoding)
     {
         hpackEncoder.setValidateEncoding(validateEncoding);
@@ -0,0 +1,161 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.http2.hpack;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.jetty.http.HttpField;
+import org.eclipse.jetty.util.StringUtil;
+
+/**
+ * <p>An {@link HpackEncoder.IndexingPolicy} that learns, for each field name,
+ * whether indexing the fields sent on a connection pays off.</p>
+ * <p>For each field name, this policy records how many fields have been added
+ * to the dynamic table and how many times they have been referenced afterwards.
+ * When the ratio of references over additions falls below a threshold, the name
+ * is considered to have values that change too often (for example, tracing ids),
+ * and its fields are not indexed anymore, so that they do not evict more useful
+ * entries from the dynamic table.</p>
+ * <p>Conversely, this policy remembers the last values sent for each field name,
+ * and indexes a field that the encoder rules would not index (for example,
+ * a non zero {@code Content-Length} or a custom field with a known name) when
+ * its value repeats. Fields that the encoder never indexes, such as {@code ETag}
+ * or {@code Authorization}, are not submitted to this policy.</p>
+ * <p>A field whose value repeats is always indexed, so that a name that has been
+ * considered wasteful may be learnt again if its values start to repeat.</p>
+ * <p>Instances of this class must not be shared among encoders.</p>
+ */
+public class AdaptiveIndexingPolicy implements HpackEncoder.IndexingPolicy
+{
+    private final Map<String, NameStats> _names = new HashMap<>();
+    private final int _maxNames;
+    private final int _minSamples;
+    private final double _minHitRatio;
+
+    public AdaptiveIndexingPolicy()
+    {
+        this(64, 8, 0.25D);
+    }
+
+    /**
+     * @param maxNames the max number of field names tracked, beyond which the encoder rules apply
+     * @param minSamples the min number of additions to the dynamic table before a name may be considered wasteful
+     * @param minHitRatio the min ratio of references over additions below which a name is considered wasteful
+     */
+    public AdaptiveIndexingPolicy(int maxNames, int minSamples, double minHitRatio)
+    {
+        _maxNames = maxNames;
+        _minSamples = Math.max(1, minSamples);
+        _minHitRatio = minHitRatio;
+    }
+
+    @Override
+    public boolean isIndexable(HttpField field, boolean indexable)
+    {
+        NameStats stats = statsFor(field, true);
+        if (stats == null)
+            return indexable;
+        boolean repeated = stats.seen(field.getValue());
+        if (repeated)
+            return true;
+        return indexable && !stats.isWasteful();
+    }
+
+    @Override
+    public void onIndexed(HttpField field)
+    {
+        NameStats stats = statsFor(field, false);
+        if (stats != null)
+            stats.onIndexed();
+    }
+
+    @Override
+    public void onReferenced(HttpField field)
+    {
+        NameStats stats = statsFor(field, false);
+        if (stats != null)
+            stats.onReferenced();
+    }
+
+    /**
+     * @param name the field name
+     * @return whether the fields with the given name are currently not indexed by this policy
+     */
+    public boolean isWasteful(String name)
+    {
+        NameStats stats = _names.get(StringUtil.asciiToLowerCase(name));
+        return stats != null && stats.isWasteful();
+    }
+
+    private NameStats statsFor(HttpField field, boolean create)
+    {
+        String name = field.getLowerCaseName();
+        NameStats stats = _names.get(name);
+        if (stats == null && create && _names.size() < _maxNames)
+        {
+            stats = new NameStats();
+            _names.put(name, stats);
+        }
+        return stats;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{names=%d/%d,samples=%d,ratio=%.2f}", getClass().getSimpleName(), hashCode(), _names.size(), _maxNames, _minSamples, _minHitRatio);
+    }
+
+    private class NameStats
+    {
+        private final String[] _values = new String[8];
+        private int _size;
+        private int _cursor;
+        private int _indexed;
+        private int _referenced;
+
+        private boolean seen(String value)
+        {
+            for (int i = 0; i < _size; ++i)
+            {
+                if (_values[i].equals(value))
+                    return true;
+            }
+            _size = Math.min(_size + 1, _values.length);
+            _values[_cursor] = value;
+            _cursor = (_cursor + 1) % _values.length;
+            return false;
+        }
+
+        private boolean isWasteful()
+        {
+            return _indexed >= _minSamples && _referenced < _indexed * _minHitRatio;
+        }
+
+        private void onIndexed()
+        {
+            // Decay the counters, so that the policy adapts to changes in the traffic.
+            if (++_indexed >= 16 * _minSamples)
+            {
+                _indexed >>= 1;
+                _referenced >>= 1;
+            }
+        }
+
+        private void onReferenced()
+        {
+            ++_referenced;
+        }
+    }
+}
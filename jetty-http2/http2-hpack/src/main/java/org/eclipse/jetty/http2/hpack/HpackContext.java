@@ -183,6 +183,7 @@ public class HpackContext
 
     private int _maxDynamicTableSizeInBytes;
     private int _dynamicTableSizeInBytes;
+    private long _evictions;
     private final DynamicTable _dynamicTable;
     private final Map<HttpField, Entry> _fieldMap = new HashMap<>();
     private final Map<String, Entry> _nameMap = new HashMap<>();
@@ -287,6 +288,14 @@ public class HpackContext
         return _maxDynamicTableSizeInBytes;
     }
 
+    /**
+     * @return the number of entries evicted from the dynamic table so far
+     */
+    public long getEvictions()
+    {
+        return _evictions;
+    }
+
     public int index(Entry entry)
     {
         if (entry._slot < 0)
@@ -375,6 +384,7 @@ public class HpackContext
                 if (LOG.isDebugEnabled())
                     LOG.debug(String.format("HdrTbl[%x] evict %s", HpackContext.this.hashCode(), entry));
                 _dynamicTableSizeInBytes -= entry.getSize();
+                _evictions++;
                 entry._slot = -1;
                 _fieldMap.remove(entry.getHttpField());
                 String lc = entry.getHttpField().getLowerCaseName();
@@ -391,6 +401,7 @@ public class HpackContext
                 LOG.debug(String.format("HdrTbl[%x] evictAll", HpackContext.this.hashCode()));
             if (size() > 0)
             {
+                _evictions += size();
                 _fieldMap.clear();
                 _nameMap.clear();
                 _offset = 0;
@@ -29,6 +29,7 @@ import org.eclipse.jetty.http.HttpStatus;
 import org.eclipse.jetty.http.HttpVersion;
 import org.eclipse.jetty.http.MetaData;
 import org.eclipse.jetty.http.PreEncodedHttpField;
+import org.eclipse.jetty.http.PreEncodedHttpFields;
 import org.eclipse.jetty.http2.hpack.HpackContext.Entry;
 import org.eclipse.jetty.http2.hpack.HpackContext.StaticEntry;
 import org.eclipse.jetty.util.BufferUtil;
@@ -97,6 +98,12 @@ public class HpackEncoder
     private int _maxHeaderListSize;
     private int _headerListSize;
     private boolean _validateEncoding = true;
+    private IndexingPolicy _indexingPolicy = IndexingPolicy.DEFAULT;
+    private long _encodedFields;
+    private long _referencedFields;
+    private long _indexedFields;
+    private long _uncompressedBytes;
+    private long _encodedBytes;
 
     public HpackEncoder()
     {
@@ -157,6 +164,77 @@ public class HpackEncoder
         _validateEncoding = validateEncoding;
     }
 
+    public IndexingPolicy getIndexingPolicy()
+    {
+        return _indexingPolicy;
+    }
+
+    /**
+     * @param indexingPolicy the policy that decides whether literal fields are added to the dynamic table,
+     * or null for the default policy
+     */
+    public void setIndexingPolicy(IndexingPolicy indexingPolicy)
+    {
+        _indexingPolicy = indexingPolicy == null ? IndexingPolicy.DEFAULT : indexingPolicy;
+    }
+
+    /**
+     * @return the number of fields encoded
+     */
+    public long getEncodedFields()
+    {
+        return _encodedFields;
+    }
+
+    /**
+     * @return the number of fields encoded as a reference to the static or the dynamic table
+     */
+    public long getReferencedFields()
+    {
+        return _referencedFields;
+    }
+
+    /**
+     * @return the number of fields added to the dynamic table
+     */
+    public long getIndexedFields()
+    {
+        return _indexedFields;
+    }
+
+    /**
+     * @return the number of entries evicted from the dynamic table
+     */
+    public long getEvictedFields()
+    {
+        return _context.getEvictions();
+    }
+
+    /**
+     * @return the number of octets of the fields encoded, as if they were encoded in HTTP/1.1
+     */
+    public long getUncompressedBytes()
+    {
+        return _uncompressedBytes;
+    }
+
+    /**
+     * @return the number of octets produced by the encoding of the fields
+     */
+    public long getEncodedBytes()
+    {
+        return _encodedBytes;
+    }
+
+    /**
+     * @return the ratio between the encoded octets and the uncompressed octets, or 1 if no field has been encoded
+     */
+    public double getCompressionRatio()
+    {
+        long uncompressed = _uncompressedBytes;
+        return uncompressed == 0 ? 1.0 : (double)_encodedBytes / uncompressed;
+    }
+
     public void encode(ByteBuffer buffer, MetaData metadata) throws HpackException
     {
         try
@@ -230,8 +308,19 @@ public class HpackEncoder
                 }
 
                 boolean contentLengthEncoded = false;
-                for (HttpField field : fields)
+                int n = fields.size();
+                for (int f = 0; f < n; f++)
                 {
+                    // Write the templates of pre encoded fields with a single copy.
+                    PreEncodedHttpFields template = PreEncodedHttpFields.getTemplate(fields, f);
+                    if (template != null && !containsAny(template, hopHeaders))
+                    {
+                        encode(buffer, template);
+                        f += template.size() - 1;
+                        continue;
+                    }
+
+                    HttpField field = fields.getField(f);
                     HttpHeader header = field.getHeader();
                     if (header != null && IGNORED_HEADERS.contains(header))
                         continue;
@@ -281,6 +370,46 @@ public class HpackEncoder
         }
     }
 
+    /**
+     * <p>Encodes the fields of the given template with a single copy.</p>
+     * <p>The fields of a template are never added to the dynamic table.</p>
+     *
+     * @param buffer the buffer to encode the fields to
+     * @param template the template of fields to encode
+     */
+    public void encode(ByteBuffer buffer, PreEncodedHttpFields template)
+    {
+        int position = buffer.position();
+        template.putTo(buffer, HttpVersion.HTTP_2);
+        int size = template.size();
+        for (int i = 0; i < size; ++i)
+        {
+            HttpField field = template.getField(i);
+            int fieldSize = field.getName().length() + field.getValue().length();
+            _headerListSize += fieldSize + 32;
+            _uncompressedBytes += fieldSize + 4;
+        }
+        _encodedFields += size;
+        _encodedBytes += buffer.position() - position;
+        if (_debug)
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("encode Template:'{}' to '{}'", template, BufferUtil.toHexString(buffer.duplicate().flip()));
+        }
+    }
+
+    private static boolean containsAny(PreEncodedHttpFields template, Set<String> names)
+    {
+        if (names == null)
+            return false;
+        for (int i = 0; i < template.size(); ++i)
+        {
+            if (names.contains(template.getField(i).getLowerCaseName()))
+                return true;
+        }
+        return false;
+    }
+
     public void encodeMaxDynamicTableSize(ByteBuffer buffer, int maxDynamicTableSize)
     {
         if (maxDynamicTableSize > _remoteMaxDynamicTableSize)
@@ -297,6 +426,7 @@ public class HpackEncoder
 
         int fieldSize = field.getName().length() + field.getValue().length();
         _headerListSize += fieldSize + 32;
+        int position = buffer.position();
 
         String encoding = null;
 
@@ -316,9 +446,11 @@ public class HpackEncoder
                 int index = _context.index(entry);
                 buffer.put((byte)0x80);
                 NBitInteger.encode(buffer, 7, index);
+                _indexingPolicy.onReferenced(field);
                 if (_debug)
                     encoding = "IdxField" + (entry.isStatic() ? "S" : "") + (1 + NBitInteger.octectsNeeded(7, index));
             }
+            _referencedFields++;
         }
         else
         {
@@ -329,101 +461,75 @@ public class HpackEncoder
             HttpHeader header = field.getHeader();
 
             // Select encoding strategy
-            if (header == null)
+            if (field instanceof PreEncodedHttpField)
             {
-                // Select encoding strategy for unknown header names
+                // Preencoded field
+                int i = buffer.position();
+                ((PreEncodedHttpField)field).putTo(buffer, HttpVersion.HTTP_2);
+                byte b = buffer.get(i);
+                indexed = b < 0 || b >= 0x40;
+                if (_debug)
+                    encoding = indexed ? "PreEncodedIdx" : "PreEncoded";
+            }
+            else if (header == null)
+            {
+                // Select encoding strategy for unknown header names.
+                // An unknown name and value that will fit in the dynamic table is indexed
+                // by default, just in case it is the first time we have seen a custom field.
+                // A known name with a different value is probably a custom field with
+                // changing value, so by default it is not indexed.
                 Entry name = _context.get(field.getName());
-
-                if (field instanceof PreEncodedHttpField)
-                {
-                    int i = buffer.position();
-                    ((PreEncodedHttpField)field).putTo(buffer, HttpVersion.HTTP_2);
-                    byte b = buffer.get(i);
-                    indexed = b < 0 || b >= 0x40;
-                    if (_debug)
-                        encoding = indexed ? "PreEncodedIdx" : "PreEncoded";
-                }
-                else if (name == null && fieldSize < _context.getMaxDynamicTableSize())
-                {
-                    // unknown name and value that will fit in dynamic table, so let's index
-                    // this just in case it is the first time we have seen a custom name or a
-                    // custom field.  Unless the name is once only, this is worthwhile
-                    indexed = true;
-                    encodeName(buffer, (byte)0x40, 6, field.getName(), null);
-                    encodeValue(buffer, true, field.getValue());
-                    if (_debug)
-                        encoding = "LitHuffNHuffVIdx";
-                }
-                else
-                {
-                    // Known name, but different value.
-                    // This is probably a custom field with changing value, so don't index.
-                    indexed = false;
-                    encodeName(buffer, (byte)0x00, 4, field.getName(), null);
-                    encodeValue(buffer, true, field.getValue());
-                    if (_debug)
-                        encoding = "LitHuffNHuffV!Idx";
-                }
+                indexed = fieldSize < _context.getMaxDynamicTableSize() &&
+                    _indexingPolicy.isIndexable(field, name == null);
+                encodeName(buffer, indexed ? (byte)0x40 : (byte)0x00, indexed ? 6 : 4, field.getName(), null);
+                encodeValue(buffer, true, field.getValue());
+                if (_debug)
+                    encoding = indexed ? "LitHuffNHuffVIdx" : "LitHuffNHuffV!Idx";
             }
             else
             {
-                // Select encoding strategy for known header names
+                // Select encoding strategy for known header names.
+                // Sensitive and do not index fields are never indexed, and fields that
+                // are too large cannot be indexed; the other fields are submitted to the policy.
                 Entry name = _context.get(header);
-
-                if (field instanceof PreEncodedHttpField)
+                boolean neverIndex = NEVER_INDEX.contains(header);
+                boolean huffman = !DO_NOT_HUFFMAN.contains(header);
+                if (neverIndex || DO_NOT_INDEX.contains(header) || fieldSize >= _context.getMaxDynamicTableSize())
                 {
-                    // Preencoded field
-                    int i = buffer.position();
-                    ((PreEncodedHttpField)field).putTo(buffer, HttpVersion.HTTP_2);
-                    byte b = buffer.get(i);
-                    indexed = b < 0 || b >= 0x40;
-                    if (_debug)
-                        encoding = indexed ? "PreEncodedIdx" : "PreEncoded";
-                }
-                else if (DO_NOT_INDEX.contains(header))
-                {
-                    // Non indexed field
                     indexed = false;
-                    boolean neverIndex = NEVER_INDEX.contains(header);
-                    boolean huffman = !DO_NOT_HUFFMAN.contains(header);
-                    encodeName(buffer, neverIndex ? (byte)0x10 : (byte)0x00, 4, header.asString(), name);
-                    encodeValue(buffer, huffman, field.getValue());
-
-                    if (_debug)
-                        encoding = "Lit" +
-                            ((name == null) ? "HuffN" : ("IdxN" + (name.isStatic() ? "S" : "") + (1 + NBitInteger.octectsNeeded(4, _context.index(name))))) +
-                            (huffman ? "HuffV" : "LitV") +
-                            (neverIndex ? "!!Idx" : "!Idx");
-                }
-                else if (fieldSize >= _context.getMaxDynamicTableSize() || header == HttpHeader.CONTENT_LENGTH && !"0".equals(field.getValue()))
-                {
-                    // The field is too large or a non zero content length, so do not index.
-                    indexed = false;
-                    encodeName(buffer, (byte)0x00, 4, header.asString(), name);
-                    encodeValue(buffer, true, field.getValue());
-                    if (_debug)
-                        encoding = "Lit" +
-                            ((name == null) ? "HuffN" : "IdxNS" + (1 + NBitInteger.octectsNeeded(4, _context.index(name)))) +
-                            "HuffV!Idx";
                 }
                 else
                 {
-                    // indexed
-                    indexed = true;
-                    boolean huffman = !DO_NOT_HUFFMAN.contains(header);
-                    encodeName(buffer, (byte)0x40, 6, header.asString(), name);
-                    encodeValue(buffer, huffman, field.getValue());
-                    if (_debug)
-                        encoding = ((name == null) ? "LitHuffN" : ("LitIdxN" + (name.isStatic() ? "S" : "") + (1 + NBitInteger.octectsNeeded(6, _context.index(name))))) +
-                            (huffman ? "HuffVIdx" : "LitVIdx");
+                    // A non zero content length is unlikely to be repeated.
+                    boolean indexable = header != HttpHeader.CONTENT_LENGTH || "0".equals(field.getValue());
+                    indexed = _indexingPolicy.isIndexable(field, indexable);
                 }
+
+                int bits = indexed ? 6 : 4;
+                encodeName(buffer, indexed ? (byte)0x40 : neverIndex ? (byte)0x10 : (byte)0x00, bits, header.asString(), name);
+                encodeValue(buffer, huffman, field.getValue());
+
+                if (_debug)
+                    encoding = "Lit" +
+                        ((name == null) ? "HuffN" : ("IdxN" + (name.isStatic() ? "S" : "") + (1 + NBitInteger.octectsNeeded(bits, _context.index(name))))) +
+                        (huffman ? "HuffV" : "LitV") +
+                        (indexed ? "Idx" : neverIndex ? "!!Idx" : "!Idx");
             }
 
             // If we want the field referenced, then we add it to our table and reference set.
             if (indexed)
+            {
                 _context.add(field);
+                _indexingPolicy.onIndexed(field);
+                _indexedFields++;
+            }
         }
 
+        _encodedFields++;
+        // The size of the field if it was encoded as "name: value\r\n" in HTTP/1.1.
+        _uncompressedBytes += fieldSize + 4;
+        _encodedBytes += buffer.position() - position;
+
         if (_debug)
         {
             if (LOG.isDebugEnabled())
@@ -490,4 +596,59 @@ public class HpackEncoder
             }
         }
     }
+
+    /**
+     * <p>A policy that decides whether a field that is sent literally is also added
+     * to the dynamic table, so that it can be referenced by index afterwards.</p>
+     * <p>Each connection has its own encoder, so a policy instance set on an encoder
+     * may learn from the fields sent on that connection. Encoders are not used
+     * concurrently, so implementations do not need to be thread-safe.</p>
+     * <p>Sensitive fields such as {@code Authorization}, fields that are never indexed
+     * such as {@code ETag}, fields that do not fit in the dynamic table and
+     * {@link PreEncodedHttpField}s are never submitted to the policy.</p>
+     *
+     * @see AdaptiveIndexingPolicy
+     */
+    public interface IndexingPolicy
+    {
+        /**
+         * <p>The policy that follows the encoder rules.</p>
+         */
+        IndexingPolicy DEFAULT = (field, indexable) -> indexable;
+
+        /**
+         * @param field the field to be sent literally
+         * @param indexable whether the encoder rules would add the field to the dynamic table
+         * @return whether the field must be added to the dynamic table
+         */
+        boolean isIndexable(HttpField field, boolean indexable);
+
+        /**
+         * <p>Invoked when a field has been added to the dynamic table.</p>
+         *
+         * @param field the field added
+         */
+        default void onIndexed(HttpField field)
+        {
+        }
+
+        /**
+         * <p>Invoked when a field has been sent as a reference to the dynamic table.</p>
+         *
+         * @param field the field referenced
+         */
+        default void onReferenced(HttpField field)
+        {
+        }
+
+        /**
+         * <p>Factory for {@link IndexingPolicy} instances, one for each connection.</p>
+         */
+        interface Factory
+        {
+            Factory DEFAULT = () -> IndexingPolicy.DEFAULT;
+
+            IndexingPolicy newIndexingPolicy();
+        }
+    }
 }
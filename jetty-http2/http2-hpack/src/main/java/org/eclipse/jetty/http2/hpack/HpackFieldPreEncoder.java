@@ -35,7 +35,19 @@ public class HpackFieldPreEncoder implements HttpFieldPreEncoder
     @Override
     public byte[] getEncodedField(HttpHeader header, String name, String value)
     {
-        boolean notIndexed = HpackEncoder.DO_NOT_INDEX.contains(header);
+        return encode(header, name, value, HpackEncoder.DO_NOT_INDEX.contains(header));
+    }
+
+    @Override
+    public byte[] getEncodedTemplateField(HttpHeader header, String name, String value)
+    {
+        // Template fields are never added to the dynamic table,
+        // so that their encoding does not depend on the connection.
+        return encode(header, name, value, true);
+    }
+
+    private byte[] encode(HttpHeader header, String name, String value, boolean notIndexed)
+    {
 
         ByteBuffer buffer = BufferUtil.allocate(name.length() + value.length() + 10);
         BufferUtil.clearToFill(buffer);
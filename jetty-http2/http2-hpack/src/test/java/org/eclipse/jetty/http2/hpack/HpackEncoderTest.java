@@ -20,13 +20,17 @@ import org.eclipse.jetty.http.HttpFields;
 import org.eclipse.jetty.http.HttpHeader;
 import org.eclipse.jetty.http.HttpVersion;
 import org.eclipse.jetty.http.MetaData;
+import org.eclipse.jetty.http.PreEncodedHttpFields;
 import org.eclipse.jetty.util.BufferUtil;
 import org.hamcrest.Matchers;
 import org.junit.jupiter.api.Test;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThan;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class HpackEncoderTest
 {
@@ -306,4 +310,162 @@ public class HpackEncoderTest
         assertThat(context.getMaxDynamicTableSize(), Matchers.is(50));
         assertThat(context.size(), Matchers.is(1));
     }
+
+    @Test
+    public void testIndexingPolicy() throws Exception
+    {
+        HpackEncoder encoder = new HpackEncoder(4096);
+        encoder.setIndexingPolicy((field, indexable) -> false);
+
+        HttpFields fields = HttpFields.build()
+            .add("host", "localhost0")
+            .add("x-custom", "value");
+        ByteBuffer buffer = BufferUtil.allocate(4096);
+        int pos = BufferUtil.flipToFill(buffer);
+        encoder.encode(buffer, new MetaData(HttpVersion.HTTP_2, fields));
+        BufferUtil.flipToFlush(buffer, pos);
+
+        assertThat(encoder.getHpackContext().size(), equalTo(0));
+        assertThat(encoder.getIndexedFields(), equalTo(0L));
+        assertThat(encoder.getEncodedFields(), equalTo(2L));
+
+        // The decoder must still be able to decode the fields.
+        MetaData metaData = new HpackDecoder(4096, 8192).decode(buffer);
+        assertThat(metaData.getFields().get("x-custom"), equalTo("value"));
+    }
+
+    @Test
+    public void testAdaptiveIndexingPolicyStopsIndexingUniqueValues()
+    {
+        AdaptiveIndexingPolicy policy = new AdaptiveIndexingPolicy(64, 8, 0.25D);
+        HpackEncoder encoder = new HpackEncoder(4096);
+        encoder.setIndexingPolicy(policy);
+
+        ByteBuffer buffer = BufferUtil.allocate(4096);
+        for (int i = 0; i < 32; ++i)
+        {
+            BufferUtil.clearToFill(buffer);
+            encoder.encode(buffer, new HttpField(HttpHeader.DATE, "Thu, 01 Jan 1970 00:00:" + (10 + i) + " GMT"));
+            encoder.encode(buffer, new HttpField("x-tenant", "acme"));
+        }
+
+        // The changing dates are indexed only until the policy learns they are never referenced.
+        assertTrue(policy.isWasteful("Date"));
+        assertFalse(policy.isWasteful("x-tenant"));
+        assertThat(encoder.getIndexedFields(), equalTo(8L + 1L));
+        assertThat(encoder.getReferencedFields(), equalTo(31L));
+    }
+
+    @Test
+    public void testAdaptiveIndexingPolicyIndexesRepeatedValues()
+    {
+        HpackEncoder encoder = new HpackEncoder(4096);
+        encoder.setIndexingPolicy(new AdaptiveIndexingPolicy());
+
+        ByteBuffer buffer = BufferUtil.allocate(4096);
+        HttpField contentLength = new HttpField(HttpHeader.CONTENT_LENGTH, "1234");
+        BufferUtil.clearToFill(buffer);
+        encoder.encode(buffer, contentLength);
+        // The encoder rules do not index a non zero Content-Length.
+        assertThat(encoder.getHpackContext().size(), equalTo(0));
+
+        // The value repeats, so it is indexed.
+        encoder.encode(buffer, contentLength);
+        assertThat(encoder.getHpackContext().size(), equalTo(1));
+
+        // And then referenced.
+        int position = buffer.position();
+        encoder.encode(buffer, contentLength);
+        assertThat(buffer.position() - position, equalTo(1));
+
+        // Sensitive and do not index fields are never indexed.
+        HttpField authorization = new HttpField(HttpHeader.AUTHORIZATION, "Bearer 1234567890");
+        encoder.encode(buffer, authorization);
+        encoder.encode(buffer, authorization);
+        HttpField etag = new HttpField(HttpHeader.ETAG, "W/\"1234567890\"");
+        encoder.encode(buffer, etag);
+        encoder.encode(buffer, etag);
+        assertThat(encoder.getHpackContext().size(), equalTo(1));
+    }
+
+    @Test
+    public void testAdaptiveIndexingPolicyComparesValues()
+    {
+        HpackEncoder encoder = new HpackEncoder(4096);
+        encoder.setIndexingPolicy(new AdaptiveIndexingPolicy());
+
+        ByteBuffer buffer = BufferUtil.allocate(4096);
+        BufferUtil.clearToFill(buffer);
+        // An unknown name is indexed by the encoder rules.
+        encoder.encode(buffer, new HttpField("x-custom", "Aa"));
+        assertThat(encoder.getHpackContext().size(), equalTo(1));
+
+        // A different value with the same hash code is not a repeated value.
+        assertEquals("Aa".hashCode(), "BB".hashCode());
+        encoder.encode(buffer, new HttpField("x-custom", "BB"));
+        assertThat(encoder.getHpackContext().size(), equalTo(1));
+    }
+
+    @Test
+    public void testStatistics()
+    {
+        HpackEncoder encoder = new HpackEncoder();
+        ByteBuffer buffer = BufferUtil.allocate(4096);
+        BufferUtil.clearToFill(buffer);
+        encoder.encodeMaxDynamicTableSize(buffer, 38 * 2);
+        assertThat(encoder.getCompressionRatio(), equalTo(1.0D));
+
+        for (int i = 0; i < 4; ++i)
+        {
+            BufferUtil.clearToFill(buffer);
+            encoder.encode(buffer, new HttpField("fo" + i, "b" + i + "r"));
+        }
+        // Only 2 fields fit in the dynamic table.
+        assertThat(encoder.getHpackContext().size(), equalTo(2));
+        assertThat(encoder.getEvictedFields(), equalTo(2L));
+
+        for (int i = 0; i < 10; ++i)
+        {
+            BufferUtil.clearToFill(buffer);
+            encoder.encode(buffer, new HttpField("fo3", "b3r"));
+        }
+        assertThat(encoder.getEncodedFields(), equalTo(14L));
+        assertThat(encoder.getReferencedFields(), equalTo(10L));
+        assertThat(encoder.getUncompressedBytes(), equalTo(14L * (6 + 4)));
+        assertThat(encoder.getCompressionRatio(), lessThan(0.5D));
+    }
+
+    @Test
+    public void testPreEncodedHttpFields() throws Exception
+    {
+        PreEncodedHttpFields template = new PreEncodedHttpFields(
+            new HttpField(HttpHeader.SERVER, "test"),
+            new HttpField(HttpHeader.CACHE_CONTROL, "no-cache"),
+            new HttpField("access-control-allow-origin", "*"));
+
+        HpackEncoder encoder = new HpackEncoder();
+        HpackDecoder decoder = new HpackDecoder(4096, 8192);
+        ByteBuffer buffer = BufferUtil.allocate(4096);
+        for (int i = 0; i < 2; ++i)
+        {
+            HttpFields.Mutable fields = HttpFields.build()
+                .add(template)
+                .add("x-request", String.valueOf(i));
+            BufferUtil.clearToFill(buffer);
+            encoder.encode(buffer, new MetaData.Response(HttpVersion.HTTP_2, 200, fields));
+            BufferUtil.flipToFlush(buffer, 0);
+
+            MetaData.Response response = (MetaData.Response)decoder.decode(buffer);
+            assertThat(response.getFields().get(HttpHeader.SERVER), equalTo("test"));
+            assertThat(response.getFields().get(HttpHeader.CACHE_CONTROL), equalTo("no-cache"));
+            assertThat(response.getFields().get("access-control-allow-origin"), equalTo("*"));
+            assertThat(response.getFields().get("x-request"), equalTo(String.valueOf(i)));
+        }
+
+        // The template fields are not added to the dynamic table.
+        HpackContext context = encoder.getHpackContext();
+        assertThat(context.size(), equalTo(1));
+        assertThat(context.get(HpackContext.STATIC_SIZE + 1).getHttpField().getName(), equalTo("x-request"));
+        assertThat(encoder.getEncodedFields(), equalTo(2L * (1 + 3 + 1)));
+    }
 }
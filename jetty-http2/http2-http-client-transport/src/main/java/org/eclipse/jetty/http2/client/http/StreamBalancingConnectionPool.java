@@ -0,0 +1,198 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.http2.client.http;
+
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jetty.client.HttpDestination;
+import org.eclipse.jetty.client.MultiplexConnectionPool;
+import org.eclipse.jetty.client.api.Connection;
+import org.eclipse.jetty.http2.HTTP2Session;
+import org.eclipse.jetty.http2.frames.Frame;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.Pool;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+
+/**
+ * <p>A multiplexed {@link org.eclipse.jetty.client.ConnectionPool} for HTTP/2
+ * that spreads the streams across its connections.</p>
+ * <p>{@link MultiplexConnectionPool} fills a connection up to its max number of
+ * concurrent streams before using another, so that all the streams share the same
+ * TCP connection, and suffer from the same packet losses and flow control stalls.
+ * This pool instead provides the connection with the least number of streams relative
+ * to its max number of concurrent streams, preferring connections with a larger
+ * session send window, and sorting last the connections whose send window is below
+ * {@link #getMinSendWindow()}.</p>
+ * <p>When the connection provided has {@link #getMaxStreamsPerConnection()} streams
+ * or more, or its send window is exhausted, a new connection is opened in the background,
+ * within the max number of connections of this pool, so that the following streams
+ * can be spread over more connections.</p>
+ * <p>Typical usage is:</p>
+ * <pre>
+ * HttpClientTransportOverHTTP2 transport = new HttpClientTransportOverHTTP2(http2Client);
+ * transport.setConnectionPoolFactory(destination -&gt;
+ *     new StreamBalancingConnectionPool(destination, httpClient.getMaxConnectionsPerDestination(), destination));
+ * </pre>
+ */
+@ManagedObject
+public class StreamBalancingConnectionPool extends MultiplexConnectionPool
+{
+    private final Map<Connection, AtomicInteger> streams = new ConcurrentHashMap<>();
+    private final Comparator<Connection> comparator = Comparator.comparingDouble(this::getLoad)
+        .thenComparing(Comparator.comparingInt(this::getSendWindow).reversed());
+    private int maxStreamsPerConnection = 16;
+    private int minSendWindow = Frame.DEFAULT_MAX_LENGTH;
+
+    public StreamBalancingConnectionPool(HttpDestination destination, int maxConnections, Callback requester)
+    {
+        this(destination, maxConnections, requester, destination.getHttpClient().getMaxRequestsQueuedPerDestination());
+    }
+
+    public StreamBalancingConnectionPool(HttpDestination destination, int maxConnections, Callback requester, int maxMultiplex)
+    {
+        super(destination, Pool.StrategyType.FIRST, maxConnections, false, requester, maxMultiplex);
+    }
+
+    @ManagedAttribute("The number of streams of a connection at which another connection is opened")
+    public int getMaxStreamsPerConnection()
+    {
+        return maxStreamsPerConnection;
+    }
+
+    /**
+     * @param maxStreamsPerConnection the number of streams of the least loaded connection
+     * at which another connection is opened, or 0 to open connections only when the
+     * send windows are exhausted
+     */
+    public void setMaxStreamsPerConnection(int maxStreamsPerConnection)
+    {
+        this.maxStreamsPerConnection = maxStreamsPerConnection;
+    }
+
+    @ManagedAttribute("The session send window below which a connection is considered exhausted")
+    public int getMinSendWindow()
+    {
+        return minSendWindow;
+    }
+
+    /**
+     * @param minSendWindow the session send window, in bytes, below which
+     * a connection is used last and another connection is opened
+     */
+    public void setMinSendWindow(int minSendWindow)
+    {
+        this.minSendWindow = minSendWindow;
+    }
+
+    /**
+     * @param connection the connection
+     * @return the number of streams in flight on the given connection
+     */
+    public int getStreams(Connection connection)
+    {
+        AtomicInteger count = streams.get(connection);
+        return count == null ? 0 : count.get();
+    }
+
+    /**
+     * @param connection the connection
+     * @return the session send window of the given connection, in bytes
+     */
+    protected int getSendWindow(Connection connection)
+    {
+        if (connection instanceof HttpConnectionOverHTTP2)
+        {
+            HTTP2Session session = (HTTP2Session)((HttpConnectionOverHTTP2)connection).getSession();
+            return session.getSendWindow();
+        }
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * <p>Returns the load of the given connection, as the number of its streams relative
+     * to its max number of concurrent streams, plus one if its send window is exhausted.</p>
+     *
+     * @param connection the connection
+     * @return the load of the given connection
+     */
+    protected double getLoad(Connection connection)
+    {
+        int maxMultiplex = connection instanceof Multiplexable ? ((Multiplexable)connection).getMaxMultiplex() : getMaxMultiplex();
+        double load = (double)getStreams(connection) / Math.max(1, maxMultiplex);
+        if (isExhausted(connection))
+            load += 1;
+        return load;
+    }
+
+    private boolean isExhausted(Connection connection)
+    {
+        return getSendWindow(connection) < minSendWindow;
+    }
+
+    @Override
+    public Connection acquire(boolean create)
+    {
+        Connection connection = super.acquire(create);
+        if (connection != null)
+        {
+            int maxStreams = getMaxStreamsPerConnection();
+            if ((maxStreams > 0 && getStreams(connection) >= maxStreams) || isExhausted(connection))
+            {
+                // Even the least loaded connection is busy, open another one.
+                tryCreate(true);
+            }
+        }
+        return connection;
+    }
+
+    @Override
+    protected Pool<Connection>.Entry acquireEntry(Pool<Connection> pool)
+    {
+        return pool.acquireLeast(comparator);
+    }
+
+    @Override
+    protected void onCreated(Connection connection)
+    {
+        streams.put(connection, new AtomicInteger());
+        super.onCreated(connection);
+    }
+
+    @Override
+    protected void acquired(Connection connection)
+    {
+        super.acquired(connection);
+        streams.computeIfAbsent(connection, c -> new AtomicInteger()).incrementAndGet();
+    }
+
+    @Override
+    protected void released(Connection connection)
+    {
+        AtomicInteger count = streams.get(connection);
+        if (count != null)
+            count.decrementAndGet();
+        super.released(connection);
+    }
+
+    @Override
+    protected void removed(Connection connection)
+    {
+        streams.remove(connection);
+        super.removed(connection);
+    }
+}
@@ -0,0 +1,178 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.http2.client.http;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.http2.client.HTTP2Client;
+import org.eclipse.jetty.http2.server.HTTP2ServerConnectionFactory;
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.awaitility.Awaitility.await;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class StreamBalancingConnectionPoolTest
+{
+    private Server server;
+    private ServerConnector connector;
+    private HttpClient client;
+
+    private void start(Handler handler, int maxStreamsPerConnection, AtomicReference<StreamBalancingConnectionPool> poolRef) throws Exception
+    {
+        server = new Server();
+        connector = new ServerConnector(server, 1, 1, new HTTP2ServerConnectionFactory(new HttpConfiguration()));
+        server.addConnector(connector);
+        server.setHandler(handler);
+        server.start();
+
+        HttpClientTransportOverHTTP2 transport = new HttpClientTransportOverHTTP2(new HTTP2Client());
+        transport.setConnectionPoolFactory(destination ->
+        {
+            StreamBalancingConnectionPool pool = new StreamBalancingConnectionPool(destination, 4, destination, 16);
+            pool.setMaxStreamsPerConnection(maxStreamsPerConnection);
+            poolRef.set(pool);
+            return pool;
+        });
+        client = new HttpClient(transport);
+        client.start();
+    }
+
+    @AfterEach
+    public void dispose() throws Exception
+    {
+        if (client != null)
+            client.stop();
+        if (server != null)
+            server.stop();
+    }
+
+    @Test
+    public void testStreamsAreSpreadAcrossConnections() throws Exception
+    {
+        Map<Integer, AtomicInteger> streamsPerPort = new ConcurrentHashMap<>();
+        AtomicInteger arrived = new AtomicInteger();
+        CountDownLatch serverLatch = new CountDownLatch(1);
+        AtomicReference<StreamBalancingConnectionPool> poolRef = new AtomicReference<>();
+        start(new EmptyServerHandler()
+        {
+            @Override
+            protected void service(String target, Request jettyRequest, HttpServletRequest request, HttpServletResponse response) throws IOException
+            {
+                if (target.startsWith("/block"))
+                {
+                    streamsPerPort.computeIfAbsent(request.getRemotePort(), p -> new AtomicInteger()).incrementAndGet();
+                    arrived.incrementAndGet();
+                    try
+                    {
+                        serverLatch.await(5, TimeUnit.SECONDS);
+                    }
+                    catch (InterruptedException x)
+                    {
+                        throw new IOException(x);
+                    }
+                }
+            }
+        }, 0, poolRef);
+
+        // Create the pool with one connection, then add a second one.
+        assertEquals(HttpStatus.OK_200, client.newRequest("localhost", connector.getLocalPort())
+            .timeout(5, TimeUnit.SECONDS)
+            .send()
+            .getStatus());
+        StreamBalancingConnectionPool pool = poolRef.get();
+        pool.preCreateConnections(1).get(5, TimeUnit.SECONDS);
+        assertThat(pool.getConnectionCount(), is(2));
+
+        int count = 4;
+        CountDownLatch clientLatch = new CountDownLatch(count);
+        for (int i = 0; i < count; ++i)
+        {
+            client.newRequest("localhost", connector.getLocalPort())
+                .path("/block/" + i)
+                .timeout(5, TimeUnit.SECONDS)
+                .send(result ->
+                {
+                    if (result.isSucceeded() && result.getResponse().getStatus() == HttpStatus.OK_200)
+                        clientLatch.countDown();
+                });
+            // Wait for the stream to be in flight before sending the next one.
+            int expected = i + 1;
+            await().atMost(5, TimeUnit.SECONDS).until(arrived::get, is(expected));
+        }
+
+        assertThat(streamsPerPort.size(), is(2));
+        streamsPerPort.values().forEach(streams -> assertThat(streams.get(), is(2)));
+
+        serverLatch.countDown();
+        assertTrue(clientLatch.await(5, TimeUnit.SECONDS));
+        assertThat(pool.getConnectionCount(), is(2));
+    }
+
+    @Test
+    public void testConnectionIsOpenedWhenMaxStreamsPerConnectionIsReached() throws Exception
+    {
+        CountDownLatch serverLatch = new CountDownLatch(1);
+        AtomicReference<StreamBalancingConnectionPool> poolRef = new AtomicReference<>();
+        start(new EmptyServerHandler()
+        {
+            @Override
+            protected void service(String target, Request jettyRequest, HttpServletRequest request, HttpServletResponse response) throws IOException
+            {
+                try
+                {
+                    serverLatch.await(5, TimeUnit.SECONDS);
+                }
+                catch (InterruptedException x)
+                {
+                    throw new IOException(x);
+                }
+            }
+        }, 1, poolRef);
+
+        CountDownLatch clientLatch = new CountDownLatch(1);
+        client.newRequest("localhost", connector.getLocalPort())
+            .timeout(5, TimeUnit.SECONDS)
+            .send(result ->
+            {
+                if (result.isSucceeded())
+                    clientLatch.countDown();
+            });
+
+        // The only connection reached the max streams, so another is opened in the background.
+        await().atMost(5, TimeUnit.SECONDS).until(() -> poolRef.get() != null && poolRef.get().getConnectionCount() == 2);
+
+        serverLatch.countDown();
+        assertTrue(clientLatch.await(5, TimeUnit.SECONDS));
+        assertThat(poolRef.get().getConnectionCount(), is(2));
+    }
+}
@@ -32,6 +32,7 @@ import org.eclipse.jetty.http2.api.server.ServerSessionListener;
 import org.eclipse.jetty.http2.frames.Frame;
 import org.eclipse.jetty.http2.frames.SettingsFrame;
 import org.eclipse.jetty.http2.generator.Generator;
+import org.eclipse.jetty.http2.hpack.HpackEncoder;
 import org.eclipse.jetty.http2.parser.RateControl;
 import org.eclipse.jetty.http2.parser.ServerParser;
 import org.eclipse.jetty.http2.parser.WindowRateControl;
@@ -63,6 +64,7 @@ public abstract class AbstractHTTP2ServerConnectionFactory extends AbstractConne
     private boolean connectProtocolEnabled = true;
     private RateControl.Factory rateControlFactory = new WindowRateControl.Factory(50);
     private FlowControlStrategy.Factory flowControlStrategyFactory = () -> new BufferingFlowControlStrategy(0.5F);
+    private HpackEncoder.IndexingPolicy.Factory hpackIndexingPolicyFactory = HpackEncoder.IndexingPolicy.Factory.DEFAULT;
     private long streamIdleTimeout;
     private boolean useInputDirectByteBuffers;
     private boolean useOutputDirectByteBuffers;
@@ -99,6 +101,25 @@ public abstract class AbstractHTTP2ServerConnectionFactory extends AbstractConne
         this.maxDynamicTableSize = maxDynamicTableSize;
     }
 
+    /**
+     * @return the factory of the policies that decide which fields are added to the HPACK dynamic table
+     */
+    public HpackEncoder.IndexingPolicy.Factory getHpackIndexingPolicyFactory()
+    {
+        return hpackIndexingPolicyFactory;
+    }
+
+    /**
+     * <p>Sets the factory of the policies that decide which fields are added to the
+     * HPACK dynamic table, for example {@code AdaptiveIndexingPolicy::new}.</p>
+     *
+     * @param hpackIndexingPolicyFactory the factory of HPACK indexing policies
+     */
+    public void setHpackIndexingPolicyFactory(HpackEncoder.IndexingPolicy.Factory hpackIndexingPolicyFactory)
+    {
+        this.hpackIndexingPolicyFactory = Objects.requireNonNull(hpackIndexingPolicyFactory);
+    }
+
     @ManagedAttribute("The initial size of session's flow control receive window")
     public int getInitialSessionRecvWindow()
     {
@@ -261,6 +282,7 @@ public abstract class AbstractHTTP2ServerConnectionFactory extends AbstractConne
         ServerSessionListener listener = newSessionListener(connector, endPoint);
 
         Generator generator = new Generator(connector.getByteBufferPool(), isUseOutputDirectByteBuffers(), getMaxDynamicTableSize(), getMaxHeaderBlockFragment());
+        generator.setHpackIndexingPolicy(getHpackIndexingPolicyFactory().newIndexingPolicy());
         FlowControlStrategy flowControl = getFlowControlStrategyFactory().newFlowControlStrategy();
         HTTP2ServerSession session = new HTTP2ServerSession(connector.getScheduler(), endPoint, generator, listener, flowControl);
         session.setMaxLocalStreams(getMaxConcurrentStreams());
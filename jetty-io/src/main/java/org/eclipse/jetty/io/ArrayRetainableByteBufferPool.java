@@ -16,6 +16,9 @@ package org.eclipse.jetty.io;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 import java.util.function.Function;
@@ -30,6 +33,24 @@ import org.eclipse.jetty.util.component.DumpableCollection;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * <p>A {@link RetainableByteBufferPool} that pools buffers in buckets of increasing capacity.</p>
+ * <p>Buckets are shared by all threads. When a {@code threadLocalCacheSize} is configured,
+ * each thread also has a small local cache of buffers for each bucket, which sits in front
+ * of the shared buckets and is accessed without any atomic operation.
+ * When the local cache of a bucket is empty, a batch of buffers is taken from the shared
+ * bucket; when it is full, half of its buffers are returned to the shared bucket, so that
+ * the cost of accessing the shared bucket is amortized over several acquisitions and releases.
+ * This reduces the contention on the shared buckets when many threads (for example
+ * selector threads) acquire and release buffers at a high rate, at the cost of buffers
+ * that are idle in the local caches appearing as in use in the shared buckets.</p>
+ * <p>Buffers in the local caches are counted in the pool memory, so they are subject to
+ * the {@code maxHeapMemory} and {@code maxDirectMemory} limits: when a limit is exceeded,
+ * or when the pool is cleared, every thread drains its local cache at its next access to
+ * the pool, and the local caches of the terminated threads are drained immediately.
+ * The local caches of the terminated threads are also drained when a thread creates its
+ * local cache, so that they are not scanned on the allocation path.</p>
+ */
 @ManagedObject
 public class ArrayRetainableByteBufferPool implements RetainableByteBufferPool, Dumpable
 {
@@ -44,6 +65,10 @@ public class ArrayRetainableByteBufferPool implements RetainableByteBufferPool,
     private final AtomicLong _currentHeapMemory = new AtomicLong();
     private final AtomicLong _currentDirectMemory = new AtomicLong();
     private final Function<Integer, Integer> _bucketIndexFor;
+    private final int _threadLocalCacheSize;
+    private final ThreadLocal<LocalCache> _localCache;
+    private final Queue<LocalCache> _localCaches = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger _drains = new AtomicInteger();
 
     public ArrayRetainableByteBufferPool()
     {
@@ -57,11 +82,32 @@ public class ArrayRetainableByteBufferPool implements RetainableByteBufferPool,
 
     public ArrayRetainableByteBufferPool(int minCapacity, int factor, int maxCapacity, int maxBucketSize, long maxHeapMemory, long maxDirectMemory)
     {
-        this(minCapacity, factor, maxCapacity, maxBucketSize, maxHeapMemory, maxDirectMemory, null, null);
+        this(minCapacity, factor, maxCapacity, maxBucketSize, maxHeapMemory, maxDirectMemory, 0);
+    }
+
+    /**
+     * @param minCapacity the minimum buffer capacity that is pooled
+     * @param factor the capacity factor of the buckets
+     * @param maxCapacity the maximum buffer capacity that is pooled
+     * @param maxBucketSize the maximum number of buffers in each bucket
+     * @param maxHeapMemory the maximum heap memory retained by the pool, or a negative value for unlimited
+     * @param maxDirectMemory the maximum direct memory retained by the pool, or a negative value for unlimited
+     * @param threadLocalCacheSize the maximum number of buffers per bucket in the cache local to each thread,
+     * or zero to disable the thread local caches
+     */
+    public ArrayRetainableByteBufferPool(int minCapacity, int factor, int maxCapacity, int maxBucketSize, long maxHeapMemory, long maxDirectMemory, int threadLocalCacheSize)
+    {
+        this(minCapacity, factor, maxCapacity, maxBucketSize, maxHeapMemory, maxDirectMemory, null, null, threadLocalCacheSize);
     }
 
     protected ArrayRetainableByteBufferPool(int minCapacity, int factor, int maxCapacity, int maxBucketSize, long maxHeapMemory, long maxDirectMemory,
                                             Function<Integer, Integer> bucketIndexFor, Function<Integer, Integer> bucketCapacity)
+    {
+        this(minCapacity, factor, maxCapacity, maxBucketSize, maxHeapMemory, maxDirectMemory, bucketIndexFor, bucketCapacity, 0);
+    }
+
+    protected ArrayRetainableByteBufferPool(int minCapacity, int factor, int maxCapacity, int maxBucketSize, long maxHeapMemory, long maxDirectMemory,
+                                            Function<Integer, Integer> bucketIndexFor, Function<Integer, Integer> bucketCapacity, int threadLocalCacheSize)
     {
         if (minCapacity <= 0)
             minCapacity = 0;
@@ -83,8 +129,8 @@ public class ArrayRetainableByteBufferPool implements RetainableByteBufferPool,
         for (int i = 0; i < directArray.length; i++)
         {
             int capacity = Math.min(bucketCapacity.apply(i), maxCapacity);
-            directArray[i] = new Bucket(capacity, maxBucketSize);
-            indirectArray[i] = new Bucket(capacity, maxBucketSize);
+            directArray[i] = new Bucket(i, capacity, maxBucketSize);
+            indirectArray[i] = new Bucket(length + i, capacity, maxBucketSize);
         }
 
         _minCapacity = minCapacity;
@@ -94,6 +140,8 @@ public class ArrayRetainableByteBufferPool implements RetainableByteBufferPool,
         _maxHeapMemory = maxHeapMemory;
         _maxDirectMemory = maxDirectMemory;
         _bucketIndexFor = bucketIndexFor;
+        _threadLocalCacheSize = Math.max(0, threadLocalCacheSize);
+        _localCache = _threadLocalCacheSize > 0 ? ThreadLocal.withInitial(this::newLocalCache) : null;
     }
 
     @ManagedAttribute("The minimum pooled buffer capacity")
@@ -108,13 +156,19 @@ public class ArrayRetainableByteBufferPool implements RetainableByteBufferPool,
         return _maxCapacity;
     }
 
+    @ManagedAttribute("The maximum number of buffers per bucket cached locally by each thread")
+    public int getThreadLocalCacheSize()
+    {
+        return _threadLocalCacheSize;
+    }
+
     @Override
     public RetainableByteBuffer acquire(int size, boolean direct)
     {
         Bucket bucket = bucketFor(size, direct);
         if (bucket == null)
             return newRetainableByteBuffer(size, direct, byteBuffer -> {});
-        Bucket.Entry entry = bucket.acquire();
+        Bucket.Entry entry = _localCache == null ? bucket.acquire() : _localCache.get().acquire(bucket);
 
         RetainableByteBuffer buffer;
         if (entry == null)
@@ -125,7 +179,7 @@ public class ArrayRetainableByteBufferPool implements RetainableByteBufferPool,
                 buffer = newRetainableByteBuffer(bucket._capacity, direct, byteBuffer ->
                 {
                     BufferUtil.clear(byteBuffer);
-                    reservedEntry.release();
+                    release(bucket, reservedEntry);
                 });
                 reservedEntry.enable(buffer, true);
                 if (direct)
@@ -147,6 +201,49 @@ public class ArrayRetainableByteBufferPool implements RetainableByteBufferPool,
         return buffer;
     }
 
+    private void release(Bucket bucket, Bucket.Entry entry)
+    {
+        if (_localCache == null || !_localCache.get().release(bucket, entry))
+            entry.release();
+    }
+
+    private LocalCache newLocalCache()
+    {
+        drainTerminatedLocalCaches();
+        LocalCache localCache = new LocalCache(2 * _direct.length);
+        _localCaches.offer(localCache);
+        return localCache;
+    }
+
+    /**
+     * <p>Returns the buffers held by the local caches of the threads that have terminated
+     * to the shared buckets.</p>
+     * <p>This method scans all the local caches, so it must not be called on the
+     * allocation path, but only when a local cache is created, on eviction and by
+     * {@link #clear()}.</p>
+     */
+    private void drainTerminatedLocalCaches()
+    {
+        for (LocalCache localCache : _localCaches)
+        {
+            // A terminated thread cannot access its cache anymore,
+            // and Thread.isAlive() makes its last writes visible.
+            if (!localCache._thread.isAlive() && _localCaches.remove(localCache))
+                localCache.releaseAll();
+        }
+    }
+
+    /**
+     * <p>Requests all the threads to drain their local caches at their next access to this pool.</p>
+     */
+    private void drainLocalCaches()
+    {
+        if (_localCache == null)
+            return;
+        _drains.incrementAndGet();
+        drainTerminatedLocalCaches();
+    }
+
     private RetainableByteBuffer newRetainableByteBuffer(int capacity, boolean direct, Consumer<ByteBuffer> releaser)
     {
         ByteBuffer buffer = direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
@@ -252,6 +349,8 @@ public class ArrayRetainableByteBufferPool implements RetainableByteBufferPool,
     {
         clearArray(_direct, _currentDirectMemory);
         clearArray(_indirect, _currentHeapMemory);
+        // Let the local caches drop the references to the removed entries.
+        drainLocalCaches();
     }
 
     private void clearArray(Bucket[] poolArray, AtomicLong memoryCounter)
@@ -312,6 +411,10 @@ public class ArrayRetainableByteBufferPool implements RetainableByteBufferPool,
             }
         }
 
+        // The local caches may hold evicted entries: let them drop their references,
+        // so that the evicted buffers can actually be garbage collected.
+        drainLocalCaches();
+
         if (LOG.isDebugEnabled())
             LOG.debug("eviction done, cleared {} bytes from {} pools", totalClearedCapacity, (direct ? "direct" : "heap"));
     }
@@ -319,10 +422,11 @@ public class ArrayRetainableByteBufferPool implements RetainableByteBufferPool,
     @Override
     public String toString()
     {
-        return String.format("%s{min=%d,max=%d,buckets=%d,heap=%d/%d,direct=%d/%d}",
+        return String.format("%s{min=%d,max=%d,buckets=%d,local=%d,heap=%d/%d,direct=%d/%d}",
             super.toString(),
             _minCapacity, _maxCapacity,
             _direct.length,
+            _threadLocalCacheSize,
             _currentHeapMemory.get(), _maxHeapMemory,
             _currentDirectMemory.get(), _maxDirectMemory);
     }
@@ -359,11 +463,13 @@ public class ArrayRetainableByteBufferPool implements RetainableByteBufferPool,
 
     private static class Bucket extends Pool<RetainableByteBuffer>
     {
+        private final int _slot;
         private final int _capacity;
 
-        Bucket(int capacity, int size)
+        Bucket(int slot, int capacity, int size)
         {
             super(Pool.StrategyType.THREAD_ID, size, true);
+            _slot = slot;
             _capacity = capacity;
         }
 
@@ -386,4 +492,122 @@ public class ArrayRetainableByteBufferPool implements RetainableByteBufferPool,
                 entries > 0 ? (inUse * 100) / entries : 0);
         }
     }
+
+    /**
+     * <p>The cache of the buffers of a thread, with a stack of entries for each bucket.</p>
+     * <p>The entries in the stacks are acquired from their bucket, but their buffers are
+     * not in use. Only the owner thread accesses the stacks, except when the owner thread
+     * has terminated, so no synchronization is needed.</p>
+     * <p>Other threads request the owner thread to drain its stacks by incrementing the
+     * pool drain counter, which the owner thread checks at every access.</p>
+     */
+    private class LocalCache
+    {
+        private final Thread _thread = Thread.currentThread();
+        private final Object[][] _stacks;
+        private final int[] _sizes;
+        private int _drains = ArrayRetainableByteBufferPool.this._drains.get();
+
+        private LocalCache(int buckets)
+        {
+            _stacks = new Object[buckets][];
+            _sizes = new int[buckets];
+        }
+
+        private Bucket.Entry acquire(Bucket bucket)
+        {
+            drainIfRequested();
+            int slot = bucket._slot;
+            Object[] stack = _stacks[slot];
+            while (_sizes[slot] > 0)
+            {
+                int size = --_sizes[slot];
+                Bucket.Entry entry = entryOf(stack[size]);
+                stack[size] = null;
+                // Skip the entries removed from the bucket by clear() or by the eviction.
+                if (!entry.isClosed())
+                    return entry;
+            }
+
+            Bucket.Entry entry = bucket.acquire();
+            if (entry != null)
+            {
+                // Take a batch of entries for the next acquisitions from this thread,
+                // so that the next misses do not access the shared bucket.
+                if (stack == null)
+                    stack = _stacks[slot] = new Object[_threadLocalCacheSize];
+                int batch = Math.max(1, _threadLocalCacheSize / 2);
+                for (int i = 0; i < batch; ++i)
+                {
+                    Bucket.Entry stolen = bucket.acquire();
+                    if (stolen == null)
+                        break;
+                    stack[_sizes[slot]++] = stolen;
+                }
+            }
+            return entry;
+        }
+
+        private boolean release(Bucket bucket, Bucket.Entry entry)
+        {
+            drainIfRequested();
+            if (entry.isClosed())
+                return false;
+            int slot = bucket._slot;
+            Object[] stack = _stacks[slot];
+            if (stack == null)
+                stack = _stacks[slot] = new Object[_threadLocalCacheSize];
+            int size = _sizes[slot];
+            if (size == stack.length)
+            {
+                // Return the least recently released half to the shared bucket,
+                // so that the next releases do not access the shared bucket.
+                int half = Math.max(1, size / 2);
+                for (int i = 0; i < half; ++i)
+                {
+                    Bucket.Entry released = entryOf(stack[i]);
+                    if (!released.isClosed())
+                        released.release();
+                }
+                System.arraycopy(stack, half, stack, 0, size - half);
+                Arrays.fill(stack, size - half, size, null);
+                size -= half;
+            }
+            stack[size++] = entry;
+            _sizes[slot] = size;
+            return true;
+        }
+
+        private void drainIfRequested()
+        {
+            int drains = ArrayRetainableByteBufferPool.this._drains.get();
+            if (drains != _drains)
+            {
+                _drains = drains;
+                releaseAll();
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private Bucket.Entry entryOf(Object entry)
+        {
+            return (Bucket.Entry)entry;
+        }
+
+        private void releaseAll()
+        {
+            for (int slot = 0; slot < _stacks.length; ++slot)
+            {
+                Object[] stack = _stacks[slot];
+                for (int i = 0; i < _sizes[slot]; ++i)
+                {
+                    Bucket.Entry entry = entryOf(stack[i]);
+                    if (!entry.isClosed())
+                        entry.release();
+                    stack[i] = null;
+                }
+                _sizes[slot] = 0;
+            }
+        }
+    }
 }
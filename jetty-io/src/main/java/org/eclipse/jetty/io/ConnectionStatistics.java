@@ -18,16 +18,18 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.LongAdder;
 
 import org.eclipse.jetty.util.annotation.ManagedAttribute;
 import org.eclipse.jetty.util.annotation.ManagedObject;
 import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.annotation.Name;
 import org.eclipse.jetty.util.component.AbstractLifeCycle;
 import org.eclipse.jetty.util.component.Dumpable;
 import org.eclipse.jetty.util.statistic.CounterStatistic;
+import org.eclipse.jetty.util.statistic.HistogramStatistic;
 import org.eclipse.jetty.util.statistic.RateCounter;
-import org.eclipse.jetty.util.statistic.SampleStatistic;
 
 /**
  * <p>A {@link Connection.Listener} that tracks connection statistics.</p>
@@ -160,6 +162,30 @@ public class ConnectionStatistics extends AbstractLifeCycle implements Connectio
         return _stats.getConnectionDurationStdDev();
     }
 
+    @ManagedAttribute("The median duration of a connection in ms")
+    public long getConnectionDurationP50()
+    {
+        return _stats.getConnectionDurationPercentile(50);
+    }
+
+    @ManagedAttribute("The 99th percentile of the duration of a connection in ms")
+    public long getConnectionDurationP99()
+    {
+        return _stats.getConnectionDurationPercentile(99);
+    }
+
+    @ManagedOperation("The duration of a connection in ms at the given percentile")
+    public long getConnectionDurationPercentile(@Name("percentile") double percentile)
+    {
+        return _stats.getConnectionDurationPercentile(percentile);
+    }
+
+    @ManagedOperation(value = "The distribution of the duration of the connections closed since the previous invocation of this method", impact = "ACTION")
+    public String takeConnectionDurationIntervalSnapshot()
+    {
+        return _stats.takeConnectionDurationIntervalSnapshot().toString();
+    }
+
     @ManagedAttribute("The total number of connections opened")
     public long getConnectionsTotal()
     {
@@ -225,7 +251,7 @@ public class ConnectionStatistics extends AbstractLifeCycle implements Connectio
     public static class Stats implements Dumpable
     {
         private final CounterStatistic _connections = new CounterStatistic();
-        private final SampleStatistic _connectionsDuration = new SampleStatistic();
+        private final HistogramStatistic _connectionsDuration = new HistogramStatistic(TimeUnit.DAYS.toMillis(1));
         private final LongAdder _bytesIn = new LongAdder();
         private final RateCounter _bytesInRate = new RateCounter();
         private final LongAdder _bytesOut = new LongAdder();
@@ -299,6 +325,16 @@ public class ConnectionStatistics extends AbstractLifeCycle implements Connectio
             return _connectionsDuration.getStdDev();
         }
 
+        public long getConnectionDurationPercentile(double percentile)
+        {
+            return _connectionsDuration.getValueAtPercentile(percentile);
+        }
+
+        public HistogramStatistic.Snapshot takeConnectionDurationIntervalSnapshot()
+        {
+            return _connectionsDuration.takeIntervalSnapshot();
+        }
+
         public long getConnectionsTotal()
         {
             return _connections.getTotal();
@@ -18,6 +18,7 @@ import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.channels.ReadPendingException;
 import java.nio.channels.WritePendingException;
 
@@ -223,6 +224,28 @@ public interface EndPoint extends Closeable
         throw new UnsupportedOperationException();
     }
 
+    /**
+     * <p>Transfers bytes from the given file directly to this endpoint, without
+     * copying them through user space buffers, if the underlying transport allows it
+     * (for example via {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)}).</p>
+     * <p>Like {@link #flush(ByteBuffer...)}, this method does not block: it transfers as many
+     * bytes as can be consumed and returns {@code 0} if the transport is congested, in which
+     * case the caller should use {@link #write(Callback, ByteBuffer...)} to wait for the
+     * transport to become writable again.</p>
+     * <p>This method must not be called while a {@link #write(Callback, ByteBuffer...)} is pending.</p>
+     *
+     * @param file the file to transfer bytes from
+     * @param position the position within the file of the first byte to transfer
+     * @param count the maximum number of bytes to transfer
+     * @return the number of bytes transferred, possibly zero, or -1 if this
+     * endpoint does not support direct transfers (for example because it encrypts the bytes)
+     * @throws IOException If the endpoint is closed or output is shutdown.
+     */
+    default long transferFrom(FileChannel file, long position, long count) throws IOException
+    {
+        return -1;
+    }
+
     /**
      * @return The underlying transport object (socket, channel, etc.)
      */
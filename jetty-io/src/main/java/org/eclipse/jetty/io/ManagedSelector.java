@@ -87,7 +87,11 @@ public class ManagedSelector extends ContainerLifeCycle implements Dumpable
     private Selector _selector;
     private Deque<SelectorUpdate> _updates = new ArrayDeque<>();
     private Deque<SelectorUpdate> _updateable = new ArrayDeque<>();
+    private Deque<SelectableChannelEndPoint> _flushes = new ArrayDeque<>();
+    private Deque<SelectableChannelEndPoint> _flushable = new ArrayDeque<>();
     private final SampleStatistic _keyStats = new SampleStatistic();
+    private final SampleStatistic _flushStats = new SampleStatistic();
+    private volatile Thread _producerThread;
 
     public ManagedSelector(SelectorManager selectorManager, int id)
     {
@@ -169,10 +173,71 @@ public class ManagedSelector extends ContainerLifeCycle implements Dumpable
         return _keyStats.getCount();
     }
 
+    @ManagedAttribute(value = "Average number of endpoints flushed in a batch of gathered writes", readonly = true)
+    public double getAverageGatheredWrites()
+    {
+        return _flushStats.getMean();
+    }
+
+    @ManagedAttribute(value = "Maximum number of endpoints flushed in a batch of gathered writes", readonly = true)
+    public long getMaxGatheredWrites()
+    {
+        return _flushStats.getMax();
+    }
+
+    @ManagedAttribute(value = "Total number of gathered writes", readonly = true)
+    public long getGatheredWrites()
+    {
+        return _flushStats.getTotal();
+    }
+
     @ManagedOperation(value = "Resets the statistics", impact = "ACTION")
     public void resetStats()
     {
         _keyStats.reset();
+        _flushStats.reset();
+    }
+
+    /**
+     * @return whether writes performed by the current thread should be gathered
+     * @see SelectorManager#setGatherWrites(boolean)
+     */
+    boolean isGatherWrites()
+    {
+        // The thread that produces selected keys flushes directly,
+        // as it is the thread that would flush the gathered writes.
+        return _selectorManager.isGatherWrites() && _producerThread != Thread.currentThread();
+    }
+
+    /**
+     * <p>Queues the given endpoint, that has a pending write, to be flushed
+     * at the next selector cycle together with the other queued endpoints.</p>
+     *
+     * @param endPoint the endpoint to flush
+     */
+    void gatherWrite(SelectableChannelEndPoint endPoint)
+    {
+        if (LOG.isDebugEnabled())
+            LOG.debug("Gathered write {} on {}", endPoint, this);
+
+        Selector selector = null;
+        try (AutoLock l = _lock.lock())
+        {
+            _flushes.offer(endPoint);
+            if (_selecting)
+            {
+                selector = _selector;
+                // To avoid the extra select wakeup.
+                _selecting = false;
+            }
+        }
+
+        if (selector != null)
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("Wakeup on gathered write {}", this);
+            selector.wakeup();
+        }
     }
 
     protected int nioSelect(Selector selector, boolean now) throws IOException
@@ -322,7 +387,7 @@ public class ManagedSelector extends ContainerLifeCycle implements Dumpable
             selector.wakeup();
     }
 
-    private void execute(Runnable task)
+    void execute(Runnable task)
     {
         try
         {
@@ -528,6 +593,7 @@ public class ManagedSelector extends ContainerLifeCycle implements Dumpable
         @Override
         public Runnable produce()
         {
+            _producerThread = Thread.currentThread();
             while (true)
             {
                 Runnable task = processSelected();
@@ -550,6 +616,9 @@ public class ManagedSelector extends ContainerLifeCycle implements Dumpable
                 Deque<SelectorUpdate> updates = _updates;
                 _updates = _updateable;
                 _updateable = updates;
+                Deque<SelectableChannelEndPoint> flushes = _flushes;
+                _flushes = _flushable;
+                _flushable = flushes;
             }
 
             if (LOG.isDebugEnabled())
@@ -572,11 +641,31 @@ public class ManagedSelector extends ContainerLifeCycle implements Dumpable
             }
             _updateable.clear();
 
+            int flushes = _flushable.size();
+            if (flushes > 0)
+            {
+                if (LOG.isDebugEnabled())
+                    LOG.debug("flushing {} gathered writes", flushes);
+                for (SelectableChannelEndPoint endPoint : _flushable)
+                {
+                    try
+                    {
+                        endPoint.completeGatheredWrite();
+                    }
+                    catch (Throwable x)
+                    {
+                        LOG.warn("Cannot flush gathered write {}", endPoint, x);
+                    }
+                }
+                _flushable.clear();
+                _flushStats.record(flushes);
+            }
+
             Selector selector;
             int updates;
             try (AutoLock l = _lock.lock())
             {
-                updates = _updates.size();
+                updates = _updates.size() + _flushes.size();
                 _selecting = updates == 0;
                 selector = _selecting ? null : _selector;
             }
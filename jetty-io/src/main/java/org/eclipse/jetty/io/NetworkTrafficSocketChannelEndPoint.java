@@ -15,6 +15,7 @@ package org.eclipse.jetty.io;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.SocketChannel;
 
@@ -67,6 +68,16 @@ public class NetworkTrafficSocketChannelEndPoint extends SocketChannelEndPoint
         return flushed;
     }
 
+    @Override
+    public long transferFrom(FileChannel file, long position, long count) throws IOException
+    {
+        // Listeners must be notified of the outgoing bytes,
+        // so they must be copied through user space buffers.
+        if (listener != null)
+            return -1;
+        return super.transferFrom(file, position, count);
+    }
+
     @Override
     public void onOpen()
     {
@@ -15,12 +15,15 @@ package org.eclipse.jetty.io;
 
 import java.io.Closeable;
 import java.net.SocketAddress;
+import java.nio.ByteBuffer;
 import java.nio.channels.CancelledKeyException;
 import java.nio.channels.NetworkChannel;
 import java.nio.channels.SelectableChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
+import java.nio.channels.WritePendingException;
 
+import org.eclipse.jetty.util.Callback;
 import org.eclipse.jetty.util.IO;
 import org.eclipse.jetty.util.thread.AutoLock;
 import org.eclipse.jetty.util.thread.Invocable;
@@ -171,6 +174,30 @@ public abstract class SelectableChannelEndPoint extends AbstractEndPoint impleme
         }
     }
 
+    @Override
+    public void write(Callback callback, ByteBuffer... buffers) throws WritePendingException
+    {
+        ManagedSelector selector = _selector;
+        if (selector != null && selector.isGatherWrites())
+        {
+            getWriteFlusher().pend(new GatheredWriteCallback(callback), buffers);
+            selector.gatherWrite(this);
+        }
+        else
+        {
+            super.write(callback, buffers);
+        }
+    }
+
+    /**
+     * <p>Flushes a write that has been gathered by the {@link ManagedSelector}.</p>
+     * <p>This method runs from the selector thread.</p>
+     */
+    void completeGatheredWrite()
+    {
+        getWriteFlusher().completeWrite();
+    }
+
     @Override
     protected void needsFillInterest()
     {
@@ -306,6 +333,50 @@ public abstract class SelectableChannelEndPoint extends AbstractEndPoint impleme
             ManagedSelector.safeReadyOps(_key));
     }
 
+    /**
+     * <p>A callback for gathered writes that moves the completion of
+     * the wrapped callback off the selector thread, if it may block.</p>
+     */
+    private class GatheredWriteCallback implements Callback
+    {
+        private final Callback _callback;
+
+        private GatheredWriteCallback(Callback callback)
+        {
+            _callback = callback;
+        }
+
+        @Override
+        public void succeeded()
+        {
+            if (Invocable.getInvocationType(_callback) == InvocationType.NON_BLOCKING)
+                _callback.succeeded();
+            else
+                _selector.execute(_callback::succeeded);
+        }
+
+        @Override
+        public void failed(Throwable x)
+        {
+            if (Invocable.getInvocationType(_callback) == InvocationType.NON_BLOCKING)
+                _callback.failed(x);
+            else
+                _selector.execute(() -> _callback.failed(x));
+        }
+
+        @Override
+        public InvocationType getInvocationType()
+        {
+            return InvocationType.NON_BLOCKING;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%s@%x[%s]", getClass().getSimpleName(), hashCode(), _callback);
+        }
+    }
+
     private abstract class RunnableCloseable implements Invocable.Task, Closeable
     {
         final String _operation;
@@ -62,6 +62,7 @@ public abstract class SelectorManager extends ContainerLifeCycle implements Dump
     private final IntUnaryOperator _selectorIndexUpdate;
     private final List<AcceptListener> _acceptListeners = new ArrayList<>();
     private long _connectTimeout = DEFAULT_CONNECT_TIMEOUT;
+    private boolean _gatherWrites;
     private ThreadPoolBudget.Lease _lease;
 
     private static int defaultSelectors(Executor executor)
@@ -129,6 +130,34 @@ public abstract class SelectorManager extends ContainerLifeCycle implements Dump
         _connectTimeout = milliseconds;
     }
 
+    /**
+     * @return whether the writes of the endpoints are gathered and flushed in batches by the selector threads
+     * @see #setGatherWrites(boolean)
+     */
+    @ManagedAttribute("Whether writes are gathered and flushed in batches by the selector threads")
+    public boolean isGatherWrites()
+    {
+        return _gatherWrites;
+    }
+
+    /**
+     * <p>Sets whether the writes of the endpoints are gathered and flushed in batches by the selector threads.</p>
+     * <p>When enabled, a write performed by a thread that is not the selector thread is not flushed
+     * immediately: it is left pending and the endpoint is queued to its {@link ManagedSelector},
+     * that flushes all the queued endpoints in a single loop at the next selector cycle.
+     * The completion of the write callbacks that may block is then executed by a different thread.</p>
+     * <p>This reduces the number of selector wakeups and context switches when many threads write
+     * to many endpoints at the same time, for example for HTTP/2 or WebSocket fan-out, at the cost
+     * of a higher latency for single writes.
+     * Note that the selector thread must not be blocked waiting for a gathered write to complete.</p>
+     *
+     * @param gatherWrites whether to gather writes and flush them in batches
+     */
+    public void setGatherWrites(boolean gatherWrites)
+    {
+        _gatherWrites = gatherWrites;
+    }
+
     /**
      * Executes the given task in a different thread.
      *
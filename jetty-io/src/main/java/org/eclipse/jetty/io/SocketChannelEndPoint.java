@@ -16,8 +16,10 @@ package org.eclipse.jetty.io;
 import java.io.IOException;
 import java.net.SocketAddress;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.SocketChannel;
+import java.nio.channels.WritePendingException;
 
 import org.eclipse.jetty.util.BufferUtil;
 import org.eclipse.jetty.util.thread.Scheduler;
@@ -127,4 +129,28 @@ public class SocketChannelEndPoint extends SelectableChannelEndPoint
 
         return true;
     }
+
+    @Override
+    public long transferFrom(FileChannel file, long position, long count) throws IOException
+    {
+        if (!getWriteFlusher().isIdle())
+            throw new WritePendingException();
+
+        long transferred;
+        try
+        {
+            transferred = file.transferTo(position, count, getChannel());
+            if (LOG.isDebugEnabled())
+                LOG.debug("transferred {}/{} from {} {}", transferred, count, file, this);
+        }
+        catch (IOException e)
+        {
+            throw new EofException(e);
+        }
+
+        if (transferred > 0)
+            notIdle();
+
+        return transferred;
+    }
 }
@@ -303,6 +303,36 @@ public abstract class WriteFlusher
         }
     }
 
+    /**
+     * <p>Starts a write operation like {@link #write(Callback, ByteBuffer...)}, but without
+     * flushing the buffers: the write is left pending until {@link #completeWrite()} is called.</p>
+     * <p>This allows to gather the writes of many endpoints, so that they can be flushed in
+     * a batch by a single thread.</p>
+     *
+     * @param callback the callback to call on either failed or complete
+     * @param buffers the buffers to flush to the endpoint
+     * @throws WritePendingException if unable to write due to prior pending write
+     */
+    public void pend(Callback callback, ByteBuffer... buffers) throws WritePendingException
+    {
+        Objects.requireNonNull(callback);
+
+        if (isFailed())
+        {
+            fail(callback);
+            return;
+        }
+
+        if (DEBUG)
+            LOG.debug("pend: {} {}", this, BufferUtil.toDetailString(buffers));
+
+        if (!updateState(__IDLE, __WRITING))
+            throw new WritePendingException();
+
+        if (!updateState(__WRITING, new PendingState(callback, null, buffers)))
+            fail(callback);
+    }
+
     private void fail(Callback callback, Throwable... suppressed)
     {
         Throwable cause;
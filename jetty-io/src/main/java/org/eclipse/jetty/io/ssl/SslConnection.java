@@ -106,6 +106,8 @@ public class SslConnection extends AbstractConnection implements Connection.Upgr
     private final AutoLock _lock = new AutoLock();
     private final AtomicReference<HandshakeState> _handshake = new AtomicReference<>(HandshakeState.INITIAL);
     private final List<SslHandshakeListener> handshakeListeners = new ArrayList<>();
+    private volatile long _handshakeStartTime;
+    private volatile long _handshakeStart;
     private final AtomicLong _bytesIn = new AtomicLong();
     private final AtomicLong _bytesOut = new AtomicLong();
     private final ByteBufferPool _bufferPool;
@@ -679,6 +681,8 @@ public class SslConnection extends AbstractConnection implements Connection.Upgr
 
                             if (_handshake.compareAndSet(HandshakeState.INITIAL, HandshakeState.HANDSHAKE))
                             {
+                                _handshakeStartTime = System.currentTimeMillis();
+                                _handshakeStart = System.nanoTime();
                                 if (LOG.isDebugEnabled())
                                     LOG.debug("fill starting handshake {}", SslConnection.this);
                             }
@@ -1050,6 +1054,8 @@ public class SslConnection extends AbstractConnection implements Connection.Upgr
 
                             if (_handshake.compareAndSet(HandshakeState.INITIAL, HandshakeState.HANDSHAKE))
                             {
+                                _handshakeStartTime = System.currentTimeMillis();
+                                _handshakeStart = System.nanoTime();
                                 if (LOG.isDebugEnabled())
                                     LOG.debug("flush starting handshake {}", SslConnection.this);
                             }
@@ -1419,7 +1425,7 @@ public class SslConnection extends AbstractConnection implements Connection.Upgr
             for (SslHandshakeListener listener : handshakeListeners)
             {
                 if (event == null)
-                    event = new SslHandshakeListener.Event(sslEngine);
+                    event = new SslHandshakeListener.Event(sslEngine, _handshakeStartTime, System.nanoTime() - _handshakeStart);
                 try
                 {
                     listener.handshakeSucceeded(event);
@@ -1441,7 +1447,7 @@ public class SslConnection extends AbstractConnection implements Connection.Upgr
             for (SslHandshakeListener listener : handshakeListeners)
             {
                 if (event == null)
-                    event = new SslHandshakeListener.Event(sslEngine);
+                    event = new SslHandshakeListener.Event(sslEngine, _handshakeStartTime, System.nanoTime() - _handshakeStart);
                 try
                 {
                     listener.handshakeFailed(event, failure);
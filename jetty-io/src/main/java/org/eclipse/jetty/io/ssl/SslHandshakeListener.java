@@ -51,9 +51,19 @@ public interface SslHandshakeListener extends EventListener
      */
     public static class Event extends EventObject
     {
+        private final long _handshakeStartTime;
+        private final long _handshakeDuration;
+
         public Event(Object source)
+        {
+            this(source, -1, -1);
+        }
+
+        public Event(Object source, long handshakeStartTime, long handshakeDuration)
         {
             super(source);
+            _handshakeStartTime = handshakeStartTime;
+            _handshakeDuration = handshakeDuration;
         }
 
         /**
@@ -63,5 +73,21 @@ public interface SslHandshakeListener extends EventListener
         {
             return (SSLEngine)getSource();
         }
+
+        /**
+         * @return the wall clock time, in milliseconds, at which the TLS handshake started, or -1 if unknown
+         */
+        public long getHandshakeStartTime()
+        {
+            return _handshakeStartTime;
+        }
+
+        /**
+         * @return the duration of the TLS handshake in nanoseconds, or -1 if unknown
+         */
+        public long getHandshakeDuration()
+        {
+            return _handshakeDuration;
+        }
     }
 }
@@ -0,0 +1,269 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.io.ssl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.net.ssl.SSLSession;
+
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.component.AbstractLifeCycle;
+import org.eclipse.jetty.util.component.Dumpable;
+import org.eclipse.jetty.util.statistic.SampleStatistic;
+import org.eclipse.jetty.util.thread.AutoLock;
+
+/**
+ * <p>A {@link SslHandshakeListener} that tracks TLS handshake statistics.</p>
+ * <p>Adding an instance of this class as a bean to a ServerConnector
+ * or to a SslConnectionFactory will trigger the tracking of the statistics
+ * of the TLS handshakes of all the connections managed by the server.</p>
+ * <p>The statistics include the number of full and resumed handshakes,
+ * so that the effectiveness of the TLS session cache can be verified,
+ * a histogram of the handshake durations, and the number of handshakes
+ * for each negotiated protocol and cipher suite.</p>
+ * <p>A handshake is considered resumed when its session ID has already been
+ * seen by a previous handshake, which is how TLS 1.2 and earlier resume sessions.
+ * TLS 1.3 resumptions instead produce a new session ID, but the session keeps
+ * the creation time of the session it resumes, so a TLS 1.3 handshake is considered
+ * resumed when its session has been created before the handshake started.</p>
+ * <p>SslHandshakeStatistics instances must be {@link #start() started}
+ * to collect statistics, either as part of starting the whole component
+ * tree, or explicitly if the component tree has already been started.</p>
+ */
+@ManagedObject("Tracks statistics on TLS handshakes")
+public class SslHandshakeStatistics extends AbstractLifeCycle implements SslHandshakeListener, Dumpable
+{
+    // Upper bounds, in milliseconds, of the buckets of the duration histogram.
+    private static final long[] BUCKETS = {1, 2, 5, 10, 20, 50, 100, 200, 500, 1000};
+    private static final int MAX_SESSION_IDS = 8192;
+
+    private final LongAdder _fullHandshakes = new LongAdder();
+    private final LongAdder _resumedHandshakes = new LongAdder();
+    private final LongAdder _failedHandshakes = new LongAdder();
+    private final LongAdder[] _histogram = new LongAdder[BUCKETS.length + 1];
+    private final SampleStatistic _durations = new SampleStatistic();
+    private final Map<String, LongAdder> _protocols = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> _cipherSuites = new ConcurrentHashMap<>();
+    private final AutoLock _lock = new AutoLock();
+    private final Map<ByteBuffer, Boolean> _sessionIds = new LinkedHashMap<>(16, 0.75F, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<ByteBuffer, Boolean> eldest)
+        {
+            return size() > MAX_SESSION_IDS;
+        }
+    };
+
+    public SslHandshakeStatistics()
+    {
+        for (int i = 0; i < _histogram.length; ++i)
+        {
+            _histogram[i] = new LongAdder();
+        }
+    }
+
+    @ManagedOperation(value = "Resets the statistics", impact = "ACTION")
+    public void reset()
+    {
+        _fullHandshakes.reset();
+        _resumedHandshakes.reset();
+        _failedHandshakes.reset();
+        for (LongAdder bucket : _histogram)
+        {
+            bucket.reset();
+        }
+        _durations.reset();
+        _protocols.clear();
+        _cipherSuites.clear();
+        try (AutoLock l = _lock.lock())
+        {
+            _sessionIds.clear();
+        }
+    }
+
+    @Override
+    protected void doStart() throws Exception
+    {
+        reset();
+    }
+
+    @Override
+    public void handshakeSucceeded(Event event)
+    {
+        if (!isStarted())
+            return;
+
+        SSLSession session = event.getSSLEngine().getSession();
+        long duration = event.getHandshakeDuration();
+        if (isResumed(session, event.getHandshakeStartTime()))
+            _resumedHandshakes.increment();
+        else
+            _fullHandshakes.increment();
+        if (duration >= 0)
+            recordDuration(TimeUnit.NANOSECONDS.toMicros(duration));
+        _protocols.computeIfAbsent(session.getProtocol(), k -> new LongAdder()).increment();
+        _cipherSuites.computeIfAbsent(session.getCipherSuite(), k -> new LongAdder()).increment();
+    }
+
+    @Override
+    public void handshakeFailed(Event event, Throwable failure)
+    {
+        if (!isStarted())
+            return;
+        _failedHandshakes.increment();
+    }
+
+    /**
+     * @param session the session negotiated by the TLS handshake
+     * @param handshakeStartTime the wall clock time, in milliseconds, at which the TLS handshake started, or -1 if unknown
+     * @return whether the TLS handshake resumed a previous session
+     */
+    protected boolean isResumed(SSLSession session, long handshakeStartTime)
+    {
+        byte[] id = session.getId();
+        if (id != null && id.length > 0)
+        {
+            ByteBuffer key = ByteBuffer.wrap(id.clone());
+            try (AutoLock l = _lock.lock())
+            {
+                if (_sessionIds.put(key, Boolean.TRUE) != null)
+                    return true;
+            }
+        }
+        // TLS 1.3 resumptions have a new session ID, but retain
+        // the creation time of the session they resume.
+        if ("TLSv1.3".equals(session.getProtocol()) && handshakeStartTime >= 0)
+            return session.getCreationTime() < handshakeStartTime;
+        return false;
+    }
+
+    private void recordDuration(long micros)
+    {
+        _durations.record(micros);
+        int bucket = 0;
+        while (bucket < BUCKETS.length && micros >= BUCKETS[bucket] * 1000)
+        {
+            ++bucket;
+        }
+        _histogram[bucket].increment();
+    }
+
+    @ManagedAttribute("Total number of successful TLS handshakes")
+    public long getHandshakes()
+    {
+        return getFullHandshakes() + getResumedHandshakes();
+    }
+
+    @ManagedAttribute("Number of TLS handshakes that created a new session")
+    public long getFullHandshakes()
+    {
+        return _fullHandshakes.sum();
+    }
+
+    @ManagedAttribute("Number of TLS handshakes that resumed a session")
+    public long getResumedHandshakes()
+    {
+        return _resumedHandshakes.sum();
+    }
+
+    @ManagedAttribute("Number of failed TLS handshakes")
+    public long getFailedHandshakes()
+    {
+        return _failedHandshakes.sum();
+    }
+
+    @ManagedAttribute("Ratio of resumed TLS handshakes over successful TLS handshakes")
+    public double getResumptionRatio()
+    {
+        long resumed = getResumedHandshakes();
+        long total = resumed + getFullHandshakes();
+        return total == 0 ? 0.0D : (double)resumed / total;
+    }
+
+    @ManagedAttribute("Mean duration of TLS handshakes in microseconds")
+    public double getHandshakeDurationMean()
+    {
+        return _durations.getMean();
+    }
+
+    @ManagedAttribute("Standard deviation of the duration of TLS handshakes in microseconds")
+    public double getHandshakeDurationStdDev()
+    {
+        return _durations.getStdDev();
+    }
+
+    @ManagedAttribute("Max duration of TLS handshakes in microseconds")
+    public long getHandshakeDurationMax()
+    {
+        return _durations.getMax();
+    }
+
+    /**
+     * @return the number of TLS handshakes by duration, keyed by the upper bound of each bucket
+     */
+    @ManagedAttribute("Histogram of the duration of TLS handshakes")
+    public Map<String, Long> getHandshakeDurationHistogram()
+    {
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (int i = 0; i < BUCKETS.length; ++i)
+        {
+            result.put("<" + BUCKETS[i] + "ms", _histogram[i].sum());
+        }
+        result.put(">=" + BUCKETS[BUCKETS.length - 1] + "ms", _histogram[BUCKETS.length].sum());
+        return result;
+    }
+
+    @ManagedAttribute("Number of successful TLS handshakes by protocol")
+    public Map<String, Long> getProtocols()
+    {
+        return snapshot(_protocols);
+    }
+
+    @ManagedAttribute("Number of successful TLS handshakes by cipher suite")
+    public Map<String, Long> getCipherSuites()
+    {
+        return snapshot(_cipherSuites);
+    }
+
+    private static Map<String, Long> snapshot(Map<String, LongAdder> counters)
+    {
+        Map<String, Long> result = new TreeMap<>();
+        counters.forEach((key, value) -> result.put(key, value.sum()));
+        return result;
+    }
+
+    @Override
+    public void dump(Appendable out, String indent) throws IOException
+    {
+        Dumpable.dumpObjects(out, indent, this,
+            Dumpable.named("histogram", getHandshakeDurationHistogram()),
+            Dumpable.named("protocols", getProtocols()),
+            Dumpable.named("cipherSuites", getCipherSuites()));
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{full=%d,resumed=%d,failed=%d}", getClass().getSimpleName(), hashCode(),
+            getFullHandshakes(), getResumedHandshakes(), getFailedHandshakes());
+    }
+}
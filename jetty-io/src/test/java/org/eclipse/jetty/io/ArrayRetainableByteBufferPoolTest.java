@@ -16,6 +16,9 @@ package org.eclipse.jetty.io;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.hamcrest.Matchers;
 import org.junit.jupiter.api.Test;
@@ -25,9 +28,12 @@ import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.lessThan;
 import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.sameInstance;
 import static org.hamcrest.core.Is.is;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class ArrayRetainableByteBufferPoolTest
 {
@@ -350,6 +356,166 @@ public class ArrayRetainableByteBufferPoolTest
         assertThat(pool.dump(), containsString("]{capacity=4,inuse=3(75%)"));
     }
 
+    @Test
+    public void testThreadLocalCacheReusesBuffers()
+    {
+        ArrayRetainableByteBufferPool pool = new ArrayRetainableByteBufferPool(0, 10, 20, Integer.MAX_VALUE, -1L, -1L, 4);
+
+        RetainableByteBuffer buffer1 = pool.acquire(10, true);
+        buffer1.release();
+        // The buffer is cached by this thread, so it is not available in the bucket.
+        assertThat(pool.getAvailableDirectByteBufferCount(), is(0L));
+        assertThat(pool.getDirectByteBufferCount(), is(1L));
+
+        RetainableByteBuffer buffer2 = pool.acquire(10, true);
+        assertThat(buffer2, sameInstance(buffer1));
+        assertThat(buffer2.release(), is(true));
+    }
+
+    @Test
+    public void testThreadLocalCacheReturnsExcessToBucket()
+    {
+        ArrayRetainableByteBufferPool pool = new ArrayRetainableByteBufferPool(0, 10, 20, Integer.MAX_VALUE, -1L, -1L, 4);
+
+        List<RetainableByteBuffer> buffers = new ArrayList<>();
+        for (int i = 0; i < 6; i++)
+        {
+            buffers.add(pool.acquire(10, true));
+        }
+        assertThat(pool.getDirectByteBufferCount(), is(6L));
+
+        buffers.forEach(RetainableByteBuffer::release);
+
+        // The local cache overflowed once, and returned half of its buffers to the bucket.
+        assertThat(pool.getAvailableDirectByteBufferCount(), is(2L));
+        assertThat(pool.getDirectByteBufferCount(), is(6L));
+
+        // The locally cached buffers are discarded by clear().
+        pool.clear();
+        assertThat(pool.getDirectByteBufferCount(), is(0L));
+        RetainableByteBuffer buffer = pool.acquire(10, true);
+        assertThat(buffers.contains(buffer), is(false));
+    }
+
+    @Test
+    public void testTerminatedThreadLocalCacheIsReleased() throws Exception
+    {
+        ArrayRetainableByteBufferPool pool = new ArrayRetainableByteBufferPool(0, 10, 20, Integer.MAX_VALUE, -1L, -1L, 4);
+
+        AtomicReference<RetainableByteBuffer> buffer = new AtomicReference<>();
+        Thread thread = new Thread(() ->
+        {
+            buffer.set(pool.acquire(10, true));
+            buffer.get().release();
+        });
+        thread.start();
+        thread.join();
+        assertThat(pool.getAvailableDirectByteBufferCount(), is(0L));
+
+        // The first acquisition from this thread releases the cache of the terminated thread.
+        RetainableByteBuffer reused = pool.acquire(10, true);
+        assertThat(reused, sameInstance(buffer.get()));
+        assertThat(pool.getDirectByteBufferCount(), is(1L));
+    }
+
+    @Test
+    public void testThreadLocalCacheTakesBatchFromBucket() throws Exception
+    {
+        ArrayRetainableByteBufferPool pool = new ArrayRetainableByteBufferPool(0, 10, 20, Integer.MAX_VALUE, -1L, -1L, 4);
+
+        List<RetainableByteBuffer> buffers = new ArrayList<>();
+        for (int i = 0; i < 6; i++)
+        {
+            buffers.add(pool.acquire(10, true));
+        }
+        buffers.forEach(RetainableByteBuffer::release);
+        assertThat(pool.getAvailableDirectByteBufferCount(), is(2L));
+
+        AtomicReference<RetainableByteBuffer> buffer1 = new AtomicReference<>();
+        AtomicReference<RetainableByteBuffer> buffer2 = new AtomicReference<>();
+        AtomicReference<Long> available = new AtomicReference<>();
+        Thread thread = new Thread(() ->
+        {
+            buffer1.set(pool.acquire(10, true));
+            available.set(pool.getAvailableDirectByteBufferCount());
+            // The second acquisition is served by the local cache.
+            buffer2.set(pool.acquire(10, true));
+        });
+        thread.start();
+        thread.join();
+
+        // The miss took the needed buffer and a batch of buffers from the bucket.
+        assertThat(buffers.contains(buffer1.get()), is(true));
+        assertThat(buffers.contains(buffer2.get()), is(true));
+        assertThat(buffer2.get(), not(sameInstance(buffer1.get())));
+        assertThat(available.get(), is(0L));
+        assertThat(pool.getDirectByteBufferCount(), is(6L));
+    }
+
+    @Test
+    public void testTerminatedThreadLocalCacheIsReleasedByClear() throws Exception
+    {
+        ArrayRetainableByteBufferPool pool = new ArrayRetainableByteBufferPool(0, 10, 20, Integer.MAX_VALUE, -1L, -1L, 4);
+
+        Thread thread = new Thread(() -> pool.acquire(10, true).release());
+        thread.start();
+        thread.join();
+        assertThat(pool.getDirectByteBufferCount(), is(1L));
+        assertThat(pool.getDirectMemory(), is(10L));
+
+        pool.clear();
+        assertThat(pool.getDirectByteBufferCount(), is(0L));
+        assertThat(pool.getDirectMemory(), is(0L));
+    }
+
+    @Test
+    public void testThreadLocalCacheIsDrainedWhenMaxMemoryIsExceeded() throws Exception
+    {
+        ArrayRetainableByteBufferPool pool = new ArrayRetainableByteBufferPool(0, 10, 20, Integer.MAX_VALUE, -1L, 40L, 4);
+
+        // Another thread fills its local cache up to the memory limit.
+        CountDownLatch cachedLatch = new CountDownLatch(1);
+        CountDownLatch evictedLatch = new CountDownLatch(1);
+        AtomicReference<RetainableByteBuffer> buffer = new AtomicReference<>();
+        Thread thread = new Thread(() ->
+        {
+            try
+            {
+                List<RetainableByteBuffer> buffers = new ArrayList<>();
+                for (int i = 0; i < 4; i++)
+                {
+                    buffers.add(pool.acquire(10, true));
+                }
+                buffers.forEach(RetainableByteBuffer::release);
+                cachedLatch.countDown();
+                evictedLatch.await();
+                buffer.set(pool.acquire(10, true));
+            }
+            catch (InterruptedException x)
+            {
+                throw new RuntimeException(x);
+            }
+        });
+        thread.start();
+        assertTrue(cachedLatch.await(5, TimeUnit.SECONDS));
+        assertThat(pool.getDirectMemory(), is(40L));
+        assertThat(pool.getAvailableDirectByteBufferCount(), is(0L));
+
+        // The cached buffers count against the limit, so allocating evicts one of them.
+        RetainableByteBuffer allocated = pool.acquire(10, true);
+        assertThat(pool.getDirectMemory(), is(40L));
+        assertThat(pool.getDirectByteBufferCount(), is(4L));
+
+        // The other thread drains its cache at its next access to the pool.
+        evictedLatch.countDown();
+        thread.join();
+        assertThat(buffer.get(), notNullValue());
+        // The drained buffers went back to the bucket, and the miss took a batch of them.
+        assertThat(pool.getAvailableDirectByteBufferCount(), is(0L));
+        assertThat(pool.getDirectByteBufferCount(), is(4L));
+        assertThat(allocated.release(), is(true));
+    }
+
     /**
      * A variant of the {@link ArrayRetainableByteBufferPool} that
      * uses buckets of buffers that increase in size by a power of
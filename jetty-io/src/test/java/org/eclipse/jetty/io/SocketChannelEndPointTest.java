@@ -79,6 +79,11 @@ public class SocketChannelEndPointTest
         Connection newConnection(SelectableChannel channel, EndPoint endPoint, Executor executor, AtomicInteger blockAt, AtomicInteger writeCount);
 
         boolean supportsHalfCloses();
+
+        default boolean isGatherWrites()
+        {
+            return false;
+        }
     }
 
     public static Stream<Arguments> scenarios() throws Exception
@@ -86,7 +91,7 @@ public class SocketChannelEndPointTest
         NormalScenario normalScenario = new NormalScenario();
         SslScenario sslScenario = new SslScenario(normalScenario);
 
-        return Stream.of(normalScenario, sslScenario).map(Arguments::of);
+        return Stream.of(normalScenario, sslScenario, new GatherWritesScenario(normalScenario), new GatherWritesScenario(sslScenario)).map(Arguments::of);
     }
 
     private Scenario _scenario;
@@ -108,6 +113,7 @@ public class SocketChannelEndPointTest
         _threadPool = new QueuedThreadPool();
         _scheduler = new TimerScheduler();
         _manager = new ScenarioSelectorManager(_threadPool, _scheduler);
+        _manager.setGatherWrites(scenario.isGatherWrites());
 
         _lastEndPointLatch = new CountDownLatch(1);
         _connector = ServerSocketChannel.open();
@@ -181,6 +187,36 @@ public class SocketChannelEndPointTest
         }
     }
 
+    @Test
+    public void testGatheredWritesAreFlushedBySelector() throws Exception
+    {
+        init(new GatherWritesScenario(new NormalScenario()));
+
+        try (Socket client = _scenario.newClient(_connector))
+        {
+            client.setSoTimeout(60000);
+            try (SocketChannel server = _connector.accept())
+            {
+                server.configureBlocking(false);
+                _manager.accept(server);
+
+                client.getOutputStream().write("HelloWorld".getBytes(StandardCharsets.UTF_8));
+                for (char c : "HelloWorld".toCharArray())
+                {
+                    int b = client.getInputStream().read();
+                    assertTrue(b > 0);
+                    assertEquals(c, (char)b);
+                }
+
+                // The echo is written by a thread that is not the selector thread.
+                long gathered = _manager.getBeans(ManagedSelector.class).stream()
+                    .mapToLong(ManagedSelector::getGatheredWrites)
+                    .sum();
+                assertThat(gathered, greaterThan(0L));
+            }
+        }
+    }
+
     @Test
     public void testShutdown() throws Exception
     {
@@ -665,6 +701,46 @@ public class SocketChannelEndPointTest
         }
     }
 
+    public static class GatherWritesScenario implements Scenario
+    {
+        private final Scenario _scenario;
+
+        public GatherWritesScenario(Scenario scenario)
+        {
+            _scenario = scenario;
+        }
+
+        @Override
+        public Socket newClient(ServerSocketChannel connector) throws IOException
+        {
+            return _scenario.newClient(connector);
+        }
+
+        @Override
+        public Connection newConnection(SelectableChannel channel, EndPoint endpoint, Executor executor, AtomicInteger blockAt, AtomicInteger writeCount)
+        {
+            return _scenario.newConnection(channel, endpoint, executor, blockAt, writeCount);
+        }
+
+        @Override
+        public boolean supportsHalfCloses()
+        {
+            return _scenario.supportsHalfCloses();
+        }
+
+        @Override
+        public boolean isGatherWrites()
+        {
+            return true;
+        }
+
+        @Override
+        public String toString()
+        {
+            return _scenario + "-gather";
+        }
+    }
+
     @SuppressWarnings("Duplicates")
     public static class TestConnection extends AbstractConnection
     {
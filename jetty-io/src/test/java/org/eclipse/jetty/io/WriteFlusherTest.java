@@ -84,6 +84,38 @@ public class WriteFlusherTest
         assertTrue(flusher.isIdle());
     }
 
+    @Test
+    public void testPendDoesNotFlush() throws Exception
+    {
+        ByteArrayEndPoint endPoint = new ByteArrayEndPoint(new byte[0], 16);
+        endPoint.setGrowOutput(true);
+
+        AtomicBoolean incompleteFlush = new AtomicBoolean();
+        WriteFlusher flusher = new WriteFlusher(endPoint)
+        {
+            @Override
+            protected void onIncompleteFlush()
+            {
+                incompleteFlush.set(true);
+            }
+        };
+
+        FutureCallback callback = new FutureCallback();
+        flusher.pend(callback, BufferUtil.toBuffer("How "), BufferUtil.toBuffer("now"));
+
+        assertFalse(callback.isDone());
+        assertTrue(flusher.isPending());
+        assertEquals("", endPoint.takeOutputString());
+        assertThrows(WritePendingException.class, () -> flusher.write(Callback.NOOP, BufferUtil.toBuffer("foo")));
+
+        flusher.completeWrite();
+
+        assertTrue(callback.isDone());
+        assertFalse(incompleteFlush.get());
+        assertEquals("How now", endPoint.takeOutputString());
+        assertTrue(flusher.isIdle());
+    }
+
     @Test
     public void testClosedNoBlocking() throws Exception
     {
@@ -13,9 +13,7 @@
 
 package org.eclipse.jetty.proxy;
 
-import java.net.InetAddress;
 import java.net.URI;
-import java.net.UnknownHostException;
 import java.util.Enumeration;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -23,8 +21,6 @@ import java.util.Locale;
 import java.util.Set;
 import java.util.concurrent.Executor;
 import java.util.concurrent.TimeoutException;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 import javax.servlet.AsyncContext;
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletContext;
@@ -41,7 +37,6 @@ import org.eclipse.jetty.client.api.Request;
 import org.eclipse.jetty.client.api.Response;
 import org.eclipse.jetty.client.dynamic.HttpClientTransportDynamic;
 import org.eclipse.jetty.http.HttpField;
-import org.eclipse.jetty.http.HttpFields;
 import org.eclipse.jetty.http.HttpHeader;
 import org.eclipse.jetty.http.HttpHeaderValue;
 import org.eclipse.jetty.http.HttpScheme;
@@ -83,17 +78,7 @@ import org.slf4j.LoggerFactory;
 public abstract class AbstractProxyServlet extends HttpServlet
 {
     protected static final String CLIENT_REQUEST_ATTRIBUTE = "org.eclipse.jetty.proxy.clientRequest";
-    protected static final Set<String> HOP_HEADERS = Set.of(
-        "connection",
-        "keep-alive",
-        "proxy-authorization",
-        "proxy-authenticate",
-        "proxy-connection",
-        "transfer-encoding",
-        "te",
-        "trailer",
-        "upgrade"
-    );
+    protected static final Set<String> HOP_HEADERS = ProxyHeaders.HOP_HEADERS;
 
     private final Set<String> _whiteList = new HashSet<>();
     private final Set<String> _blackList = new HashSet<>();
@@ -117,7 +102,7 @@ public abstract class AbstractProxyServlet extends HttpServlet
 
         _viaHost = config.getInitParameter("viaHost");
         if (_viaHost == null)
-            _viaHost = viaHost();
+            _viaHost = ProxyHeaders.viaHost();
 
         try
         {
@@ -164,18 +149,6 @@ public abstract class AbstractProxyServlet extends HttpServlet
         return _viaHost;
     }
 
-    private static String viaHost()
-    {
-        try
-        {
-            return InetAddress.getLocalHost().getHostName();
-        }
-        catch (UnknownHostException x)
-        {
-            return "localhost";
-        }
-    }
-
     public long getTimeout()
     {
         return _timeout;
@@ -477,59 +450,13 @@ public abstract class AbstractProxyServlet extends HttpServlet
 
     protected void copyRequestHeaders(HttpServletRequest clientRequest, Request proxyRequest)
     {
-        // First clear possibly existing headers, as we are going to copy those from the client request.
-        HttpFields.Mutable newHeaders = HttpFields.build();
-
-        Set<String> headersToRemove = findConnectionHeaders(clientRequest);
-
-        for (Enumeration<String> headerNames = clientRequest.getHeaderNames(); headerNames.hasMoreElements(); )
-        {
-            String headerName = headerNames.nextElement();
-            String lowerHeaderName = headerName.toLowerCase(Locale.ENGLISH);
-
-            if (HttpHeader.HOST.is(headerName) && !_preserveHost)
-                continue;
-
-            // Remove hop-by-hop headers.
-            if (HOP_HEADERS.contains(lowerHeaderName))
-                continue;
-            if (headersToRemove != null && headersToRemove.contains(lowerHeaderName))
-                continue;
-
-            for (Enumeration<String> headerValues = clientRequest.getHeaders(headerName); headerValues.hasMoreElements(); )
-            {
-                String headerValue = headerValues.nextElement();
-                if (headerValue != null)
-                    newHeaders.add(headerName, headerValue);
-            }
-        }
-
-        // Force the Host header if configured
-        if (_hostHeader != null)
-            newHeaders.add(HttpHeader.HOST, _hostHeader);
-
-        proxyRequest.headers(headers -> headers.clear().add(newHeaders));
+        ProxyHeaders.copyRequestHeaders(clientRequest, proxyRequest, findConnectionHeaders(clientRequest), _preserveHost, _hostHeader);
     }
 
     protected Set<String> findConnectionHeaders(HttpServletRequest clientRequest)
     {
-        // Any header listed by the Connection header must be removed:
-        // http://tools.ietf.org/html/rfc7230#section-6.1.
-        Set<String> hopHeaders = null;
-        Enumeration<String> connectionHeaders = clientRequest.getHeaders(HttpHeader.CONNECTION.asString());
-        while (connectionHeaders.hasMoreElements())
-        {
-            String value = connectionHeaders.nextElement();
-            String[] values = value.split(",");
-            for (String name : values)
-            {
-                name = name.trim().toLowerCase(Locale.ENGLISH);
-                if (hopHeaders == null)
-                    hopHeaders = new HashSet<>();
-                hopHeaders.add(name);
-            }
-        }
-        return hopHeaders;
+        Set<String> hopHeaders = ProxyHeaders.findConnectionHeaders(clientRequest);
+        return hopHeaders.isEmpty() ? null : hopHeaders;
     }
 
     protected void addProxyHeaders(HttpServletRequest clientRequest, Request proxyRequest)
@@ -563,37 +490,12 @@ public abstract class AbstractProxyServlet extends HttpServlet
      */
     protected void addViaHeader(HttpServletRequest clientRequest, Request proxyRequest)
     {
-        String protocol = clientRequest.getProtocol();
-        String[] parts = protocol.split("/", 2);
-        // Retain only the version if the protocol is HTTP.
-        String protocolPart = parts.length == 2 && "HTTP".equalsIgnoreCase(parts[0]) ? parts[1] : protocol;
-        String viaHeaderValue = protocolPart + " " + getViaHost();
-        proxyRequest.headers(headers -> headers.computeField(HttpHeader.VIA, (header, viaFields) ->
-        {
-            if (viaFields == null || viaFields.isEmpty())
-                return new HttpField(header, viaHeaderValue);
-            String separator = ", ";
-            String newValue = viaFields.stream()
-                .flatMap(field -> Stream.of(field.getValues()))
-                .filter(value -> !StringUtil.isBlank(value))
-                .collect(Collectors.joining(separator));
-            if (newValue.length() > 0)
-                newValue += separator;
-            newValue += viaHeaderValue;
-            return new HttpField(HttpHeader.VIA, newValue);
-        }));
+        ProxyHeaders.addViaHeader(clientRequest, proxyRequest, getViaHost());
     }
 
     protected void addXForwardedHeaders(HttpServletRequest clientRequest, Request proxyRequest)
     {
-        proxyRequest.headers(headers -> headers.add(HttpHeader.X_FORWARDED_FOR, clientRequest.getRemoteAddr()));
-        proxyRequest.headers(headers -> headers.add(HttpHeader.X_FORWARDED_PROTO, clientRequest.getScheme()));
-        String hostHeader = clientRequest.getHeader(HttpHeader.HOST.asString());
-        if (hostHeader != null)
-            proxyRequest.headers(headers -> headers.add(HttpHeader.X_FORWARDED_HOST, hostHeader));
-        String localName = clientRequest.getLocalName();
-        if (localName != null)
-            proxyRequest.headers(headers -> headers.add(HttpHeader.X_FORWARDED_SERVER, localName));
+        ProxyHeaders.addXForwardedHeaders(clientRequest, proxyRequest);
     }
 
     protected void sendProxyRequest(HttpServletRequest clientRequest, HttpServletResponse proxyResponse, Request proxyRequest)
@@ -20,15 +20,58 @@ import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import javax.servlet.ServletConfig;
 import javax.servlet.ServletException;
 import javax.servlet.UnavailableException;
 import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 
+import org.eclipse.jetty.client.api.Request;
 import org.eclipse.jetty.client.api.Response;
+import org.eclipse.jetty.http.HttpStatus;
 import org.eclipse.jetty.util.URIUtil;
-
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.thread.AutoLock;
+import org.eclipse.jetty.util.thread.Scheduler;
+
+/**
+ * <p>A {@link ProxyServlet} that balances the requests across a set of members.</p>
+ * <p>The following init parameters may be used to configure the servlet, in addition
+ * to those of {@link AbstractProxyServlet}:</p>
+ * <ul>
+ * <li>balancerMember.&lt;name&gt;.proxyTo - the URI of the member called {@code name}</li>
+ * <li>balancerMember.&lt;name&gt;.weight - the weight of the member called {@code name}, defaults to 1</li>
+ * <li>stickySessions - whether requests with a session are sent to the member that created the session</li>
+ * <li>proxyPassReverse - whether the URIs in the response headers that point to a member are rewritten</li>
+ * <li>strategy - {@code roundRobin} (the default) to select the members in turn, or {@code leastRequests}
+ * to select the member with the least outstanding requests relative to its weight</li>
+ * <li>outlierDetection - whether members with too many failures or a too high latency are ejected</li>
+ * <li>outlier.consecutiveFailures - the number of consecutive failures that ejects a member, defaults to 5</li>
+ * <li>outlier.failureRate - the average failure rate, between 0 and 1, that ejects a member, defaults to 0.5</li>
+ * <li>outlier.latencyFactor - how many times the average latency of a member must exceed the median
+ * of the average latencies of the other members to eject it, defaults to 3, or 0 to disable</li>
+ * <li>outlier.minRequests - the min number of requests to a member before it can be ejected
+ * because of its failure rate or latency, defaults to 20</li>
+ * <li>outlier.ejectionTime - the time in milliseconds a member is ejected for, multiplied by the
+ * number of times it has been ejected, defaults to 30000</li>
+ * <li>outlier.maxEjectionPercent - the max percentage of members that may be ejected, defaults to 50</li>
+ * <li>slowStartTime - the time in milliseconds during which the weight of a member that is admitted
+ * again grows from 10% to 100%, defaults to 0</li>
+ * <li>healthCheck.path - the path periodically requested from each member to check its health;
+ * members that do not respond with a 2xx status are not selected until they do</li>
+ * <li>healthCheck.interval - the interval in milliseconds between health checks, defaults to 10000</li>
+ * </ul>
+ * <p>If no member can be selected, because they are all ejected or unhealthy,
+ * the members are selected as if they were all available.</p>
+ * <p>To facilitate JMX monitoring, the {@link BalancerMember}s are set as ServletContext
+ * attributes, named after this servlet's name followed by {@code .balancerMember.<name>}.</p>
+ */
 public class BalancerServlet extends ProxyServlet
 {
     private static final String BALANCER_MEMBER_PREFIX = "balancerMember.";
@@ -56,11 +99,26 @@ public class BalancerServlet extends ProxyServlet
 
     private static final String JSESSIONID = "jsessionid";
     private static final String JSESSIONID_URL_PREFIX = JSESSIONID + "=";
+    private static final String BALANCER_MEMBER_ATTRIBUTE = BalancerServlet.class.getName() + ".balancerMember";
+    private static final String START_TIME_ATTRIBUTE = BalancerServlet.class.getName() + ".startTime";
 
+    private final AutoLock _lock = new AutoLock();
     private final List<BalancerMember> _balancerMembers = new ArrayList<>();
     private final AtomicLong counter = new AtomicLong();
     private boolean _stickySessions;
     private boolean _proxyPassReverse;
+    private boolean _leastRequests;
+    private boolean _outlierDetection;
+    private int _consecutiveFailures = 5;
+    private double _failureRate = 0.5;
+    private double _latencyFactor = 3;
+    private int _minRequests = 20;
+    private long _ejectionTime = 30000;
+    private int _maxEjectionPercent = 50;
+    private long _slowStartTime;
+    private String _healthCheckPath;
+    private long _healthCheckInterval = 10000;
+    private volatile Scheduler.Task _healthCheckTask;
 
     @Override
     public void init() throws ServletException
@@ -70,6 +128,22 @@ public class BalancerServlet extends ProxyServlet
         initStickySessions();
         initBalancers();
         initProxyPassReverse();
+        initOutlierDetection();
+        initHealthCheck();
+    }
+
+    @Override
+    public void destroy()
+    {
+        Scheduler.Task task = _healthCheckTask;
+        _healthCheckTask = null;
+        if (task != null)
+            task.cancel();
+        for (BalancerMember member : _balancerMembers)
+        {
+            getServletContext().removeAttribute(getBalancerMemberAttributeName(member));
+        }
+        super.destroy();
     }
 
     private void validateConfig() throws ServletException
@@ -97,9 +171,23 @@ public class BalancerServlet extends ProxyServlet
             String proxyTo = getServletConfig().getInitParameter(memberProxyToParam);
             if (proxyTo == null || proxyTo.trim().length() == 0)
                 throw new UnavailableException(memberProxyToParam + " parameter is empty.");
-            members.add(new BalancerMember(balancerName, proxyTo));
+            String weight = getServletConfig().getInitParameter(BALANCER_MEMBER_PREFIX + balancerName + ".weight");
+            BalancerMember member = new BalancerMember(balancerName, proxyTo, weight == null ? 1 : Integer.parseInt(weight));
+            if (member.getWeight() <= 0)
+                throw new UnavailableException(BALANCER_MEMBER_PREFIX + balancerName + ".weight parameter must be positive.");
+            members.add(member);
         }
         _balancerMembers.addAll(members);
+        // Put the members in the context to leverage ContextHandler.MANAGED_ATTRIBUTES
+        for (BalancerMember member : _balancerMembers)
+        {
+            getServletContext().setAttribute(getBalancerMemberAttributeName(member), member);
+        }
+    }
+
+    private String getBalancerMemberAttributeName(BalancerMember member)
+    {
+        return getServletConfig().getServletName() + ".balancerMember." + member.getName();
     }
 
     private void initProxyPassReverse()
@@ -107,6 +195,78 @@ public class BalancerServlet extends ProxyServlet
         _proxyPassReverse = Boolean.parseBoolean(getServletConfig().getInitParameter("proxyPassReverse"));
     }
 
+    private void initOutlierDetection() throws ServletException
+    {
+        ServletConfig config = getServletConfig();
+        String strategy = config.getInitParameter("strategy");
+        if (strategy != null && !"roundRobin".equals(strategy) && !"leastRequests".equals(strategy))
+            throw new UnavailableException("Unknown strategy " + strategy);
+        _leastRequests = "leastRequests".equals(strategy);
+
+        _outlierDetection = Boolean.parseBoolean(config.getInitParameter("outlierDetection"));
+        String value = config.getInitParameter("outlier.consecutiveFailures");
+        if (value != null)
+            _consecutiveFailures = Integer.parseInt(value);
+        value = config.getInitParameter("outlier.failureRate");
+        if (value != null)
+            _failureRate = Double.parseDouble(value);
+        value = config.getInitParameter("outlier.latencyFactor");
+        if (value != null)
+            _latencyFactor = Double.parseDouble(value);
+        value = config.getInitParameter("outlier.minRequests");
+        if (value != null)
+            _minRequests = Integer.parseInt(value);
+        value = config.getInitParameter("outlier.ejectionTime");
+        if (value != null)
+            _ejectionTime = Long.parseLong(value);
+        value = config.getInitParameter("outlier.maxEjectionPercent");
+        if (value != null)
+            _maxEjectionPercent = Integer.parseInt(value);
+        value = config.getInitParameter("slowStartTime");
+        if (value != null)
+            _slowStartTime = Long.parseLong(value);
+    }
+
+    private void initHealthCheck()
+    {
+        ServletConfig config = getServletConfig();
+        _healthCheckPath = config.getInitParameter("healthCheck.path");
+        String value = config.getInitParameter("healthCheck.interval");
+        if (value != null)
+            _healthCheckInterval = Long.parseLong(value);
+        if (_healthCheckPath != null)
+            scheduleHealthCheck();
+    }
+
+    private void scheduleHealthCheck()
+    {
+        Scheduler scheduler = getHttpClient().getScheduler();
+        _healthCheckTask = scheduler.schedule(this::healthCheck, _healthCheckInterval, TimeUnit.MILLISECONDS);
+    }
+
+    private void healthCheck()
+    {
+        if (_healthCheckTask == null)
+            return;
+        AtomicInteger pending = new AtomicInteger(_balancerMembers.size());
+        for (BalancerMember member : _balancerMembers)
+        {
+            String uri = URI.create(member.getProxyTo() + "/" + _healthCheckPath).normalize().toString();
+            getHttpClient().newRequest(uri)
+                .timeout(_healthCheckInterval, TimeUnit.MILLISECONDS)
+                .send(result ->
+                {
+                    boolean healthy = result.isSucceeded() && HttpStatus.isSuccess(result.getResponse().getStatus());
+                    if (_log.isDebugEnabled())
+                        _log.debug("Health check {} for {}", healthy ? "succeeded" : "failed", member, result.getFailure());
+                    member.setHealthy(healthy, System.nanoTime());
+                    // Schedule the next health check when all members have been checked.
+                    if (pending.decrementAndGet() == 0 && _healthCheckTask != null)
+                        scheduleHealthCheck();
+                });
+        }
+    }
+
     private Set<String> getBalancerNames() throws ServletException
     {
         Set<String> names = new HashSet<>();
@@ -130,6 +290,7 @@ public class BalancerServlet extends ProxyServlet
         BalancerMember balancerMember = selectBalancerMember(request);
         if (_log.isDebugEnabled())
             _log.debug("Selected {}", balancerMember);
+        request.setAttribute(BALANCER_MEMBER_ATTRIBUTE, balancerMember);
         String path = request.getRequestURI();
         String query = request.getQueryString();
         if (query != null)
@@ -139,18 +300,142 @@ public class BalancerServlet extends ProxyServlet
 
     private BalancerMember selectBalancerMember(HttpServletRequest request)
     {
+        long now = System.nanoTime();
         if (_stickySessions)
         {
             String name = getBalancerMemberNameFromSessionId(request);
             if (name != null)
             {
                 BalancerMember balancerMember = findBalancerMemberByName(name);
-                if (balancerMember != null)
+                if (balancerMember != null && balancerMember.isAvailable(now))
                     return balancerMember;
             }
         }
-        int index = (int)(counter.getAndIncrement() % _balancerMembers.size());
-        return _balancerMembers.get(index);
+
+        int size = _balancerMembers.size();
+        int start = (int)(counter.getAndIncrement() % size);
+        BalancerMember selected = null;
+        double selectedCost = Double.MAX_VALUE;
+        for (int i = 0; i < size; ++i)
+        {
+            BalancerMember balancerMember = _balancerMembers.get((start + i) % size);
+            if (!balancerMember.isAvailable(now))
+                continue;
+            if (!_leastRequests)
+                return balancerMember;
+            // Weighted least outstanding requests, ties are broken in round robin order.
+            double cost = (balancerMember.getOutstandingRequests() + 1) / balancerMember.getEffectiveWeight(now, _slowStartTime);
+            if (cost < selectedCost)
+            {
+                selected = balancerMember;
+                selectedCost = cost;
+            }
+        }
+        // If no member is available, all members are selected in turn.
+        return selected == null ? _balancerMembers.get(start) : selected;
+    }
+
+    @Override
+    protected void sendProxyRequest(HttpServletRequest clientRequest, HttpServletResponse proxyResponse, Request proxyRequest)
+    {
+        // Only account requests actually sent to the member, not those served from the cache.
+        BalancerMember balancerMember = (BalancerMember)clientRequest.getAttribute(BALANCER_MEMBER_ATTRIBUTE);
+        if (balancerMember != null)
+        {
+            balancerMember.begin();
+            clientRequest.setAttribute(START_TIME_ATTRIBUTE, System.nanoTime());
+        }
+        super.sendProxyRequest(clientRequest, proxyResponse, proxyRequest);
+    }
+
+    @Override
+    protected void onProxyResponseSuccess(HttpServletRequest clientRequest, HttpServletResponse proxyResponse, Response serverResponse)
+    {
+        onBalancerMemberComplete(clientRequest, !HttpStatus.isServerError(serverResponse.getStatus()));
+        super.onProxyResponseSuccess(clientRequest, proxyResponse, serverResponse);
+    }
+
+    @Override
+    protected void onProxyResponseFailure(HttpServletRequest clientRequest, HttpServletResponse proxyResponse, Response serverResponse, Throwable failure)
+    {
+        onBalancerMemberComplete(clientRequest, false);
+        super.onProxyResponseFailure(clientRequest, proxyResponse, serverResponse, failure);
+    }
+
+    @Override
+    protected void onClientRequestFailure(HttpServletRequest clientRequest, Request proxyRequest, HttpServletResponse proxyResponse, Throwable failure)
+    {
+        // Failures of the client are not failures of the member.
+        BalancerMember balancerMember = (BalancerMember)clientRequest.getAttribute(BALANCER_MEMBER_ATTRIBUTE);
+        if (balancerMember != null && clientRequest.getAttribute(START_TIME_ATTRIBUTE) != null)
+        {
+            clientRequest.removeAttribute(START_TIME_ATTRIBUTE);
+            balancerMember.cancel();
+        }
+        super.onClientRequestFailure(clientRequest, proxyRequest, proxyResponse, failure);
+    }
+
+    private void onBalancerMemberComplete(HttpServletRequest clientRequest, boolean success)
+    {
+        BalancerMember balancerMember = (BalancerMember)clientRequest.getAttribute(BALANCER_MEMBER_ATTRIBUTE);
+        Long startTime = (Long)clientRequest.getAttribute(START_TIME_ATTRIBUTE);
+        if (balancerMember == null || startTime == null)
+            return;
+        clientRequest.removeAttribute(START_TIME_ATTRIBUTE);
+        long now = System.nanoTime();
+        balancerMember.complete(success, now - startTime);
+        if (_outlierDetection)
+            detectOutlier(balancerMember, now);
+    }
+
+    private void detectOutlier(BalancerMember balancerMember, long now)
+    {
+        try (AutoLock l = _lock.lock())
+        {
+            if (!balancerMember.isAvailable(now))
+                return;
+
+            String reason = null;
+            if (balancerMember.getConsecutiveFailures() >= _consecutiveFailures)
+                reason = "consecutive failures";
+            else if (balancerMember.getSamples() >= _minRequests && balancerMember.getFailureRate() >= _failureRate)
+                reason = "failure rate";
+            else if (_latencyFactor > 0 && balancerMember.getSamples() >= _minRequests && isLatencyOutlier(balancerMember, now))
+                reason = "latency";
+            if (reason == null)
+                return;
+
+            int ejected = 0;
+            for (BalancerMember member : _balancerMembers)
+            {
+                if (member.isEjected(now))
+                    ++ejected;
+            }
+            if ((ejected + 1) * 100 > _maxEjectionPercent * _balancerMembers.size())
+            {
+                if (_log.isDebugEnabled())
+                    _log.debug("Not ejecting {} because of {}, too many members ejected", balancerMember, reason);
+                return;
+            }
+
+            balancerMember.eject(now, TimeUnit.MILLISECONDS.toNanos(_ejectionTime));
+            if (_log.isDebugEnabled())
+                _log.debug("Ejected {} because of {}", balancerMember, reason);
+        }
+    }
+
+    private boolean isLatencyOutlier(BalancerMember balancerMember, long now)
+    {
+        double[] latencies = _balancerMembers.stream()
+            .filter(member -> member != balancerMember && member.isAvailable(now) && member.getSamples() >= _minRequests)
+            .mapToDouble(BalancerMember::getAverageLatency)
+            .sorted()
+            .toArray();
+        if (latencies.length == 0)
+            return false;
+        int middle = latencies.length / 2;
+        double median = latencies.length % 2 == 1 ? latencies[middle] : (latencies[middle - 1] + latencies[middle]) / 2;
+        return balancerMember.getAverageLatency() > _latencyFactor * median;
     }
 
     private BalancerMember findBalancerMemberByName(String name)
@@ -254,24 +539,53 @@ public class BalancerServlet extends ProxyServlet
         return true;
     }
 
-    private static class BalancerMember
+    /**
+     * <p>A member of the balancer, with its statistics.</p>
+     */
+    @ManagedObject("A balancer member")
+    public static class BalancerMember
     {
+        // The weight of the last sample in the failure rate and latency averages.
+        private static final double ALPHA = 0.1;
+
+        private final AutoLock _lock = new AutoLock();
         private final String _name;
         private final String _proxyTo;
         private final URI _backendURI;
+        private final int _weight;
+        private final AtomicInteger _outstanding = new AtomicInteger();
+        private final LongAdder _requests = new LongAdder();
+        private final LongAdder _failures = new LongAdder();
+        private int _consecutiveFailures;
+        private int _samples;
+        private volatile double _failureRate;
+        private volatile double _latency;
+        private volatile int _ejections;
+        private volatile long _ejectedUntil;
+        private volatile long _admittedAt = Long.MIN_VALUE;
+        private volatile boolean _ejected;
+        private volatile boolean _healthy = true;
 
         public BalancerMember(String name, String proxyTo)
+        {
+            this(name, proxyTo, 1);
+        }
+
+        public BalancerMember(String name, String proxyTo, int weight)
         {
             _name = name;
             _proxyTo = proxyTo;
             _backendURI = URI.create(_proxyTo).normalize();
+            _weight = weight;
         }
 
+        @ManagedAttribute(value = "The member name", readonly = true)
         public String getName()
         {
             return _name;
         }
 
+        @ManagedAttribute(value = "The member URI", readonly = true)
         public String getProxyTo()
         {
             return _proxyTo;
@@ -282,10 +596,181 @@ public class BalancerServlet extends ProxyServlet
             return _backendURI;
         }
 
+        @ManagedAttribute(value = "The member weight", readonly = true)
+        public int getWeight()
+        {
+            return _weight;
+        }
+
+        @ManagedAttribute(value = "The number of outstanding requests", readonly = true)
+        public int getOutstandingRequests()
+        {
+            return _outstanding.get();
+        }
+
+        @ManagedAttribute(value = "The total number of requests", readonly = true)
+        public long getRequests()
+        {
+            return _requests.sum();
+        }
+
+        @ManagedAttribute(value = "The total number of failed requests", readonly = true)
+        public long getFailures()
+        {
+            return _failures.sum();
+        }
+
+        @ManagedAttribute(value = "The number of consecutive failed requests", readonly = true)
+        public int getConsecutiveFailures()
+        {
+            try (AutoLock l = _lock.lock())
+            {
+                return _consecutiveFailures;
+            }
+        }
+
+        @ManagedAttribute(value = "The average failure rate since the member was admitted", readonly = true)
+        public double getFailureRate()
+        {
+            return _failureRate;
+        }
+
+        /**
+         * @return the average latency in nanoseconds since the member was admitted
+         */
+        public double getAverageLatency()
+        {
+            return _latency;
+        }
+
+        @ManagedAttribute(value = "The average latency in milliseconds since the member was admitted", readonly = true)
+        public long getLatency()
+        {
+            return TimeUnit.NANOSECONDS.toMillis((long)_latency);
+        }
+
+        @ManagedAttribute(value = "The number of times the member has been ejected", readonly = true)
+        public int getEjections()
+        {
+            return _ejections;
+        }
+
+        @ManagedAttribute(value = "Whether the member is ejected", readonly = true)
+        public boolean isEjected()
+        {
+            return isEjected(System.nanoTime());
+        }
+
+        @ManagedAttribute(value = "Whether the member passed the last health check", readonly = true)
+        public boolean isHealthy()
+        {
+            return _healthy;
+        }
+
+        int getSamples()
+        {
+            try (AutoLock l = _lock.lock())
+            {
+                return _samples;
+            }
+        }
+
+        boolean isEjected(long now)
+        {
+            if (!_ejected)
+                return false;
+            if (now - _ejectedUntil < 0)
+                return true;
+            try (AutoLock l = _lock.lock())
+            {
+                if (_ejected)
+                {
+                    // The ejection time elapsed, admit the member again.
+                    _ejected = false;
+                    _admittedAt = _ejectedUntil;
+                }
+            }
+            return false;
+        }
+
+        boolean isAvailable(long now)
+        {
+            return _healthy && !isEjected(now);
+        }
+
+        double getEffectiveWeight(long now, long slowStartTime)
+        {
+            long slowStartNanos = TimeUnit.MILLISECONDS.toNanos(slowStartTime);
+            long admitted = now - _admittedAt;
+            if (slowStartNanos <= 0 || admitted < 0 || admitted >= slowStartNanos)
+                return _weight;
+            return _weight * Math.max(0.1, (double)admitted / slowStartNanos);
+        }
+
+        void begin()
+        {
+            _outstanding.incrementAndGet();
+            _requests.increment();
+        }
+
+        void cancel()
+        {
+            _outstanding.decrementAndGet();
+        }
+
+        void complete(boolean success, long latency)
+        {
+            _outstanding.decrementAndGet();
+            if (!success)
+                _failures.increment();
+            try (AutoLock l = _lock.lock())
+            {
+                _consecutiveFailures = success ? 0 : _consecutiveFailures + 1;
+                double alpha = Math.max(ALPHA, 1.0 / ++_samples);
+                _failureRate += alpha * ((success ? 0 : 1) - _failureRate);
+                if (success)
+                    _latency += alpha * (latency - _latency);
+            }
+        }
+
+        void eject(long now, long ejectionNanos)
+        {
+            try (AutoLock l = _lock.lock())
+            {
+                ++_ejections;
+                _ejected = true;
+                _ejectedUntil = now + ejectionNanos * Math.min(_ejections, 10);
+                reset();
+            }
+        }
+
+        void setHealthy(boolean healthy, long now)
+        {
+            try (AutoLock l = _lock.lock())
+            {
+                if (healthy && !_healthy)
+                {
+                    _admittedAt = now;
+                    reset();
+                }
+                _healthy = healthy;
+            }
+        }
+
+        private void reset()
+        {
+            // The statistics restart when the member is admitted again.
+            _consecutiveFailures = 0;
+            _samples = 0;
+            _failureRate = 0;
+            _latency = 0;
+        }
+
         @Override
         public String toString()
         {
-            return String.format("%s[name=%s,proxyTo=%s]", getClass().getSimpleName(), _name, _proxyTo);
+            return String.format("%s[name=%s,proxyTo=%s,weight=%d,outstanding=%d,failureRate=%.2f,latency=%dms,ejected=%b,healthy=%b]",
+                getClass().getSimpleName(), _name, _proxyTo, _weight, getOutstandingRequests(), getFailureRate(), getLatency(), _ejected, _healthy);
         }
 
         @Override
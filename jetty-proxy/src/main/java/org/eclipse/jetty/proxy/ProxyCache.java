@@ -0,0 +1,898 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.proxy;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.servlet.AsyncContext;
+import javax.servlet.http.HttpServletRequest;
+
+import org.eclipse.jetty.client.api.Response;
+import org.eclipse.jetty.http.DateParser;
+import org.eclipse.jetty.http.HttpField;
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpMethod;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.http.QuotedCSV;
+import org.eclipse.jetty.util.IO;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.component.AbstractLifeCycle;
+import org.eclipse.jetty.util.thread.AutoLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>A shared HTTP cache for the responses proxied by {@link ProxyServlet},
+ * following the semantic of <a href="https://datatracker.ietf.org/doc/html/rfc9111">RFC 9111</a>.</p>
+ * <p>Responses to {@code GET} requests are stored if their status and their
+ * {@code Cache-Control} directives allow it; stored responses are keyed by the
+ * client request URI and by the values of the request headers listed in their
+ * {@code Vary} header.
+ * Fresh stored responses are served without contacting the server, while stale
+ * stored responses are revalidated with a conditional request built from their
+ * {@code ETag} and {@code Last-Modified} headers.
+ * Concurrent requests that miss the cache for the same URI are coalesced, so that
+ * only one request is sent to the server while the others wait for its response.
+ * Successful responses to unsafe requests invalidate the responses stored for the
+ * same URI.</p>
+ * <p>Stored responses are kept in memory up to {@link #getMaxMemorySize()} bytes;
+ * when a {@link #getDirectory() directory} is configured, the least recently used
+ * responses in excess are spilled to files that are memory-mapped, up to
+ * {@link #getMaxDiskSize()} bytes, rather than being discarded.</p>
+ * <p>Requests with {@code Range} or conditional headers and responses with
+ * {@code Set-Cookie} headers are never served from nor stored in the cache,
+ * nor are stale responses served when the server cannot be reached.</p>
+ */
+@ManagedObject("Shared cache of proxied responses")
+public class ProxyCache extends AbstractLifeCycle
+{
+    private static final Logger LOG = LoggerFactory.getLogger(ProxyCache.class);
+    // The status codes that are cacheable by default, see RFC 9110 section 15.1.
+    private static final Set<Integer> HEURISTIC_STATUSES = Set.of(200, 203, 204, 300, 301, 308, 404, 405, 410, 414, 501);
+    // The headers that are not updated when a 304 freshens a stored response.
+    private static final EnumSet<HttpHeader> NOT_FRESHENED_HEADERS = EnumSet.of(HttpHeader.CONTENT_LENGTH, HttpHeader.CONTENT_ENCODING, HttpHeader.TRANSFER_ENCODING);
+
+    private final AutoLock lock = new AutoLock();
+    private final Map<String, List<Entry>> entries = new HashMap<>();
+    private final LinkedHashMap<Entry, Entry> lru = new LinkedHashMap<>(16, 0.75F, true);
+    private final Map<String, List<AsyncContext>> inflight = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder revalidations = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder bytesSaved = new LongAdder();
+    private long maxMemorySize = 64 * 1024 * 1024;
+    private long maxDiskSize = 1024 * 1024 * 1024;
+    private int maxEntrySize = 1024 * 1024;
+    private Path directory;
+    private long memorySize;
+    private long diskSize;
+
+    @ManagedAttribute("The max number of bytes of the responses stored in memory")
+    public long getMaxMemorySize()
+    {
+        return maxMemorySize;
+    }
+
+    public void setMaxMemorySize(long maxMemorySize)
+    {
+        this.maxMemorySize = maxMemorySize;
+    }
+
+    @ManagedAttribute("The max number of bytes of the responses spilled to disk")
+    public long getMaxDiskSize()
+    {
+        return maxDiskSize;
+    }
+
+    public void setMaxDiskSize(long maxDiskSize)
+    {
+        this.maxDiskSize = maxDiskSize;
+    }
+
+    @ManagedAttribute("The max content length of a stored response")
+    public int getMaxEntrySize()
+    {
+        return maxEntrySize;
+    }
+
+    public void setMaxEntrySize(int maxEntrySize)
+    {
+        this.maxEntrySize = maxEntrySize;
+    }
+
+    /**
+     * @return the directory where responses are spilled when the memory is full, or null
+     */
+    public Path getDirectory()
+    {
+        return directory;
+    }
+
+    /**
+     * @param directory the directory where responses are spilled when the memory is full,
+     * or null to discard them
+     */
+    public void setDirectory(Path directory)
+    {
+        this.directory = directory;
+    }
+
+    @ManagedAttribute("The number of requests served from the cache")
+    public long getHits()
+    {
+        return hits.sum();
+    }
+
+    @ManagedAttribute("The number of cacheable requests that were not served from the cache")
+    public long getMisses()
+    {
+        return misses.sum();
+    }
+
+    @ManagedAttribute("The ratio of hits to cacheable requests")
+    public double getHitRatio()
+    {
+        long hits = getHits();
+        long total = hits + getMisses();
+        return total == 0 ? 0 : (double)hits / total;
+    }
+
+    @ManagedAttribute("The number of conditional requests sent to revalidate stale responses")
+    public long getRevalidations()
+    {
+        return revalidations.sum();
+    }
+
+    @ManagedAttribute("The number of requests that waited for a concurrent request to the same URI")
+    public long getCoalesced()
+    {
+        return coalesced.sum();
+    }
+
+    @ManagedAttribute("The number of content bytes served from the cache")
+    public long getBytesSaved()
+    {
+        return bytesSaved.sum();
+    }
+
+    @ManagedAttribute("The number of stored responses")
+    public int getEntryCount()
+    {
+        try (AutoLock l = lock.lock())
+        {
+            return lru.size();
+        }
+    }
+
+    @ManagedAttribute("The number of bytes of the responses stored in memory")
+    public long getMemorySize()
+    {
+        try (AutoLock l = lock.lock())
+        {
+            return memorySize;
+        }
+    }
+
+    @ManagedAttribute("The number of bytes of the responses spilled to disk")
+    public long getDiskSize()
+    {
+        try (AutoLock l = lock.lock())
+        {
+            return diskSize;
+        }
+    }
+
+    @ManagedOperation(value = "Resets the statistics", impact = "ACTION")
+    public void resetStatistics()
+    {
+        hits.reset();
+        misses.reset();
+        revalidations.reset();
+        coalesced.reset();
+        bytesSaved.reset();
+    }
+
+    @ManagedOperation(value = "Removes all the stored responses", impact = "ACTION")
+    public void clear()
+    {
+        List<Entry> removed;
+        try (AutoLock l = lock.lock())
+        {
+            removed = new ArrayList<>(lru.keySet());
+            entries.clear();
+            lru.clear();
+            memorySize = 0;
+            diskSize = 0;
+        }
+        removed.forEach(Entry::delete);
+    }
+
+    @Override
+    protected void doStart() throws Exception
+    {
+        if (directory != null)
+            Files.createDirectories(directory);
+        super.doStart();
+    }
+
+    @Override
+    protected void doStop() throws Exception
+    {
+        clear();
+        super.doStop();
+    }
+
+    /**
+     * @param request the client request
+     * @return whether the response to the given request may be served from or stored in the cache
+     */
+    public boolean isCacheable(HttpServletRequest request)
+    {
+        String method = request.getMethod();
+        if (!HttpMethod.GET.is(method) && !HttpMethod.HEAD.is(method))
+            return false;
+        if (request.getHeader(HttpHeader.RANGE.asString()) != null ||
+            request.getHeader(HttpHeader.IF_NONE_MATCH.asString()) != null ||
+            request.getHeader(HttpHeader.IF_MODIFIED_SINCE.asString()) != null ||
+            request.getHeader(HttpHeader.IF_MATCH.asString()) != null ||
+            request.getHeader(HttpHeader.IF_UNMODIFIED_SINCE.asString()) != null ||
+            request.getHeader(HttpHeader.IF_RANGE.asString()) != null)
+            return false;
+        return !cacheControl(request).containsKey("no-store");
+    }
+
+    /**
+     * <p>Looks up the response stored for the given key that matches the given request.</p>
+     *
+     * @param key the cache key
+     * @param request the client request
+     * @return the stored response, or null if there is none
+     */
+    public Entry lookup(String key, HttpServletRequest request)
+    {
+        try (AutoLock l = lock.lock())
+        {
+            List<Entry> variants = entries.get(key);
+            if (variants == null)
+                return null;
+            for (Entry entry : variants)
+            {
+                if (entry.matches(request))
+                {
+                    // Touch the entry to update the LRU order.
+                    lru.get(entry);
+                    return entry;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * @param entry the stored response
+     * @param request the client request
+     * @param now the current time in milliseconds since the epoch
+     * @return whether the stored response may be served without revalidation
+     */
+    public boolean isFresh(Entry entry, HttpServletRequest request, long now)
+    {
+        if (entry.noCache)
+            return false;
+
+        Map<String, String> requestDirectives = cacheControl(request);
+        if (requestDirectives.containsKey("no-cache"))
+            return false;
+        if (requestDirectives.isEmpty() && request.getHeader(HttpHeader.PRAGMA.asString()) != null)
+        {
+            for (String value : new QuotedCSV(false, request.getHeader(HttpHeader.PRAGMA.asString())))
+            {
+                if ("no-cache".equalsIgnoreCase(value))
+                    return false;
+            }
+        }
+
+        long age = entry.getAge(now);
+        long maxAge = seconds(requestDirectives.get("max-age"));
+        if (maxAge >= 0 && age > maxAge)
+            return false;
+        long lifetime = entry.freshnessLifetime;
+        long minFresh = seconds(requestDirectives.get("min-fresh"));
+        if (minFresh >= 0 && lifetime - age < minFresh)
+            return false;
+        if (age < lifetime)
+            return true;
+
+        // A stale response may be served if the client accepts it.
+        String maxStale = requestDirectives.get("max-stale");
+        if (maxStale == null || entry.mustRevalidate)
+            return false;
+        long staleness = age - lifetime;
+        return maxStale.isEmpty() || staleness <= seconds(maxStale);
+    }
+
+    /**
+     * @param request the client request
+     * @return whether the client only accepts stored responses
+     */
+    public boolean isOnlyIfCached(HttpServletRequest request)
+    {
+        return cacheControl(request).containsKey("only-if-cached");
+    }
+
+    /**
+     * @param request the client request
+     * @param response the server response
+     * @return whether the given response to the given request may be stored
+     */
+    public boolean isStorable(HttpServletRequest request, Response response)
+    {
+        if (!HttpMethod.GET.is(request.getMethod()))
+            return false;
+        int status = response.getStatus();
+        if (status < HttpStatus.OK_200 || status == HttpStatus.PARTIAL_CONTENT_206 || status == HttpStatus.NOT_MODIFIED_304)
+            return false;
+
+        HttpFields headers = response.getHeaders();
+        Map<String, String> directives = cacheControl(headers);
+        if (directives.containsKey("no-store") || directives.containsKey("private"))
+            return false;
+        // Responses with cookies are specific to a user.
+        if (headers.contains(HttpHeader.SET_COOKIE))
+            return false;
+        if (request.getHeader(HttpHeader.AUTHORIZATION.asString()) != null &&
+            !directives.containsKey("public") && !directives.containsKey("s-maxage") && !directives.containsKey("must-revalidate"))
+            return false;
+        for (String vary : headers.getCSV(HttpHeader.VARY, false))
+        {
+            if ("*".equals(vary))
+                return false;
+        }
+        long contentLength = headers.getLongField(HttpHeader.CONTENT_LENGTH);
+        if (contentLength > maxEntrySize)
+            return false;
+
+        boolean explicit = directives.containsKey("s-maxage") ||
+            directives.containsKey("max-age") ||
+            headers.contains(HttpHeader.EXPIRES) ||
+            directives.containsKey("public");
+        if (explicit)
+            return true;
+        if (!HEURISTIC_STATUSES.contains(status))
+            return false;
+        // Without explicit freshness, the response must be heuristically fresh or revalidatable.
+        return headers.contains(HttpHeader.LAST_MODIFIED) || headers.contains(HttpHeader.ETAG);
+    }
+
+    /**
+     * <p>Stores the given response, replacing the stored response for the same request, if any.</p>
+     *
+     * @param key the cache key
+     * @param request the client request
+     * @param requestTime the time the request was sent to the server, in milliseconds since the epoch
+     * @param response the server response
+     * @param content the response content
+     * @return the stored response
+     */
+    public Entry store(String key, HttpServletRequest request, long requestTime, Response response, ByteBuffer content)
+    {
+        HttpFields.Mutable headers = HttpFields.build(response.getHeaders().size());
+        for (HttpField field : response.getHeaders())
+        {
+            if (!AbstractProxyServlet.HOP_HEADERS.contains(field.getLowerCaseName()))
+                headers.add(field);
+        }
+        Entry entry = new Entry(key, response.getStatus(), headers.asImmutable(), varyValues(response.getHeaders(), request), content);
+        entry.update(requestTime, System.currentTimeMillis());
+
+        List<Entry> spills;
+        List<Entry> removed = new ArrayList<>();
+        try (AutoLock l = lock.lock())
+        {
+            List<Entry> variants = entries.computeIfAbsent(key, k -> new ArrayList<>());
+            for (Iterator<Entry> iterator = variants.iterator(); iterator.hasNext(); )
+            {
+                Entry variant = iterator.next();
+                if (variant.vary.equals(entry.vary))
+                {
+                    iterator.remove();
+                    unlink(variant);
+                    removed.add(variant);
+                }
+            }
+            variants.add(entry);
+            lru.put(entry, entry);
+            memorySize += entry.size;
+            spills = evict(removed);
+        }
+        removed.forEach(Entry::delete);
+        spills.forEach(this::spill);
+
+        if (LOG.isDebugEnabled())
+            LOG.debug("Stored {}", entry);
+        return entry;
+    }
+
+    /**
+     * <p>Updates the given stored response with the headers of a {@code 304} response.</p>
+     *
+     * @param entry the stored response
+     * @param requestTime the time the conditional request was sent to the server, in milliseconds since the epoch
+     * @param response the {@code 304} server response
+     */
+    public void freshen(Entry entry, long requestTime, Response response)
+    {
+        HttpFields.Mutable headers = HttpFields.build(entry.headers);
+        for (HttpField field : response.getHeaders())
+        {
+            HttpHeader header = field.getHeader();
+            if (header != null && NOT_FRESHENED_HEADERS.contains(header))
+                continue;
+            if (AbstractProxyServlet.HOP_HEADERS.contains(field.getLowerCaseName()))
+                continue;
+            headers.remove(field.getName());
+        }
+        for (HttpField field : response.getHeaders())
+        {
+            HttpHeader header = field.getHeader();
+            if (header != null && NOT_FRESHENED_HEADERS.contains(header))
+                continue;
+            if (AbstractProxyServlet.HOP_HEADERS.contains(field.getLowerCaseName()))
+                continue;
+            headers.add(field);
+        }
+        try (AutoLock l = lock.lock())
+        {
+            entry.headers = headers.asImmutable();
+            entry.update(requestTime, System.currentTimeMillis());
+        }
+        if (LOG.isDebugEnabled())
+            LOG.debug("Freshened {}", entry);
+    }
+
+    /**
+     * <p>Removes all the stored responses for the given key.</p>
+     *
+     * @param key the cache key
+     */
+    public void invalidate(String key)
+    {
+        List<Entry> variants;
+        try (AutoLock l = lock.lock())
+        {
+            variants = entries.remove(key);
+            if (variants == null)
+                return;
+            variants.forEach(this::unlink);
+        }
+        variants.forEach(Entry::delete);
+        if (LOG.isDebugEnabled())
+            LOG.debug("Invalidated {}", key);
+    }
+
+    /**
+     * <p>Coalesces the given request with a concurrent request for the same key.</p>
+     * <p>If there is no concurrent request for the given key, the given request becomes
+     * the one sent to the server and this method returns {@code false};
+     * {@link #complete(String)} must then be called when its response is complete.
+     * Otherwise, the given request is suspended and this method returns {@code true};
+     * the request is dispatched again when the concurrent request is complete.</p>
+     *
+     * @param key the cache key
+     * @param request the client request
+     * @return whether the given request has been suspended
+     */
+    public boolean coalesce(String key, HttpServletRequest request)
+    {
+        boolean[] suspended = new boolean[1];
+        inflight.compute(key, (k, waiters) ->
+        {
+            if (waiters == null)
+                return new ArrayList<>();
+            AsyncContext asyncContext = request.startAsync();
+            asyncContext.setTimeout(0);
+            waiters.add(asyncContext);
+            suspended[0] = true;
+            return waiters;
+        });
+        if (suspended[0])
+            coalesced.increment();
+        return suspended[0];
+    }
+
+    /**
+     * <p>Resumes the requests coalesced with the request for the given key.</p>
+     *
+     * @param key the cache key
+     * @see #coalesce(String, HttpServletRequest)
+     */
+    public void complete(String key)
+    {
+        List<AsyncContext> waiters = inflight.remove(key);
+        if (waiters == null)
+            return;
+        if (LOG.isDebugEnabled())
+            LOG.debug("Resuming {} requests for {}", waiters.size(), key);
+        waiters.forEach(AsyncContext::dispatch);
+    }
+
+    void onHit(Entry entry)
+    {
+        hits.increment();
+        bytesSaved.add(entry.getContentLength());
+    }
+
+    void onMiss()
+    {
+        misses.increment();
+    }
+
+    void onRevalidation()
+    {
+        revalidations.increment();
+    }
+
+    private void unlink(Entry entry)
+    {
+        if (lru.remove(entry) == null)
+            return;
+        if (entry.file == null && !entry.spilling)
+            memorySize -= entry.size;
+        else
+            diskSize -= entry.size;
+    }
+
+    private List<Entry> evict(List<Entry> removed)
+    {
+        List<Entry> spills = Collections.emptyList();
+        if (memorySize > maxMemorySize)
+        {
+            for (Iterator<Entry> iterator = lru.keySet().iterator(); memorySize > maxMemorySize && iterator.hasNext(); )
+            {
+                Entry entry = iterator.next();
+                if (entry.file != null || entry.spilling)
+                    continue;
+                memorySize -= entry.size;
+                if (directory != null && entry.size <= maxDiskSize)
+                {
+                    // Account the entry on disk before it is actually
+                    // spilled, to avoid spilling it more than once.
+                    entry.spilling = true;
+                    diskSize += entry.size;
+                    if (spills.isEmpty())
+                        spills = new ArrayList<>();
+                    spills.add(entry);
+                }
+                else
+                {
+                    iterator.remove();
+                    remove(entry);
+                    removed.add(entry);
+                }
+            }
+        }
+        if (diskSize > maxDiskSize)
+        {
+            for (Iterator<Entry> iterator = lru.keySet().iterator(); diskSize > maxDiskSize && iterator.hasNext(); )
+            {
+                Entry entry = iterator.next();
+                if (entry.file == null && !entry.spilling)
+                    continue;
+                diskSize -= entry.size;
+                iterator.remove();
+                remove(entry);
+                if (entry.spilling)
+                    spills.remove(entry);
+                else
+                    removed.add(entry);
+            }
+        }
+        return spills;
+    }
+
+    private void remove(Entry entry)
+    {
+        List<Entry> variants = entries.get(entry.key);
+        if (variants != null)
+        {
+            variants.remove(entry);
+            if (variants.isEmpty())
+                entries.remove(entry.key);
+        }
+    }
+
+    private void spill(Entry entry)
+    {
+        Path file = null;
+        try
+        {
+            file = Files.createTempFile(directory, "proxy-", ".cache");
+            ByteBuffer content = entry.getContent();
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE))
+            {
+                while (content.hasRemaining())
+                {
+                    channel.write(content);
+                }
+                ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, entry.size);
+                try (AutoLock l = lock.lock())
+                {
+                    entry.spilling = false;
+                    if (lru.containsKey(entry))
+                    {
+                        entry.content = mapped;
+                        entry.file = file;
+                        file = null;
+                    }
+                }
+            }
+            if (LOG.isDebugEnabled())
+                LOG.debug("Spilled {}", entry);
+        }
+        catch (IOException x)
+        {
+            LOG.warn("Could not spill {} to {}", entry, directory, x);
+            try (AutoLock l = lock.lock())
+            {
+                entry.spilling = false;
+                if (lru.remove(entry) != null)
+                {
+                    diskSize -= entry.size;
+                    remove(entry);
+                }
+            }
+        }
+        finally
+        {
+            if (file != null)
+                IO.delete(file.toFile());
+        }
+    }
+
+    private static Map<String, String> varyValues(HttpFields headers, HttpServletRequest request)
+    {
+        List<String> names = headers.getCSV(HttpHeader.VARY, false);
+        if (names.isEmpty())
+            return Collections.emptyMap();
+        Map<String, String> result = new HashMap<>();
+        for (String name : names)
+        {
+            result.put(name.toLowerCase(Locale.ENGLISH), requestValue(request, name));
+        }
+        return result;
+    }
+
+    private static String requestValue(HttpServletRequest request, String name)
+    {
+        List<String> values = Collections.list(request.getHeaders(name));
+        if (values.isEmpty())
+            return null;
+        return new QuotedCSV(true, values.toArray(new String[0])).getValues().toString();
+    }
+
+    private static Map<String, String> cacheControl(HttpServletRequest request)
+    {
+        List<String> values = Collections.list(request.getHeaders(HttpHeader.CACHE_CONTROL.asString()));
+        if (values.isEmpty())
+            return Collections.emptyMap();
+        return directives(new QuotedCSV(false, values.toArray(new String[0])).getValues());
+    }
+
+    private static Map<String, String> cacheControl(HttpFields headers)
+    {
+        return directives(headers.getCSV(HttpHeader.CACHE_CONTROL, false));
+    }
+
+    private static Map<String, String> directives(List<String> values)
+    {
+        if (values.isEmpty())
+            return Collections.emptyMap();
+        Map<String, String> result = new HashMap<>();
+        for (String value : values)
+        {
+            int equals = value.indexOf('=');
+            if (equals < 0)
+                result.put(value.trim().toLowerCase(Locale.ENGLISH), "");
+            else
+                result.put(value.substring(0, equals).trim().toLowerCase(Locale.ENGLISH), QuotedCSV.unquote(value.substring(equals + 1).trim()));
+        }
+        return result;
+    }
+
+    private static long seconds(String value)
+    {
+        if (value == null || value.isEmpty())
+            return -1;
+        try
+        {
+            return TimeUnit.SECONDS.toMillis(Long.parseLong(value));
+        }
+        catch (NumberFormatException x)
+        {
+            return -1;
+        }
+    }
+
+    private static long date(HttpFields headers, HttpHeader header)
+    {
+        String value = headers.get(header);
+        return value == null ? -1 : DateParser.parseDate(value);
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x[entries=%d,memory=%d,disk=%d,hitRatio=%.2f]",
+            getClass().getSimpleName(),
+            hashCode(),
+            getEntryCount(),
+            getMemorySize(),
+            getDiskSize(),
+            getHitRatio());
+    }
+
+    /**
+     * <p>A stored response.</p>
+     */
+    public static class Entry
+    {
+        private final String key;
+        private final int status;
+        private final Map<String, String> vary;
+        private final long size;
+        private volatile HttpFields headers;
+        private volatile ByteBuffer content;
+        private volatile long responseTime;
+        private volatile long correctedInitialAge;
+        private volatile long freshnessLifetime;
+        private volatile boolean noCache;
+        private volatile boolean mustRevalidate;
+        private volatile Path file;
+        private boolean spilling;
+
+        private Entry(String key, int status, HttpFields headers, Map<String, String> vary, ByteBuffer content)
+        {
+            this.key = key;
+            this.status = status;
+            this.headers = headers;
+            this.vary = vary;
+            this.content = content.asReadOnlyBuffer();
+            this.size = content.remaining();
+        }
+
+        public int getStatus()
+        {
+            return status;
+        }
+
+        public HttpFields getHeaders()
+        {
+            return headers;
+        }
+
+        /**
+         * @return a view of the content of the stored response
+         */
+        public ByteBuffer getContent()
+        {
+            return content.slice();
+        }
+
+        public long getContentLength()
+        {
+            return size;
+        }
+
+        /**
+         * @param now the current time in milliseconds since the epoch
+         * @return the age of the stored response in milliseconds, see RFC 9111 section 4.2.3
+         */
+        public long getAge(long now)
+        {
+            return correctedInitialAge + Math.max(0, now - responseTime);
+        }
+
+        /**
+         * @return whether the stored response can be revalidated with a conditional request
+         */
+        public boolean isRevalidatable()
+        {
+            return headers.contains(HttpHeader.ETAG) || headers.contains(HttpHeader.LAST_MODIFIED);
+        }
+
+        private boolean matches(HttpServletRequest request)
+        {
+            for (Map.Entry<String, String> entry : vary.entrySet())
+            {
+                if (!Objects.equals(entry.getValue(), requestValue(request, entry.getKey())))
+                    return false;
+            }
+            return true;
+        }
+
+        private void update(long requestTime, long responseTime)
+        {
+            HttpFields headers = this.headers;
+            long date = date(headers, HttpHeader.DATE);
+            long ageValue = seconds(headers.get(HttpHeader.AGE));
+            long apparentAge = date < 0 ? 0 : Math.max(0, responseTime - date);
+            long correctedAgeValue = Math.max(0, ageValue) + Math.max(0, responseTime - requestTime);
+            this.correctedInitialAge = Math.max(apparentAge, correctedAgeValue);
+            this.responseTime = responseTime;
+
+            Map<String, String> directives = cacheControl(headers);
+            this.noCache = directives.containsKey("no-cache");
+            this.mustRevalidate = directives.containsKey("must-revalidate") || directives.containsKey("proxy-revalidate") || directives.containsKey("s-maxage");
+
+            long lifetime = seconds(directives.get("s-maxage"));
+            if (lifetime < 0)
+                lifetime = seconds(directives.get("max-age"));
+            if (lifetime < 0 && headers.contains(HttpHeader.EXPIRES))
+            {
+                long expires = date(headers, HttpHeader.EXPIRES);
+                // Invalid Expires values, such as 0, mean already expired.
+                lifetime = expires < 0 ? 0 : Math.max(0, expires - (date < 0 ? responseTime : date));
+            }
+            if (lifetime < 0)
+            {
+                // Heuristic freshness, see RFC 9111 section 4.2.2.
+                long lastModified = date(headers, HttpHeader.LAST_MODIFIED);
+                lifetime = lastModified < 0 ? 0 : Math.max(0, ((date < 0 ? responseTime : date) - lastModified) / 10);
+            }
+            this.freshnessLifetime = lifetime;
+        }
+
+        private void delete()
+        {
+            Path file = this.file;
+            if (file != null)
+                IO.delete(file.toFile());
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%s@%x[%s,status=%d,vary=%s,length=%d,lifetime=%d,file=%s]",
+                getClass().getSimpleName(),
+                hashCode(),
+                key,
+                status,
+                vary,
+                size,
+                freshnessLifetime,
+                file);
+        }
+    }
+}
@@ -0,0 +1,449 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.proxy;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import javax.servlet.AsyncContext;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.api.Result;
+import org.eclipse.jetty.client.util.AsyncRequestContent;
+import org.eclipse.jetty.http.HttpField;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpHeaderValue;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.server.HttpOutput;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.HttpCookieStore;
+import org.eclipse.jetty.util.IteratingCallback;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>A {@link org.eclipse.jetty.server.Handler} that proxies requests to an upstream server
+ * using {@link HttpClient}, without the servlet layer used by {@link AsyncProxyServlet}.</p>
+ * <p>The response content buffers received by {@link HttpClient} are written as they are
+ * to the {@link HttpOutput} of the client response with {@link HttpOutput#write(ByteBuffer, boolean, Callback)},
+ * so that they are neither copied to a {@code byte[]} nor aggregated.
+ * The {@link HttpClient} content callback is completed only when the buffer has been written
+ * to the client, and that demands the next content buffer, so that a slow client applies
+ * backpressure to the upstream server.</p>
+ * <p>Request content is read asynchronously from the client request with a {@link ReadListener}
+ * and forwarded to the upstream server as it arrives.</p>
+ * <p>The {@code Expect: 100-continue} header of the client request is not forwarded;
+ * the {@code 100 Continue} response is sent to the client when the request content is read.</p>
+ *
+ * @see Reverse
+ */
+public abstract class ProxyHandler extends AbstractHandler
+{
+    private static final Logger LOG = LoggerFactory.getLogger(ProxyHandler.class);
+
+    private HttpClient httpClient;
+    private boolean ownHttpClient;
+    private String viaHost = ProxyHeaders.viaHost();
+    private long timeout = 60000;
+
+    public HttpClient getHttpClient()
+    {
+        return httpClient;
+    }
+
+    /**
+     * <p>Sets the {@link HttpClient} used to proxy requests.</p>
+     * <p>If not set, an {@link HttpClient} that does not follow redirects,
+     * does not store cookies and does not decode content is created.</p>
+     *
+     * @param httpClient the {@link HttpClient} used to proxy requests
+     */
+    public void setHttpClient(HttpClient httpClient)
+    {
+        updateBean(this.httpClient, httpClient);
+        this.httpClient = httpClient;
+    }
+
+    /**
+     * @return the name to use in the Via header
+     */
+    public String getViaHost()
+    {
+        return viaHost;
+    }
+
+    public void setViaHost(String viaHost)
+    {
+        this.viaHost = viaHost;
+    }
+
+    /**
+     * @return the total timeout, in milliseconds, of the requests to the upstream server
+     */
+    public long getTimeout()
+    {
+        return timeout;
+    }
+
+    public void setTimeout(long timeout)
+    {
+        this.timeout = timeout;
+    }
+
+    @Override
+    protected void doStart() throws Exception
+    {
+        if (httpClient == null)
+        {
+            HttpClient client = newHttpClient();
+            // Redirects must be proxied as is, not followed.
+            client.setFollowRedirects(false);
+            // Must not store cookies, otherwise cookies of different clients will mix.
+            client.setCookieStore(new HttpCookieStore.Empty());
+            if (client.getExecutor() == null && getServer() != null)
+                client.setExecutor(getServer().getThreadPool());
+            setHttpClient(client);
+            ownHttpClient = true;
+        }
+
+        super.doStart();
+
+        if (ownHttpClient)
+        {
+            // Content must not be decoded, otherwise the client gets confused.
+            httpClient.getContentDecoderFactories().clear();
+            // Pass traffic to the client, only intercept what's necessary.
+            httpClient.getProtocolHandlers().clear();
+        }
+    }
+
+    @Override
+    protected void doStop() throws Exception
+    {
+        super.doStop();
+        if (ownHttpClient)
+        {
+            setHttpClient(null);
+            ownHttpClient = false;
+        }
+    }
+
+    protected HttpClient newHttpClient()
+    {
+        return new HttpClient();
+    }
+
+    /**
+     * <p>Returns the URI of the upstream server the given client request is proxied to.</p>
+     *
+     * @param clientRequest the client request
+     * @return the URI to proxy the request to, or null if the request must not be proxied
+     */
+    protected abstract String rewriteTarget(HttpServletRequest clientRequest);
+
+    @Override
+    public void handle(String target, Request jettyRequest, HttpServletRequest request, HttpServletResponse response) throws IOException
+    {
+        String rewrittenTarget = rewriteTarget(request);
+        if (rewrittenTarget == null)
+            return;
+
+        jettyRequest.setHandled(true);
+
+        if (LOG.isDebugEnabled())
+            LOG.debug("{} rewrote {} to {}", getRequestId(request), request.getRequestURI(), rewrittenTarget);
+
+        org.eclipse.jetty.client.api.Request proxyRequest = httpClient.newRequest(rewrittenTarget)
+            .method(request.getMethod())
+            .timeout(getTimeout(), TimeUnit.MILLISECONDS);
+
+        copyRequestHeaders(request, proxyRequest);
+        addProxyHeaders(request, proxyRequest);
+
+        AsyncContext asyncContext = request.startAsync();
+        // We do not want to use the servlet async timeout, but the proxy request timeout.
+        asyncContext.setTimeout(0);
+
+        if (hasContent(request))
+        {
+            AsyncRequestContent content = new AsyncRequestContent();
+            proxyRequest.body(content);
+            request.getInputStream().setReadListener(new ContentReader(request, proxyRequest, content));
+        }
+
+        if (LOG.isDebugEnabled())
+            LOG.debug("{} proxying to upstream:{}{}{}", getRequestId(request), System.lineSeparator(), proxyRequest, proxyRequest.getHeaders());
+
+        proxyRequest.send(new ProxyResponseListener(jettyRequest, response));
+    }
+
+    protected boolean hasContent(HttpServletRequest clientRequest)
+    {
+        return clientRequest.getContentLength() > 0 ||
+            clientRequest.getContentType() != null ||
+            clientRequest.getHeader(HttpHeader.TRANSFER_ENCODING.asString()) != null;
+    }
+
+    protected void copyRequestHeaders(HttpServletRequest clientRequest, org.eclipse.jetty.client.api.Request proxyRequest)
+    {
+        ProxyHeaders.copyRequestHeaders(clientRequest, proxyRequest, ProxyHeaders.findConnectionHeaders(clientRequest), false, null);
+        // The 100 Continue response is sent by this handler.
+        proxyRequest.headers(headers -> headers.remove(HttpHeader.EXPECT));
+    }
+
+    protected void addProxyHeaders(HttpServletRequest clientRequest, org.eclipse.jetty.client.api.Request proxyRequest)
+    {
+        ProxyHeaders.addViaHeader(clientRequest, proxyRequest, getViaHost());
+        ProxyHeaders.addXForwardedHeaders(clientRequest, proxyRequest);
+    }
+
+    protected void onServerResponseHeaders(HttpServletResponse proxyResponse, org.eclipse.jetty.client.api.Response serverResponse)
+    {
+        proxyResponse.setStatus(serverResponse.getStatus());
+        for (HttpField field : serverResponse.getHeaders())
+        {
+            String headerName = field.getName();
+            if (ProxyHeaders.HOP_HEADERS.contains(headerName.toLowerCase(Locale.ENGLISH)))
+                continue;
+            proxyResponse.addHeader(headerName, field.getValue());
+        }
+    }
+
+    protected void onProxyResponseFailure(Request clientRequest, HttpServletResponse proxyResponse, Throwable failure)
+    {
+        if (LOG.isDebugEnabled())
+            LOG.debug("{} proxying failed", getRequestId(clientRequest), failure);
+
+        AsyncContext asyncContext = clientRequest.getAsyncContext();
+        if (proxyResponse.isCommitted())
+        {
+            // The status code has already been sent, the client must detect the failure.
+            clientRequest.getHttpChannel().abort(failure);
+            asyncContext.complete();
+            return;
+        }
+
+        int status = failure instanceof TimeoutException ? HttpStatus.GATEWAY_TIMEOUT_504 : HttpStatus.BAD_GATEWAY_502;
+        try
+        {
+            proxyResponse.reset();
+            proxyResponse.setHeader(HttpHeader.CONNECTION.asString(), HttpHeaderValue.CLOSE.asString());
+            proxyResponse.sendError(status);
+        }
+        catch (Throwable x)
+        {
+            LOG.trace("IGNORED", x);
+            clientRequest.getHttpChannel().abort(failure);
+        }
+        finally
+        {
+            asyncContext.complete();
+        }
+    }
+
+    protected int getRequestId(HttpServletRequest clientRequest)
+    {
+        return System.identityHashCode(clientRequest);
+    }
+
+    /**
+     * <p>Writes the upstream response content buffers to the client response,
+     * demanding the next buffer only when the previous one has been written.</p>
+     */
+    protected class ProxyResponseListener implements org.eclipse.jetty.client.api.Response.HeadersListener, org.eclipse.jetty.client.api.Response.AsyncContentListener, org.eclipse.jetty.client.api.Response.CompleteListener
+    {
+        private final Request clientRequest;
+        private final HttpServletResponse proxyResponse;
+
+        protected ProxyResponseListener(Request clientRequest, HttpServletResponse proxyResponse)
+        {
+            this.clientRequest = clientRequest;
+            this.proxyResponse = proxyResponse;
+        }
+
+        @Override
+        public void onHeaders(org.eclipse.jetty.client.api.Response serverResponse)
+        {
+            onServerResponseHeaders(proxyResponse, serverResponse);
+        }
+
+        @Override
+        public void onContent(org.eclipse.jetty.client.api.Response serverResponse, ByteBuffer content, Callback callback)
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("{} proxying content to downstream: {} bytes", getRequestId(clientRequest), content.remaining());
+            HttpOutput output = clientRequest.getResponse().getHttpOutput();
+            output.write(content, false, new Callback.Nested(callback)
+            {
+                @Override
+                public void failed(Throwable x)
+                {
+                    super.failed(x);
+                    serverResponse.abort(x);
+                }
+            });
+        }
+
+        @Override
+        public void onComplete(Result result)
+        {
+            if (result.isFailed())
+            {
+                onProxyResponseFailure(clientRequest, proxyResponse, result.getFailure());
+                return;
+            }
+
+            if (LOG.isDebugEnabled())
+                LOG.debug("{} proxying successful", getRequestId(clientRequest));
+            AsyncContext asyncContext = clientRequest.getAsyncContext();
+            HttpOutput output = clientRequest.getResponse().getHttpOutput();
+            output.write(BufferUtil.EMPTY_BUFFER, true, Callback.from(asyncContext::complete, failure ->
+            {
+                if (LOG.isDebugEnabled())
+                    LOG.debug("{} proxying failed to complete", getRequestId(clientRequest), failure);
+                asyncContext.complete();
+            }));
+        }
+    }
+
+    /**
+     * <p>Reads the client request content and offers it to the upstream request.</p>
+     */
+    protected class ContentReader extends IteratingCallback implements ReadListener
+    {
+        private final byte[] buffer = new byte[httpClient.getRequestBufferSize()];
+        private final HttpServletRequest clientRequest;
+        private final org.eclipse.jetty.client.api.Request proxyRequest;
+        private final AsyncRequestContent content;
+
+        protected ContentReader(HttpServletRequest clientRequest, org.eclipse.jetty.client.api.Request proxyRequest, AsyncRequestContent content)
+        {
+            this.clientRequest = clientRequest;
+            this.proxyRequest = proxyRequest;
+            this.content = content;
+        }
+
+        @Override
+        public void onDataAvailable()
+        {
+            iterate();
+        }
+
+        @Override
+        public void onAllDataRead()
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("{} proxying content to upstream completed", getRequestId(clientRequest));
+            content.close();
+        }
+
+        @Override
+        public void onError(Throwable failure)
+        {
+            proxyRequest.abort(failure);
+        }
+
+        @Override
+        protected Action process() throws Exception
+        {
+            ServletInputStream input = clientRequest.getInputStream();
+            while (input.isReady())
+            {
+                int read = input.read(buffer);
+                if (read > 0)
+                {
+                    // The buffer is reused only after the callback is completed.
+                    content.offer(ByteBuffer.wrap(buffer, 0, read), this);
+                    return Action.SCHEDULED;
+                }
+                else if (read < 0)
+                {
+                    return Action.SUCCEEDED;
+                }
+            }
+            return Action.IDLE;
+        }
+
+        @Override
+        public void failed(Throwable x)
+        {
+            super.failed(x);
+            onError(x);
+        }
+    }
+
+    /**
+     * <p>A {@link ProxyHandler} that proxies the requests whose path
+     * starts with a prefix to the same path under a given upstream URI.</p>
+     * <p>For example, with a {@code proxyTo} of {@code http://host:8080/app}
+     * and a prefix of {@code /api}, a request for {@code /api/foo?q=1}
+     * is proxied to {@code http://host:8080/app/foo?q=1}.</p>
+     */
+    public static class Reverse extends ProxyHandler
+    {
+        private final String proxyTo;
+        private final String prefix;
+
+        public Reverse(String proxyTo)
+        {
+            this(proxyTo, "/");
+        }
+
+        public Reverse(String proxyTo, String prefix)
+        {
+            if (!prefix.startsWith("/"))
+                throw new IllegalArgumentException("Prefix must start with a '/'");
+            this.proxyTo = proxyTo.endsWith("/") ? proxyTo.substring(0, proxyTo.length() - 1) : proxyTo;
+            this.prefix = prefix.endsWith("/") ? prefix.substring(0, prefix.length() - 1) : prefix;
+        }
+
+        public String getProxyTo()
+        {
+            return proxyTo;
+        }
+
+        public String getPrefix()
+        {
+            return prefix.isEmpty() ? "/" : prefix;
+        }
+
+        @Override
+        protected String rewriteTarget(HttpServletRequest clientRequest)
+        {
+            String path = clientRequest.getRequestURI();
+            if (!path.startsWith(prefix))
+                return null;
+            String rest = path.substring(prefix.length());
+            if (!rest.isEmpty() && !rest.startsWith("/"))
+                return null;
+
+            StringBuilder uri = new StringBuilder(proxyTo);
+            uri.append(rest.isEmpty() ? "/" : rest);
+            String query = clientRequest.getQueryString();
+            if (query != null)
+                uri.append("?").append(query);
+            return URI.create(uri.toString()).normalize().toString();
+        }
+    }
+}
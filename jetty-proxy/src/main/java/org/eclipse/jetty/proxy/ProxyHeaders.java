@@ -0,0 +1,182 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.proxy;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.servlet.http.HttpServletRequest;
+
+import org.eclipse.jetty.client.api.Request;
+import org.eclipse.jetty.http.HttpField;
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.util.StringUtil;
+
+/**
+ * <p>Request header processing shared by {@link AbstractProxyServlet} and {@link ProxyHandler}.</p>
+ */
+class ProxyHeaders
+{
+    static final Set<String> HOP_HEADERS = Set.of(
+        "connection",
+        "keep-alive",
+        "proxy-authorization",
+        "proxy-authenticate",
+        "proxy-connection",
+        "transfer-encoding",
+        "te",
+        "trailer",
+        "upgrade"
+    );
+
+    /**
+     * @return the local host name, to use in the {@code Via} header
+     */
+    static String viaHost()
+    {
+        try
+        {
+            return InetAddress.getLocalHost().getHostName();
+        }
+        catch (UnknownHostException x)
+        {
+            return "localhost";
+        }
+    }
+
+    /**
+     * @param clientRequest the client request
+     * @return the lower case names of the headers listed by the {@code Connection} header,
+     * or an empty set if there is no {@code Connection} header
+     */
+    static Set<String> findConnectionHeaders(HttpServletRequest clientRequest)
+    {
+        // Any header listed by the Connection header must be removed:
+        // http://tools.ietf.org/html/rfc7230#section-6.1.
+        Set<String> hopHeaders = new HashSet<>();
+        Enumeration<String> connectionHeaders = clientRequest.getHeaders(HttpHeader.CONNECTION.asString());
+        while (connectionHeaders.hasMoreElements())
+        {
+            String value = connectionHeaders.nextElement();
+            for (String name : value.split(","))
+            {
+                hopHeaders.add(name.trim().toLowerCase(Locale.ENGLISH));
+            }
+        }
+        return hopHeaders;
+    }
+
+    /**
+     * <p>Replaces the headers of the proxy request with the end-to-end headers of the client request.</p>
+     *
+     * @param clientRequest the client request
+     * @param proxyRequest the request being proxied
+     * @param connectionHeaders the lower case names of the headers to remove, or null
+     * @param preserveHost whether to copy the {@code Host} header
+     * @param hostHeader the value of the {@code Host} header to force, or null
+     */
+    static void copyRequestHeaders(HttpServletRequest clientRequest, Request proxyRequest, Set<String> connectionHeaders, boolean preserveHost, String hostHeader)
+    {
+        HttpFields.Mutable newHeaders = HttpFields.build();
+        for (Enumeration<String> headerNames = clientRequest.getHeaderNames(); headerNames.hasMoreElements(); )
+        {
+            String headerName = headerNames.nextElement();
+            String lowerHeaderName = headerName.toLowerCase(Locale.ENGLISH);
+
+            if (HttpHeader.HOST.is(headerName) && !preserveHost)
+                continue;
+
+            // Remove hop-by-hop headers.
+            if (HOP_HEADERS.contains(lowerHeaderName))
+                continue;
+            if (connectionHeaders != null && connectionHeaders.contains(lowerHeaderName))
+                continue;
+
+            for (Enumeration<String> headerValues = clientRequest.getHeaders(headerName); headerValues.hasMoreElements(); )
+            {
+                String headerValue = headerValues.nextElement();
+                if (headerValue != null)
+                    newHeaders.add(headerName, headerValue);
+            }
+        }
+
+        // Force the Host header if configured
+        if (hostHeader != null)
+            newHeaders.add(HttpHeader.HOST, hostHeader);
+
+        proxyRequest.headers(headers -> headers.clear().add(newHeaders));
+    }
+
+    /**
+     * <p>Adds the HTTP {@code Via} header to the proxied request, appending to the existing ones.</p>
+     *
+     * @param clientRequest the client request
+     * @param proxyRequest the request being proxied
+     * @param viaHost the name of the proxy
+     * @see AbstractProxyServlet#addViaHeader(HttpServletRequest, Request)
+     */
+    static void addViaHeader(HttpServletRequest clientRequest, Request proxyRequest, String viaHost)
+    {
+        String protocol = clientRequest.getProtocol();
+        String[] parts = protocol.split("/", 2);
+        // Retain only the version if the protocol is HTTP.
+        String protocolPart = parts.length == 2 && "HTTP".equalsIgnoreCase(parts[0]) ? parts[1] : protocol;
+        String viaHeaderValue = protocolPart + " " + viaHost;
+        proxyRequest.headers(headers -> headers.computeField(HttpHeader.VIA, (header, viaFields) ->
+        {
+            if (viaFields == null || viaFields.isEmpty())
+                return new HttpField(header, viaHeaderValue);
+            String separator = ", ";
+            String newValue = viaFields.stream()
+                .flatMap(field -> Stream.of(field.getValues()))
+                .filter(value -> !StringUtil.isBlank(value))
+                .collect(Collectors.joining(separator));
+            if (newValue.length() > 0)
+                newValue += separator;
+            newValue += viaHeaderValue;
+            return new HttpField(HttpHeader.VIA, newValue);
+        }));
+    }
+
+    /**
+     * <p>Adds the {@code X-Forwarded-*} headers to the proxied request.</p>
+     *
+     * @param clientRequest the client request
+     * @param proxyRequest the request being proxied
+     */
+    static void addXForwardedHeaders(HttpServletRequest clientRequest, Request proxyRequest)
+    {
+        String hostHeader = clientRequest.getHeader(HttpHeader.HOST.asString());
+        String localName = clientRequest.getLocalName();
+        proxyRequest.headers(headers ->
+        {
+            headers.add(HttpHeader.X_FORWARDED_FOR, clientRequest.getRemoteAddr());
+            headers.add(HttpHeader.X_FORWARDED_PROTO, clientRequest.getScheme());
+            if (hostHeader != null)
+                headers.add(HttpHeader.X_FORWARDED_HOST, hostHeader);
+            if (localName != null)
+                headers.add(HttpHeader.X_FORWARDED_SERVER, localName);
+        });
+    }
+
+    private ProxyHeaders()
+    {
+    }
+}
@@ -16,24 +16,43 @@ package org.eclipse.jetty.proxy;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.List;
 import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 import javax.servlet.AsyncContext;
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.eclipse.jetty.client.HttpResponse;
 import org.eclipse.jetty.client.api.Request;
 import org.eclipse.jetty.client.api.Response;
 import org.eclipse.jetty.client.api.Result;
 import org.eclipse.jetty.client.util.AsyncRequestContent;
 import org.eclipse.jetty.client.util.InputStreamRequestContent;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpMethod;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.io.ByteBufferAccumulator;
+import org.eclipse.jetty.server.HttpOutput;
+import org.eclipse.jetty.util.BufferUtil;
 import org.eclipse.jetty.util.Callback;
 
 /**
  * <p>Servlet 3.0 asynchronous proxy servlet.</p>
  * <p>The request processing is asynchronous, but the I/O is blocking.</p>
+ * <p>Proxied responses may be stored in a {@link ProxyCache}, configured
+ * with the following init parameters:</p>
+ * <ul>
+ * <li>cache - whether the proxied responses are cached, defaults to false</li>
+ * <li>cacheMaxMemorySize - the max number of bytes of the responses stored in memory</li>
+ * <li>cacheMaxEntrySize - the max content length of a stored response</li>
+ * <li>cacheDirectory - the directory where responses are spilled when the memory is full</li>
+ * <li>cacheMaxDiskSize - the max number of bytes of the responses spilled to disk</li>
+ * </ul>
  *
  * @see AsyncProxyServlet
  * @see AsyncMiddleManServlet
@@ -42,6 +61,79 @@ import org.eclipse.jetty.util.Callback;
 public class ProxyServlet extends AbstractProxyServlet
 {
     private static final String CONTINUE_ACTION_ATTRIBUTE = ProxyServlet.class.getName() + ".continueAction";
+    private static final String CACHE_EXCHANGE_ATTRIBUTE = ProxyServlet.class.getName() + ".cacheExchange";
+    private static final String CACHE_COALESCED_ATTRIBUTE = ProxyServlet.class.getName() + ".cacheCoalesced";
+
+    private ProxyCache _cache;
+
+    @Override
+    public void init() throws ServletException
+    {
+        super.init();
+        _cache = createProxyCache();
+        // Put the ProxyCache in the context to leverage ContextHandler.MANAGED_ATTRIBUTES
+        if (_cache != null)
+            getServletContext().setAttribute(getServletConfig().getServletName() + ".ProxyCache", _cache);
+    }
+
+    @Override
+    public void destroy()
+    {
+        try
+        {
+            if (_cache != null)
+                _cache.stop();
+        }
+        catch (Exception x)
+        {
+            if (_log.isDebugEnabled())
+                _log.debug("Failed to stop cache", x);
+        }
+        super.destroy();
+    }
+
+    /**
+     * <p>Creates the {@link ProxyCache} from the servlet init parameters,
+     * if the {@code cache} init parameter is true.</p>
+     *
+     * @return a started {@link ProxyCache}, or null if responses are not cached
+     * @throws ServletException if the {@link ProxyCache} cannot be created
+     */
+    protected ProxyCache createProxyCache() throws ServletException
+    {
+        ServletConfig config = getServletConfig();
+        if (!Boolean.parseBoolean(config.getInitParameter("cache")))
+            return null;
+
+        ProxyCache cache = new ProxyCache();
+        String value = config.getInitParameter("cacheMaxMemorySize");
+        if (value != null)
+            cache.setMaxMemorySize(Long.parseLong(value));
+        value = config.getInitParameter("cacheMaxEntrySize");
+        if (value != null)
+            cache.setMaxEntrySize(Integer.parseInt(value));
+        value = config.getInitParameter("cacheMaxDiskSize");
+        if (value != null)
+            cache.setMaxDiskSize(Long.parseLong(value));
+        value = config.getInitParameter("cacheDirectory");
+        if (value != null)
+            cache.setDirectory(Path.of(value));
+
+        try
+        {
+            cache.start();
+            return cache;
+        }
+        catch (Exception x)
+        {
+            throw new ServletException(x);
+        }
+    }
+
+    protected ProxyCache getProxyCache()
+    {
+        return _cache;
+    }
 
     @Override
     protected void service(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException
@@ -65,12 +157,19 @@ public class ProxyServlet extends AbstractProxyServlet
             return;
         }
 
+        if (_cache != null && serviceFromCache(request, response, rewrittenTarget))
+            return;
+
         Request proxyRequest = newProxyRequest(request, rewrittenTarget);
 
         copyRequestHeaders(request, proxyRequest);
 
         addProxyHeaders(request, proxyRequest);
 
+        CacheExchange cacheExchange = (CacheExchange)request.getAttribute(CACHE_EXCHANGE_ATTRIBUTE);
+        if (cacheExchange != null)
+            cacheExchange.prepare(proxyRequest);
+
         AsyncContext asyncContext = request.startAsync();
         // We do not timeout the continuation, but the proxy request
         asyncContext.setTimeout(0);
@@ -106,6 +205,111 @@ public class ProxyServlet extends AbstractProxyServlet
         sendProxyRequest(request, response, proxyRequest);
     }
 
+    /**
+     * <p>Serves the given request from the cache, if possible.</p>
+     * <p>Stored responses are keyed by the client-to-proxy request URI,
+     * so that requests for different hosts or paths that are rewritten
+     * to the same target do not share stored responses.</p>
+     *
+     * @param request the client-to-proxy request
+     * @param response the proxy-to-client response
+     * @param target the rewritten target
+     * @return whether the request has been served, or suspended until a concurrent request completes
+     * @throws IOException if the stored response cannot be written
+     */
+    private boolean serviceFromCache(HttpServletRequest request, HttpServletResponse response, String target) throws IOException
+    {
+        String method = request.getMethod();
+        String key = cacheKey(request);
+        if (!_cache.isCacheable(request))
+        {
+            boolean safe = HttpMethod.GET.is(method) || HttpMethod.HEAD.is(method) || HttpMethod.OPTIONS.is(method) || HttpMethod.TRACE.is(method);
+            if (!safe)
+                request.setAttribute(CACHE_EXCHANGE_ATTRIBUTE, new CacheExchange(key, null, false, true));
+            return false;
+        }
+
+        ProxyCache.Entry entry = _cache.lookup(key, request);
+        if (entry != null && _cache.isFresh(entry, request, System.currentTimeMillis()))
+        {
+            if (_log.isDebugEnabled())
+                _log.debug("{} serving from cache {}", getRequestId(request), entry);
+            _cache.onHit(entry);
+            // The proxy request is not sent, but it is the request of the stored response.
+            Request proxyRequest = newProxyRequest(request, target);
+            copyRequestHeaders(request, proxyRequest);
+            addProxyHeaders(request, proxyRequest);
+            Response cachedResponse = writeCachedResponse(request, response, proxyRequest, entry);
+            request.startAsync();
+            onProxyResponseSuccess(request, response, cachedResponse);
+            return true;
+        }
+
+        if (_cache.isOnlyIfCached(request))
+        {
+            _cache.onMiss();
+            sendProxyResponseError(request, response, HttpStatus.GATEWAY_TIMEOUT_504);
+            return true;
+        }
+
+        // Concurrent misses for the same target wait for the first to complete,
+        // then are dispatched again to be served from the cache, if possible.
+        boolean lead = false;
+        if (HttpMethod.GET.is(method) && request.getAttribute(CACHE_COALESCED_ATTRIBUTE) == null)
+        {
+            request.setAttribute(CACHE_COALESCED_ATTRIBUTE, Boolean.TRUE);
+            if (_cache.coalesce(key, request))
+            {
+                if (_log.isDebugEnabled())
+                    _log.debug("{} waiting for concurrent request to {}", getRequestId(request), key);
+                return true;
+            }
+            lead = true;
+        }
+
+        if (entry != null && entry.isRevalidatable())
+        {
+            _cache.onRevalidation();
+        }
+        else
+        {
+            _cache.onMiss();
+            entry = null;
+        }
+        request.setAttribute(CACHE_EXCHANGE_ATTRIBUTE, new CacheExchange(key, entry, lead, false));
+        return false;
+    }
+
+    private static String cacheKey(HttpServletRequest request)
+    {
+        StringBuffer uri = request.getRequestURL();
+        String query = request.getQueryString();
+        if (query != null)
+            uri.append('?').append(query);
+        return uri.toString();
+    }
+
+    private Response writeCachedResponse(HttpServletRequest request, HttpServletResponse response, Request proxyRequest, ProxyCache.Entry entry) throws IOException
+    {
+        long age = TimeUnit.MILLISECONDS.toSeconds(entry.getAge(System.currentTimeMillis()));
+        HttpResponse cachedResponse = new HttpResponse(proxyRequest, List.of())
+            .status(entry.getStatus())
+            .reason(HttpStatus.getMessage(entry.getStatus()))
+            .headers(headers -> headers.add(entry.getHeaders()).putLongField(HttpHeader.AGE, age));
+        response.setStatus(entry.getStatus());
+        onServerResponseHeaders(request, response, cachedResponse);
+        if (!HttpMethod.HEAD.is(request.getMethod()))
+        {
+            ServletOutputStream output = response.getOutputStream();
+            ByteBuffer content = entry.getContent();
+            if (output instanceof HttpOutput)
+                ((HttpOutput)output).write(content);
+            else
+                output.write(BufferUtil.toArray(content));
+        }
+        return cachedResponse;
+    }
+
     /**
      * Wraps the client-to-proxy request content in a {@code Request.Content} for the proxy-to-server request.
      *
@@ -187,18 +391,42 @@ public class ProxyServlet extends AbstractProxyServlet
         @Override
         public void onBegin(Response proxyResponse)
         {
+            CacheExchange cacheExchange = (CacheExchange)request.getAttribute(CACHE_EXCHANGE_ATTRIBUTE);
+            if (cacheExchange != null && cacheExchange.entry != null && proxyResponse.getStatus() == HttpStatus.NOT_MODIFIED_304)
+            {
+                // The stored response is still valid, it is written when the 304 response is complete.
+                cacheExchange.validated = true;
+                return;
+            }
             response.setStatus(proxyResponse.getStatus());
         }
 
         @Override
         public void onHeaders(Response proxyResponse)
         {
+            CacheExchange cacheExchange = (CacheExchange)request.getAttribute(CACHE_EXCHANGE_ATTRIBUTE);
+            if (cacheExchange != null)
+            {
+                if (cacheExchange.validated)
+                    return;
+                if (!cacheExchange.invalidate && _cache.isStorable(request, proxyResponse))
+                    cacheExchange.content = new ByteBufferAccumulator();
+            }
             onServerResponseHeaders(request, response, proxyResponse);
         }
 
         @Override
         public void onContent(Response proxyResponse, ByteBuffer content, Callback callback)
         {
+            CacheExchange cacheExchange = (CacheExchange)request.getAttribute(CACHE_EXCHANGE_ATTRIBUTE);
+            if (cacheExchange != null && cacheExchange.content != null)
+            {
+                if (cacheExchange.content.getLength() + content.remaining() > _cache.getMaxEntrySize())
+                    cacheExchange.content = null;
+                else
+                    cacheExchange.content.copyBuffer(content.slice());
+            }
+
             byte[] buffer;
             int offset;
             int length = content.remaining();
@@ -228,10 +456,32 @@ public class ProxyServlet extends AbstractProxyServlet
         @Override
         public void onComplete(Result result)
         {
-            if (result.isSucceeded())
-                onProxyResponseSuccess(request, response, result.getResponse());
+            Response serverResponse = result.getResponse();
+            Throwable failure = result.getFailure();
+            CacheExchange cacheExchange = (CacheExchange)request.getAttribute(CACHE_EXCHANGE_ATTRIBUTE);
+            if (cacheExchange != null)
+            {
+                request.removeAttribute(CACHE_EXCHANGE_ATTRIBUTE);
+                try
+                {
+                    if (failure == null)
+                        serverResponse = cacheExchange.complete(request, response, serverResponse);
+                }
+                catch (Throwable x)
+                {
+                    failure = x;
+                }
+                finally
+                {
+                    if (cacheExchange.lead)
+                        _cache.complete(cacheExchange.key);
+                }
+            }
+
+            if (failure == null)
+                onProxyResponseSuccess(request, response, serverResponse);
             else
-                onProxyResponseFailure(request, response, result.getResponse(), result.getFailure());
+                onProxyResponseFailure(request, response, serverResponse, failure);
             if (_log.isDebugEnabled())
                 _log.debug("{} proxying complete", getRequestId(request));
         }
@@ -325,4 +575,62 @@ public class ProxyServlet extends AbstractProxyServlet
             onClientRequestFailure(clientRequest, proxyRequest, proxyResponse, failure);
         }
     }
+
+    private class CacheExchange
+    {
+        private final String key;
+        private final ProxyCache.Entry entry;
+        private final boolean lead;
+        private final boolean invalidate;
+        private long requestTime;
+        private boolean validated;
+        private ByteBufferAccumulator content;
+
+        private CacheExchange(String key, ProxyCache.Entry entry, boolean lead, boolean invalidate)
+        {
+            this.key = key;
+            this.entry = entry;
+            this.lead = lead;
+            this.invalidate = invalidate;
+        }
+
+        private void prepare(Request proxyRequest)
+        {
+            requestTime = System.currentTimeMillis();
+            if (entry == null)
+                return;
+            String etag = entry.getHeaders().get(HttpHeader.ETAG);
+            if (etag != null)
+                proxyRequest.headers(headers -> headers.put(HttpHeader.IF_NONE_MATCH, etag));
+            String lastModified = entry.getHeaders().get(HttpHeader.LAST_MODIFIED);
+            if (lastModified != null)
+                proxyRequest.headers(headers -> headers.put(HttpHeader.IF_MODIFIED_SINCE, lastModified));
+        }
+
+        private Response complete(HttpServletRequest request, HttpServletResponse response, Response serverResponse) throws IOException
+        {
+            if (invalidate)
+            {
+                if (serverResponse.getStatus() < HttpStatus.BAD_REQUEST_400)
+                    _cache.invalidate(key);
+                return serverResponse;
+            }
+
+            if (validated)
+            {
+                _cache.freshen(entry, requestTime, serverResponse);
+                _cache.onHit(entry);
+                if (_log.isDebugEnabled())
+                    _log.debug("{} serving from revalidated cache {}", getRequestId(request), entry);
+                return writeCachedResponse(request, response, serverResponse.getRequest(), entry);
+            }
+
+            // The revalidation of the stored response failed.
+            if (entry != null)
+                _cache.onMiss();
+            if (content != null)
+                _cache.store(key, request, requestTime, serverResponse, content.takeByteBuffer());
+            return serverResponse;
+        }
+    }
 }
@@ -17,6 +17,8 @@ import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import javax.servlet.ServletException;
@@ -26,6 +28,7 @@ import javax.servlet.http.HttpServletResponse;
 
 import org.eclipse.jetty.client.HttpClient;
 import org.eclipse.jetty.client.api.ContentResponse;
+import org.eclipse.jetty.http.HttpStatus;
 import org.eclipse.jetty.rewrite.handler.RewriteHandler;
 import org.eclipse.jetty.rewrite.handler.VirtualHostRuleContainer;
 import org.eclipse.jetty.server.Server;
@@ -41,12 +44,17 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.is;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class BalancerServletTest
 {
     private static final String CONTEXT_PATH = "/context";
     private static final String SERVLET_PATH = "/mapping";
 
+    private final Map<String, String> initParams = new HashMap<>();
     private boolean stickySessions;
     private Server server1;
     private Server server2;
@@ -71,13 +79,21 @@ public class BalancerServletTest
 
     protected void startBalancer(Class<? extends HttpServlet> servletClass) throws Exception
     {
-        server1 = createServer(new ServletHolder(servletClass), "node1");
+        startBalancer(servletClass, servletClass);
+    }
+
+    protected void startBalancer(Class<? extends HttpServlet> servletClass1, Class<? extends HttpServlet> servletClass2) throws Exception
+    {
+        server1 = createServer(new ServletHolder(servletClass1), "node1");
         server1.start();
 
-        server2 = createServer(new ServletHolder(servletClass), "node2");
+        server2 = createServer(new ServletHolder(servletClass2), "node2");
         server2.start();
 
         ServletHolder balancerServletHolder = new ServletHolder(BalancerServlet.class);
+        balancerServletHolder.setName("balancer");
+        balancerServletHolder.setInitOrder(1);
+        balancerServletHolder.setInitParameters(initParams);
         balancerServletHolder.setInitParameter("stickySessions", String.valueOf(stickySessions));
         balancerServletHolder.setInitParameter("proxyPassReverse", "true");
         balancerServletHolder.setInitParameter("balancerMember." + "node1" + ".proxyTo", "http://localhost:" + getServerPort(server1));
@@ -87,6 +103,12 @@ public class BalancerServletTest
         balancer.start();
     }
 
+    private BalancerServlet.BalancerMember getBalancerMember(String name)
+    {
+        ServletContextHandler context = (ServletContextHandler)balancer.getHandler();
+        return (BalancerServlet.BalancerMember)context.getServletContext().getAttribute("balancer.balancerMember." + name);
+    }
+
     private Server createServer(ServletHolder servletHolder, String nodeName)
     {
         Server server = new Server();
@@ -184,6 +206,106 @@ public class BalancerServletTest
         assertThat(response.getContentAsString(), containsString("pathInfo='/test/\n'"));
     }
 
+    @Test
+    public void testFailingMemberIsEjected() throws Exception
+    {
+        initParams.put("outlierDetection", "true");
+        initParams.put("outlier.consecutiveFailures", "2");
+        startBalancer(FailingServlet.class, PortServlet.class);
+
+        int failures = 0;
+        for (int i = 0; i < 10; i++)
+        {
+            ContentResponse response = getBalancedResponse("/outlier");
+            if (response.getStatus() != HttpStatus.OK_200)
+                ++failures;
+            else
+                assertEquals(String.valueOf(getServerPort(server2)), readFirstLine(response.getContent()));
+        }
+
+        // After 2 consecutive failures node1 is ejected, and all requests go to node2.
+        assertEquals(2, failures);
+        BalancerServlet.BalancerMember member1 = getBalancerMember("node1");
+        assertTrue(member1.isEjected());
+        assertEquals(1, member1.getEjections());
+        assertEquals(2, member1.getRequests());
+        assertFalse(getBalancerMember("node2").isEjected());
+    }
+
+    @Test
+    public void testEjectionIsLimitedByMaxEjectionPercent() throws Exception
+    {
+        initParams.put("outlierDetection", "true");
+        initParams.put("outlier.consecutiveFailures", "1");
+        startBalancer(FailingServlet.class);
+
+        for (int i = 0; i < 4; i++)
+        {
+            assertEquals(HttpStatus.INTERNAL_SERVER_ERROR_500, getBalancedResponse("/outlier").getStatus());
+        }
+
+        // Only one of the two members can be ejected with the default max of 50%.
+        int ejected = (getBalancerMember("node1").isEjected() ? 1 : 0) + (getBalancerMember("node2").isEjected() ? 1 : 0);
+        assertEquals(1, ejected);
+    }
+
+    @Test
+    public void testWeightedLeastRequests() throws Exception
+    {
+        initParams.put("strategy", "leastRequests");
+        initParams.put("balancerMember.node1.weight", "1");
+        initParams.put("balancerMember.node2.weight", "3");
+        startBalancer(PortServlet.class);
+
+        // Without concurrent requests, the member with the highest weight is always selected.
+        for (int i = 0; i < 5; i++)
+        {
+            byte[] responseBytes = sendRequestToBalancer("/leastRequests");
+            assertEquals(String.valueOf(getServerPort(server2)), readFirstLine(responseBytes));
+        }
+        assertEquals(0, getBalancerMember("node1").getRequests());
+        assertEquals(5, getBalancerMember("node2").getRequests());
+        assertEquals(0, getBalancerMember("node2").getOutstandingRequests());
+    }
+
+    @Test
+    public void testUnhealthyMemberIsNotSelected() throws Exception
+    {
+        initParams.put("healthCheck.path", CONTEXT_PATH + SERVLET_PATH + "/health");
+        initParams.put("healthCheck.interval", "100");
+        startBalancer(FailingServlet.class, PortServlet.class);
+
+        BalancerServlet.BalancerMember member1 = getBalancerMember("node1");
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (member1.isHealthy() && System.nanoTime() < deadline)
+        {
+            Thread.sleep(50);
+        }
+        assertFalse(member1.isHealthy());
+        assertTrue(getBalancerMember("node2").isHealthy());
+
+        for (int i = 0; i < 4; i++)
+        {
+            ContentResponse response = getBalancedResponse("/health");
+            assertEquals(HttpStatus.OK_200, response.getStatus());
+            assertEquals(String.valueOf(getServerPort(server2)), readFirstLine(response.getContent()));
+        }
+    }
+
+    @Test
+    public void testBalancerMembersAreRemovedOnDestroy() throws Exception
+    {
+        startBalancer(PortServlet.class);
+        assertNotNull(getBalancerMember("node1"));
+        assertNotNull(getBalancerMember("node2"));
+
+        ServletContextHandler context = (ServletContextHandler)balancer.getHandler();
+        context.getServletHandler().getServlet("balancer").stop();
+
+        assertNull(getBalancerMember("node1"));
+        assertNull(getBalancerMember("node2"));
+    }
+
     private String readFirstLine(byte[] responseBytes) throws IOException
     {
         BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(responseBytes)));
@@ -217,6 +339,25 @@ public class BalancerServletTest
         }
     }
 
+    public static final class PortServlet extends HttpServlet
+    {
+        @Override
+        protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException
+        {
+            resp.setContentType("text/plain");
+            resp.getWriter().print(req.getLocalPort());
+        }
+    }
+
+    public static final class FailingServlet extends HttpServlet
+    {
+        @Override
+        protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException
+        {
+            resp.sendError(HttpStatus.INTERNAL_SERVER_ERROR_500);
+        }
+    }
+
     public static final class RelocationServlet extends HttpServlet
     {
         @Override
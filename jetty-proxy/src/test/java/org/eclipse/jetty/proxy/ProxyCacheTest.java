@@ -0,0 +1,435 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.proxy;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.api.ContentResponse;
+import org.eclipse.jetty.client.api.Request;
+import org.eclipse.jetty.client.api.Response;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpMethod;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.eclipse.jetty.toolchain.test.jupiter.WorkDir;
+import org.eclipse.jetty.toolchain.test.jupiter.WorkDirExtension;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@ExtendWith(WorkDirExtension.class)
+public class ProxyCacheTest
+{
+    public WorkDir workDir;
+    private final AtomicInteger requests = new AtomicInteger();
+    private Server server;
+    private ServerConnector serverConnector;
+    private Server proxy;
+    private ServerConnector proxyConnector;
+    private ServletContextHandler proxyContext;
+    private HttpClient client;
+
+    private void start(HttpServlet servlet, Map<String, String> params) throws Exception
+    {
+        server = new Server();
+        serverConnector = new ServerConnector(server);
+        server.addConnector(serverConnector);
+        ServletContextHandler appContext = new ServletContextHandler(server, "/");
+        appContext.addServlet(new ServletHolder(servlet), "/*");
+        server.start();
+
+        proxy = new Server();
+        proxyConnector = new ServerConnector(proxy);
+        proxy.addConnector(proxyConnector);
+        proxyContext = new ServletContextHandler(proxy, "/");
+        ServletHolder proxyServletHolder = new ServletHolder("proxy", ProxyServlet.Transparent.class);
+        proxyServletHolder.setInitParameters(params);
+        proxyServletHolder.setInitParameter("proxyTo", "http://localhost:" + serverConnector.getLocalPort());
+        proxyServletHolder.setInitParameter("cache", "true");
+        proxyServletHolder.setInitOrder(1);
+        proxyContext.addServlet(proxyServletHolder, "/*");
+        proxy.start();
+
+        client = new HttpClient();
+        client.start();
+    }
+
+    @AfterEach
+    public void dispose() throws Exception
+    {
+        if (client != null)
+            client.stop();
+        if (proxy != null)
+            proxy.stop();
+        if (server != null)
+            server.stop();
+    }
+
+    private ProxyCache getProxyCache()
+    {
+        return (ProxyCache)proxyContext.getServletContext().getAttribute("proxy.ProxyCache");
+    }
+
+    private void awaitEntryCount(int count) throws InterruptedException
+    {
+        // The response is stored after the client may have received it.
+        ProxyCache cache = getProxyCache();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (cache.getEntryCount() != count && System.nanoTime() < deadline)
+        {
+            Thread.sleep(10);
+        }
+        assertEquals(count, cache.getEntryCount());
+    }
+
+    private ContentResponse get(String path, String... headers) throws Exception
+    {
+        return client.newRequest("localhost", proxyConnector.getLocalPort())
+            .path(path)
+            .headers(fields ->
+            {
+                for (int i = 0; i < headers.length; i += 2)
+                {
+                    fields.put(headers[i], headers[i + 1]);
+                }
+            })
+            .timeout(5, TimeUnit.SECONDS)
+            .send();
+    }
+
+    @Test
+    public void testFreshResponseIsServedFromCache() throws Exception
+    {
+        start(new HttpServlet()
+        {
+            @Override
+            protected void service(HttpServletRequest request, HttpServletResponse response) throws IOException
+            {
+                requests.incrementAndGet();
+                response.setHeader(HttpHeader.CACHE_CONTROL.asString(), "max-age=60");
+                response.getOutputStream().print("hello");
+            }
+        }, new HashMap<>());
+
+        ContentResponse response1 = get("/fresh");
+        assertEquals(HttpStatus.OK_200, response1.getStatus());
+        assertEquals("hello", response1.getContentAsString());
+        awaitEntryCount(1);
+
+        ContentResponse response2 = get("/fresh");
+        assertEquals(HttpStatus.OK_200, response2.getStatus());
+        assertEquals("hello", response2.getContentAsString());
+        assertNotNull(response2.getHeaders().get(HttpHeader.AGE));
+
+        assertEquals(1, requests.get());
+        ProxyCache cache = getProxyCache();
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(0.5, cache.getHitRatio());
+        assertEquals(5, cache.getBytesSaved());
+    }
+
+    @Test
+    public void testNoStoreResponseIsNotCached() throws Exception
+    {
+        start(new HttpServlet()
+        {
+            @Override
+            protected void service(HttpServletRequest request, HttpServletResponse response) throws IOException
+            {
+                requests.incrementAndGet();
+                response.setHeader(HttpHeader.CACHE_CONTROL.asString(), "max-age=60, no-store");
+                response.getOutputStream().print("hello");
+            }
+        }, new HashMap<>());
+
+        assertEquals("hello", get("/noStore").getContentAsString());
+        assertEquals("hello", get("/noStore").getContentAsString());
+
+        assertEquals(2, requests.get());
+        assertEquals(0, getProxyCache().getEntryCount());
+    }
+
+    @Test
+    public void testStaleResponseIsRevalidated() throws Exception
+    {
+        AtomicInteger notModified = new AtomicInteger();
+        start(new HttpServlet()
+        {
+            @Override
+            protected void service(HttpServletRequest request, HttpServletResponse response) throws IOException
+            {
+                requests.incrementAndGet();
+                response.setHeader(HttpHeader.CACHE_CONTROL.asString(), "max-age=0");
+                response.setHeader(HttpHeader.ETAG.asString(), "\"v1\"");
+                if ("\"v1\"".equals(request.getHeader(HttpHeader.IF_NONE_MATCH.asString())))
+                {
+                    notModified.incrementAndGet();
+                    response.setStatus(HttpStatus.NOT_MODIFIED_304);
+                    return;
+                }
+                response.getOutputStream().print("hello");
+            }
+        }, new HashMap<>());
+
+        assertEquals("hello", get("/stale").getContentAsString());
+        awaitEntryCount(1);
+        ContentResponse response = get("/stale");
+        assertEquals(HttpStatus.OK_200, response.getStatus());
+        assertEquals("hello", response.getContentAsString());
+        assertEquals("\"v1\"", response.getHeaders().get(HttpHeader.ETAG));
+
+        assertEquals(2, requests.get());
+        assertEquals(1, notModified.get());
+        ProxyCache cache = getProxyCache();
+        assertEquals(1, cache.getRevalidations());
+        assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    public void testVaryKeysResponsesByRequestHeader() throws Exception
+    {
+        start(new HttpServlet()
+        {
+            @Override
+            protected void service(HttpServletRequest request, HttpServletResponse response) throws IOException
+            {
+                requests.incrementAndGet();
+                response.setHeader(HttpHeader.CACHE_CONTROL.asString(), "max-age=60");
+                response.setHeader(HttpHeader.VARY.asString(), HttpHeader.ACCEPT_LANGUAGE.asString());
+                response.getOutputStream().print(request.getHeader(HttpHeader.ACCEPT_LANGUAGE.asString()));
+            }
+        }, new HashMap<>());
+
+        assertEquals("en", get("/vary", "Accept-Language", "en").getContentAsString());
+        awaitEntryCount(1);
+        assertEquals("fr", get("/vary", "Accept-Language", "fr").getContentAsString());
+        awaitEntryCount(2);
+        assertEquals("en", get("/vary", "Accept-Language", "en").getContentAsString());
+        assertEquals("fr", get("/vary", "Accept-Language", "fr").getContentAsString());
+
+        assertEquals(2, requests.get());
+        assertEquals(2, getProxyCache().getEntryCount());
+    }
+
+    @Test
+    public void testUnsafeRequestInvalidatesStoredResponse() throws Exception
+    {
+        start(new HttpServlet()
+        {
+            @Override
+            protected void service(HttpServletRequest request, HttpServletResponse response) throws IOException
+            {
+                requests.incrementAndGet();
+                response.setHeader(HttpHeader.CACHE_CONTROL.asString(), "max-age=60");
+                response.getOutputStream().print(request.getMethod());
+            }
+        }, new HashMap<>());
+
+        assertEquals("GET", get("/unsafe").getContentAsString());
+        awaitEntryCount(1);
+        assertEquals("GET", get("/unsafe").getContentAsString());
+        assertEquals(1, requests.get());
+
+        ContentResponse response = client.newRequest("localhost", proxyConnector.getLocalPort())
+            .method(HttpMethod.POST)
+            .path("/unsafe")
+            .timeout(5, TimeUnit.SECONDS)
+            .send();
+        assertEquals("POST", response.getContentAsString());
+        assertEquals(2, requests.get());
+        awaitEntryCount(0);
+
+        assertEquals("GET", get("/unsafe").getContentAsString());
+        assertEquals(3, requests.get());
+    }
+
+    @Test
+    public void testConcurrentMissesAreCoalesced() throws Exception
+    {
+        CountDownLatch serverLatch = new CountDownLatch(1);
+        start(new HttpServlet()
+        {
+            @Override
+            protected void service(HttpServletRequest request, HttpServletResponse response) throws IOException
+            {
+                requests.incrementAndGet();
+                try
+                {
+                    // Wait until the other requests arrived at the proxy.
+                    serverLatch.await(5, TimeUnit.SECONDS);
+                }
+                catch (InterruptedException x)
+                {
+                    throw new IOException(x);
+                }
+                response.setHeader(HttpHeader.CACHE_CONTROL.asString(), "max-age=60");
+                response.getOutputStream().print("hello");
+            }
+        }, new HashMap<>());
+
+        int count = 5;
+        CountDownLatch clientLatch = new CountDownLatch(count);
+        for (int i = 0; i < count; ++i)
+        {
+            client.newRequest("localhost", proxyConnector.getLocalPort())
+                .path("/coalesce")
+                .timeout(5, TimeUnit.SECONDS)
+                .send(result ->
+                {
+                    if (result.isSucceeded() && result.getResponse().getStatus() == HttpStatus.OK_200)
+                        clientLatch.countDown();
+                });
+        }
+
+        ProxyCache cache = getProxyCache();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (cache.getCoalesced() < count - 1 && System.nanoTime() < deadline)
+        {
+            Thread.sleep(10);
+        }
+        serverLatch.countDown();
+
+        assertTrue(clientLatch.await(5, TimeUnit.SECONDS));
+        assertEquals(1, requests.get());
+        assertEquals(count - 1, cache.getCoalesced());
+        assertEquals(count - 1, cache.getHits());
+    }
+
+    @Test
+    public void testResponsesSpillToDisk() throws Exception
+    {
+        byte[] content = new byte[800];
+        Arrays.fill(content, (byte)'x');
+        Map<String, String> params = new HashMap<>();
+        params.put("cacheMaxMemorySize", "1024");
+        params.put("cacheDirectory", workDir.getEmptyPathDir().toString());
+        start(new HttpServlet()
+        {
+            @Override
+            protected void service(HttpServletRequest request, HttpServletResponse response) throws IOException
+            {
+                requests.incrementAndGet();
+                response.setHeader(HttpHeader.CACHE_CONTROL.asString(), "max-age=60");
+                response.getOutputStream().write(content);
+            }
+        }, params);
+
+        assertArrayEquals(content, get("/a").getContent());
+        awaitEntryCount(1);
+        assertArrayEquals(content, get("/b").getContent());
+        awaitEntryCount(2);
+
+        // The least recently used response has been spilled to disk.
+        ProxyCache cache = getProxyCache();
+        assertEquals(content.length, cache.getMemorySize());
+        assertEquals(content.length, cache.getDiskSize());
+
+        assertArrayEquals(content, get("/a").getContent());
+        assertArrayEquals(content, get("/b").getContent());
+        assertEquals(2, requests.get());
+        assertEquals(2L * content.length, cache.getBytesSaved());
+    }
+
+    @Test
+    public void testResponsesAreKeyedByClientRequestURI() throws Exception
+    {
+        start(new HttpServlet()
+        {
+            @Override
+            protected void service(HttpServletRequest request, HttpServletResponse response) throws IOException
+            {
+                requests.incrementAndGet();
+                response.setHeader(HttpHeader.CACHE_CONTROL.asString(), "max-age=60");
+                response.getOutputStream().print("hello");
+            }
+        }, new HashMap<>());
+
+        // Both requests are rewritten to the same target, but have different client request URIs.
+        assertEquals("hello", get("/host", "Host", "one.localhost").getContentAsString());
+        awaitEntryCount(1);
+        assertEquals("hello", get("/host", "Host", "two.localhost").getContentAsString());
+        awaitEntryCount(2);
+        assertEquals(2, requests.get());
+
+        assertEquals("hello", get("/host", "Host", "one.localhost").getContentAsString());
+        assertEquals(2, requests.get());
+        assertEquals(1, getProxyCache().getHits());
+    }
+
+    @Test
+    public void testCachedResponseHasProxyRequest() throws Exception
+    {
+        start(new HttpServlet()
+        {
+            @Override
+            protected void service(HttpServletRequest request, HttpServletResponse response) throws IOException
+            {
+                requests.incrementAndGet();
+                response.setHeader(HttpHeader.CACHE_CONTROL.asString(), "max-age=60");
+                response.getOutputStream().print("hello");
+            }
+        }, new HashMap<>());
+
+        List<Response> responses = new CopyOnWriteArrayList<>();
+        ServletHolder holder = proxyContext.getServletHandler().getServlet("proxy");
+        holder.stop();
+        holder.setServlet(new ProxyServlet.Transparent()
+        {
+            @Override
+            protected void onProxyResponseSuccess(HttpServletRequest clientRequest, HttpServletResponse proxyResponse, Response serverResponse)
+            {
+                responses.add(serverResponse);
+                super.onProxyResponseSuccess(clientRequest, proxyResponse, serverResponse);
+            }
+        });
+        holder.start();
+
+        assertEquals("hello", get("/request").getContentAsString());
+        awaitEntryCount(1);
+        assertEquals("hello", get("/request").getContentAsString());
+        assertEquals(1, requests.get());
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (responses.size() < 2 && System.nanoTime() < deadline)
+        {
+            Thread.sleep(10);
+        }
+        assertEquals(2, responses.size());
+        Request cachedRequest = responses.get(1).getRequest();
+        assertNotNull(cachedRequest);
+        assertEquals(responses.get(0).getRequest().getURI(), cachedRequest.getURI());
+        assertNotNull(cachedRequest.getHeaders().get(HttpHeader.VIA));
+    }
+}
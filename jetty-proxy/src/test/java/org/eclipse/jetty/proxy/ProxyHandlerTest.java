@@ -0,0 +1,243 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.proxy;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.api.ContentResponse;
+import org.eclipse.jetty.client.util.BytesRequestContent;
+import org.eclipse.jetty.client.util.FutureResponseListener;
+import org.eclipse.jetty.client.util.InputStreamResponseListener;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpMethod;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.eclipse.jetty.util.IO;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ProxyHandlerTest
+{
+    private Server server;
+    private ServerConnector serverConnector;
+    private Server proxy;
+    private ServerConnector proxyConnector;
+    private HttpClient client;
+
+    private void start(Handler handler, String prefix) throws Exception
+    {
+        server = new Server();
+        serverConnector = new ServerConnector(server);
+        server.addConnector(serverConnector);
+        server.setHandler(handler);
+        server.start();
+
+        proxy = new Server();
+        proxyConnector = new ServerConnector(proxy);
+        proxy.addConnector(proxyConnector);
+        proxy.setHandler(new ProxyHandler.Reverse("http://localhost:" + serverConnector.getLocalPort() + "/app", prefix));
+        proxy.start();
+
+        client = new HttpClient();
+        client.start();
+    }
+
+    @AfterEach
+    public void dispose() throws Exception
+    {
+        if (client != null)
+            client.stop();
+        if (proxy != null)
+            proxy.stop();
+        if (server != null)
+            server.stop();
+    }
+
+    @Test
+    public void testLargeResponseContentIsProxied() throws Exception
+    {
+        byte[] bytes = new byte[4 * 1024 * 1024];
+        Arrays.fill(bytes, (byte)'x');
+        start(new AbstractHandler()
+        {
+            @Override
+            public void handle(String target, Request jettyRequest, HttpServletRequest request, HttpServletResponse response) throws IOException
+            {
+                jettyRequest.setHandled(true);
+                response.setHeader("X-Target", target + "?" + request.getQueryString());
+                response.getOutputStream().write(bytes);
+            }
+        }, "/proxy");
+
+        org.eclipse.jetty.client.api.Request request = client.newRequest("localhost", proxyConnector.getLocalPort())
+            .path("/proxy/path?a=b")
+            .timeout(5, TimeUnit.SECONDS);
+        FutureResponseListener listener = new FutureResponseListener(request, 2 * bytes.length);
+        request.send(listener);
+        ContentResponse response = listener.get(5, TimeUnit.SECONDS);
+
+        assertEquals(HttpStatus.OK_200, response.getStatus());
+        assertEquals("/app/path?a=b", response.getHeaders().get("X-Target"));
+        assertArrayEquals(bytes, response.getContent());
+    }
+
+    @Test
+    public void testRequestContentIsProxied() throws Exception
+    {
+        start(new AbstractHandler()
+        {
+            @Override
+            public void handle(String target, Request jettyRequest, HttpServletRequest request, HttpServletResponse response) throws IOException
+            {
+                jettyRequest.setHandled(true);
+                IO.copy(request.getInputStream(), response.getOutputStream());
+            }
+        }, "/");
+
+        byte[] bytes = new byte[512 * 1024];
+        Arrays.fill(bytes, (byte)'y');
+        ContentResponse response = client.newRequest("localhost", proxyConnector.getLocalPort())
+            .method(HttpMethod.POST)
+            .body(new BytesRequestContent(bytes))
+            .timeout(5, TimeUnit.SECONDS)
+            .send();
+
+        assertEquals(HttpStatus.OK_200, response.getStatus());
+        assertArrayEquals(bytes, response.getContent());
+    }
+
+    @Test
+    public void testSlowClientAppliesBackpressure() throws Exception
+    {
+        byte[] bytes = new byte[8 * 1024 * 1024];
+        Arrays.fill(bytes, (byte)'z');
+        start(new AbstractHandler()
+        {
+            @Override
+            public void handle(String target, Request jettyRequest, HttpServletRequest request, HttpServletResponse response) throws IOException
+            {
+                jettyRequest.setHandled(true);
+                response.getOutputStream().write(bytes);
+            }
+        }, "/");
+
+        InputStreamResponseListener listener = new InputStreamResponseListener();
+        client.newRequest("localhost", proxyConnector.getLocalPort())
+            .timeout(15, TimeUnit.SECONDS)
+            .send(listener);
+
+        assertEquals(HttpStatus.OK_200, listener.get(5, TimeUnit.SECONDS).getStatus());
+        // Read slowly at first, so that the proxy must wait for the client.
+        Thread.sleep(500);
+        long read = 0;
+        try (InputStream input = listener.getInputStream())
+        {
+            byte[] buffer = new byte[8192];
+            int count;
+            while ((count = input.read(buffer)) >= 0)
+            {
+                read += count;
+            }
+        }
+        assertEquals(bytes.length, read);
+    }
+
+    @Test
+    public void testRequestHeadersAreProxied() throws Exception
+    {
+        start(new AbstractHandler()
+        {
+            @Override
+            public void handle(String target, Request jettyRequest, HttpServletRequest request, HttpServletResponse response)
+            {
+                jettyRequest.setHandled(true);
+                response.setHeader("X-Hop", String.valueOf(request.getHeader("X-Hop")));
+                response.setHeader("X-End", String.valueOf(request.getHeader("X-End")));
+                response.setHeader("X-Via", String.valueOf(request.getHeader(HttpHeader.VIA.asString())));
+                response.setHeader("X-Forwarded", String.valueOf(request.getHeader(HttpHeader.X_FORWARDED_FOR.asString())));
+            }
+        }, "/");
+
+        ContentResponse response = client.newRequest("localhost", proxyConnector.getLocalPort())
+            .headers(headers -> headers
+                .put(HttpHeader.CONNECTION, "X-Hop")
+                .put("X-Hop", "hop")
+                .put("X-End", "end")
+                .put(HttpHeader.VIA, "1.1 downstream"))
+            .timeout(5, TimeUnit.SECONDS)
+            .send();
+
+        assertEquals(HttpStatus.OK_200, response.getStatus());
+        // Headers listed by the Connection header are not forwarded.
+        assertEquals("null", response.getHeaders().get("X-Hop"));
+        assertEquals("end", response.getHeaders().get("X-End"));
+        assertTrue(response.getHeaders().get("X-Via").startsWith("1.1 downstream, 1.1 "));
+        assertNotEquals("null", response.getHeaders().get("X-Forwarded"));
+    }
+
+    @Test
+    public void testUnmatchedPrefixIsNotProxied() throws Exception
+    {
+        start(new AbstractHandler()
+        {
+            @Override
+            public void handle(String target, Request jettyRequest, HttpServletRequest request, HttpServletResponse response)
+            {
+                jettyRequest.setHandled(true);
+            }
+        }, "/proxy");
+
+        ContentResponse response = client.newRequest("localhost", proxyConnector.getLocalPort())
+            .path("/other")
+            .timeout(5, TimeUnit.SECONDS)
+            .send();
+
+        assertEquals(HttpStatus.NOT_FOUND_404, response.getStatus());
+    }
+
+    @Test
+    public void testUpstreamDownReturns502() throws Exception
+    {
+        start(new AbstractHandler()
+        {
+            @Override
+            public void handle(String target, Request jettyRequest, HttpServletRequest request, HttpServletResponse response)
+            {
+                jettyRequest.setHandled(true);
+            }
+        }, "/");
+        server.stop();
+
+        ContentResponse response = client.newRequest("localhost", proxyConnector.getLocalPort())
+            .timeout(5, TimeUnit.SECONDS)
+            .send();
+
+        assertEquals(HttpStatus.BAD_GATEWAY_502, response.getStatus());
+    }
+}
@@ -42,6 +42,9 @@ etc/jetty-gzip.xml
 ## Set the {@link Deflater} flush mode to use.
 # jetty.gzip.syncFlush=false
 
+## The response encodings, in order of preference (gzip, br, zstd)
+# jetty.gzip.encodingList=gzip
+
 ## The set of DispatcherType that this filter will operate on
 # jetty.gzip.dispatcherTypes=REQUEST
 
@@ -66,6 +66,9 @@ etc/jetty.xml
 ## Whether to use direct ByteBuffers for reading or writing
 # jetty.httpConfig.useInputDirectByteBuffers=true
 # jetty.httpConfig.useOutputDirectByteBuffers=true
+
+## Whether to transfer static file content directly to the network (sendfile) on cleartext connections
+# jetty.httpConfig.useFileChannelTransfer=false
 # end::documentation-http-config[]
 
 # tag::documentation-server-compliance[]
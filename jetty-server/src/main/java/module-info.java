@@ -22,6 +22,10 @@ module org.eclipse.jetty.server
     requires static java.naming;
     // Only required if using JMX.
     requires static org.eclipse.jetty.jmx;
+    // Only required if using brotli.
+    requires static brotli4j;
+    // Only required if using zstd.
+    requires static com.github.luben.zstd_jni;
 
     exports org.eclipse.jetty.server;
     exports org.eclipse.jetty.server.handler;
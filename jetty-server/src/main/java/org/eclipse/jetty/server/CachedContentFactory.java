@@ -14,19 +14,27 @@
 package org.eclipse.jetty.server;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
 import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.SortedSet;
-import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
 
 import org.eclipse.jetty.http.CompressedContentFormat;
 import org.eclipse.jetty.http.DateGenerator;
@@ -39,15 +47,54 @@ import org.eclipse.jetty.http.PreEncodedHttpField;
 import org.eclipse.jetty.http.PrecompressedHttpContent;
 import org.eclipse.jetty.http.ResourceHttpContent;
 import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.FrequencySketch;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.compression.DeflaterPool;
+import org.eclipse.jetty.util.resource.PathResource;
 import org.eclipse.jetty.util.resource.Resource;
 import org.eclipse.jetty.util.resource.ResourceFactory;
+import org.eclipse.jetty.util.thread.AutoLock;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * <p>A {@link HttpContent.ContentFactory} that caches the content of resources.</p>
+ * <p>The cache is bounded by the number of cached files and by the size of the
+ * cached buffers, and uses a W-TinyLFU eviction policy:</p>
+ * <ul>
+ * <li>new entries are added to a small LRU <em>window</em>, so that recent
+ * bursts of accesses to new entries are not penalized;</li>
+ * <li>entries that overflow the window are <em>candidates</em> to enter the
+ * main space, and are admitted only if they have been accessed more frequently
+ * than the entry that would be evicted to make room for them, as estimated by
+ * a {@link FrequencySketch};</li>
+ * <li>the main space is a segmented LRU, where entries accessed while in the
+ * <em>probation</em> segment are promoted to the <em>protected</em> segment.</li>
+ * </ul>
+ * <p>This prevents entries that are accessed only once (for example by a crawler)
+ * from evicting popular entries, and evicts entries in amortized constant time.</p>
+ * <p>Accesses to cached entries are recorded on a best effort basis: if another
+ * thread is updating the eviction policy, the access is not recorded, so that
+ * cache hits never contend on the policy lock.</p>
+ * <p>If {@link #setGeneratePrecompressed(boolean) generation of precompressed content}
+ * is enabled, the gzip variant of a cacheable resource that has no precompressed file
+ * is generated when the resource is loaded in the cache, and is then served as any other
+ * precompressed content, so that it is not compressed again, for example by the
+ * {@code GzipHandler}, for every request.
+ * The generated content is kept in memory, or stored in the
+ * {@link #setPrecompressedCacheDirectory(Path) precompressed cache directory}
+ * so that it can be served from a file mapped buffer and survive restarts.
+ * The generated content is invalidated with the content it was generated from,
+ * and it is generated again when the last modified time of the resource changes.</p>
+ */
+@ManagedObject("Cache of static content")
 public class CachedContentFactory implements HttpContent.ContentFactory
 {
     private static final Logger LOG = LoggerFactory.getLogger(CachedContentFactory.class);
     private static final Map<CompressedContentFormat, CachedPrecompressedHttpContent> NO_PRECOMPRESSED = Collections.unmodifiableMap(Collections.emptyMap());
+    private static final byte[] GZIP_HEADER = new byte[]{(byte)0x1f, (byte)0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0};
 
     private final ConcurrentMap<String, CachedHttpContent> _cache;
     private final AtomicInteger _cachedSize;
@@ -58,10 +105,23 @@ public class CachedContentFactory implements HttpContent.ContentFactory
     private final boolean _etags;
     private final CompressedContentFormat[] _precompressedFormats;
     private final boolean _useFileMappedBuffer;
+    private final AutoLock _lock = new AutoLock();
+    private final FrequencySketch _sketch;
+    private final Segment _window = new Segment();
+    private final Segment _probation = new Segment();
+    private final Segment _protected = new Segment();
+    private final LongAdder _hits = new LongAdder();
+    private final LongAdder _misses = new LongAdder();
+    private final LongAdder _evictions = new LongAdder();
+    private final LongAdder _generated = new LongAdder();
+    private final ConcurrentMap<String, Long> _incompressible = new ConcurrentHashMap<>();
 
     private int _maxCachedFileSize = 128 * 1024 * 1024;
     private int _maxCachedFiles = 2048;
     private int _maxCacheSize = 256 * 1024 * 1024;
+    private boolean _generatePrecompressed;
+    private Path _precompressedCacheDirectory;
+    private DeflaterPool _deflaterPool = new DeflaterPool(0, Deflater.DEFAULT_COMPRESSION, true);
 
     /**
      * Constructor.
@@ -84,18 +144,111 @@ public class CachedContentFactory implements HttpContent.ContentFactory
         _useFileMappedBuffer = useFileMappedBuffer;
         _etags = etags;
         _precompressedFormats = precompressedFormats;
+        _sketch = new FrequencySketch(_maxCachedFiles);
     }
 
+    @ManagedAttribute("size in bytes of the cached buffers")
     public int getCachedSize()
     {
         return _cachedSize.get();
     }
 
+    @ManagedAttribute("number of cached files")
     public int getCachedFiles()
     {
         return _cachedFiles.get();
     }
 
+    @ManagedAttribute("number of requests for content found in the cache")
+    public long getCacheHits()
+    {
+        return _hits.longValue();
+    }
+
+    @ManagedAttribute("number of requests for content not found in the cache")
+    public long getCacheMisses()
+    {
+        return _misses.longValue();
+    }
+
+    @ManagedAttribute("number of entries evicted from the cache to respect its limits")
+    public long getCacheEvictions()
+    {
+        return _evictions.longValue();
+    }
+
+    @ManagedAttribute("number of precompressed contents generated")
+    public long getPrecompressedGenerated()
+    {
+        return _generated.longValue();
+    }
+
+    @ManagedOperation(value = "resets the cache statistics", impact = "ACTION")
+    public void resetStatistics()
+    {
+        _hits.reset();
+        _misses.reset();
+        _evictions.reset();
+        _generated.reset();
+    }
+
+    @ManagedAttribute("whether the gzip variant of cached content is generated if there is no precompressed file")
+    public boolean isGeneratePrecompressed()
+    {
+        return _generatePrecompressed;
+    }
+
+    /**
+     * <p>Sets whether the gzip variant of cacheable content is generated when there is no
+     * precompressed file for it.</p>
+     * <p>The variant is generated only if the gzip {@link CompressedContentFormat} is one of
+     * the precompressed formats of this factory, and it is served only if it is smaller
+     * than the content it was generated from.</p>
+     *
+     * @param generatePrecompressed whether to generate the gzip variant of cacheable content
+     */
+    public void setGeneratePrecompressed(boolean generatePrecompressed)
+    {
+        _generatePrecompressed = generatePrecompressed;
+    }
+
+    /**
+     * @return the directory where generated precompressed content is stored,
+     * or null if generated precompressed content is kept in memory
+     */
+    public Path getPrecompressedCacheDirectory()
+    {
+        return _precompressedCacheDirectory;
+    }
+
+    /**
+     * @param precompressedCacheDirectory the directory where generated precompressed content is stored,
+     * or null to keep generated precompressed content in memory
+     */
+    public void setPrecompressedCacheDirectory(Path precompressedCacheDirectory)
+    {
+        _precompressedCacheDirectory = precompressedCacheDirectory;
+    }
+
+    public DeflaterPool getDeflaterPool()
+    {
+        return _deflaterPool;
+    }
+
+    /**
+     * <p>Sets the pool of {@link Deflater}s used to generate precompressed content,
+     * typically the pool shared with the {@code GzipHandler}.</p>
+     * <p>The deflaters must be created with {@code nowrap=true}, as the gzip header
+     * and trailer are written by this factory.</p>
+     *
+     * @param deflaterPool the pool of deflaters used to generate precompressed content
+     */
+    public void setDeflaterPool(DeflaterPool deflaterPool)
+    {
+        _deflaterPool = deflaterPool;
+    }
+
+    @ManagedAttribute("maximum size in bytes of a cached file")
     public int getMaxCachedFileSize()
     {
         return _maxCachedFileSize;
@@ -107,6 +260,7 @@ public class CachedContentFactory implements HttpContent.ContentFactory
         shrinkCache();
     }
 
+    @ManagedAttribute("maximum size in bytes of the cached buffers")
     public int getMaxCacheSize()
     {
         return _maxCacheSize;
@@ -121,6 +275,7 @@ public class CachedContentFactory implements HttpContent.ContentFactory
     /**
      * @return the max number of cached files.
      */
+    @ManagedAttribute("maximum number of cached files")
     public int getMaxCachedFiles()
     {
         return _maxCachedFiles;
@@ -132,14 +287,20 @@ public class CachedContentFactory implements HttpContent.ContentFactory
     public void setMaxCachedFiles(int maxCachedFiles)
     {
         _maxCachedFiles = maxCachedFiles;
+        try (AutoLock l = _lock.lock())
+        {
+            _sketch.ensureCapacity(maxCachedFiles);
+        }
         shrinkCache();
     }
 
+    @ManagedAttribute("whether file mapped buffers are used")
     public boolean isUseFileMappedBuffer()
     {
         return _useFileMappedBuffer;
     }
 
+    @ManagedOperation(value = "flushes the cache", impact = "ACTION")
     public void flushCache()
     {
         while (_cache.size() > 0)
@@ -170,8 +331,13 @@ public class CachedContentFactory implements HttpContent.ContentFactory
     {
         // Is the content in this cache?
         CachedHttpContent content = _cache.get(pathInContext);
-        if (content != null && (content).isValid())
+        if (content != null && content.isValid())
+        {
+            _hits.increment();
+            onAccess(content);
             return content;
+        }
+        _misses.increment();
 
         // try loading the content from our factory.
         Resource resource = _factory.getResource(pathInContext);
@@ -240,8 +406,14 @@ public class CachedContentFactory implements HttpContent.ContentFactory
                                 compressedContent.invalidate();
                                 compressedContent = added;
                             }
+                            else
+                            {
+                                onAdded(compressedContent);
+                            }
                         }
                     }
+                    if (compressedContent == null && _generatePrecompressed && CompressedContentFormat.GZIP.getEncoding().equals(format.getEncoding()))
+                        compressedContent = generatePrecompressed(pathInContext, resource, format);
                     if (compressedContent != null)
                         precompresssedContents.put(format, compressedContent);
                 }
@@ -257,6 +429,10 @@ public class CachedContentFactory implements HttpContent.ContentFactory
                 content.invalidate();
                 content = added;
             }
+            else
+            {
+                onAdded(content);
+            }
 
             return content;
         }
@@ -288,38 +464,280 @@ public class CachedContentFactory implements HttpContent.ContentFactory
         return new ResourceHttpContent(resource, mt, maxBufferSize);
     }
 
-    private void shrinkCache()
+    /**
+     * @param resource the resource to compress
+     * @return whether the content of the resource is worth compressing.
+     * The default implementation excludes images, except SVG, audio and video content.
+     */
+    protected boolean isCompressible(Resource resource)
+    {
+        String mimeType = _mimeTypes.getMimeByExtension(resource.toString());
+        if (mimeType == null)
+            return true;
+        mimeType = MimeTypes.getContentTypeWithoutCharset(mimeType);
+        if (mimeType.startsWith("image/"))
+            return mimeType.startsWith("image/svg");
+        return !mimeType.startsWith("audio/") && !mimeType.startsWith("video/");
+    }
+
+    private CachedHttpContent generatePrecompressed(String pathInContext, Resource resource, CompressedContentFormat format)
+    {
+        // Do not compress again content that did not get smaller and has not been modified since.
+        String key = pathInContext + format.getExtension();
+        long lastModified = resource.lastModified();
+        Long incompressible = _incompressible.get(key);
+        if (incompressible != null && incompressible == lastModified)
+            return null;
+        if (!isCompressible(resource))
+            return null;
+        try
+        {
+            Path directory = _precompressedCacheDirectory;
+            if (directory == null)
+            {
+                // Do not hold in memory content that would not be cached.
+                if (resource.length() >= _maxCachedFileSize)
+                    return null;
+                ByteArrayOutputStream output = new ByteArrayOutputStream((int)resource.length() / 2);
+                gzip(resource, output);
+                if (output.size() >= resource.length())
+                {
+                    onIncompressible(key, lastModified);
+                    return null;
+                }
+                _generated.increment();
+                return new CachedGeneratedHttpContent(resource, output.toByteArray());
+            }
+
+            String relativePath = pathInContext.startsWith("/") ? pathInContext.substring(1) : pathInContext;
+            Path file = directory.resolve(relativePath + format.getExtension()).normalize();
+            if (!file.startsWith(directory.normalize()))
+                return null;
+
+            // The generated file has the same last modified time as the resource.
+            FileTime fileTime = FileTime.fromMillis(lastModified);
+            if (!Files.exists(file) || !Files.getLastModifiedTime(file).equals(fileTime))
+            {
+                Path parent = file.getParent();
+                Files.createDirectories(parent);
+                Path temp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+                try
+                {
+                    try (OutputStream output = Files.newOutputStream(temp))
+                    {
+                        gzip(resource, output);
+                    }
+                    if (Files.size(temp) >= resource.length())
+                    {
+                        onIncompressible(key, lastModified);
+                        return null;
+                    }
+                    Files.setLastModifiedTime(temp, fileTime);
+                    Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    _generated.increment();
+                }
+                finally
+                {
+                    Files.deleteIfExists(temp);
+                }
+            }
+            else if (Files.size(file) >= resource.length())
+            {
+                return null;
+            }
+            // Not in the cache, the generated content is owned by the content it was generated from.
+            return new CachedHttpContent(null, new PathResource(file), null);
+        }
+        catch (IOException | RuntimeException x)
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("Unable to generate {} content for {}", format, resource, x);
+            return null;
+        }
+    }
+
+    private void onIncompressible(String key, long lastModified)
     {
-        // While we need to shrink
-        while (_cache.size() > 0 && (_cachedFiles.get() > _maxCachedFiles || _cachedSize.get() > _maxCacheSize))
+        // Bound the memory used to remember incompressible content.
+        if (_incompressible.size() >= _maxCachedFiles)
+            _incompressible.clear();
+        _incompressible.put(key, lastModified);
+    }
+
+    private void gzip(Resource resource, OutputStream output) throws IOException
+    {
+        CRC32 crc = new CRC32();
+        byte[] input = new byte[8192];
+        byte[] deflated = new byte[8192];
+        DeflaterPool.Entry entry = _deflaterPool.acquire();
+        try (InputStream in = resource.getInputStream())
         {
-            // Scan the entire cache and generate an ordered list by last accessed time.
-            SortedSet<CachedHttpContent> sorted = new TreeSet<>((c1, c2) ->
+            Deflater deflater = entry.get();
+            output.write(GZIP_HEADER);
+            int read;
+            while ((read = in.read(input)) >= 0)
+            {
+                crc.update(input, 0, read);
+                deflater.setInput(input, 0, read);
+                while (!deflater.needsInput())
+                {
+                    output.write(deflated, 0, deflater.deflate(deflated));
+                }
+            }
+            deflater.finish();
+            while (!deflater.finished())
             {
-                if (c1._lastAccessed < c2._lastAccessed)
-                    return -1;
+                output.write(deflated, 0, deflater.deflate(deflated));
+            }
+            writeIntLittleEndian(output, (int)crc.getValue());
+            writeIntLittleEndian(output, (int)deflater.getBytesRead());
+        }
+        finally
+        {
+            entry.release();
+        }
+    }
 
-                if (c1._lastAccessed > c2._lastAccessed)
-                    return 1;
+    private static void writeIntLittleEndian(OutputStream output, int value) throws IOException
+    {
+        output.write(value);
+        output.write(value >>> 8);
+        output.write(value >>> 16);
+        output.write(value >>> 24);
+    }
 
-                if (c1._contentLengthValue < c2._contentLengthValue)
-                    return -1;
+    private void onAdded(CachedHttpContent content)
+    {
+        try (AutoLock l = _lock.lock())
+        {
+            // The content may have been concurrently invalidated.
+            if (_cache.get(content.getKey()) != content)
+                return;
+            _sketch.increment(content.getKey());
+            _window.addLast(content);
+            evict();
+        }
+    }
 
-                return c1._key.compareTo(c2._key);
-            });
-            sorted.addAll(_cache.values());
+    private void onAccess(CachedHttpContent content)
+    {
+        try (AutoLock l = _lock.tryLock())
+        {
+            // Do not contend with other threads, just skip recording the access.
+            if (l == null)
+                return;
 
-            // Invalidate least recently used first
-            for (CachedHttpContent content : sorted)
+            _sketch.increment(content.getKey());
+            Segment segment = content._segment;
+            if (segment == _probation)
             {
-                if (_cachedFiles.get() <= _maxCachedFiles && _cachedSize.get() <= _maxCacheSize)
+                _probation.remove(content);
+                _protected.addLast(content);
+                int maxProtected = getMaxProtected();
+                while (_protected._size > maxProtected)
+                {
+                    CachedHttpContent demoted = _protected._head;
+                    _protected.remove(demoted);
+                    _probation.addLast(demoted);
+                }
+            }
+            else if (segment != null)
+            {
+                segment.moveToLast(content);
+            }
+        }
+    }
+
+    private void onInvalidated(CachedHttpContent content)
+    {
+        try (AutoLock l = _lock.lock())
+        {
+            if (content._segment != null)
+                content._segment.remove(content);
+        }
+    }
+
+    private void shrinkCache()
+    {
+        try (AutoLock l = _lock.lock())
+        {
+            evict();
+        }
+    }
+
+    private void evict()
+    {
+        assert _lock.isHeldByCurrentThread();
+
+        // The entries that overflow the window are candidates for the main space.
+        int maxWindow = getMaxWindow();
+        CachedHttpContent candidate = null;
+        while (_window._size > maxWindow)
+        {
+            CachedHttpContent first = _window._head;
+            _window.remove(first);
+            _probation.addLast(first);
+            if (candidate == null)
+                candidate = first;
+        }
+
+        while (_cachedFiles.get() > _maxCachedFiles || _cachedSize.get() > _maxCacheSize)
+        {
+            // Candidates are at the end of the probation segment, so the
+            // victim is either at the head of probation or of protected.
+            CachedHttpContent victim = _probation._head != candidate ? _probation._head : _protected._head;
+            if (candidate != null && victim != null)
+            {
+                if (_sketch.frequency(candidate.getKey()) > _sketch.frequency(victim.getKey()))
+                {
+                    evict(victim);
+                }
+                else
+                {
+                    CachedHttpContent next = candidate._next;
+                    evict(candidate);
+                    candidate = next;
+                }
+            }
+            else
+            {
+                // No admission to decide, evict the least recently used entry.
+                CachedHttpContent lru = _probation._head;
+                if (lru == null)
+                    lru = _protected._head;
+                if (lru == null)
+                    lru = _window._head;
+                if (lru == null)
                     break;
-                if (content == _cache.remove(content.getKey()))
-                    content.invalidate();
+                if (lru == candidate)
+                    candidate = candidate._next;
+                evict(lru);
             }
         }
     }
 
+    private void evict(CachedHttpContent content)
+    {
+        content._segment.remove(content);
+        if (_cache.remove(content.getKey(), content))
+        {
+            _evictions.increment();
+            if (LOG.isDebugEnabled())
+                LOG.debug("Evicted {}", content);
+            content.invalidate();
+        }
+    }
+
+    private int getMaxWindow()
+    {
+        return Math.max(1, _maxCachedFiles / 100);
+    }
+
+    private int getMaxProtected()
+    {
+        return Math.max(1, (_maxCachedFiles - getMaxWindow()) * 4 / 5);
+    }
+
     protected ByteBuffer getIndirectBuffer(Resource resource)
     {
         try
@@ -390,7 +808,10 @@ public class CachedContentFactory implements HttpContent.ContentFactory
         private final AtomicReference<ByteBuffer> _indirectBuffer = new AtomicReference<>();
         private final AtomicReference<ByteBuffer> _directBuffer = new AtomicReference<>();
         private final AtomicReference<ByteBuffer> _mappedBuffer = new AtomicReference<>();
-        private volatile long _lastAccessed;
+        // Links of the eviction policy, guarded by _lock.
+        private Segment _segment;
+        private CachedHttpContent _prev;
+        private CachedHttpContent _next;
 
         CachedHttpContent(String pathInContext, Resource resource, Map<CompressedContentFormat, CachedHttpContent> precompressedResources)
         {
@@ -410,10 +831,7 @@ public class CachedContentFactory implements HttpContent.ContentFactory
             _contentLengthValue = exists ? resource.length() : 0;
             _contentLength = new PreEncodedHttpField(HttpHeader.CONTENT_LENGTH, Long.toString(_contentLengthValue));
 
-            if (_cachedFiles.incrementAndGet() > _maxCachedFiles)
-                shrinkCache();
-
-            _lastAccessed = System.currentTimeMillis();
+            _cachedFiles.incrementAndGet();
 
             _etag = CachedContentFactory.this._etags ? new PreEncodedHttpField(HttpHeader.ETAG, resource.getWeakETag()) : null;
 
@@ -462,12 +880,10 @@ public class CachedContentFactory implements HttpContent.ContentFactory
         boolean isValid()
         {
             if (_lastModifiedValue == _resource.lastModified() && _contentLengthValue == _resource.length())
-            {
-                _lastAccessed = System.currentTimeMillis();
                 return true;
-            }
 
-            if (this == _cache.remove(_key))
+            // Content that is not cached is invalidated by its owner.
+            if (isCached() && this == _cache.remove(_key))
                 invalidate();
             return false;
         }
@@ -484,6 +900,14 @@ public class CachedContentFactory implements HttpContent.ContentFactory
 
             _mappedBuffer.getAndSet(null);
 
+            for (CachedPrecompressedHttpContent precompressed : _precompressed.values())
+            {
+                // Generated precompressed content is not cached, but owned by this content.
+                if (!precompressed._precompressedContent.isCached())
+                    precompressed._precompressedContent.invalidate();
+            }
+
+            onInvalidated(this);
             _cachedFiles.decrementAndGet();
             _resource.close();
         }
@@ -712,4 +1136,140 @@ public class CachedContentFactory implements HttpContent.ContentFactory
             return "Cached" + super.toString();
         }
     }
+
+    /**
+     * <p>Precompressed content generated in memory from a resource, that is valid
+     * as long as the resource is not modified.</p>
+     */
+    private class CachedGeneratedHttpContent extends CachedHttpContent
+    {
+        private final byte[] _compressed;
+        private final HttpField _compressedLength;
+        private final AtomicReference<ByteBuffer> _compressedDirect = new AtomicReference<>();
+
+        CachedGeneratedHttpContent(Resource resource, byte[] compressed)
+        {
+            super(null, resource, null);
+            _compressed = compressed;
+            _compressedLength = new PreEncodedHttpField(HttpHeader.CONTENT_LENGTH, Long.toString(compressed.length));
+            _cachedSize.addAndGet(compressed.length);
+        }
+
+        @Override
+        protected void invalidate()
+        {
+            _cachedSize.addAndGet(-_compressed.length);
+            ByteBuffer direct = _compressedDirect.getAndSet(null);
+            if (direct != null)
+                _cachedSize.addAndGet(-BufferUtil.length(direct));
+            super.invalidate();
+        }
+
+        @Override
+        public ByteBuffer getIndirectBuffer()
+        {
+            return ByteBuffer.wrap(_compressed).asReadOnlyBuffer();
+        }
+
+        @Override
+        public ByteBuffer getDirectBuffer()
+        {
+            ByteBuffer buffer = _compressedDirect.get();
+            if (buffer == null)
+            {
+                ByteBuffer direct = BufferUtil.allocateDirect(_compressed.length);
+                BufferUtil.append(direct, _compressed, 0, _compressed.length);
+                if (_compressedDirect.compareAndSet(null, direct))
+                {
+                    buffer = direct;
+                    if (_cachedSize.addAndGet(BufferUtil.length(buffer)) > _maxCacheSize)
+                        shrinkCache();
+                }
+                else
+                {
+                    buffer = _compressedDirect.get();
+                }
+            }
+            return buffer == null ? null : buffer.asReadOnlyBuffer();
+        }
+
+        @Override
+        public HttpField getContentLength()
+        {
+            return _compressedLength;
+        }
+
+        @Override
+        public long getContentLengthValue()
+        {
+            return _compressed.length;
+        }
+
+        @Override
+        public InputStream getInputStream()
+        {
+            return new ByteArrayInputStream(_compressed);
+        }
+
+        @Override
+        public ReadableByteChannel getReadableByteChannel()
+        {
+            return Channels.newChannel(getInputStream());
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("CachedGeneratedContent@%x{r=%s,l=%d}", hashCode(), getResource(), _compressed.length);
+        }
+    }
+
+    /**
+     * <p>A segment of the eviction policy, that is a doubly linked list
+     * of entries ordered from the least to the most recently used.</p>
+     */
+    private static class Segment
+    {
+        private CachedHttpContent _head;
+        private CachedHttpContent _tail;
+        private int _size;
+
+        private void addLast(CachedHttpContent content)
+        {
+            content._segment = this;
+            content._prev = _tail;
+            content._next = null;
+            if (_tail == null)
+                _head = content;
+            else
+                _tail._next = content;
+            _tail = content;
+            ++_size;
+        }
+
+        private void remove(CachedHttpContent content)
+        {
+            if (content._prev == null)
+                _head = content._next;
+            else
+                content._prev._next = content._next;
+            if (content._next == null)
+                _tail = content._prev;
+            else
+                content._next._prev = content._prev;
+            content._segment = null;
+            content._prev = null;
+            content._next = null;
+            --_size;
+        }
+
+        private void moveToLast(CachedHttpContent content)
+        {
+            if (content != _tail)
+            {
+                remove(content);
+                addLast(content);
+            }
+        }
+    }
 }
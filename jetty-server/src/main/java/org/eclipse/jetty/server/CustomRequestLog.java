@@ -17,6 +17,7 @@ import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
 import java.lang.invoke.MethodType;
 import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -275,6 +276,7 @@ public class CustomRequestLog extends ContainerLifeCycle implements RequestLog
     public static final String NCSA_FORMAT = "%{client}a - %u %t \"%r\" %s %O";
     public static final String EXTENDED_NCSA_FORMAT = NCSA_FORMAT + " \"%{Referer}i\" \"%{User-Agent}i\"";
     private static final ThreadLocal<StringBuilder> _buffers = ThreadLocal.withInitial(() -> new StringBuilder(256));
+    private static final ThreadLocal<ByteBuffer> _byteBuffers = ThreadLocal.withInitial(() -> ByteBuffer.allocate(1024));
 
     private final RequestLog.Writer _requestLogWriter;
     private final MethodHandle _logHandle;
@@ -351,8 +353,15 @@ public class CustomRequestLog extends ContainerLifeCycle implements RequestLog
 
             _logHandle.invoke(sb, request, response);
 
-            String log = sb.toString();
-            _requestLogWriter.write(log);
+            if (_requestLogWriter instanceof RequestLog.ByteBufferWriter)
+            {
+                ((RequestLog.ByteBufferWriter)_requestLogWriter).write(encode(sb));
+            }
+            else
+            {
+                String log = sb.toString();
+                _requestLogWriter.write(log);
+            }
         }
         catch (Throwable e)
         {
@@ -433,6 +442,65 @@ public class CustomRequestLog extends ContainerLifeCycle implements RequestLog
         super.doStart();
     }
 
+    /**
+     * Encodes the characters as UTF-8 into a per-thread buffer, without creating a String.
+     *
+     * @param chars the characters to encode
+     * @return the per-thread buffer, in flush mode, containing the encoded bytes
+     */
+    private static ByteBuffer encode(CharSequence chars)
+    {
+        int length = chars.length();
+        ByteBuffer buffer = _byteBuffers.get();
+        // Each char encodes to at most 3 bytes, a surrogate pair to 4 bytes.
+        if (buffer.capacity() < length * 3)
+        {
+            buffer = ByteBuffer.allocate(Math.max(length * 3, buffer.capacity() * 2));
+            _byteBuffers.set(buffer);
+        }
+
+        byte[] bytes = buffer.array();
+        int p = 0;
+        for (int i = 0; i < length; ++i)
+        {
+            char c = chars.charAt(i);
+            if (c < 0x80)
+            {
+                bytes[p++] = (byte)c;
+            }
+            else if (c < 0x800)
+            {
+                bytes[p++] = (byte)(0xC0 | (c >> 6));
+                bytes[p++] = (byte)(0x80 | (c & 0x3F));
+            }
+            else if (Character.isSurrogate(c))
+            {
+                if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(chars.charAt(i + 1)))
+                {
+                    int codePoint = Character.toCodePoint(c, chars.charAt(++i));
+                    bytes[p++] = (byte)(0xF0 | (codePoint >> 18));
+                    bytes[p++] = (byte)(0x80 | ((codePoint >> 12) & 0x3F));
+                    bytes[p++] = (byte)(0x80 | ((codePoint >> 6) & 0x3F));
+                    bytes[p++] = (byte)(0x80 | (codePoint & 0x3F));
+                }
+                else
+                {
+                    // Malformed surrogate, replaced like String.getBytes() does.
+                    bytes[p++] = '?';
+                }
+            }
+            else
+            {
+                bytes[p++] = (byte)(0xE0 | (c >> 12));
+                bytes[p++] = (byte)(0x80 | ((c >> 6) & 0x3F));
+                bytes[p++] = (byte)(0x80 | (c & 0x3F));
+            }
+        }
+        buffer.clear();
+        buffer.limit(p);
+        return buffer;
+    }
+
     private static void append(StringBuilder buf, String s)
     {
         if (s == null || s.length() == 0)
@@ -983,14 +1051,20 @@ public class CustomRequestLog extends ContainerLifeCycle implements RequestLog
     private static void logLocalPort(StringBuilder b, Request request, Response response)
     {
         InetSocketAddress local = request.getHttpChannel().getLocalAddress();
-        append(b, local == null ? null : String.valueOf(local.getPort()));
+        if (local == null)
+            b.append('-');
+        else
+            b.append(local.getPort());
     }
 
     @SuppressWarnings("unused")
     private static void logRemotePort(StringBuilder b, Request request, Response response)
     {
         InetSocketAddress remote = request.getHttpChannel().getRemoteAddress();
-        append(b, remote == null ? null : String.valueOf(remote.getPort()));
+        if (remote == null)
+            b.append('-');
+        else
+            b.append(remote.getPort());
     }
 
     @SuppressWarnings("unused")
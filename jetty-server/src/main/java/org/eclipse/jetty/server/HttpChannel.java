@@ -17,6 +17,7 @@ import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.EventListener;
 import java.util.List;
@@ -53,6 +54,7 @@ import org.eclipse.jetty.util.Callback;
 import org.eclipse.jetty.util.HostPort;
 import org.eclipse.jetty.util.SharedBlockingCallback.Blocker;
 import org.eclipse.jetty.util.StringUtil;
+import org.eclipse.jetty.util.VirtualThreads;
 import org.eclipse.jetty.util.thread.Scheduler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -1047,6 +1049,28 @@ public abstract class HttpChannel implements Runnable, HttpOutput.Interceptor
         sendResponse(null, content, complete, callback);
     }
 
+    /**
+     * <p>Non-Blocking transfer of committed response content directly from a file
+     * to the network, see {@link HttpTransport#transferFrom(FileChannel, long, long)}.</p>
+     * <p>The bytes transferred are accounted in {@link #getBytesWritten()}, but
+     * {@link Listener#onResponseContent(Request, ByteBuffer)} is not notified for them.</p>
+     *
+     * @param file the file to transfer bytes from
+     * @param position the position within the file of the first byte to transfer
+     * @param count the maximum number of bytes to transfer
+     * @return the number of bytes transferred, possibly zero, or -1 if direct transfers are not supported
+     * @throws IOException if the transfer fails
+     */
+    public long transferFrom(FileChannel file, long position, long count) throws IOException
+    {
+        if (!isCommitted())
+            return -1;
+        long transferred = _transport.transferFrom(file, position, count);
+        if (transferred > 0)
+            _written += transferred;
+        return transferred;
+    }
+
     @Override
     public void resetBuffer()
     {
@@ -1062,7 +1086,12 @@ public abstract class HttpChannel implements Runnable, HttpOutput.Interceptor
 
     protected void execute(Runnable task)
     {
-        _executor.execute(task);
+        // The handling of the channel may block, so use virtual threads if configured.
+        Executor virtualExecutor = VirtualThreads.getVirtualThreadsExecutor(_executor);
+        if (virtualExecutor != null)
+            virtualExecutor.execute(task);
+        else
+            _executor.execute(task);
     }
 
     public Scheduler getScheduler()
@@ -18,9 +18,11 @@ import java.util.List;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
 
+import org.eclipse.jetty.http.AdaptiveFieldCache;
 import org.eclipse.jetty.http.CookieCompliance;
 import org.eclipse.jetty.http.HttpCompliance;
 import org.eclipse.jetty.http.HttpMethod;
+import org.eclipse.jetty.http.HttpParser;
 import org.eclipse.jetty.http.HttpScheme;
 import org.eclipse.jetty.http.UriCompliance;
 import org.eclipse.jetty.util.Index;
@@ -56,6 +58,7 @@ public class HttpConfiguration implements Dumpable
     private int _responseHeaderSize = 8 * 1024;
     private int _headerCacheSize = 1024;
     private boolean _headerCacheCaseSensitive = false;
+    private AdaptiveFieldCache _adaptiveFieldCache;
     private int _securePort;
     private long _idleTimeout = -1;
     private String _secureScheme = HttpScheme.HTTPS.asString();
@@ -67,6 +70,7 @@ public class HttpConfiguration implements Dumpable
     private int _maxErrorDispatches = 10;
     private boolean _useInputDirectByteBuffers = true;
     private boolean _useOutputDirectByteBuffers = true;
+    private boolean _useFileChannelTransfer = false;
     private long _minRequestDataRate;
     private long _minResponseDataRate;
     private HttpCompliance _httpCompliance = HttpCompliance.RFC7230;
@@ -126,6 +130,7 @@ public class HttpConfiguration implements Dumpable
         _responseHeaderSize = config._responseHeaderSize;
         _headerCacheSize = config._headerCacheSize;
         _headerCacheCaseSensitive = config._headerCacheCaseSensitive;
+        _adaptiveFieldCache = config._adaptiveFieldCache;
         _secureScheme = config._secureScheme;
         _securePort = config._securePort;
         _idleTimeout = config._idleTimeout;
@@ -137,6 +142,7 @@ public class HttpConfiguration implements Dumpable
         _maxErrorDispatches = config._maxErrorDispatches;
         _useInputDirectByteBuffers = config._useInputDirectByteBuffers;
         _useOutputDirectByteBuffers = config._useOutputDirectByteBuffers;
+        _useFileChannelTransfer = config._useFileChannelTransfer;
         _minRequestDataRate = config._minRequestDataRate;
         _minResponseDataRate = config._minResponseDataRate;
         _httpCompliance = config._httpCompliance;
@@ -211,6 +217,12 @@ public class HttpConfiguration implements Dumpable
         return _headerCacheCaseSensitive;
     }
 
+    @ManagedAttribute("The cache of the most frequent HTTP header fields")
+    public AdaptiveFieldCache getAdaptiveFieldCache()
+    {
+        return _adaptiveFieldCache;
+    }
+
     @ManagedAttribute("The port to which Integral or Confidential security constraints are redirected")
     public int getSecurePort()
     {
@@ -358,6 +370,28 @@ public class HttpConfiguration implements Dumpable
         return _useOutputDirectByteBuffers;
     }
 
+    /**
+     * <p>Sets whether file content sent by {@link HttpOutput#sendContent(java.nio.channels.ReadableByteChannel)}
+     * and {@link HttpOutput#transferFrom(java.nio.channels.FileChannel, long, long)} is transferred directly from
+     * the file to the network (for example via the {@code sendfile} system call), rather than being copied through
+     * user space buffers.</p>
+     * <p>Direct transfers are only possible on cleartext connections, when the response
+     * content is not chunked and when no {@link HttpOutput.Interceptor} (for example
+     * gzip compression) is installed; in all other cases the content is copied as usual.</p>
+     *
+     * @param useFileChannelTransfer whether to transfer file content directly to the network
+     */
+    public void setUseFileChannelTransfer(boolean useFileChannelTransfer)
+    {
+        _useFileChannelTransfer = useFileChannelTransfer;
+    }
+
+    @ManagedAttribute("Whether to transfer file content directly to the network")
+    public boolean isUseFileChannelTransfer()
+    {
+        return _useFileChannelTransfer;
+    }
+
     /**
      * <p>Sets the {@link Customizer}s that are invoked for every
      * request received.</p>
@@ -436,6 +470,19 @@ public class HttpConfiguration implements Dumpable
         this._headerCacheCaseSensitive = headerCacheCaseSensitive;
     }
 
+    /**
+     * <p>Sets the cache that learns the most frequent request header fields of the server.</p>
+     * <p>The cache is shared by the connections that use this configuration, and by the
+     * connections that use copies of this configuration.</p>
+     *
+     * @param adaptiveFieldCache the adaptive field cache, or null for no adaptive field cache
+     * @see HttpParser#setAdaptiveFieldCache(AdaptiveFieldCache)
+     */
+    public void setAdaptiveFieldCache(AdaptiveFieldCache adaptiveFieldCache)
+    {
+        _adaptiveFieldCache = adaptiveFieldCache;
+    }
+
     /**
      * <p>Sets the TCP/IP port used for CONFIDENTIAL and INTEGRAL redirections.</p>
      *
@@ -682,7 +729,8 @@ public class HttpConfiguration implements Dumpable
             "requestCookieCompliance=" + _requestCookieCompliance,
             "responseCookieCompliance=" + _responseCookieCompliance,
             "notifyRemoteAsyncErrors=" + _notifyRemoteAsyncErrors,
-            "relativeRedirectAllowed=" + _relativeRedirectAllowed
+            "relativeRedirectAllowed=" + _relativeRedirectAllowed,
+            "useFileChannelTransfer=" + _useFileChannelTransfer
         );
     }
 
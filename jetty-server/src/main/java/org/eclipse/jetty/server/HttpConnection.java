@@ -15,6 +15,7 @@ package org.eclipse.jetty.server;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.channels.WritePendingException;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.LongAdder;
@@ -132,6 +133,7 @@ public class HttpConnection extends AbstractConnection implements Runnable, Http
         HttpParser parser = new HttpParser(newRequestHandler(), getHttpConfiguration().getRequestHeaderSize(), compliance);
         parser.setHeaderCacheSize(getHttpConfiguration().getHeaderCacheSize());
         parser.setHeaderCacheCaseSensitive(getHttpConfiguration().isHeaderCacheCaseSensitive());
+        parser.setAdaptiveFieldCache(getHttpConfiguration().getAdaptiveFieldCache());
         return parser;
     }
 
@@ -585,6 +587,26 @@ public class HttpConnection extends AbstractConnection implements Runnable, Http
         }
     }
 
+    @Override
+    public long transferFrom(FileChannel file, long position, long count) throws IOException
+    {
+        // Raw bytes can only be written after the headers and
+        // if the content is delimited by Content-Length or EOF.
+        if (!_generator.isState(HttpGenerator.State.COMMITTED) ||
+            _generator.isChunking() ||
+            _generator.isNoContent() ||
+            _sendCallback._head)
+            return -1;
+
+        long transferred = getEndPoint().transferFrom(file, position, count);
+        if (transferred > 0)
+        {
+            bytesOut.add(transferred);
+            onFlushed(transferred);
+        }
+        return transferred;
+    }
+
     HttpInput.Content newContent(ByteBuffer c)
     {
         return new Content(c);
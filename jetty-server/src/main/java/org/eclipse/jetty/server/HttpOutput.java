@@ -13,10 +13,12 @@
 
 package org.eclipse.jetty.server;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.WritePendingException;
 import java.nio.charset.Charset;
@@ -978,6 +980,93 @@ public class HttpOutput extends ServletOutputStream implements Runnable
         }
     }
 
+    /**
+     * <p>Blocking write of a region of a file.</p>
+     * <p>If {@link HttpConfiguration#isUseFileChannelTransfer()} is true, no {@link Interceptor}
+     * is installed and the transport supports it, the response is committed and the bytes
+     * are transferred directly from the file to the network, see
+     * {@link HttpChannel#transferFrom(FileChannel, long, long)}; otherwise, or when the
+     * network is congested, the bytes are read into a buffer and written as normal content.</p>
+     *
+     * @param file the file to write bytes from
+     * @param position the position within the file of the first byte to write
+     * @param count the number of bytes to write
+     * @throws IOException if the file cannot be read or the write fails
+     */
+    public void transferFrom(FileChannel file, long position, long count) throws IOException
+    {
+        boolean transfer = isUseFileChannelTransfer();
+        if (transfer)
+        {
+            // Commit the response and flush the aggregated
+            // content, so that the file bytes can follow.
+            flush();
+        }
+
+        ByteBuffer buffer = null;
+        try
+        {
+            while (count > 0)
+            {
+                if (transfer)
+                {
+                    long transferred = lockedIsBlockingOpen() ? _channel.transferFrom(file, position, count) : -1;
+                    if (transferred < 0)
+                    {
+                        transfer = false;
+                    }
+                    else if (transferred > 0)
+                    {
+                        try (AutoLock l = _channelState.lock())
+                        {
+                            _written += transferred;
+                        }
+                        position += transferred;
+                        count -= transferred;
+                        continue;
+                    }
+                }
+
+                // Direct transfers are not possible or the network is congested,
+                // so write a buffer that will block until the network is writable.
+                if (buffer == null)
+                    buffer = _channel.getByteBufferPool().acquire(getBufferSize(), _channel.isUseOutputDirectByteBuffers());
+                BufferUtil.clearToFill(buffer);
+                buffer.limit((int)Math.min(buffer.capacity(), count));
+                int read = file.read(buffer, position);
+                BufferUtil.flipToFlush(buffer, 0);
+                if (read < 0)
+                    throw new EOFException("EOF reached before end of file region " + file);
+                write(buffer);
+                position += read;
+                count -= read;
+            }
+        }
+        finally
+        {
+            if (buffer != null)
+                _channel.getByteBufferPool().release(buffer);
+        }
+    }
+
+    private boolean isUseFileChannelTransfer()
+    {
+        return _interceptor == _channel && _channel.getHttpConfiguration().isUseFileChannelTransfer();
+    }
+
+    private boolean lockedIsBlockingOpen()
+    {
+        try (AutoLock l = _channelState.lock())
+        {
+            checkWritable();
+            return _state == State.OPEN && _apiState == ApiState.BLOCKING && !BufferUtil.hasContent(_aggregate);
+        }
+        catch (IOException x)
+        {
+            return false;
+        }
+    }
+
     @Override
     public void write(int b) throws IOException
     {
@@ -1166,7 +1255,7 @@ public class HttpOutput extends ServletOutputStream implements Runnable
     {
         try (Blocker blocker = _writeBlocker.acquire())
         {
-            new ReadableByteChannelWritingCB(in, blocker).iterate();
+            newReadableByteChannelWritingCB(in, blocker).iterate();
             blocker.block();
         }
     }
@@ -1217,6 +1306,84 @@ public class HttpOutput extends ServletOutputStream implements Runnable
                 });
     }
 
+    /**
+     * <p>Asynchronous write of content, that is passed to the {@link Interceptor}
+     * chain as is, without being aggregated or copied.</p>
+     * <p>Unlike {@link #sendContent(ByteBuffer, Callback)}, the content may be
+     * followed by other content, written by calling this method again once the
+     * callback has been completed. The content buffer must not be modified
+     * until the callback has been completed.</p>
+     * <p>This method cannot be mixed with the {@link #write(byte[], int, int)}
+     * methods, nor with a {@link WriteListener}.</p>
+     *
+     * @param content the content to write
+     * @param last whether the content is the last content
+     * @param callback the callback to notify when the content has been written
+     */
+    public void write(ByteBuffer content, boolean last, Callback callback)
+    {
+        if (LOG.isDebugEnabled())
+            LOG.debug("write(buffer={},last={},{})", BufferUtil.toDetailString(content), last, callback);
+
+        if (prepareWrite(content.remaining(), last, callback))
+            channelWrite(content, last,
+                new Callback.Nested(callback)
+                {
+                    @Override
+                    public void succeeded()
+                    {
+                        onWriteComplete(last, null);
+                        super.succeeded();
+                    }
+
+                    @Override
+                    public void failed(Throwable x)
+                    {
+                        onWriteComplete(last, x);
+                        super.failed(x);
+                    }
+                });
+    }
+
+    private boolean prepareWrite(int len, boolean last, Callback callback)
+    {
+        try (AutoLock l = _channelState.lock())
+        {
+            if (BufferUtil.hasContent(_aggregate))
+            {
+                callback.failed(new IOException("cannot write(ByteBuffer, boolean, Callback) after write()"));
+                return false;
+            }
+
+            if (_state != State.OPEN)
+            {
+                callback.failed(new EofException("Closed"));
+                return false;
+            }
+            if (last)
+                _state = State.CLOSING;
+
+            if (_onError != null)
+            {
+                callback.failed(_onError);
+                return false;
+            }
+
+            switch (_apiState)
+            {
+                case BLOCKING:
+                case ASYNC:
+                    _apiState = ApiState.PENDING;
+                    break;
+                default:
+                    throw new IllegalStateException(stateString());
+            }
+            if (len > 0)
+                _written += len;
+            return true;
+        }
+    }
+
     /**
      * Asynchronous send of stream content.
      * The stream will be closed after reading all content.
@@ -1246,7 +1413,14 @@ public class HttpOutput extends ServletOutputStream implements Runnable
             LOG.debug("sendContent(channel={},{})", in, callback);
 
         if (prepareSendContent(0, callback))
-            new ReadableByteChannelWritingCB(in, callback).iterate();
+            newReadableByteChannelWritingCB(in, callback).iterate();
+    }
+
+    private IteratingCallback newReadableByteChannelWritingCB(ReadableByteChannel in, Callback callback)
+    {
+        if (in instanceof FileChannel && isUseFileChannelTransfer())
+            return new FileChannelTransferringCB((FileChannel)in, callback);
+        return new ReadableByteChannelWritingCB(in, callback);
     }
 
     private boolean prepareSendContent(int len, Callback callback)
@@ -1867,6 +2041,118 @@ public class HttpOutput extends ServletOutputStream implements Runnable
         }
     }
 
+    /**
+     * An iterating callback that will commit the response and then transfer the
+     * content of a FileChannel directly to the network via
+     * {@link HttpChannel#transferFrom(FileChannel, long, long)}.
+     * When the network is congested, or direct transfers are not supported for the
+     * response, a buffer of size {@link HttpOutput#getBufferSize()} is read from the
+     * file and written to the {@link HttpChannel}, so that the callback is notified
+     * when the network is writable again.
+     */
+    private class FileChannelTransferringCB extends NestedChannelWriteCB
+    {
+        private final FileChannel _in;
+        private ByteBuffer _buffer;
+        private long _position;
+        private long _remaining = -1;
+        private boolean _transfer = true;
+        private boolean _eof;
+        private boolean _closed;
+
+        private FileChannelTransferringCB(FileChannel in, Callback callback)
+        {
+            super(callback, true);
+            _in = in;
+        }
+
+        @Override
+        protected Action process() throws Exception
+        {
+            // Only return if EOF has previously been read and thus
+            // a write done with EOF=true
+            if (_eof)
+            {
+                if (LOG.isDebugEnabled())
+                    LOG.debug("EOF of {}", this);
+                if (!_closed)
+                {
+                    _closed = true;
+                    release();
+                    IO.close(_in);
+                }
+                return Action.SUCCEEDED;
+            }
+
+            if (_remaining < 0)
+            {
+                // Commit the response before transferring the content.
+                _position = _in.position();
+                _remaining = Math.max(0, _in.size() - _position);
+                _eof = _remaining == 0;
+                channelWrite(BufferUtil.EMPTY_BUFFER, _eof, this);
+                return Action.SCHEDULED;
+            }
+
+            while (_transfer && _remaining > 0)
+            {
+                long transferred = _channel.transferFrom(_in, _position, _remaining);
+                if (transferred < 0)
+                    _transfer = false;
+                else if (transferred == 0)
+                    break;
+                else
+                    advance(transferred);
+            }
+
+            if (_remaining == 0)
+            {
+                _eof = true;
+                channelWrite(BufferUtil.EMPTY_BUFFER, true, this);
+                return Action.SCHEDULED;
+            }
+
+            // Write a buffer so that we are called back when the network is writable.
+            if (_buffer == null)
+                _buffer = _channel.getByteBufferPool().acquire(getBufferSize(), _channel.isUseOutputDirectByteBuffers());
+            BufferUtil.clearToFill(_buffer);
+            _buffer.limit((int)Math.min(_buffer.capacity(), _remaining));
+            int read = _in.read(_buffer, _position);
+            BufferUtil.flipToFlush(_buffer, 0);
+            if (read < 0)
+                _eof = true;
+            else
+                advance(read);
+            _eof |= _remaining == 0;
+            channelWrite(_buffer, _eof, this);
+            return Action.SCHEDULED;
+        }
+
+        private void advance(long bytes)
+        {
+            _position += bytes;
+            _remaining -= bytes;
+            _written += bytes;
+        }
+
+        private void release()
+        {
+            if (_buffer != null)
+            {
+                _channel.getByteBufferPool().release(_buffer);
+                _buffer = null;
+            }
+        }
+
+        @Override
+        public void onCompleteFailure(Throwable x)
+        {
+            release();
+            IO.close(_in);
+            super.onCompleteFailure(x);
+        }
+    }
+
     private static class WriteBlocker extends SharedBlockingCallback
     {
         private final HttpChannel _channel;
@@ -13,7 +13,9 @@
 
 package org.eclipse.jetty.server;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 
 import org.eclipse.jetty.http.MetaData;
 import org.eclipse.jetty.util.Callback;
@@ -37,6 +39,28 @@ public interface HttpTransport
      */
     void send(MetaData.Request request, MetaData.Response response, ByteBuffer content, boolean lastContent, Callback callback);
 
+    /**
+     * <p>Transfers response content directly from the given file to the network,
+     * bypassing the copy of the bytes through user space buffers.</p>
+     * <p>This method may only be called after the response has been committed
+     * and when no {@link #send(MetaData.Request, MetaData.Response, ByteBuffer, boolean, Callback) send}
+     * is pending; the bytes transferred are not framed by the transport, so this
+     * method returns -1 if the response content requires framing (for example chunking),
+     * or if the transport cannot write raw bytes to the network (for example TLS).</p>
+     *
+     * @param file the file to transfer bytes from
+     * @param position the position within the file of the first byte to transfer
+     * @param count the maximum number of bytes to transfer
+     * @return the number of bytes transferred, possibly zero if the network is congested,
+     * or -1 if direct transfers are not supported for the current response
+     * @throws IOException if the transfer fails
+     * @see org.eclipse.jetty.io.EndPoint#transferFrom(FileChannel, long, long)
+     */
+    default long transferFrom(FileChannel file, long position, long count) throws IOException
+    {
+        return -1;
+    }
+
     /**
      * @return true if responses can be pushed over this transport
      */
@@ -0,0 +1,572 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.server;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.eclipse.jetty.util.IO;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.component.AbstractLifeCycle;
+import org.eclipse.jetty.util.thread.AutoLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>Writer which outputs request log entries to a memory-mapped file.</p>
+ * <p>The file is mapped in segments of {@link #getSegmentSize()} bytes.
+ * Writing threads reserve space in the current segment with an atomic increment,
+ * then copy the entry bytes into the mapping concurrently, without locking and,
+ * when used with {@link CustomRequestLog}, without allocating.
+ * The thread whose reservation overflows a segment maps the next segment of the file,
+ * while the other writing threads wait for it to do so.
+ * If the next segment cannot be mapped, entries are dropped and the file is
+ * reopened by a later write, at most once per second.
+ * If the filename contains {@code yyyy_mm_dd}, a new file is started at midnight
+ * and files older than {@link #getRetainDays()} days are deleted, like
+ * {@link org.eclipse.jetty.util.RolloverFileOutputStream} does.</p>
+ * <p>The unused tail of the last segment is truncated when the file is closed,
+ * and when the file is opened in case a previous process did not close it.
+ * Entries are written as UTF-8 bytes followed by the line separator; entries
+ * larger than a segment, or written while this writer is stopped, are dropped.</p>
+ */
+@ManagedObject("Request Log writer which writes to a memory-mapped file")
+public class MappedRequestLogWriter extends AbstractLifeCycle implements RequestLog.ByteBufferWriter
+{
+    private static final Logger LOG = LoggerFactory.getLogger(MappedRequestLogWriter.class);
+    private static final String YYYY_MM_DD = "yyyy_mm_dd";
+    private static final DateTimeFormatter FILE_DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy_MM_dd", Locale.ENGLISH);
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+    private static final long REOPEN_DELAY = TimeUnit.SECONDS.toNanos(1);
+
+    private final AutoLock.WithCondition _lock = new AutoLock.WithCondition();
+    private final ThreadLocal<View> _views = ThreadLocal.withInitial(View::new);
+    private final LongAdder _dropped = new LongAdder();
+    private String _filename;
+    private boolean _append = true;
+    private int _retainDays = 31;
+    private String _timeZone = "GMT";
+    private int _segmentSize = 16 * 1024 * 1024;
+    private volatile Segment _segment;
+    private volatile long _reopenNanoTime;
+    private String _datedFilename;
+    private FileChannel _channel;
+
+    public MappedRequestLogWriter()
+    {
+        this(null);
+    }
+
+    public MappedRequestLogWriter(String filename)
+    {
+        setFilename(filename);
+    }
+
+    /**
+     * Set the output file name of the request log.
+     * The file name may contain {@code yyyy_mm_dd}, which is replaced
+     * with the current date and causes the file to roll over daily.
+     *
+     * @param filename file name of the request log
+     */
+    public void setFilename(String filename)
+    {
+        if (filename != null)
+        {
+            filename = filename.trim();
+            if (filename.length() == 0)
+                filename = null;
+        }
+        _filename = filename;
+    }
+
+    @ManagedAttribute("filename")
+    public String getFileName()
+    {
+        return _filename;
+    }
+
+    /**
+     * @return the file name of the request log with the date wildcard expanded, or null if not started
+     */
+    @ManagedAttribute("dated filename")
+    public String getDatedFilename()
+    {
+        try (AutoLock l = _lock.lock())
+        {
+            return _datedFilename;
+        }
+    }
+
+    /**
+     * @param retainDays number of days to keep a rolled over log file
+     */
+    public void setRetainDays(int retainDays)
+    {
+        _retainDays = retainDays;
+    }
+
+    @ManagedAttribute("number of days to keep a log file")
+    public int getRetainDays()
+    {
+        return _retainDays;
+    }
+
+    /**
+     * @param append true - request log file will be appended after restart,
+     * false - request log file will be overwritten after restart
+     */
+    public void setAppend(boolean append)
+    {
+        _append = append;
+    }
+
+    @ManagedAttribute("if request log file will be appended after restart")
+    public boolean isAppend()
+    {
+        return _append;
+    }
+
+    public void setTimeZone(String timeZone)
+    {
+        _timeZone = timeZone;
+    }
+
+    @ManagedAttribute("timezone of the log")
+    public String getTimeZone()
+    {
+        return _timeZone;
+    }
+
+    /**
+     * @param segmentSize the size in bytes of the file regions mapped in memory
+     */
+    public void setSegmentSize(int segmentSize)
+    {
+        if (segmentSize <= LINE_SEPARATOR.length)
+            throw new IllegalArgumentException("Invalid segment size " + segmentSize);
+        _segmentSize = segmentSize;
+    }
+
+    @ManagedAttribute("size in bytes of the file regions mapped in memory")
+    public int getSegmentSize()
+    {
+        return _segmentSize;
+    }
+
+    @ManagedAttribute("number of log entries dropped")
+    public long getDroppedEntries()
+    {
+        return _dropped.sum();
+    }
+
+    @Override
+    public void write(String requestEntry) throws IOException
+    {
+        write(ByteBuffer.wrap(requestEntry.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Override
+    public void write(ByteBuffer requestEntry) throws IOException
+    {
+        int length = requestEntry.remaining() + LINE_SEPARATOR.length;
+        while (true)
+        {
+            Segment segment = _segment;
+            if (segment == null)
+            {
+                if (reopen())
+                    continue;
+                _dropped.increment();
+                return;
+            }
+            if (length > segment.capacity)
+            {
+                _dropped.increment();
+                return;
+            }
+
+            // Once the segment has expired, reserve more than it can hold to force a rollover.
+            long reservation = System.currentTimeMillis() < segment.expires ? length : segment.capacity + 1;
+            long position = segment.reserved.getAndAdd(reservation);
+            if (position + reservation <= segment.capacity)
+            {
+                ByteBuffer view = view(segment);
+                view.clear();
+                view.position((int)position);
+                int entryPosition = requestEntry.position();
+                view.put(requestEntry);
+                requestEntry.position(entryPosition);
+                view.put(LINE_SEPARATOR);
+                segment.written.addAndGet(length);
+                segment.unpark();
+                return;
+            }
+
+            // Only the first reservation that overflows starts within
+            // the segment, and that thread is responsible for the rollover.
+            if (position <= segment.capacity)
+                rollover(segment, position);
+            else
+                awaitRollover(segment);
+        }
+    }
+
+    private ByteBuffer view(Segment segment)
+    {
+        View view = _views.get();
+        if (view.segment != segment)
+        {
+            view.segment = segment;
+            view.buffer = segment.buffer.duplicate();
+        }
+        return view.buffer;
+    }
+
+    private void rollover(Segment segment, long end)
+    {
+        segment.end = end;
+        segment.unpark();
+        try (AutoLock.WithCondition l = _lock.lock())
+        {
+            // Stopped concurrently.
+            if (_segment != segment)
+                return;
+
+            awaitWritten(segment, end);
+            Segment next = null;
+            try
+            {
+                if (System.currentTimeMillis() < segment.expires)
+                {
+                    next = map(segment.offset + end, segment.expires);
+                }
+                else
+                {
+                    closeFile(segment.offset + end);
+                    next = openFile();
+                }
+            }
+            catch (IOException x)
+            {
+                LOG.warn("Unable to roll over request log {}", _datedFilename, x);
+                closeFile(segment.offset + end);
+                _reopenNanoTime = System.nanoTime() + REOPEN_DELAY;
+            }
+            _segment = next;
+            l.signalAll();
+        }
+    }
+
+    private boolean reopen() throws IOException
+    {
+        if (!isRunning() || System.nanoTime() - _reopenNanoTime < 0)
+            return false;
+        try (AutoLock.WithCondition l = _lock.lock())
+        {
+            if (_segment != null)
+                return true;
+            if (!isRunning() || System.nanoTime() - _reopenNanoTime < 0)
+                return false;
+            try
+            {
+                _segment = openFile();
+                return true;
+            }
+            catch (IOException x)
+            {
+                LOG.warn("Unable to reopen request log {}", _filename, x);
+                _reopenNanoTime = System.nanoTime() + REOPEN_DELAY;
+                return false;
+            }
+        }
+    }
+
+    private void awaitRollover(Segment segment) throws IOException
+    {
+        try (AutoLock.WithCondition l = _lock.lock())
+        {
+            while (_segment == segment)
+            {
+                l.await();
+            }
+        }
+        catch (InterruptedException x)
+        {
+            throw new InterruptedIOException();
+        }
+    }
+
+    private void awaitWritten(Segment segment, long end)
+    {
+        // The writers that reserved space in the segment do not take the lock,
+        // so they unpark the waiter thread after they have written their entry.
+        segment.waiter = Thread.currentThread();
+        while (segment.written.get() < end)
+        {
+            LockSupport.park(segment);
+        }
+        segment.waiter = null;
+    }
+
+    private long awaitEnd(Segment segment)
+    {
+        segment.waiter = Thread.currentThread();
+        long end;
+        while ((end = segment.end) < 0)
+        {
+            LockSupport.park(segment);
+        }
+        segment.waiter = null;
+        return end;
+    }
+
+    private Segment openFile() throws IOException
+    {
+        ZoneId zone = TimeZone.getTimeZone(_timeZone).toZoneId();
+        ZonedDateTime now = ZonedDateTime.now(zone);
+        String filename = _filename;
+        long expires = Long.MAX_VALUE;
+        int datePattern = filename.toLowerCase(Locale.ENGLISH).indexOf(YYYY_MM_DD);
+        if (datePattern >= 0)
+        {
+            filename = filename.substring(0, datePattern) + FILE_DATE_FORMAT.format(now) + filename.substring(datePattern + YYYY_MM_DD.length());
+            expires = now.toLocalDate().plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+            removeOldFiles(now, datePattern);
+        }
+
+        Path path = new File(filename).toPath();
+        if (_append)
+            _channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        else
+            _channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        _datedFilename = filename;
+        try
+        {
+            long size = trimFile();
+            LOG.info("Opened {}", filename);
+            return map(size, expires);
+        }
+        catch (IOException x)
+        {
+            IO.close(_channel);
+            _channel = null;
+            throw x;
+        }
+    }
+
+    /**
+     * <p>Truncates the unused tail of the last segment mapped by a previous
+     * process that did not close the file, which is filled with NUL bytes.</p>
+     *
+     * @return the size of the file
+     * @throws IOException if the file cannot be read or truncated
+     */
+    private long trimFile() throws IOException
+    {
+        long size = _channel.size();
+        long end = size;
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        while (end > 0)
+        {
+            int length = (int)Math.min(buffer.capacity(), end);
+            long start = end - length;
+            buffer.clear().limit(length);
+            while (buffer.hasRemaining())
+            {
+                if (_channel.read(buffer, start + buffer.position()) < 0)
+                    break;
+            }
+            int last = buffer.position();
+            while (last > 0 && buffer.get(last - 1) == 0)
+            {
+                --last;
+            }
+            if (last > 0)
+            {
+                end = start + last;
+                break;
+            }
+            end = start;
+        }
+        if (end < size)
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("Truncating {} unused bytes of {}", size - end, _datedFilename);
+            _channel.truncate(end);
+        }
+        return end;
+    }
+
+    /**
+     * <p>Maps a region of the log file in memory.</p>
+     *
+     * @param channel the log file channel
+     * @param offset the offset of the region
+     * @param size the size of the region
+     * @return the mapped region
+     * @throws IOException if the region cannot be mapped
+     */
+    protected MappedByteBuffer map(FileChannel channel, long offset, int size) throws IOException
+    {
+        return channel.map(FileChannel.MapMode.READ_WRITE, offset, size);
+    }
+
+    private Segment map(long offset, long expires) throws IOException
+    {
+        MappedByteBuffer buffer = map(_channel, offset, _segmentSize);
+        if (LOG.isDebugEnabled())
+            LOG.debug("Mapped {} bytes at offset {} of {}", _segmentSize, offset, _datedFilename);
+        return new Segment(buffer, offset, expires);
+    }
+
+    private void closeFile(long size)
+    {
+        if (_channel == null)
+            return;
+        try
+        {
+            // Remove the unused tail of the last mapped segment.
+            _channel.truncate(size);
+        }
+        catch (IOException x)
+        {
+            LOG.trace("IGNORED", x);
+        }
+        try
+        {
+            _channel.close();
+        }
+        catch (IOException x)
+        {
+            LOG.trace("IGNORED", x);
+        }
+        _channel = null;
+    }
+
+    private void removeOldFiles(ZonedDateTime now, int datePattern)
+    {
+        if (_retainDays <= 0)
+            return;
+
+        File file = new File(_filename);
+        File dir = file.getAbsoluteFile().getParentFile();
+        String[] names = dir.list();
+        if (names == null)
+            return;
+
+        String name = file.getName();
+        int nameDatePattern = datePattern - (_filename.length() - name.length());
+        if (nameDatePattern < 0)
+            return;
+        String prefix = name.substring(0, nameDatePattern);
+        String suffix = name.substring(nameDatePattern + YYYY_MM_DD.length());
+        long expired = now.minusDays(_retainDays).toInstant().toEpochMilli();
+        for (String logName : names)
+        {
+            if (logName.startsWith(prefix) && logName.indexOf(suffix, prefix.length()) >= 0)
+            {
+                File log = new File(dir, logName);
+                if (log.lastModified() < expired && !log.delete() && LOG.isDebugEnabled())
+                    LOG.debug("Unable to delete {}", log);
+            }
+        }
+    }
+
+    @Override
+    protected void doStart() throws Exception
+    {
+        if (_filename == null)
+            throw new IllegalStateException("No filename");
+        try (AutoLock l = _lock.lock())
+        {
+            _reopenNanoTime = System.nanoTime();
+            _segment = openFile();
+            super.doStart();
+        }
+    }
+
+    @Override
+    protected void doStop() throws Exception
+    {
+        try (AutoLock.WithCondition l = _lock.lock())
+        {
+            super.doStop();
+            Segment segment = _segment;
+            _segment = null;
+            l.signalAll();
+            if (segment != null)
+            {
+                // Prevent further reservations, then wait for those that fit.
+                long end = segment.reserved.getAndAdd(segment.capacity + 1);
+                // A concurrent reservation overflowed first and determined the end.
+                if (end > segment.capacity)
+                    end = awaitEnd(segment);
+                awaitWritten(segment, end);
+                closeFile(segment.offset + end);
+            }
+            _datedFilename = null;
+        }
+    }
+
+    private static class Segment
+    {
+        private final AtomicLong reserved = new AtomicLong();
+        private final AtomicLong written = new AtomicLong();
+        private final MappedByteBuffer buffer;
+        private final long offset;
+        private final long capacity;
+        private final long expires;
+        private volatile long end = -1;
+        private volatile Thread waiter;
+
+        private Segment(MappedByteBuffer buffer, long offset, long expires)
+        {
+            this.buffer = buffer;
+            this.offset = offset;
+            this.capacity = buffer.capacity();
+            this.expires = expires;
+        }
+
+        private void unpark()
+        {
+            Thread waiter = this.waiter;
+            if (waiter != null)
+                LockSupport.unpark(waiter);
+        }
+    }
+
+    private static class View
+    {
+        private Segment segment;
+        private ByteBuffer buffer;
+    }
+}
@@ -20,6 +20,7 @@ import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.channels.ReadPendingException;
 import java.nio.channels.WritePendingException;
 import java.nio.charset.StandardCharsets;
@@ -833,6 +834,12 @@ public class ProxyConnectionFactory extends DetectorConnectionFactory
             return _endPoint.flush(buffer);
         }
 
+        @Override
+        public long transferFrom(FileChannel file, long position, long count) throws IOException
+        {
+            return _endPoint.transferFrom(file, position, count);
+        }
+
         @Override
         public Connection getConnection()
         {
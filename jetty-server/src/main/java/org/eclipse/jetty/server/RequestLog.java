@@ -14,6 +14,7 @@
 package org.eclipse.jetty.server;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 import org.eclipse.jetty.server.handler.RequestLogHandler;
 
@@ -44,6 +45,21 @@ public interface RequestLog
         void write(String requestEntry) throws IOException;
     }
 
+    /**
+     * <p>A {@link Writer} that also accepts log entries already encoded as UTF-8 bytes.</p>
+     * <p>{@link CustomRequestLog} encodes entries into a reusable per-thread buffer and
+     * passes them to this method, so that no String is created per request.</p>
+     */
+    interface ByteBufferWriter extends Writer
+    {
+        /**
+         * @param requestEntry the UTF-8 bytes of the log entry, without line separator;
+         * the buffer is reused once this method returns, so its bytes must be copied
+         * @throws IOException if the entry cannot be written
+         */
+        void write(ByteBuffer requestEntry) throws IOException;
+    }
+
     class Collection implements RequestLog
     {
         private final RequestLog[] _logs;
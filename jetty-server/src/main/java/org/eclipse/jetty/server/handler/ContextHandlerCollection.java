@@ -14,19 +14,24 @@
 package org.eclipse.jetty.server.handler;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.eclipse.jetty.server.Connector;
 import org.eclipse.jetty.server.Handler;
 import org.eclipse.jetty.server.HandlerContainer;
+import org.eclipse.jetty.server.HttpChannel;
 import org.eclipse.jetty.server.HttpChannelState;
 import org.eclipse.jetty.server.Request;
 import org.eclipse.jetty.util.ArrayUtil;
@@ -45,6 +50,12 @@ import org.slf4j.LoggerFactory;
  * The contexts do not need to be directly contained, only children of the contained handlers.
  * Multiple contexts may have the same context path and they are called in order until one
  * handles the request.
+ * <p>
+ * For each context path, the contexts are also indexed by their virtual hosts: exact host names,
+ * wildcard host names and connector names, so that only the contexts that may accept the host
+ * and connector of a request are called, regardless of the number of contexts that share the
+ * same context path.
+ * </p>
  */
 @ManagedObject("Context Handler Collection")
 public class ContextHandlerCollection extends HandlerCollection
@@ -66,8 +77,8 @@ public class ContextHandlerCollection extends HandlerCollection
     /**
      * Remap the contexts.  Normally this is not required as context
      * mapping is maintained as a side effect of {@link #setHandlers(Handler[])}
-     * However, if configuration changes in the deep handler structure (eg contextpath is changed), then
-     * this call will trigger a remapping.
+     * However, if configuration changes in the deep handler structure (eg contextpath or virtual
+     * hosts are changed), then this call will trigger a remapping.
      * This method is mutually excluded from {@link #deployHandler(Handler, Callback)} and
      * {@link #undeployHandler(Handler, Callback)}
      */
@@ -96,9 +107,9 @@ public class ContextHandlerCollection extends HandlerCollection
         // Create map of contextPath to handler Branch
         // A branch is a Handler that could contain 0 or more ContextHandlers
         Map<String, Branch[]> path2Branches = new HashMap<>();
-        for (Handler handler : handlers)
+        for (int h = 0; h < handlers.length; h++)
         {
-            Branch branch = new Branch(handler);
+            Branch branch = new Branch(handlers[h], h);
             for (String contextPath : branch.getContextPaths())
             {
                 Branch[] branches = path2Branches.get(contextPath);
@@ -127,7 +138,7 @@ public class ContextHandlerCollection extends HandlerCollection
 
         Mapping mapping = new Mapping(handlers, path2Branches);
         if (LOG.isDebugEnabled())
-            LOG.debug("{}", mapping._pathBranches);
+            LOG.debug("{}", mapping._pathRoutes);
         return mapping;
     }
 
@@ -170,8 +181,8 @@ public class ContextHandlerCollection extends HandlerCollection
         // handle many contexts
         if (target.startsWith("/"))
         {
-            Index<Map.Entry<String, Branch[]>> pathBranches = mapping._pathBranches;
-            if (pathBranches == null)
+            Index<Routes> pathRoutes = mapping._pathRoutes;
+            if (pathRoutes == null)
                 return;
 
             int limit = target.length() - 1;
@@ -179,15 +190,15 @@ public class ContextHandlerCollection extends HandlerCollection
             while (limit >= 0)
             {
                 // Get best match
-                Map.Entry<String, Branch[]> branches = pathBranches.getBest(target, 1, limit);
+                Routes routes = pathRoutes.getBest(target, 1, limit);
 
-                if (branches == null)
+                if (routes == null)
                     break;
 
-                int l = branches.getKey().length();
+                int l = routes.getContextPath().length();
                 if (l == 1 || target.length() == l || target.charAt(l) == '/')
                 {
-                    for (Branch branch : branches.getValue())
+                    for (Branch branch : routes.getBranches(baseRequest))
                     {
                         branch.getHandler().handle(target, baseRequest, request, response);
                         if (baseRequest.isHandled())
@@ -279,11 +290,14 @@ public class ContextHandlerCollection extends HandlerCollection
     private static final class Branch
     {
         private final Handler _handler;
+        private final int _index;
         private final ContextHandler[] _contexts;
+        private final boolean _virtualHost;
 
-        Branch(Handler handler)
+        Branch(Handler handler, int index)
         {
             _handler = handler;
+            _index = index;
 
             if (handler instanceof ContextHandler)
             {
@@ -297,6 +311,14 @@ public class ContextHandlerCollection extends HandlerCollection
             }
             else
                 _contexts = new ContextHandler[0];
+
+            boolean virtualHost = false;
+            for (ContextHandler context : _contexts)
+            {
+                if (context.getVirtualHosts() != null && context.getVirtualHosts().length > 0)
+                    virtualHost = true;
+            }
+            _virtualHost = virtualHost;
         }
 
         Set<String> getContextPaths()
@@ -311,14 +333,50 @@ public class ContextHandlerCollection extends HandlerCollection
 
         boolean hasVirtualHost()
         {
+            return _virtualHost;
+        }
+
+        /**
+         * @return whether this branch may accept requests for any host
+         */
+        boolean isAnyHost()
+        {
+            if (_contexts.length == 0)
+                return true;
             for (ContextHandler context : _contexts)
             {
-                if (context.getVirtualHosts() != null && context.getVirtualHosts().length > 0)
+                if (context.getVirtualHosts() == null || context.getVirtualHosts().length == 0)
+                    return true;
+                // A custom virtual host check cannot be indexed.
+                if (isCustomVirtualHostCheck(context))
                     return true;
             }
             return false;
         }
 
+        private static boolean isCustomVirtualHostCheck(ContextHandler context)
+        {
+            try
+            {
+                return context.getClass().getMethod("checkVirtualHost", Request.class).getDeclaringClass() != ContextHandler.class;
+            }
+            catch (NoSuchMethodException x)
+            {
+                return true;
+            }
+        }
+
+        /**
+         * Compares branches in calling order: branches with virtual hosts
+         * first, then in the order of their handlers.
+         */
+        static int compare(Branch b1, Branch b2)
+        {
+            if (b1._virtualHost != b2._virtualHost)
+                return b1._virtualHost ? -1 : 1;
+            return Integer.compare(b1._index, b2._index);
+        }
+
         ContextHandler[] getContextHandlers()
         {
             return _contexts;
@@ -336,22 +394,181 @@ public class ContextHandlerCollection extends HandlerCollection
         }
     }
 
+    /**
+     * The branches for a context path, indexed by the virtual hosts of their contexts.
+     * The index may return branches whose contexts do not accept the request,
+     * as the branch handler always checks the virtual hosts of its contexts,
+     * but never omits a branch that may accept the request.
+     */
+    private static final class Routes
+    {
+        private final String _contextPath;
+        private final Branch[] _anyHost;
+        private final Map<String, Branch[]> _hosts;
+        private final Map<String, Branch[]> _wildcardHosts;
+        private final Map<String, Branch[]> _connectors;
+
+        Routes(String contextPath, Branch[] branches)
+        {
+            _contextPath = contextPath;
+
+            List<Branch> anyHost = new ArrayList<>();
+            Map<String, List<Branch>> hosts = new HashMap<>();
+            Map<String, List<Branch>> wildcardHosts = new HashMap<>();
+            Map<String, List<Branch>> connectors = new HashMap<>();
+            for (Branch branch : branches)
+            {
+                if (branch.isAnyHost())
+                {
+                    anyHost.add(branch);
+                    continue;
+                }
+
+                for (ContextHandler context : branch.getContextHandlers())
+                {
+                    for (String vhost : context.getVirtualHosts())
+                    {
+                        String host = vhost;
+                        int connectorIndex = vhost.indexOf('@');
+                        if (connectorIndex >= 0)
+                        {
+                            host = vhost.substring(0, connectorIndex);
+                            // Entries with both a host and a connector are indexed by host only.
+                            if (host.isEmpty())
+                                add(connectors, vhost.substring(connectorIndex + 1), branch);
+                        }
+
+                        if (host.startsWith("*."))
+                            add(wildcardHosts, host.substring(1), branch);
+                        else if (!host.isEmpty())
+                            add(hosts, host, branch);
+                    }
+                }
+            }
+
+            _anyHost = anyHost.toArray(new Branch[0]);
+            _hosts = index(hosts, _anyHost);
+            _wildcardHosts = index(wildcardHosts, _anyHost);
+            _connectors = index(connectors, _anyHost);
+        }
+
+        private static void add(Map<String, List<Branch>> map, String key, Branch branch)
+        {
+            List<Branch> branches = map.computeIfAbsent(key.toLowerCase(Locale.ENGLISH), k -> new ArrayList<>());
+            if (!branches.contains(branch))
+                branches.add(branch);
+        }
+
+        private static Map<String, Branch[]> index(Map<String, List<Branch>> map, Branch[] anyHost)
+        {
+            if (map.isEmpty())
+                return Collections.emptyMap();
+            Map<String, Branch[]> result = new HashMap<>();
+            for (Map.Entry<String, List<Branch>> entry : map.entrySet())
+            {
+                result.put(entry.getKey(), merge(entry.getValue().toArray(new Branch[0]), anyHost));
+            }
+            return result;
+        }
+
+        /**
+         * Merges two arrays of branches, each in calling order, removing duplicates.
+         */
+        private static Branch[] merge(Branch[] b1, Branch[] b2)
+        {
+            if (b1 == null || b1.length == 0)
+                return b2;
+            if (b2 == null || b2.length == 0)
+                return b1;
+            Branch[] result = new Branch[b1.length + b2.length];
+            int i1 = 0;
+            int i2 = 0;
+            int length = 0;
+            while (i1 < b1.length || i2 < b2.length)
+            {
+                Branch branch;
+                if (i2 == b2.length)
+                    branch = b1[i1++];
+                else if (i1 == b1.length)
+                    branch = b2[i2++];
+                else
+                {
+                    int compare = Branch.compare(b1[i1], b2[i2]);
+                    if (compare == 0)
+                        i2++;
+                    branch = compare <= 0 ? b1[i1++] : b2[i2++];
+                }
+                result[length++] = branch;
+            }
+            return length == result.length ? result : Arrays.copyOf(result, length);
+        }
+
+        String getContextPath()
+        {
+            return _contextPath;
+        }
+
+        /**
+         * @param baseRequest the request
+         * @return the branches, in calling order, whose contexts may accept the host and connector of the request
+         */
+        Branch[] getBranches(Request baseRequest)
+        {
+            if (_hosts.isEmpty() && _wildcardHosts.isEmpty() && _connectors.isEmpty())
+                return _anyHost;
+
+            Branch[] result = null;
+            String host = baseRequest.getServerName();
+            if (host != null)
+            {
+                host = host.toLowerCase(Locale.ENGLISH);
+                if (host.endsWith("."))
+                    host = host.substring(0, host.length() - 1);
+                result = _hosts.get(host);
+                if (!_wildcardHosts.isEmpty())
+                {
+                    int dot = host.indexOf('.');
+                    if (dot >= 0)
+                        result = merge(result, _wildcardHosts.get(host.substring(dot)));
+                }
+            }
+
+            if (!_connectors.isEmpty())
+            {
+                HttpChannel channel = baseRequest.getHttpChannel();
+                Connector connector = channel == null ? null : channel.getConnector();
+                String name = connector == null ? null : connector.getName();
+                if (name != null)
+                    result = merge(result, _connectors.get(name.toLowerCase(Locale.ENGLISH)));
+            }
+
+            return result == null ? _anyHost : result;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("{%s,any=%s,hosts=%s,wildcards=%s,connectors=%s}",
+                _contextPath, Arrays.asList(_anyHost), _hosts.keySet(), _wildcardHosts.keySet(), _connectors.keySet());
+        }
+    }
+
     private static class Mapping extends Handlers
     {
         private final Map<ContextHandler, Handler> _contextBranches;
-        private final Index<Map.Entry<String, Branch[]>> _pathBranches;
+        private final Index<Routes> _pathRoutes;
 
         private Mapping(Handler[] handlers, Map<String, Branch[]> path2Branches)
         {
             super(handlers);
-            _pathBranches = new Index.Builder<Map.Entry<String, Branch[]>>()
+            _pathRoutes = new Index.Builder<Routes>()
                 .caseSensitive(true)
                 .withAll(() ->
                 {
-                    Map<String, Map.Entry<String, Branch[]>> result = new LinkedHashMap<>();
+                    Map<String, Routes> result = new LinkedHashMap<>();
                     for (Map.Entry<String, Branch[]> entry : path2Branches.entrySet())
                     {
-                        result.put(entry.getKey().substring(1), entry);
+                        result.put(entry.getKey().substring(1), new Routes(entry.getKey(), entry.getValue()));
                     }
                     return result;
                 })
@@ -14,11 +14,16 @@
 package org.eclipse.jetty.server.handler;
 
 import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.LongAdder;
 import javax.servlet.AsyncEvent;
 import javax.servlet.AsyncListener;
+import javax.servlet.DispatcherType;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -32,9 +37,10 @@ import org.eclipse.jetty.server.Response;
 import org.eclipse.jetty.util.annotation.ManagedAttribute;
 import org.eclipse.jetty.util.annotation.ManagedObject;
 import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.annotation.Name;
 import org.eclipse.jetty.util.component.Graceful;
 import org.eclipse.jetty.util.statistic.CounterStatistic;
-import org.eclipse.jetty.util.statistic.SampleStatistic;
+import org.eclipse.jetty.util.statistic.HistogramStatistic;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -42,13 +48,17 @@ import org.slf4j.LoggerFactory;
 public class StatisticsHandler extends HandlerWrapper implements Graceful
 {
     private static final Logger LOG = LoggerFactory.getLogger(StatisticsHandler.class);
+    private static final long HIGHEST_TRACKABLE_TIME = TimeUnit.HOURS.toMillis(1);
+
     private final AtomicLong _statsStartedAt = new AtomicLong();
     private final Shutdown _shutdown;
 
     private final CounterStatistic _requestStats = new CounterStatistic();
-    private final SampleStatistic _requestTimeStats = new SampleStatistic();
+    private final HistogramStatistic _requestTimeStats = new HistogramStatistic(HIGHEST_TRACKABLE_TIME);
     private final CounterStatistic _dispatchedStats = new CounterStatistic();
-    private final SampleStatistic _dispatchedTimeStats = new SampleStatistic();
+    private final HistogramStatistic _dispatchedTimeStats = new HistogramStatistic(HIGHEST_TRACKABLE_TIME);
+    private final Map<DispatcherType, HistogramStatistic> _dispatcherTypeTimeStats = new EnumMap<>(DispatcherType.class);
+    private final HistogramStatistic[] _responsesTimeStats = new HistogramStatistic[5];
     private final CounterStatistic _asyncWaitStats = new CounterStatistic();
 
     private final LongAdder _asyncDispatches = new LongAdder();
@@ -90,7 +100,7 @@ public class StatisticsHandler extends HandlerWrapper implements Graceful
             Request request = ((AsyncContextEvent)event).getHttpChannelState().getBaseRequest();
             long elapsed = System.currentTimeMillis() - request.getTimeStamp();
             _requestStats.decrement();
-            _requestTimeStats.record(elapsed);
+            recordRequestTime(request, elapsed);
             updateResponse(request);
             _asyncWaitStats.decrement();
 
@@ -101,6 +111,14 @@ public class StatisticsHandler extends HandlerWrapper implements Graceful
 
     public StatisticsHandler()
     {
+        for (DispatcherType dispatcherType : DispatcherType.values())
+        {
+            _dispatcherTypeTimeStats.put(dispatcherType, new HistogramStatistic(HIGHEST_TRACKABLE_TIME));
+        }
+        for (int i = 0; i < _responsesTimeStats.length; ++i)
+        {
+            _responsesTimeStats[i] = new HistogramStatistic(HIGHEST_TRACKABLE_TIME);
+        }
         _shutdown = new Shutdown(this)
         {
             @Override
@@ -126,6 +144,11 @@ public class StatisticsHandler extends HandlerWrapper implements Graceful
         _requestTimeStats.reset();
         _dispatchedStats.reset();
         _dispatchedTimeStats.reset();
+        _dispatcherTypeTimeStats.values().forEach(HistogramStatistic::reset);
+        for (HistogramStatistic stats : _responsesTimeStats)
+        {
+            stats.reset();
+        }
         _asyncWaitStats.reset();
 
         _asyncDispatches.reset();
@@ -151,6 +174,7 @@ public class StatisticsHandler extends HandlerWrapper implements Graceful
 
         _dispatchedStats.increment();
 
+        DispatcherType dispatcherType = baseRequest.getDispatcherType();
         final long start;
         HttpChannelState state = baseRequest.getHttpChannelState();
         if (state.isInitial())
@@ -177,6 +201,8 @@ public class StatisticsHandler extends HandlerWrapper implements Graceful
 
             _dispatchedStats.decrement();
             _dispatchedTimeStats.record(dispatched);
+            if (dispatcherType != null)
+                _dispatcherTypeTimeStats.get(dispatcherType).record(dispatched);
 
             if (state.isInitial())
             {
@@ -188,7 +214,7 @@ public class StatisticsHandler extends HandlerWrapper implements Graceful
                 else
                 {
                     _requestStats.decrement();
-                    _requestTimeStats.record(dispatched);
+                    recordRequestTime(baseRequest, dispatched);
                     updateResponse(baseRequest);
                 }
             }
@@ -198,6 +224,15 @@ public class StatisticsHandler extends HandlerWrapper implements Graceful
         }
     }
 
+    private void recordRequestTime(Request request, long elapsed)
+    {
+        _requestTimeStats.record(elapsed);
+        // Unhandled requests will fall through to the not found handler.
+        int statusClass = request.isHandled() ? request.getResponse().getStatus() / 100 : 4;
+        if (statusClass >= 1 && statusClass <= 5)
+            _responsesTimeStats[statusClass - 1].record(elapsed);
+    }
+
     protected void updateResponse(Request request)
     {
         Response response = request.getResponse();
@@ -349,6 +384,92 @@ public class StatisticsHandler extends HandlerWrapper implements Graceful
         return _requestTimeStats.getStdDev();
     }
 
+    /**
+     * @return the median time (in milliseconds) of request handling
+     * since {@link #statsReset()} was last called.
+     */
+    @ManagedAttribute("median time spent handling requests (in ms)")
+    public long getRequestTimeP50()
+    {
+        return _requestTimeStats.getValueAtPercentile(50);
+    }
+
+    /**
+     * @return the 99th percentile of time (in milliseconds) of request handling
+     * since {@link #statsReset()} was last called.
+     */
+    @ManagedAttribute("99th percentile of time spent handling requests (in ms)")
+    public long getRequestTimeP99()
+    {
+        return _requestTimeStats.getValueAtPercentile(99);
+    }
+
+    /**
+     * @return the 99.9th percentile of time (in milliseconds) of request handling
+     * since {@link #statsReset()} was last called.
+     */
+    @ManagedAttribute("99.9th percentile of time spent handling requests (in ms)")
+    public long getRequestTimeP999()
+    {
+        return _requestTimeStats.getValueAtPercentile(99.9);
+    }
+
+    /**
+     * @param percentile the percentile, between 0 and 100
+     * @return the time (in milliseconds) of request handling at the given percentile
+     * since {@link #statsReset()} was last called.
+     */
+    @ManagedOperation("time spent handling requests at the given percentile (in ms)")
+    public long getRequestTimePercentile(@Name("percentile") double percentile)
+    {
+        return _requestTimeStats.getValueAtPercentile(percentile);
+    }
+
+    /**
+     * @param statusClass the response status class, between 1 and 5
+     * @param percentile the percentile, between 0 and 100
+     * @return the time (in milliseconds) of handling requests with a response status
+     * of the given class, at the given percentile, since {@link #statsReset()} was last called.
+     */
+    @ManagedOperation("time spent handling requests with the given response status class, at the given percentile (in ms)")
+    public long getResponsesTimePercentile(@Name("statusClass") int statusClass, @Name("percentile") double percentile)
+    {
+        return getResponsesTimeHistogram(statusClass).getValueAtPercentile(percentile);
+    }
+
+    /**
+     * <p>Returns the distribution of request handling times since the previous
+     * invocation of this method, to report percentiles over periodic intervals.</p>
+     *
+     * @return the distribution of request handling times (in milliseconds) over the last interval
+     */
+    @ManagedOperation(value = "distribution of the time spent handling requests since the previous invocation (in ms)", impact = "ACTION")
+    public String takeRequestTimeIntervalSnapshot()
+    {
+        return _requestTimeStats.takeIntervalSnapshot().toString();
+    }
+
+    /**
+     * @return the distribution of request handling times (in milliseconds)
+     * since {@link #statsReset()} was last called.
+     */
+    public HistogramStatistic getRequestTimeHistogram()
+    {
+        return _requestTimeStats;
+    }
+
+    /**
+     * @param statusClass the response status class, between 1 and 5
+     * @return the distribution of handling times (in milliseconds) of requests with a
+     * response status of the given class since {@link #statsReset()} was last called.
+     */
+    public HistogramStatistic getResponsesTimeHistogram(int statusClass)
+    {
+        if (statusClass < 1 || statusClass > 5)
+            throw new IllegalArgumentException("Invalid status class " + statusClass);
+        return _responsesTimeStats[statusClass - 1];
+    }
+
     /**
      * @return the number of dispatches seen by this handler
      * since {@link #statsReset()} was last called, excluding
@@ -426,6 +547,48 @@ public class StatisticsHandler extends HandlerWrapper implements Graceful
         return _dispatchedTimeStats.getStdDev();
     }
 
+    /**
+     * @return the 99th percentile of time (in milliseconds) of dispatch handling
+     * since {@link #statsReset()} was last called.
+     */
+    @ManagedAttribute("99th percentile of time spent in dispatch handling (in ms)")
+    public long getDispatchedTimeP99()
+    {
+        return _dispatchedTimeStats.getValueAtPercentile(99);
+    }
+
+    /**
+     * @param dispatcherType the dispatcher type name, such as {@code REQUEST} or {@code ASYNC}
+     * @param percentile the percentile, between 0 and 100
+     * @return the time (in milliseconds) of handling dispatches of the given type,
+     * at the given percentile, since {@link #statsReset()} was last called.
+     */
+    @ManagedOperation("time spent in dispatch handling for the given dispatcher type, at the given percentile (in ms)")
+    public long getDispatchedTimePercentile(@Name("dispatcherType") String dispatcherType, @Name("percentile") double percentile)
+    {
+        DispatcherType type = DispatcherType.valueOf(dispatcherType.trim().toUpperCase(Locale.ENGLISH));
+        return getDispatchedTimeHistogram(type).getValueAtPercentile(percentile);
+    }
+
+    /**
+     * @return the distribution of dispatch handling times (in milliseconds)
+     * since {@link #statsReset()} was last called.
+     */
+    public HistogramStatistic getDispatchedTimeHistogram()
+    {
+        return _dispatchedTimeStats;
+    }
+
+    /**
+     * @param dispatcherType the dispatcher type
+     * @return the distribution of handling times (in milliseconds) of dispatches
+     * of the given type since {@link #statsReset()} was last called.
+     */
+    public HistogramStatistic getDispatchedTimeHistogram(DispatcherType dispatcherType)
+    {
+        return _dispatcherTypeTimeStats.get(dispatcherType);
+    }
+
     /**
      * @return the number of requests handled by this handler
      * since {@link #statsReset()} was last called, including
@@ -570,6 +733,9 @@ public class StatisticsHandler extends HandlerWrapper implements Graceful
         sb.append("Mean request time: ").append(getRequestTimeMean()).append("<br />\n");
         sb.append("Max request time: ").append(getRequestTimeMax()).append("<br />\n");
         sb.append("Request time standard deviation: ").append(getRequestTimeStdDev()).append("<br />\n");
+        sb.append("Median request time: ").append(getRequestTimeP50()).append("<br />\n");
+        sb.append("99th percentile request time: ").append(getRequestTimeP99()).append("<br />\n");
+        sb.append("99.9th percentile request time: ").append(getRequestTimeP999()).append("<br />\n");
 
         sb.append("<h2>Dispatches:</h2>\n");
         sb.append("Total dispatched: ").append(getDispatched()).append("<br />\n");
@@ -579,6 +745,7 @@ public class StatisticsHandler extends HandlerWrapper implements Graceful
         sb.append("Mean dispatched time: ").append(getDispatchedTimeMean()).append("<br />\n");
         sb.append("Max dispatched time: ").append(getDispatchedTimeMax()).append("<br />\n");
         sb.append("Dispatched time standard deviation: ").append(getDispatchedTimeStdDev()).append("<br />\n");
+        sb.append("99th percentile dispatched time: ").append(getDispatchedTimeP99()).append("<br />\n");
 
         sb.append("Total requests suspended: ").append(getAsyncRequests()).append("<br />\n");
         sb.append("Total requests expired: ").append(getExpires()).append("<br />\n");
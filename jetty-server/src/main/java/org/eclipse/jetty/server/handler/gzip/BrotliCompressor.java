@@ -0,0 +1,264 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.server.handler.gzip;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import com.aayushatharva.brotli4j.Brotli4jLoader;
+import com.aayushatharva.brotli4j.encoder.BrotliOutputStream;
+import com.aayushatharva.brotli4j.encoder.Encoder;
+
+/**
+ * <p>A streaming brotli compressor, with the same API as {@link java.util.zip.Deflater}.</p>
+ * <p>Compression is performed by the native brotli library, via the public
+ * {@link BrotliOutputStream} API of the optional {@code com.aayushatharva.brotli4j:brotli4j}
+ * dependency and its native library artifact for the current platform; see {@link #isAvailable()}.
+ * The compressed bytes produced by the native encoder are buffered until they are
+ * consumed by {@link #compress(byte[], int, int, boolean)}.</p>
+ * <p>Native brotli encoders cannot be reset, so the native encoder is created
+ * when the compression starts, and released by {@link #reset()}, so that pooled
+ * instances do not retain native memory.</p>
+ */
+public class BrotliCompressor
+{
+    public static final int DEFAULT_QUALITY = 5;
+    public static final int MAX_QUALITY = 11;
+    public static final int DEFAULT_WINDOW_BITS = 22;
+    public static final int DEFAULT_INPUT_BUFFER_SIZE = 16 * 1024;
+
+    private final Output _output = new Output();
+    private final int _inputBufferSize;
+    private int _quality;
+    private BrotliOutputStream _encoder;
+    private byte[] _input;
+    private int _inputOffset;
+    private int _inputLength;
+    private boolean _finishing;
+    private boolean _closed;
+    private boolean _flushed = true;
+
+    public BrotliCompressor()
+    {
+        this(DEFAULT_QUALITY, DEFAULT_INPUT_BUFFER_SIZE);
+    }
+
+    /**
+     * @param quality the compression quality, between 0 and {@value #MAX_QUALITY}
+     * @param inputBufferSize the size of the native input buffer
+     */
+    public BrotliCompressor(int quality, int inputBufferSize)
+    {
+        setLevel(quality);
+        _inputBufferSize = inputBufferSize;
+    }
+
+    /**
+     * @return whether the brotli library is available in the class-path and
+     * its native library has been loaded
+     */
+    public static boolean isAvailable()
+    {
+        try
+        {
+            return Brotli4jLoader.isAvailable();
+        }
+        catch (Throwable x)
+        {
+            // The optional dependency is missing.
+            return false;
+        }
+    }
+
+    public int getLevel()
+    {
+        return _quality;
+    }
+
+    /**
+     * <p>Sets the compression quality, that takes effect when the compression
+     * starts, that is before the first compression or after {@link #reset()}.</p>
+     *
+     * @param quality the compression quality, between 0 and {@value #MAX_QUALITY};
+     * values outside this range are clamped
+     */
+    public void setLevel(int quality)
+    {
+        _quality = Math.max(0, Math.min(quality, MAX_QUALITY));
+    }
+
+    /**
+     * @param bytes the bytes to compress, that must not be modified until {@link #needsInput()} returns true
+     * @param offset the offset of the bytes to compress
+     * @param length the number of bytes to compress
+     */
+    public void setInput(byte[] bytes, int offset, int length)
+    {
+        if (_finishing)
+            throw new IllegalStateException("finishing");
+        _input = bytes;
+        _inputOffset = offset;
+        _inputLength = length;
+    }
+
+    /**
+     * @return whether the input has been consumed and there are no pending compressed bytes
+     */
+    public boolean needsInput()
+    {
+        return _inputLength == 0 && !_output.hasRemaining();
+    }
+
+    /**
+     * <p>Indicates that the compressed stream should end with the current input.</p>
+     */
+    public void finish()
+    {
+        _finishing = true;
+    }
+
+    /**
+     * @return whether the compressed stream has been entirely produced
+     */
+    public boolean finished()
+    {
+        return _closed && !_output.hasRemaining();
+    }
+
+    /**
+     * <p>Compresses the input into the given array.</p>
+     *
+     * @param bytes the array to fill with compressed bytes
+     * @param offset the offset in the array
+     * @param length the max number of compressed bytes to produce
+     * @param flush whether to compress all the input passed to the native encoder
+     * @return the number of compressed bytes produced
+     * @throws IOException if the native encoder cannot be created or fails
+     */
+    public int compress(byte[] bytes, int offset, int length, boolean flush) throws IOException
+    {
+        if (_encoder == null && !_closed)
+        {
+            Brotli4jLoader.ensureAvailability();
+            Encoder.Parameters parameters = new Encoder.Parameters()
+                .setQuality(_quality)
+                .setWindow(DEFAULT_WINDOW_BITS);
+            _encoder = new BrotliOutputStream(_output, parameters, _inputBufferSize);
+        }
+
+        int produced = 0;
+        while (true)
+        {
+            produced += _output.drain(bytes, offset + produced, length - produced);
+            if (_output.hasRemaining())
+                return produced;
+
+            if (_inputLength > 0)
+            {
+                // The native encoder copies the input, and produces
+                // the compressed bytes when its input buffer is full.
+                _encoder.write(_input, _inputOffset, _inputLength);
+                _input = null;
+                _inputLength = 0;
+                _flushed = false;
+            }
+            else if (_finishing && !_closed)
+            {
+                _closed = true;
+                BrotliOutputStream encoder = _encoder;
+                _encoder = null;
+                encoder.close();
+            }
+            else if (flush && !_flushed && !_closed)
+            {
+                _flushed = true;
+                _encoder.flush();
+            }
+            else
+            {
+                return produced;
+            }
+        }
+    }
+
+    /**
+     * <p>Resets this compressor so that it can be reused to compress a new stream.</p>
+     */
+    public void reset()
+    {
+        end();
+        _input = null;
+        _inputLength = 0;
+        _finishing = false;
+        _closed = false;
+        _flushed = true;
+    }
+
+    /**
+     * <p>Releases the native encoder of this compressor.</p>
+     */
+    public void end()
+    {
+        if (_encoder != null)
+        {
+            try
+            {
+                // Closing is the only way to release the native encoder.
+                _encoder.close();
+            }
+            catch (IOException x)
+            {
+                // Ignored, the compressed stream is discarded.
+            }
+            _encoder = null;
+        }
+        _output.clear();
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{quality=%d,finishing=%b}", getClass().getSimpleName(), hashCode(), _quality, _finishing);
+    }
+
+    /**
+     * <p>The sink of the native encoder, that buffers the compressed bytes
+     * until they are drained into the array passed to {@link #compress(byte[], int, int, boolean)}.</p>
+     */
+    private static class Output extends ByteArrayOutputStream
+    {
+        private int _read;
+
+        private boolean hasRemaining()
+        {
+            return _read < count;
+        }
+
+        private int drain(byte[] bytes, int offset, int length)
+        {
+            int drained = Math.min(count - _read, length);
+            System.arraycopy(buf, _read, bytes, offset, drained);
+            _read += drained;
+            if (_read == count)
+                clear();
+            return drained;
+        }
+
+        private void clear()
+        {
+            reset();
+            _read = 0;
+        }
+    }
+}
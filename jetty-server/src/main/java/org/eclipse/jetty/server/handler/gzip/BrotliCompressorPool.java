@@ -0,0 +1,94 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.server.handler.gzip;
+
+import org.eclipse.jetty.util.component.Container;
+import org.eclipse.jetty.util.compression.CompressionPool;
+import org.eclipse.jetty.util.thread.ThreadPool;
+
+public class BrotliCompressorPool extends CompressionPool<BrotliCompressor>
+{
+    private final int quality;
+    private final int inputBufferSize;
+
+    /**
+     * Create a Pool of {@link BrotliCompressor} instances.
+     * <p>
+     * If given a capacity equal to zero the BrotliCompressors will not be pooled
+     * and will be created on acquire and ended on release.
+     * If given a negative capacity equal to zero there will be no size restrictions on the BrotliCompressorPool
+     *
+     * @param capacity maximum number of BrotliCompressors which can be contained in the pool
+     * @param quality the default compression quality for new BrotliCompressor objects
+     */
+    public BrotliCompressorPool(int capacity, int quality)
+    {
+        this(capacity, quality, BrotliCompressor.DEFAULT_INPUT_BUFFER_SIZE);
+    }
+
+    /**
+     * @param capacity maximum number of BrotliCompressors which can be contained in the pool
+     * @param quality the default compression quality for new BrotliCompressor objects
+     * @param inputBufferSize the size of the native input buffer of the BrotliCompressors
+     */
+    public BrotliCompressorPool(int capacity, int quality, int inputBufferSize)
+    {
+        super(capacity);
+        this.quality = quality;
+        this.inputBufferSize = inputBufferSize;
+    }
+
+    /**
+     * @return the default compression quality of the pooled BrotliCompressors
+     */
+    public int getCompressionLevel()
+    {
+        return quality;
+    }
+
+    @Override
+    protected BrotliCompressor newPooled()
+    {
+        return new BrotliCompressor(quality, inputBufferSize);
+    }
+
+    @Override
+    protected void end(BrotliCompressor compressor)
+    {
+        compressor.end();
+    }
+
+    @Override
+    protected void reset(BrotliCompressor compressor)
+    {
+        compressor.reset();
+        compressor.setLevel(quality);
+    }
+
+    public static BrotliCompressorPool ensurePool(Container container)
+    {
+        BrotliCompressorPool pool = container.getBean(BrotliCompressorPool.class);
+        if (pool != null)
+            return pool;
+
+        int capacity = CompressionPool.DEFAULT_CAPACITY;
+        ThreadPool.SizedThreadPool threadPool = container.getBean(ThreadPool.SizedThreadPool.class);
+        if (threadPool != null)
+            capacity = threadPool.getMaxThreads();
+
+        pool = new BrotliCompressorPool(capacity, BrotliCompressor.DEFAULT_QUALITY);
+        container.addBean(pool, true);
+        return pool;
+    }
+}
@@ -0,0 +1,82 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.server.handler.gzip;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.eclipse.jetty.http.CompressedContentFormat;
+import org.eclipse.jetty.util.BufferUtil;
+
+/**
+ * <p>A {@link ContentEncoder} for the "br" encoding, that uses a pooled {@link BrotliCompressor}.</p>
+ * <p>This encoder requires the optional brotli library; see {@link BrotliCompressor#isAvailable()}.</p>
+ */
+public class BrotliContentEncoder extends ContentEncoder
+{
+    private final BrotliCompressorPool.Entry _compressorEntry;
+    private final BrotliCompressor _compressor;
+
+    /**
+     * @param compressorEntry the pooled compressor
+     * @param level the compression quality, or a negative value to use the quality of the pooled compressor
+     */
+    public BrotliContentEncoder(BrotliCompressorPool.Entry compressorEntry, int level)
+    {
+        super(CompressedContentFormat.BR);
+        _compressorEntry = compressorEntry;
+        _compressor = compressorEntry.get();
+        if (level >= 0)
+            _compressor.setLevel(level);
+    }
+
+    @Override
+    public void setInput(byte[] bytes, int offset, int length)
+    {
+        _compressor.setInput(bytes, offset, length);
+    }
+
+    @Override
+    public boolean needsInput()
+    {
+        return _compressor.needsInput();
+    }
+
+    @Override
+    public void finish()
+    {
+        _compressor.finish();
+    }
+
+    @Override
+    public boolean finished()
+    {
+        return _compressor.finished();
+    }
+
+    @Override
+    public void encode(ByteBuffer buffer, boolean flush) throws IOException
+    {
+        int off = buffer.arrayOffset() + buffer.limit();
+        int len = BufferUtil.space(buffer);
+        int produced = _compressor.compress(buffer.array(), off, len, flush);
+        buffer.limit(buffer.limit() + produced);
+    }
+
+    @Override
+    public void release()
+    {
+        _compressorEntry.release();
+    }
+}
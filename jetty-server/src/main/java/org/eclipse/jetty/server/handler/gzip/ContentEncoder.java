@@ -0,0 +1,92 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.server.handler.gzip;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.eclipse.jetty.http.CompressedContentFormat;
+
+/**
+ * <p>Compresses response content with a content encoding, such as gzip, br or zstd.</p>
+ * <p>A ContentEncoder is obtained from {@link GzipFactory#getContentEncoder(org.eclipse.jetty.server.Request, String, long)}
+ * for a single response, and it is {@link #release() released} when the content has been
+ * compressed or when the response fails, so that its compressor can be returned to its pool.</p>
+ * <p>The API mirrors {@link java.util.zip.Deflater}: input is provided with
+ * {@link #setInput(byte[], int, int)} when {@link #needsInput()}, and compressed bytes are
+ * produced by {@link #encode(ByteBuffer, boolean)} until, after {@link #finish()},
+ * the encoder is {@link #finished()}.</p>
+ */
+public abstract class ContentEncoder
+{
+    private final CompressedContentFormat _format;
+
+    protected ContentEncoder(CompressedContentFormat format)
+    {
+        _format = format;
+    }
+
+    /**
+     * @return the format of the compressed content, that provides the
+     * {@code Content-Encoding} header and the etag suffix
+     */
+    public CompressedContentFormat getFormat()
+    {
+        return _format;
+    }
+
+    /**
+     * @param bytes the bytes to compress, that must not be modified until {@link #needsInput()} returns true
+     * @param offset the offset of the bytes to compress
+     * @param length the number of bytes to compress
+     */
+    public abstract void setInput(byte[] bytes, int offset, int length);
+
+    /**
+     * @return whether the input has been consumed
+     */
+    public abstract boolean needsInput();
+
+    /**
+     * <p>Indicates that the compressed content should end with the current input.</p>
+     */
+    public abstract void finish();
+
+    /**
+     * @return whether the compressed content has been entirely produced
+     */
+    public abstract boolean finished();
+
+    /**
+     * <p>Compresses the input, appending the compressed bytes to the space after the limit
+     * of the given buffer, that must be in flush mode and have a backing array.</p>
+     *
+     * @param buffer the buffer to append compressed bytes to
+     * @param flush whether all the input should be compressed, so that it can be
+     * decompressed by the receiver without waiting for more input
+     * @throws IOException if the compression fails
+     */
+    public abstract void encode(ByteBuffer buffer, boolean flush) throws IOException;
+
+    /**
+     * <p>Releases the compressor of this encoder, that must not be used afterwards.</p>
+     */
+    public abstract void release();
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{%s,finished=%b}", getClass().getSimpleName(), hashCode(), _format, finished());
+    }
+}
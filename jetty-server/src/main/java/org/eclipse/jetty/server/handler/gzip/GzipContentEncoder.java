@@ -0,0 +1,114 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.server.handler.gzip;
+
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import org.eclipse.jetty.http.CompressedContentFormat;
+import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.compression.DeflaterPool;
+
+/**
+ * <p>A {@link ContentEncoder} for the "gzip" encoding, that deflates the content
+ * with a pooled {@link Deflater} and adds the gzip header and trailer.</p>
+ */
+public class GzipContentEncoder extends ContentEncoder
+{
+    private static final byte[] GZIP_HEADER = new byte[]{(byte)0x1f, (byte)0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0};
+
+    private final CRC32 _crc = new CRC32();
+    private final DeflaterPool.Entry _deflaterEntry;
+    private final Deflater _deflater;
+    private boolean _header;
+    private boolean _trailer;
+
+    public GzipContentEncoder(DeflaterPool.Entry deflaterEntry)
+    {
+        this(deflaterEntry, -1);
+    }
+
+    /**
+     * @param deflaterEntry the pooled Deflater, that must not wrap the deflated bytes with a zlib header
+     * @param level the compression level, or a negative value to use the level of the pooled Deflater
+     */
+    public GzipContentEncoder(DeflaterPool.Entry deflaterEntry, int level)
+    {
+        super(CompressedContentFormat.GZIP);
+        _deflaterEntry = deflaterEntry;
+        _deflater = deflaterEntry.get();
+        if (level >= 0)
+            _deflater.setLevel(Math.min(level, Deflater.BEST_COMPRESSION));
+    }
+
+    @Override
+    public void setInput(byte[] bytes, int offset, int length)
+    {
+        _crc.update(bytes, offset, length);
+        _deflater.setInput(bytes, offset, length);
+    }
+
+    @Override
+    public boolean needsInput()
+    {
+        return _deflater.needsInput();
+    }
+
+    @Override
+    public void finish()
+    {
+        _deflater.finish();
+    }
+
+    @Override
+    public boolean finished()
+    {
+        return _trailer;
+    }
+
+    @Override
+    public void encode(ByteBuffer buffer, boolean flush)
+    {
+        if (!_header)
+        {
+            if (BufferUtil.space(buffer) < GZIP_HEADER.length)
+                return;
+            BufferUtil.fill(buffer, GZIP_HEADER, 0, GZIP_HEADER.length);
+            _header = true;
+        }
+
+        if (!_deflater.finished())
+        {
+            int off = buffer.arrayOffset() + buffer.limit();
+            int len = BufferUtil.space(buffer);
+            int produced = _deflater.deflate(buffer.array(), off, len, flush ? Deflater.SYNC_FLUSH : Deflater.NO_FLUSH);
+            buffer.limit(buffer.limit() + produced);
+        }
+
+        // If we have finished deflation and there is room for the trailer.
+        if (_deflater.finished() && !_trailer && BufferUtil.space(buffer) >= 8)
+        {
+            BufferUtil.putIntLittleEndian(buffer, (int)_crc.getValue());
+            BufferUtil.putIntLittleEndian(buffer, _deflater.getTotalIn());
+            _trailer = true;
+        }
+    }
+
+    @Override
+    public void release()
+    {
+        _deflaterEntry.release();
+    }
+}
@@ -20,5 +20,21 @@ public interface GzipFactory
 {
     DeflaterPool.Entry getDeflaterEntry(Request request, long contentLength);
 
+    /**
+     * <p>Returns the encoder to compress the response content of the given request.</p>
+     * <p>The default implementation returns a gzip encoder if {@link #getDeflaterEntry(Request, long)}
+     * returns a Deflater.</p>
+     *
+     * @param request the request
+     * @param mimeType the MIME type of the response content, without parameters, or null if unknown
+     * @param contentLength the length of the response content, or -1 if unknown
+     * @return the encoder for the response content, or null if the response content must not be compressed
+     */
+    default ContentEncoder getContentEncoder(Request request, String mimeType, long contentLength)
+    {
+        DeflaterPool.Entry deflaterEntry = getDeflaterEntry(request, contentLength);
+        return deflaterEntry == null ? null : new GzipContentEncoder(deflaterEntry);
+    }
+
     boolean isMimeTypeGzipable(String mimetype);
 }
@@ -14,9 +14,14 @@
 package org.eclipse.jetty.server.handler.gzip;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -31,9 +36,12 @@ import org.eclipse.jetty.http.CompressedContentFormat;
 import org.eclipse.jetty.http.HttpField;
 import org.eclipse.jetty.http.HttpFields;
 import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpHeaderValue;
 import org.eclipse.jetty.http.HttpMethod;
 import org.eclipse.jetty.http.MimeTypes;
 import org.eclipse.jetty.http.PreEncodedHttpField;
+import org.eclipse.jetty.http.QuotedCSV;
+import org.eclipse.jetty.http.QuotedQualityCSV;
 import org.eclipse.jetty.http.pathmap.PathSpecSet;
 import org.eclipse.jetty.server.HttpOutput;
 import org.eclipse.jetty.server.Request;
@@ -71,8 +79,8 @@ import org.slf4j.LoggerFactory;
  * </p>
  * <ol>
  * <li>
- * Does the request contain a {@code Accept-Encoding} header that specifies
- * {@code gzip} value?
+ * Does the request contain a {@code Accept-Encoding} header that accepts
+ * one of the configured encodings (see {@link #setEncodings(String...)})?
  * </li>
  * <li>
  * Is the {@link HttpServletRequest#getMethod()} allowed by the configured HTTP Method Filter.
@@ -96,6 +104,18 @@ import org.slf4j.LoggerFactory;
  * </li>
  * </ol>
  * <p>
+ * By default only the {@code gzip} encoding is used. The {@code br} and {@code zstd}
+ * encodings may be enabled with {@link #setEncodings(String...)}, in which case the
+ * encoding of the response is negotiated from the quality values of the
+ * {@code Accept-Encoding} header, with ties resolved by the order of the configured
+ * encodings. Encoders are pooled per encoding, and the compression level of each
+ * encoding may be configured per MIME type with
+ * {@link #setCompressionLevel(String, String, int)}.
+ * The {@code br} encoding requires the optional {@code com.aayushatharva.brotli4j}
+ * library and its native code for the platform, and the {@code zstd} encoding
+ * requires the optional {@code com.github.luben:zstd-jni} library.
+ * </p>
+ * <p>
  * When you encounter a configurable filter in the GzipHandler (method, paths, user-agent,
  * mime-types, etc) that has both Included and Excluded values, note that the Included
  * values always win over the Excluded values.
@@ -112,7 +132,7 @@ import org.slf4j.LoggerFactory;
  * {@code If-Match} will be evaluated by the GzipHandler to determine if it was involved
  * in compression of the response earlier.  This is usually present as a {@code --gzip} suffix
  * on the ETag that the Client User-Agent is tracking and handed to the Jetty server.
- * The special {@code --gzip} suffix on the ETag is how GzipHandler knows that the content
+ * The special {@code --gzip} suffix (or {@code --br} or {@code --zstd}) on the ETag is how GzipHandler knows that the content
  * passed through itself, and this suffix will be stripped from the Request header values
  * before the request is sent onwards to the specific webapp / servlet endpoint for
  * handling.
@@ -152,15 +172,28 @@ public class GzipHandler extends HandlerWrapper implements GzipFactory
     public static final EnumSet<HttpHeader> ETAG_HEADERS = EnumSet.of(HttpHeader.IF_MATCH, HttpHeader.IF_NONE_MATCH);
     public static final String GZIP_HANDLER_ETAGS = "o.e.j.s.h.gzip.GzipHandler.etag";
     public static final String GZIP = "gzip";
+    public static final String BR = "br";
+    public static final String ZSTD = "zstd";
     public static final String DEFLATE = "deflate";
+    public static final int DEFAULT_ENCODING_CACHE_SIZE = 100;
     public static final int DEFAULT_MIN_GZIP_SIZE = 32;
     public static final int BREAK_EVEN_GZIP_SIZE = 23;
     private static final Logger LOG = LoggerFactory.getLogger(GzipHandler.class);
     private static final HttpField X_CE_GZIP = new PreEncodedHttpField("X-Content-Encoding", "gzip");
     private static final Pattern COMMA_GZIP = Pattern.compile(".*, *gzip");
+    private static final CompressedContentFormat[] ETAG_FORMATS = {CompressedContentFormat.GZIP, CompressedContentFormat.BR, CompressedContentFormat.ZSTD};
+    private static final CompressedContentFormat NO_FORMAT = new CompressedContentFormat("identity", "");
 
     private InflaterPool _inflaterPool;
     private DeflaterPool _deflaterPool;
+    private BrotliCompressorPool _brotliCompressorPool;
+    private ZstdCompressorPool _zstdCompressorPool;
+    private String[] _encodings = {GZIP};
+    private CompressedContentFormat[] _formats = {CompressedContentFormat.GZIP};
+    private String[] _preferredEncodingOrder = {GZIP};
+    private final Map<String, CompressedContentFormat> _encodingCache = new ConcurrentHashMap<>();
+    private int _encodingCacheSize = DEFAULT_ENCODING_CACHE_SIZE;
+    private final Map<String, Map<String, Integer>> _compressionLevels = new ConcurrentHashMap<>();
     private int _minGzipSize = DEFAULT_MIN_GZIP_SIZE;
     private boolean _syncFlush = false;
     private int _inflateBufferSize = -1;
@@ -217,6 +250,48 @@ public class GzipHandler extends HandlerWrapper implements GzipFactory
             addBean(_deflaterPool);
         }
 
+        List<CompressedContentFormat> formats = new ArrayList<>();
+        for (String encoding : _encodings)
+        {
+            switch (encoding)
+            {
+                case GZIP:
+                    formats.add(CompressedContentFormat.GZIP);
+                    break;
+                case BR:
+                    if (!BrotliCompressor.isAvailable())
+                    {
+                        LOG.warn("{} brotli encoding is not available, ignoring it", this);
+                        break;
+                    }
+                    if (_brotliCompressorPool == null)
+                    {
+                        _brotliCompressorPool = BrotliCompressorPool.ensurePool(server);
+                        addBean(_brotliCompressorPool);
+                    }
+                    formats.add(CompressedContentFormat.BR);
+                    break;
+                case ZSTD:
+                    if (!ZstdCompressor.isAvailable())
+                    {
+                        LOG.warn("{} zstd encoding is not available, ignoring it", this);
+                        break;
+                    }
+                    if (_zstdCompressorPool == null)
+                    {
+                        _zstdCompressorPool = ZstdCompressorPool.ensurePool(server);
+                        addBean(_zstdCompressorPool);
+                    }
+                    formats.add(CompressedContentFormat.ZSTD);
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown encoding " + encoding);
+            }
+        }
+        _formats = formats.toArray(new CompressedContentFormat[0]);
+        _preferredEncodingOrder = formats.stream().map(CompressedContentFormat::getEncoding).toArray(String[]::new);
+        _encodingCache.clear();
+
         super.doStart();
     }
 
@@ -230,6 +305,152 @@ public class GzipHandler extends HandlerWrapper implements GzipFactory
 
         removeBean(_deflaterPool);
         _deflaterPool = null;
+
+        removeBean(_brotliCompressorPool);
+        _brotliCompressorPool = null;
+
+        removeBean(_zstdCompressorPool);
+        _zstdCompressorPool = null;
+    }
+
+    /**
+     * @return the encodings that may be used to compress responses, in order of preference
+     * @see #setEncodings(String...)
+     */
+    public String[] getEncodings()
+    {
+        return Arrays.copyOf(_encodings, _encodings.length);
+    }
+
+    /**
+     * <p>Sets the encodings that may be used to compress responses, in order of preference.</p>
+     * <p>The supported encodings are {@value #GZIP}, {@value #BR} and {@value #ZSTD}; the
+     * order is used to choose among the encodings accepted with the same quality by the
+     * {@code Accept-Encoding} request header.</p>
+     * <p>The {@value #BR} and {@value #ZSTD} encodings are ignored if their library is not available.</p>
+     *
+     * @param encodings the encodings, in order of preference
+     */
+    public void setEncodings(String... encodings)
+    {
+        if (isStarted())
+            throw new IllegalStateException(getState());
+
+        String[] values = new String[encodings.length];
+        Set<String> set = new HashSet<>();
+        for (int i = 0; i < encodings.length; ++i)
+        {
+            String encoding = StringUtil.asciiToLowerCase(encodings[i].trim());
+            if (!GZIP.equals(encoding) && !BR.equals(encoding) && !ZSTD.equals(encoding))
+                throw new IllegalArgumentException("Unsupported encoding " + encodings[i]);
+            if (!set.add(encoding))
+                throw new IllegalArgumentException("Duplicate encoding " + encodings[i]);
+            values[i] = encoding;
+        }
+        _encodings = values;
+    }
+
+    /**
+     * @param encodings the encodings that may be used to compress responses, in CSV format
+     * @see #setEncodings(String...)
+     */
+    public void setEncodingList(String encodings)
+    {
+        setEncodings(StringUtil.csvSplit(encodings));
+    }
+
+    /**
+     * @return the encodings that may be used to compress responses, in CSV format
+     * @see #getEncodings()
+     */
+    public String getEncodingList()
+    {
+        return String.join(",", _encodings);
+    }
+
+    /**
+     * @return the max number of {@code Accept-Encoding} header values whose negotiated encoding is cached
+     */
+    public int getEncodingCacheSize()
+    {
+        return _encodingCacheSize;
+    }
+
+    /**
+     * @param encodingCacheSize the max number of {@code Accept-Encoding} header values whose negotiated encoding is cached
+     */
+    public void setEncodingCacheSize(int encodingCacheSize)
+    {
+        _encodingCacheSize = encodingCacheSize;
+        if (_encodingCache.size() > encodingCacheSize)
+            _encodingCache.clear();
+    }
+
+    /**
+     * <p>Sets the compression level of the given encoding for all the MIME types that
+     * do not have a specific compression level.</p>
+     *
+     * @param encoding the encoding
+     * @param level the compression level, or a negative value to use the level of the encoding's pool
+     * @see #setCompressionLevel(String, String, int)
+     */
+    public void setCompressionLevel(String encoding, int level)
+    {
+        setCompressionLevel(encoding, "*", level);
+    }
+
+    /**
+     * <p>Sets the compression level of the given encoding for the given MIME type.</p>
+     * <p>The valid levels are 0 to 9 for {@value #GZIP}, 0 to {@value BrotliCompressor#MAX_QUALITY}
+     * for {@value #BR} and 1 to {@value ZstdCompressor#MAX_LEVEL} for {@value #ZSTD}.</p>
+     *
+     * @param encoding the encoding
+     * @param mimeType the MIME type without parameters, or {@code *} for all the MIME types
+     * @param level the compression level, or a negative value to use the level of the encoding's pool
+     */
+    public void setCompressionLevel(String encoding, String mimeType, int level)
+    {
+        String e = StringUtil.asciiToLowerCase(encoding);
+        int max;
+        switch (e)
+        {
+            case GZIP:
+                max = Deflater.BEST_COMPRESSION;
+                break;
+            case BR:
+                max = BrotliCompressor.MAX_QUALITY;
+                break;
+            case ZSTD:
+                max = ZstdCompressor.MAX_LEVEL;
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported encoding " + encoding);
+        }
+        if (level > max)
+            throw new IllegalArgumentException("Invalid " + e + " compression level " + level);
+        Map<String, Integer> levels = _compressionLevels.computeIfAbsent(e, k -> new ConcurrentHashMap<>());
+        String m = StringUtil.asciiToLowerCase(mimeType);
+        if (level < 0)
+            levels.remove(m);
+        else
+            levels.put(m, level);
+    }
+
+    /**
+     * @param encoding the encoding
+     * @param mimeType the MIME type without parameters, or null if unknown
+     * @return the compression level of the given encoding for the given MIME type,
+     * or -1 if the level of the encoding's pool is used
+     */
+    public int getCompressionLevel(String encoding, String mimeType)
+    {
+        Map<String, Integer> levels = _compressionLevels.get(StringUtil.asciiToLowerCase(encoding));
+        if (levels == null)
+            return -1;
+        Integer level = mimeType == null ? null : levels.get(StringUtil.asciiToLowerCase(mimeType));
+        if (level == null)
+            level = levels.get("*");
+        return level == null ? -1 : level;
     }
 
     /**
@@ -459,6 +680,94 @@ public class GzipHandler extends HandlerWrapper implements GzipFactory
         return _deflaterPool.acquire();
     }
 
+    @Override
+    public ContentEncoder getContentEncoder(Request request, String mimeType, long contentLength)
+    {
+        if (contentLength >= 0 && contentLength < _minGzipSize)
+        {
+            LOG.debug("{} excluded minGzipSize {}", this, request);
+            return null;
+        }
+
+        CompressedContentFormat format = getPreferredFormat(request);
+        if (format == null)
+        {
+            LOG.debug("{} excluded not accepted encoding {}", this, request);
+            return null;
+        }
+
+        int level = getCompressionLevel(format.getEncoding(), mimeType);
+        if (CompressedContentFormat.BR.equals(format))
+            return new BrotliContentEncoder(_brotliCompressorPool.acquire(), level);
+        if (CompressedContentFormat.ZSTD.equals(format))
+            return new ZstdContentEncoder(_zstdCompressorPool.acquire(), level);
+        return new GzipContentEncoder(_deflaterPool.acquire(), level);
+    }
+
+    private CompressedContentFormat getPreferredFormat(Request request)
+    {
+        List<String> headers = request.getHttpFields().getValuesList(HttpHeader.ACCEPT_ENCODING);
+        if (headers.isEmpty())
+            return null;
+        String key = headers.size() == 1 ? headers.get(0) : String.join(",", headers);
+
+        CompressedContentFormat format = _encodingCache.get(key);
+        if (format == null)
+        {
+            format = negotiate(key);
+
+            // keep cache size in check even if we get strange/malicious input
+            if (_encodingCache.size() > _encodingCacheSize)
+                _encodingCache.clear();
+
+            _encodingCache.put(key, format);
+        }
+
+        return format == NO_FORMAT ? null : format;
+    }
+
+    private CompressedContentFormat negotiate(String acceptEncoding)
+    {
+        QuotedQualityCSV qualityCSV = new QuotedQualityCSV(_preferredEncodingOrder);
+        qualityCSV.addValue(acceptEncoding);
+        for (String encoding : qualityCSV)
+        {
+            for (CompressedContentFormat format : _formats)
+            {
+                if (format.getEncoding().equalsIgnoreCase(encoding))
+                    return format;
+            }
+
+            if ("*".equals(encoding))
+            {
+                // The wildcard only matches the encodings that are not explicitly listed,
+                // which if listed have been either refused with q=0 or already considered.
+                QuotedCSV explicit = new QuotedCSV(false, acceptEncoding);
+                for (CompressedContentFormat format : _formats)
+                {
+                    boolean listed = false;
+                    for (String value : explicit)
+                    {
+                        int semi = value.indexOf(';');
+                        String token = (semi < 0 ? value : value.substring(0, semi)).trim();
+                        if (format.getEncoding().equalsIgnoreCase(token))
+                        {
+                            listed = true;
+                            break;
+                        }
+                    }
+                    if (!listed)
+                        return format;
+                }
+                return NO_FORMAT;
+            }
+
+            if (HttpHeaderValue.IDENTITY.is(encoding))
+                return NO_FORMAT;
+        }
+        return NO_FORMAT;
+    }
+
     /**
      * Get the current filter list of excluded HTTP methods
      *
@@ -625,7 +934,11 @@ public class GzipHandler extends HandlerWrapper implements GzipFactory
                     case IF_NONE_MATCH:
                     {
                         String etags = field.getValue();
-                        String etagsNoSuffix = CompressedContentFormat.GZIP.stripSuffixes(etags);
+                        String etagsNoSuffix = etags;
+                        for (CompressedContentFormat format : ETAG_FORMATS)
+                        {
+                            etagsNoSuffix = format.stripSuffixes(etagsNoSuffix);
+                        }
                         if (etagsNoSuffix.equals(etags))
                             newFields.add(field);
                         else
@@ -952,6 +1265,56 @@ public class GzipHandler extends HandlerWrapper implements GzipFactory
         _deflaterPool = deflaterPool;
     }
 
+    /**
+     * Get the BrotliCompressorPool being used. The default value of this is null before starting, but after starting
+     * with the {@value #BR} encoding enabled, if it is null it will be set to the default BrotliCompressorPool
+     * which is stored as a bean on the server.
+     * @return the BrotliCompressorPool being used.
+     */
+    public BrotliCompressorPool getBrotliCompressorPool()
+    {
+        return _brotliCompressorPool;
+    }
+
+    /**
+     * Set the BrotliCompressorPool to be used. This should be called before starting.
+     * If this value is null when starting the default pool will be used from the server.
+     * @param brotliCompressorPool the BrotliCompressorPool to use.
+     */
+    public void setBrotliCompressorPool(BrotliCompressorPool brotliCompressorPool)
+    {
+        if (isStarted())
+            throw new IllegalStateException(getState());
+
+        updateBean(_brotliCompressorPool, brotliCompressorPool);
+        _brotliCompressorPool = brotliCompressorPool;
+    }
+
+    /**
+     * Get the ZstdCompressorPool being used. The default value of this is null before starting, but after starting
+     * with the {@value #ZSTD} encoding enabled, if it is null it will be set to the default ZstdCompressorPool
+     * which is stored as a bean on the server.
+     * @return the ZstdCompressorPool being used.
+     */
+    public ZstdCompressorPool getZstdCompressorPool()
+    {
+        return _zstdCompressorPool;
+    }
+
+    /**
+     * Set the ZstdCompressorPool to be used. This should be called before starting.
+     * If this value is null when starting the default pool will be used from the server.
+     * @param zstdCompressorPool the ZstdCompressorPool to use.
+     */
+    public void setZstdCompressorPool(ZstdCompressorPool zstdCompressorPool)
+    {
+        if (isStarted())
+            throw new IllegalStateException(getState());
+
+        updateBean(_zstdCompressorPool, zstdCompressorPool);
+        _zstdCompressorPool = zstdCompressorPool;
+    }
+
     /**
      * Set the InflaterPool to be used. This should be called before starting.
      * If this value is null when starting the default pool will be used from the server.
@@ -0,0 +1,263 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.server.handler.gzip;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import com.github.luben.zstd.ZstdOutputStreamNoFinalizer;
+import com.github.luben.zstd.util.Native;
+
+/**
+ * <p>A streaming zstd compressor, with the same API as {@link java.util.zip.Deflater}.</p>
+ * <p>Compression is performed by the native zstd library, via the public
+ * {@link ZstdOutputStreamNoFinalizer} API of the optional {@code com.github.luben:zstd-jni}
+ * dependency, that bundles the native library for the supported platforms; see {@link #isAvailable()}.
+ * The compressed bytes produced by the native encoder are buffered until they are
+ * consumed by {@link #compress(byte[], int, int, boolean)}.</p>
+ * <p>The native encoder is created when the compression starts, and released
+ * by {@link #reset()}, so that pooled instances do not retain native memory.</p>
+ */
+public class ZstdCompressor
+{
+    public static final int DEFAULT_LEVEL = 3;
+    public static final int MAX_LEVEL = 22;
+    /**
+     * The max window of the "zstd" content coding is 8 MiB (RFC 9659),
+     * that the levels above 19 would otherwise exceed.
+     */
+    public static final int MAX_WINDOW_LOG = 23;
+    private static final int MAX_WINDOW_LEVEL = 19;
+
+    private final Output _output = new Output();
+    private int _level;
+    private ZstdOutputStreamNoFinalizer _encoder;
+    private byte[] _input;
+    private int _inputOffset;
+    private int _inputLength;
+    private boolean _finishing;
+    private boolean _closed;
+    private boolean _flushed = true;
+
+    public ZstdCompressor()
+    {
+        this(DEFAULT_LEVEL);
+    }
+
+    /**
+     * @param level the compression level, between 1 and {@value #MAX_LEVEL}
+     */
+    public ZstdCompressor(int level)
+    {
+        setLevel(level);
+    }
+
+    /**
+     * @return whether the zstd library is available in the class-path and
+     * its native library has been loaded
+     */
+    public static boolean isAvailable()
+    {
+        try
+        {
+            Native.load();
+            return Native.isLoaded();
+        }
+        catch (Throwable x)
+        {
+            // The optional dependency is missing, or there
+            // is no native library for the current platform.
+            return false;
+        }
+    }
+
+    public int getLevel()
+    {
+        return _level;
+    }
+
+    /**
+     * <p>Sets the compression level, that takes effect when the compression
+     * starts, that is before the first compression or after {@link #reset()}.</p>
+     *
+     * @param level the compression level, between 1 and {@value #MAX_LEVEL};
+     * values outside this range are clamped
+     */
+    public void setLevel(int level)
+    {
+        _level = Math.max(1, Math.min(level, MAX_LEVEL));
+    }
+
+    /**
+     * @param bytes the bytes to compress, that must not be modified until {@link #needsInput()} returns true
+     * @param offset the offset of the bytes to compress
+     * @param length the number of bytes to compress
+     */
+    public void setInput(byte[] bytes, int offset, int length)
+    {
+        if (_finishing)
+            throw new IllegalStateException("finishing");
+        _input = bytes;
+        _inputOffset = offset;
+        _inputLength = length;
+    }
+
+    /**
+     * @return whether the input has been consumed and there are no pending compressed bytes
+     */
+    public boolean needsInput()
+    {
+        return _inputLength == 0 && !_output.hasRemaining();
+    }
+
+    /**
+     * <p>Indicates that the compressed stream should end with the current input.</p>
+     */
+    public void finish()
+    {
+        _finishing = true;
+    }
+
+    /**
+     * @return whether the compressed stream has been entirely produced
+     */
+    public boolean finished()
+    {
+        return _closed && !_output.hasRemaining();
+    }
+
+    /**
+     * <p>Compresses the input into the given array.</p>
+     *
+     * @param bytes the array to fill with compressed bytes
+     * @param offset the offset in the array
+     * @param length the max number of compressed bytes to produce
+     * @param flush whether to compress all the input passed to the native encoder
+     * @return the number of compressed bytes produced
+     * @throws IOException if the native encoder cannot be created or fails
+     */
+    public int compress(byte[] bytes, int offset, int length, boolean flush) throws IOException
+    {
+        if (_encoder == null && !_closed)
+        {
+            _encoder = new ZstdOutputStreamNoFinalizer(_output, _level);
+            if (_level > MAX_WINDOW_LEVEL)
+                _encoder.setWindowLog(MAX_WINDOW_LOG);
+        }
+
+        int produced = 0;
+        while (true)
+        {
+            produced += _output.drain(bytes, offset + produced, length - produced);
+            if (_output.hasRemaining())
+                return produced;
+
+            if (_inputLength > 0)
+            {
+                // The native encoder copies the input, and produces
+                // the compressed bytes when its output buffer is full.
+                _encoder.write(_input, _inputOffset, _inputLength);
+                _input = null;
+                _inputLength = 0;
+                _flushed = false;
+            }
+            else if (_finishing && !_closed)
+            {
+                _closed = true;
+                ZstdOutputStreamNoFinalizer encoder = _encoder;
+                _encoder = null;
+                encoder.close();
+            }
+            else if (flush && !_flushed && !_closed)
+            {
+                _flushed = true;
+                _encoder.flush();
+            }
+            else
+            {
+                return produced;
+            }
+        }
+    }
+
+    /**
+     * <p>Resets this compressor so that it can be reused to compress a new stream.</p>
+     */
+    public void reset()
+    {
+        end();
+        _input = null;
+        _inputLength = 0;
+        _finishing = false;
+        _closed = false;
+        _flushed = true;
+    }
+
+    /**
+     * <p>Releases the native encoder of this compressor.</p>
+     */
+    public void end()
+    {
+        if (_encoder != null)
+        {
+            try
+            {
+                // Closing is the only way to release the native encoder.
+                _encoder.close();
+            }
+            catch (IOException x)
+            {
+                // Ignored, the compressed stream is discarded.
+            }
+            _encoder = null;
+        }
+        _output.clear();
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{level=%d,finishing=%b}", getClass().getSimpleName(), hashCode(), _level, _finishing);
+    }
+
+    /**
+     * <p>The sink of the native encoder, that buffers the compressed bytes
+     * until they are drained into the array passed to {@link #compress(byte[], int, int, boolean)}.</p>
+     */
+    private static class Output extends ByteArrayOutputStream
+    {
+        private int _read;
+
+        private boolean hasRemaining()
+        {
+            return _read < count;
+        }
+
+        private int drain(byte[] bytes, int offset, int length)
+        {
+            int drained = Math.min(count - _read, length);
+            System.arraycopy(buf, _read, bytes, offset, drained);
+            _read += drained;
+            if (_read == count)
+                clear();
+            return drained;
+        }
+
+        private void clear()
+        {
+            reset();
+            _read = 0;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.server.handler.gzip;
+
+import org.eclipse.jetty.util.component.Container;
+import org.eclipse.jetty.util.compression.CompressionPool;
+import org.eclipse.jetty.util.thread.ThreadPool;
+
+public class ZstdCompressorPool extends CompressionPool<ZstdCompressor>
+{
+    private final int compressionLevel;
+
+    /**
+     * Create a Pool of {@link ZstdCompressor} instances.
+     * <p>
+     * If given a capacity equal to zero the ZstdCompressors will not be pooled
+     * and will be created on acquire and ended on release.
+     * If given a negative capacity equal to zero there will be no size restrictions on the ZstdCompressorPool
+     *
+     * @param capacity maximum number of ZstdCompressors which can be contained in the pool
+     * @param compressionLevel the default compression level for new ZstdCompressor objects
+     */
+    public ZstdCompressorPool(int capacity, int compressionLevel)
+    {
+        super(capacity);
+        this.compressionLevel = compressionLevel;
+    }
+
+    /**
+     * @return the default compression level of the pooled ZstdCompressors
+     */
+    public int getCompressionLevel()
+    {
+        return compressionLevel;
+    }
+
+    @Override
+    protected ZstdCompressor newPooled()
+    {
+        return new ZstdCompressor(compressionLevel);
+    }
+
+    @Override
+    protected void end(ZstdCompressor compressor)
+    {
+        compressor.end();
+    }
+
+    @Override
+    protected void reset(ZstdCompressor compressor)
+    {
+        compressor.reset();
+        compressor.setLevel(compressionLevel);
+    }
+
+    public static ZstdCompressorPool ensurePool(Container container)
+    {
+        ZstdCompressorPool pool = container.getBean(ZstdCompressorPool.class);
+        if (pool != null)
+            return pool;
+
+        int capacity = CompressionPool.DEFAULT_CAPACITY;
+        ThreadPool.SizedThreadPool threadPool = container.getBean(ThreadPool.SizedThreadPool.class);
+        if (threadPool != null)
+            capacity = threadPool.getMaxThreads();
+
+        pool = new ZstdCompressorPool(capacity, ZstdCompressor.DEFAULT_LEVEL);
+        container.addBean(pool, true);
+        return pool;
+    }
+}
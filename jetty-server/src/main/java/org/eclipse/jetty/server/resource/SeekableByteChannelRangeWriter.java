@@ -16,8 +16,10 @@ package org.eclipse.jetty.server.resource;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.channels.SeekableByteChannel;
 
+import org.eclipse.jetty.server.HttpOutput;
 import org.eclipse.jetty.util.BufferUtil;
 import org.eclipse.jetty.util.IO;
 
@@ -64,6 +66,15 @@ public class SeekableByteChannelRangeWriter implements RangeWriter
     {
         skipTo(skipTo);
 
+        // transfer from file to network, bypassing the copy if possible
+        if (outputStream instanceof HttpOutput && channel instanceof FileChannel)
+        {
+            ((HttpOutput)outputStream).transferFrom((FileChannel)channel, skipTo, length);
+            pos = skipTo + length;
+            channel.position(pos);
+            return;
+        }
+
         // copy from channel to output stream
         long readTotal = 0;
         while (readTotal < length)
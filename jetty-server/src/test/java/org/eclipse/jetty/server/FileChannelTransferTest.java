@@ -0,0 +1,276 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.http.HttpParser;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.http.HttpTester;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.eclipse.jetty.toolchain.test.jupiter.WorkDir;
+import org.eclipse.jetty.toolchain.test.jupiter.WorkDirExtension;
+import org.eclipse.jetty.util.Callback;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+@ExtendWith(WorkDirExtension.class)
+public class FileChannelTransferTest
+{
+    public WorkDir workDir;
+
+    private final AtomicLong _notifiedContent = new AtomicLong();
+    private Server _server;
+    private ServerConnector _connector;
+    private Path _file;
+    private byte[] _bytes;
+
+    @BeforeEach
+    public void prepare() throws Exception
+    {
+        _bytes = new byte[4 * 1024 * 1024];
+        new Random().nextBytes(_bytes);
+        _file = workDir.getEmptyPathDir().resolve("content.bin");
+        Files.write(_file, _bytes);
+    }
+
+    private void start(Handler handler) throws Exception
+    {
+        _server = new Server();
+        HttpConfiguration config = new HttpConfiguration();
+        config.setUseFileChannelTransfer(true);
+        _connector = new ServerConnector(_server, new HttpConnectionFactory(config));
+        _connector.addBean(new HttpChannel.Listener()
+        {
+            @Override
+            public void onResponseContent(Request request, ByteBuffer content)
+            {
+                _notifiedContent.addAndGet(content.remaining());
+            }
+        });
+        _server.addConnector(_connector);
+        _server.setHandler(handler);
+        _server.start();
+    }
+
+    @AfterEach
+    public void dispose() throws Exception
+    {
+        if (_server != null)
+            _server.stop();
+    }
+
+    private HttpTester.Response request(String method) throws IOException
+    {
+        try (Socket socket = new Socket("localhost", _connector.getLocalPort()))
+        {
+            OutputStream output = socket.getOutputStream();
+            output.write((method + " / HTTP/1.1\r\n" +
+                "Host: localhost\r\n" +
+                "\r\n").getBytes(StandardCharsets.UTF_8));
+            output.flush();
+            HttpTester.Input input = HttpTester.from(socket.getInputStream());
+            HttpTester.Response response = new HttpTester.Response();
+            HttpParser parser = new HttpParser(response);
+            parser.setHeadResponse("HEAD".equals(method));
+            input.setHttpParser(parser);
+            HttpTester.parseResponse(input, response);
+            return response.isComplete() ? response : null;
+        }
+    }
+
+    @Test
+    public void testSendContentTransfersFile() throws Exception
+    {
+        start(new AbstractHandler()
+        {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException
+            {
+                baseRequest.setHandled(true);
+                response.setContentLengthLong(_bytes.length);
+                FileChannel channel = FileChannel.open(_file, StandardOpenOption.READ);
+                baseRequest.getResponse().getHttpOutput().sendContent(channel);
+            }
+        });
+
+        HttpTester.Response response = request("GET");
+        assertNotNull(response);
+        assertEquals(HttpStatus.OK_200, response.getStatus());
+        assertArrayEquals(_bytes, response.getContentBytes());
+        // Bytes transferred directly are not notified to listeners.
+        assertThat(_notifiedContent.get(), lessThan((long)_bytes.length));
+    }
+
+    @Test
+    public void testAsyncSendContentTransfersFile() throws Exception
+    {
+        start(new AbstractHandler()
+        {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException
+            {
+                baseRequest.setHandled(true);
+                response.setContentLengthLong(_bytes.length);
+                FileChannel channel = FileChannel.open(_file, StandardOpenOption.READ);
+                baseRequest.startAsync();
+                baseRequest.getResponse().getHttpOutput().sendContent(channel, Callback.from(() -> baseRequest.getAsyncContext().complete()));
+            }
+        });
+
+        HttpTester.Response response = request("GET");
+        assertNotNull(response);
+        assertEquals(HttpStatus.OK_200, response.getStatus());
+        assertArrayEquals(_bytes, response.getContentBytes());
+        assertThat(_notifiedContent.get(), lessThan((long)_bytes.length));
+    }
+
+    @Test
+    public void testSendContentWithoutContentLengthIsChunked() throws Exception
+    {
+        start(new AbstractHandler()
+        {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException
+            {
+                baseRequest.setHandled(true);
+                FileChannel channel = FileChannel.open(_file, StandardOpenOption.READ);
+                baseRequest.getResponse().getHttpOutput().sendContent(channel);
+            }
+        });
+
+        HttpTester.Response response = request("GET");
+        assertNotNull(response);
+        assertEquals(HttpStatus.OK_200, response.getStatus());
+        assertThat(response.get("Transfer-Encoding"), is("chunked"));
+        assertArrayEquals(_bytes, response.getContentBytes());
+        assertEquals(_bytes.length, _notifiedContent.get());
+    }
+
+    @Test
+    public void testSendContentHead() throws Exception
+    {
+        start(new AbstractHandler()
+        {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException
+            {
+                baseRequest.setHandled(true);
+                response.setContentLengthLong(_bytes.length);
+                FileChannel channel = FileChannel.open(_file, StandardOpenOption.READ);
+                baseRequest.getResponse().getHttpOutput().sendContent(channel);
+            }
+        });
+
+        HttpTester.Response response = request("HEAD");
+        assertNotNull(response);
+        assertEquals(HttpStatus.OK_200, response.getStatus());
+        assertEquals(_bytes.length, response.getLongField("Content-Length"));
+        assertThat(response.getContent(), is(""));
+    }
+
+    @Test
+    public void testTransferFromRegion() throws Exception
+    {
+        int offset = 1024 * 1024 + 13;
+        int length = 2 * 1024 * 1024;
+        start(new AbstractHandler()
+        {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException
+            {
+                baseRequest.setHandled(true);
+                response.setContentLength(length + 5);
+                HttpOutput output = baseRequest.getResponse().getHttpOutput();
+                output.write("start".getBytes(StandardCharsets.US_ASCII));
+                try (FileChannel channel = FileChannel.open(_file, StandardOpenOption.READ))
+                {
+                    output.transferFrom(channel, offset, length);
+                }
+            }
+        });
+
+        HttpTester.Response response = request("GET");
+        assertNotNull(response);
+        assertEquals(HttpStatus.OK_200, response.getStatus());
+        byte[] expected = new byte[length + 5];
+        System.arraycopy("start".getBytes(StandardCharsets.US_ASCII), 0, expected, 0, 5);
+        System.arraycopy(_bytes, offset, expected, 5, length);
+        assertArrayEquals(expected, response.getContentBytes());
+        assertThat(_notifiedContent.get(), lessThan((long)expected.length));
+    }
+
+    @Test
+    public void testTransferFromWithInterceptorCopies() throws Exception
+    {
+        start(new AbstractHandler()
+        {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException
+            {
+                baseRequest.setHandled(true);
+                HttpOutput output = baseRequest.getResponse().getHttpOutput();
+                HttpOutput.Interceptor next = output.getInterceptor();
+                output.setInterceptor(new HttpOutput.Interceptor()
+                {
+                    @Override
+                    public void write(ByteBuffer content, boolean last, Callback callback)
+                    {
+                        next.write(content, last, callback);
+                    }
+
+                    @Override
+                    public HttpOutput.Interceptor getNextInterceptor()
+                    {
+                        return next;
+                    }
+                });
+                response.setContentLengthLong(_bytes.length);
+                try (FileChannel channel = FileChannel.open(_file, StandardOpenOption.READ))
+                {
+                    output.transferFrom(channel, 0, _bytes.length);
+                }
+            }
+        });
+
+        HttpTester.Response response = request("GET");
+        assertNotNull(response);
+        assertEquals(HttpStatus.OK_200, response.getStatus());
+        assertThat(response.get("Transfer-Encoding"), nullValue());
+        assertArrayEquals(_bytes, response.getContentBytes());
+        assertEquals(_bytes.length, _notifiedContent.get());
+    }
+}
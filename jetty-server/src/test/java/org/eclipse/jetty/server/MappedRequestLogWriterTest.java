@@ -0,0 +1,259 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.logging.StacklessLogging;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.eclipse.jetty.toolchain.test.jupiter.WorkDir;
+import org.eclipse.jetty.toolchain.test.jupiter.WorkDirExtension;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@ExtendWith(WorkDirExtension.class)
+public class MappedRequestLogWriterTest
+{
+    public WorkDir workDir;
+
+    @Test
+    public void testConcurrentWritesAcrossSegments() throws Exception
+    {
+        Path file = workDir.getEmptyPathDir().resolve("request.log");
+        MappedRequestLogWriter writer = new MappedRequestLogWriter(file.toString());
+        // Small segments, so that many rollovers happen concurrently with writes.
+        writer.setSegmentSize(1024);
+        writer.start();
+
+        int threads = 8;
+        int entries = 2000;
+        Thread[] writers = new Thread[threads];
+        for (int t = 0; t < threads; ++t)
+        {
+            int thread = t;
+            writers[t] = new Thread(() ->
+            {
+                ByteBuffer buffer = ByteBuffer.allocate(64);
+                for (int i = 0; i < entries; ++i)
+                {
+                    buffer.clear();
+                    buffer.put(("thread " + thread + " entry " + i).getBytes(StandardCharsets.UTF_8));
+                    buffer.flip();
+                    try
+                    {
+                        writer.write(buffer);
+                    }
+                    catch (Exception x)
+                    {
+                        throw new RuntimeException(x);
+                    }
+                }
+            });
+            writers[t].start();
+        }
+        for (Thread thread : writers)
+        {
+            thread.join();
+        }
+        writer.stop();
+
+        // The unused tail of the last segment has been truncated.
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(threads * entries, lines.size());
+        Set<String> unique = new HashSet<>(lines);
+        assertEquals(threads * entries, unique.size());
+        for (int t = 0; t < threads; ++t)
+        {
+            assertTrue(unique.contains("thread " + t + " entry " + (entries - 1)));
+        }
+        assertEquals(0, writer.getDroppedEntries());
+    }
+
+    @Test
+    public void testAppendAfterRestart() throws Exception
+    {
+        Path file = workDir.getEmptyPathDir().resolve("request.log");
+        MappedRequestLogWriter writer = new MappedRequestLogWriter(file.toString());
+
+        writer.start();
+        writer.write("first");
+        writer.stop();
+
+        writer.start();
+        writer.write("second €");
+        writer.stop();
+
+        assertEquals(List.of("first", "second €"), Files.readAllLines(file));
+
+        writer.setAppend(false);
+        writer.start();
+        writer.write("third");
+        writer.stop();
+
+        assertEquals(List.of("third"), Files.readAllLines(file));
+    }
+
+    @Test
+    public void testUnusedTailIsTruncatedOnOpen() throws Exception
+    {
+        Path file = workDir.getEmptyPathDir().resolve("request.log");
+        // The file of a previous process that did not truncate its last segment.
+        byte[] bytes = new byte[1024];
+        byte[] entry = ("first" + System.lineSeparator()).getBytes(StandardCharsets.UTF_8);
+        System.arraycopy(entry, 0, bytes, 0, entry.length);
+        Files.write(file, bytes);
+
+        MappedRequestLogWriter writer = new MappedRequestLogWriter(file.toString());
+        writer.start();
+        writer.write("second");
+        writer.stop();
+
+        assertEquals(List.of("first", "second"), Files.readAllLines(file));
+    }
+
+    @Test
+    public void testReopenAfterRolloverFailure() throws Exception
+    {
+        Path file = workDir.getEmptyPathDir().resolve("request.log");
+        AtomicBoolean fail = new AtomicBoolean();
+        MappedRequestLogWriter writer = new MappedRequestLogWriter(file.toString())
+        {
+            @Override
+            protected MappedByteBuffer map(FileChannel channel, long offset, int size) throws IOException
+            {
+                if (fail.get())
+                    throw new IOException("explicitly_thrown_by_test");
+                return super.map(channel, offset, size);
+            }
+        };
+        writer.setSegmentSize(16);
+        writer.start();
+        writer.write("entry0");
+
+        // The rollover fails, and the entries are dropped.
+        fail.set(true);
+        try (StacklessLogging ignored = new StacklessLogging(MappedRequestLogWriter.class))
+        {
+            writer.write("entry1".repeat(2));
+            writer.write("entry2");
+        }
+        assertEquals(2, writer.getDroppedEntries());
+
+        // A later write reopens the file.
+        fail.set(false);
+        long dropped;
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        do
+        {
+            assertTrue(System.nanoTime() < deadline);
+            Thread.sleep(100);
+            dropped = writer.getDroppedEntries();
+            writer.write("entry3");
+        }
+        while (writer.getDroppedEntries() > dropped);
+        writer.stop();
+
+        List<String> lines = Files.readAllLines(file);
+        assertEquals("entry0", lines.get(0));
+        assertEquals("entry3", lines.get(lines.size() - 1));
+    }
+
+    @Test
+    public void testEntryLargerThanSegmentIsDropped() throws Exception
+    {
+        Path file = workDir.getEmptyPathDir().resolve("request.log");
+        MappedRequestLogWriter writer = new MappedRequestLogWriter(file.toString());
+        writer.setSegmentSize(16);
+        writer.start();
+        writer.write("a".repeat(16));
+        writer.write("small");
+        writer.stop();
+
+        assertEquals(1, writer.getDroppedEntries());
+        assertEquals(List.of("small"), Files.readAllLines(file));
+    }
+
+    @Test
+    public void testDatedFilename() throws Exception
+    {
+        Path dir = workDir.getEmptyPathDir();
+        MappedRequestLogWriter writer = new MappedRequestLogWriter(dir.resolve("request-yyyy_mm_dd.log").toString());
+        writer.start();
+        String datedFilename = writer.getDatedFilename();
+        writer.write("entry");
+        writer.stop();
+
+        assertTrue(datedFilename.matches(".*request-\\d{4}_\\d{2}_\\d{2}\\.log"));
+        assertEquals(List.of("entry"), Files.readAllLines(Path.of(datedFilename)));
+    }
+
+    @Test
+    public void testCustomRequestLog() throws Exception
+    {
+        Path file = workDir.getEmptyPathDir().resolve("request.log");
+        MappedRequestLogWriter writer = new MappedRequestLogWriter(file.toString());
+
+        Server server = new Server();
+        LocalConnector connector = new LocalConnector(server);
+        server.addConnector(connector);
+        CountDownLatch logged = new CountDownLatch(1);
+        server.setRequestLog(new CustomRequestLog(writer, "%m %U%q %s \"%{X-Name}i\"")
+        {
+            @Override
+            public void log(Request request, Response response)
+            {
+                super.log(request, response);
+                logged.countDown();
+            }
+        });
+        server.setHandler(new AbstractHandler()
+        {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response)
+            {
+                baseRequest.setHandled(true);
+                response.setStatus(204);
+            }
+        });
+        server.start();
+        try
+        {
+            connector.getResponse("GET /foo?bar=1 HTTP/1.1\r\nHost: localhost\r\nX-Name: café\r\nConnection: close\r\n\r\n");
+            assertTrue(logged.await(5, TimeUnit.SECONDS));
+        }
+        finally
+        {
+            server.stop();
+        }
+
+        assertEquals(List.of("GET /foo?bar=1 204 \"café\""), Files.readAllLines(file));
+    }
+}
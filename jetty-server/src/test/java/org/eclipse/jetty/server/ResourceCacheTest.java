@@ -14,6 +14,7 @@
 package org.eclipse.jetty.server;
 
 import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
@@ -21,7 +22,10 @@ import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
 
 import org.eclipse.jetty.http.CompressedContentFormat;
 import org.eclipse.jetty.http.HttpContent;
@@ -41,8 +45,11 @@ import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.not;
 import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @ExtendWith(WorkDirExtension.class)
@@ -328,9 +335,11 @@ public class ResourceCacheTest
 
         Thread.sleep(200);
 
+        // The new content pushes names[2] out of the admission window, but it
+        // is not more frequently used than the eviction victim, so it is evicted.
         content = cache.getContent(names[3], 4096);
         content.getIndirectBuffer();
-        assertEquals(61, cache.getCachedSize());
+        assertEquals(42, cache.getCachedSize());
         assertEquals(4, cache.getCachedFiles());
 
         Thread.sleep(200);
@@ -342,6 +351,170 @@ public class ResourceCacheTest
         cache.flushCache();
     }
 
+    @Test
+    public void testFrequentContentSurvivesScan() throws Exception
+    {
+        Path basePath = workDir.getEmptyPathDir();
+        for (int i = 0; i < 20; i++)
+        {
+            makeFile(basePath.resolve("scan-" + i + ".txt"), "scan " + i);
+        }
+        makeFile(basePath.resolve("hot-0.txt"), "hot 0");
+        makeFile(basePath.resolve("hot-1.txt"), "hot 1");
+
+        CachedContentFactory cache = new CachedContentFactory(null, new PathResource(basePath), new MimeTypes(), false, false, CompressedContentFormat.NONE);
+        cache.setMaxCachedFiles(4);
+
+        HttpContent hot0 = cache.getContent("hot-0.txt", 4096);
+        HttpContent hot1 = cache.getContent("hot-1.txt", 4096);
+        for (int i = 0; i < 2; i++)
+        {
+            assertThat(cache.getContent("hot-0.txt", 4096), sameInstance(hot0));
+            assertThat(cache.getContent("hot-1.txt", 4096), sameInstance(hot1));
+        }
+        assertEquals(4, cache.getCacheHits());
+        assertEquals(2, cache.getCacheMisses());
+
+        // Content accessed only once must not evict the frequently used content.
+        for (int i = 0; i < 20; i++)
+        {
+            assertThat(getContent(cache, "scan-" + i + ".txt"), is("scan " + i));
+        }
+        assertEquals(4, cache.getCachedFiles());
+        assertEquals(22, cache.getCacheMisses());
+        assertEquals(18, cache.getCacheEvictions());
+
+        assertThat(cache.getContent("hot-0.txt", 4096), sameInstance(hot0));
+        assertThat(cache.getContent("hot-1.txt", 4096), sameInstance(hot1));
+        assertEquals(6, cache.getCacheHits());
+
+        cache.resetStatistics();
+        assertEquals(0, cache.getCacheHits());
+        assertEquals(0, cache.getCacheMisses());
+        assertEquals(0, cache.getCacheEvictions());
+
+        cache.flushCache();
+        assertEquals(0, cache.getCachedFiles());
+    }
+
+    @Test
+    public void testGeneratePrecompressedInMemory() throws Exception
+    {
+        Path basePath = workDir.getEmptyPathDir();
+        String text = "compressible text ".repeat(256);
+        makeFile(basePath.resolve("text.txt"), text);
+        makeFile(basePath.resolve("small.txt"), "x");
+
+        CachedContentFactory cache = new CachedContentFactory(null, new PathResource(basePath), new MimeTypes(), false, true, new CompressedContentFormat[]{CompressedContentFormat.GZIP});
+        cache.setGeneratePrecompressed(true);
+
+        HttpContent content = cache.getContent("text.txt", 4096);
+        HttpContent gzip = content.getPrecompressedContents().get(CompressedContentFormat.GZIP);
+        assertNotNull(gzip);
+        assertEquals(1, cache.getPrecompressedGenerated());
+        assertThat(gzip.getContentEncodingValue(), is("gzip"));
+        assertTrue(gzip.getContentLengthValue() < text.length());
+        assertEquals(text, gunzip(BufferUtil.toArray(gzip.getIndirectBuffer())));
+        assertEquals(text, gunzip(BufferUtil.toArray(gzip.getDirectBuffer())));
+        assertEquals(2, cache.getCachedFiles());
+
+        // Served from the cache without compressing again.
+        assertThat(cache.getContent("text.txt", 4096), sameInstance(content));
+        assertEquals(1, cache.getPrecompressedGenerated());
+
+        // Content that does not get smaller is not served compressed.
+        assertNull(cache.getContent("small.txt", 4096).getPrecompressedContents());
+
+        // Modifying the resource invalidates the generated content.
+        Files.writeString(basePath.resolve("text.txt"), text + "modified");
+        Files.setLastModifiedTime(basePath.resolve("text.txt"), FileTime.fromMillis(System.currentTimeMillis() + 5000));
+        HttpContent modified = cache.getContent("text.txt", 4096);
+        assertThat(modified, not(sameInstance(content)));
+        gzip = modified.getPrecompressedContents().get(CompressedContentFormat.GZIP);
+        assertEquals(text + "modified", gunzip(gzip.getInputStream().readAllBytes()));
+        assertEquals(2, cache.getPrecompressedGenerated());
+
+        cache.flushCache();
+        assertEquals(0, cache.getCachedFiles());
+        assertEquals(0, cache.getCachedSize());
+    }
+
+    @Test
+    public void testIncompressibleContentIsNotCompressedAgain() throws Exception
+    {
+        Path basePath = workDir.getEmptyPathDir();
+        makeFile(basePath.resolve("small.txt"), "x");
+
+        AtomicInteger compressions = new AtomicInteger();
+        CachedContentFactory cache = new CachedContentFactory(null, new PathResource(basePath), new MimeTypes(), false, true, new CompressedContentFormat[]{CompressedContentFormat.GZIP})
+        {
+            @Override
+            protected boolean isCompressible(Resource resource)
+            {
+                compressions.incrementAndGet();
+                return super.isCompressible(resource);
+            }
+        };
+        cache.setGeneratePrecompressed(true);
+
+        assertNull(cache.getContent("small.txt", 4096).getPrecompressedContents());
+        assertEquals(1, compressions.get());
+
+        // A cache miss for the same content does not compress it again.
+        cache.flushCache();
+        assertNull(cache.getContent("small.txt", 4096).getPrecompressedContents());
+        assertEquals(1, compressions.get());
+
+        // Modified content is compressed again.
+        cache.flushCache();
+        Files.setLastModifiedTime(basePath.resolve("small.txt"), FileTime.fromMillis(System.currentTimeMillis() + 5000));
+        assertNull(cache.getContent("small.txt", 4096).getPrecompressedContents());
+        assertEquals(2, compressions.get());
+        assertEquals(0, cache.getPrecompressedGenerated());
+    }
+
+    @Test
+    public void testGeneratePrecompressedInDirectory() throws Exception
+    {
+        Path root = workDir.getEmptyPathDir();
+        Path basePath = root.resolve("base");
+        FS.ensureDirExists(basePath.resolve("dir"));
+        Path cacheDir = root.resolve("cache");
+        String text = "compressible text ".repeat(256);
+        makeFile(basePath.resolve("dir/text.txt"), text);
+
+        CachedContentFactory cache = new CachedContentFactory(null, new PathResource(basePath), new MimeTypes(), false, true, new CompressedContentFormat[]{CompressedContentFormat.GZIP});
+        cache.setGeneratePrecompressed(true);
+        cache.setPrecompressedCacheDirectory(cacheDir);
+
+        HttpContent gzip = cache.getContent("/dir/text.txt", 4096).getPrecompressedContents().get(CompressedContentFormat.GZIP);
+        Path generated = cacheDir.resolve("dir/text.txt.gz");
+        assertTrue(Files.exists(generated));
+        assertEquals(Files.size(generated), gzip.getContentLengthValue());
+        assertEquals(text, gunzip(BufferUtil.toArray(gzip.getIndirectBuffer())));
+        assertEquals(1, cache.getPrecompressedGenerated());
+
+        // The generated file is not served for requests of its path.
+        assertNull(cache.getContent("/dir/text.txt.gz", 4096));
+
+        // A new cache reuses the generated file.
+        cache.flushCache();
+        CachedContentFactory restarted = new CachedContentFactory(null, new PathResource(basePath), new MimeTypes(), false, true, new CompressedContentFormat[]{CompressedContentFormat.GZIP});
+        restarted.setGeneratePrecompressed(true);
+        restarted.setPrecompressedCacheDirectory(cacheDir);
+        gzip = restarted.getContent("/dir/text.txt", 4096).getPrecompressedContents().get(CompressedContentFormat.GZIP);
+        assertEquals(text, gunzip(BufferUtil.toArray(gzip.getIndirectBuffer())));
+        assertEquals(0, restarted.getPrecompressedGenerated());
+    }
+
+    private static String gunzip(byte[] bytes) throws IOException
+    {
+        try (GZIPInputStream input = new GZIPInputStream(new ByteArrayInputStream(bytes)))
+        {
+            return new String(input.readAllBytes(), UTF_8);
+        }
+    }
+
     @Test
     public void testNoextension() throws Exception
     {
@@ -212,6 +212,211 @@ public class ContextHandlerCollectionTest
         }
     }
 
+    @Test
+    public void testManyVirtualHostsOnSameContextPath() throws Exception
+    {
+        Server server = new Server();
+        LocalConnector connector0 = new LocalConnector(server);
+        LocalConnector connector1 = new LocalConnector(server);
+        connector1.setName("connector1");
+        server.setConnectors(new Connector[]{connector0, connector1});
+
+        ContextHandlerCollection c = new ContextHandlerCollection();
+
+        // Contexts without virtual hosts are tried in the order they were added.
+        ContextHandler first = new ContextHandler("/");
+        IsHandledHandler firstHandler = new IsHandledHandler("first");
+        first.setHandler(new AbstractHandler()
+        {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException, ServletException
+            {
+                if ("/first".equals(target))
+                    firstHandler.handle(target, baseRequest, request, response);
+            }
+        });
+        c.addHandler(first);
+
+        int count = 100;
+        IsHandledHandler[] handlers = new IsHandledHandler[count];
+        for (int i = 0; i < count; ++i)
+        {
+            ContextHandler context = new ContextHandler("/");
+            context.setVirtualHosts(new String[]{"host" + i + ".example.com"});
+            handlers[i] = new IsHandledHandler("H" + i);
+            context.setHandler(handlers[i]);
+            c.addHandler(context);
+        }
+
+        ContextHandler wildcard = new ContextHandler("/");
+        wildcard.setVirtualHosts(new String[]{"*.other.com"});
+        IsHandledHandler wildcardHandler = new IsHandledHandler("W");
+        wildcard.setHandler(wildcardHandler);
+        c.addHandler(wildcard);
+
+        ContextHandler connectorOnly = new ContextHandler("/");
+        connectorOnly.setVirtualHosts(new String[]{"@connector1"});
+        IsHandledHandler connectorOnlyHandler = new IsHandledHandler("C");
+        connectorOnly.setHandler(connectorOnlyHandler);
+        c.addHandler(connectorOnly);
+
+        ContextHandler fallback = new ContextHandler("/");
+        IsHandledHandler fallbackHandler = new IsHandledHandler("F");
+        fallback.setHandler(fallbackHandler);
+        c.addHandler(fallback);
+
+        server.setHandler(c);
+
+        try
+        {
+            server.start();
+
+            for (int i = 0; i < count; ++i)
+            {
+                String response = connector0.getResponse("GET /path HTTP/1.0\nHost: HOST" + i + ".Example.com.\n\n");
+                assertThat(response, endsWith("H" + i));
+            }
+
+            Object[][] tests = new Object[][]{
+                {connector0, "www.other.com", "/path", "W"},
+                {connector0, "other.com", "/path", "F"},
+                {connector0, "a.b.other.com", "/path", "F"},
+                {connector1, "www.other.com", "/path", "W"},
+                {connector1, "unknown.com", "/path", "C"},
+                {connector1, "host7.example.com", "/path", "H7"},
+                {connector0, "unknown.com", "/path", "F"},
+                {connector0, "unknown.com", "/first", "first"},
+                };
+
+            for (Object[] test : tests)
+            {
+                LocalConnector connector = (LocalConnector)test[0];
+                String response = connector.getResponse("GET " + test[2] + " HTTP/1.0\nHost: " + test[1] + "\n\n");
+                assertThat(test[1] + "" + test[2] + "@" + connector.getName(), response, endsWith((String)test[3]));
+            }
+
+            // Hot deploy a context on a new virtual host, that is called before the contexts without virtual hosts.
+            ContextHandler deployed = new ContextHandler("/");
+            deployed.setVirtualHosts(new String[]{"deployed.example.com"});
+            IsHandledHandler deployedHandler = new IsHandledHandler("D");
+            deployed.setHandler(deployedHandler);
+            c.addHandler(deployed);
+            deployed.start();
+
+            assertThat(connector0.getResponse("GET /path HTTP/1.0\nHost: deployed.example.com\n\n"), endsWith("D"));
+            assertThat(connector0.getResponse("GET /path HTTP/1.0\nHost: unknown.com\n\n"), endsWith("F"));
+            c.removeHandler(fallback);
+            assertThat(connector0.getResponse("GET /path HTTP/1.0\nHost: deployed.example.com\n\n"), endsWith("D"));
+            assertThat(connector0.getResponse("GET /path HTTP/1.0\nHost: unknown.com\n\n"), containsString(" 404 "));
+        }
+        finally
+        {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void testVirtualHostIndexWildcardAndConnectorOnly() throws Exception
+    {
+        Server server = new Server();
+        LocalConnector connector0 = new LocalConnector(server);
+        LocalConnector connector1 = new LocalConnector(server);
+        connector1.setName("connector1");
+        server.setConnectors(new Connector[]{connector0, connector1});
+
+        ContextHandlerCollection c = new ContextHandlerCollection();
+        // Only reachable through the wildcard index.
+        c.addHandler(newContext("/", "A", null, "*.example.com"));
+        // Only reachable through the connector index.
+        c.addHandler(newContext("/", "B", null, "@connector1"));
+        // Shadowed by the wildcard context, that was added before it.
+        c.addHandler(newContext("/", "E", null, "www.example.com"));
+        // Contexts without virtual hosts, merged in order after the others.
+        c.addHandler(newContext("/", "N1", "/n1"));
+        c.addHandler(newContext("/", "N2", null));
+        server.setHandler(c);
+
+        try
+        {
+            server.start();
+
+            Object[][] tests = new Object[][]{
+                {connector0, "www.example.com", "/", "A"},
+                {connector1, "www.example.com", "/", "A"},
+                {connector0, "x.y.example.com", "/", "N2"},
+                {connector1, "x.y.example.com", "/", "B"},
+                {connector1, "unknown.com", "/", "B"},
+                {connector0, "unknown.com", "/", "N2"},
+                {connector0, "unknown.com", "/n1", "N1"},
+                {connector0, "www.example.com", "/n1", "A"},
+                };
+            assertResponses(tests);
+
+            // Hot deploy a context without virtual hosts: it is called after the existing ones.
+            ContextHandler n0 = newContext("/", "N0", null);
+            c.addHandler(n0);
+            n0.start();
+            // Hot deploy a context with a virtual host: it is called before the contexts without virtual hosts.
+            ContextHandler d = newContext("/", "D", "/d", "unknown.com");
+            c.addHandler(d);
+            d.start();
+
+            tests = new Object[][]{
+                {connector0, "unknown.com", "/", "N2"},
+                {connector0, "unknown.com", "/n1", "N1"},
+                {connector0, "unknown.com", "/d", "D"},
+                {connector0, "other.com", "/d", "N2"},
+                {connector1, "unknown.com", "/d", "B"},
+                };
+            assertResponses(tests);
+
+            // Remove a context without virtual hosts: the merged order is preserved.
+            c.removeHandler(c.getHandlers()[4]);
+            tests = new Object[][]{
+                {connector0, "unknown.com", "/", "N0"},
+                {connector0, "unknown.com", "/n1", "N1"},
+                {connector0, "unknown.com", "/d", "D"},
+                {connector0, "www.example.com", "/x", "A"},
+                {connector1, "unknown.com", "/x", "B"},
+                };
+            assertResponses(tests);
+        }
+        finally
+        {
+            server.stop();
+        }
+    }
+
+    private static ContextHandler newContext(String contextPath, String name, String target, String... virtualHosts)
+    {
+        ContextHandler context = new ContextHandler(contextPath);
+        if (virtualHosts.length > 0)
+            context.setVirtualHosts(virtualHosts);
+        context.setHandler(new AbstractHandler()
+        {
+            @Override
+            public void handle(String t, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException
+            {
+                if (target == null || target.equals(t))
+                {
+                    baseRequest.setHandled(true);
+                    response.getWriter().print(name);
+                }
+            }
+        });
+        return context;
+    }
+
+    private static void assertResponses(Object[][] tests) throws Exception
+    {
+        for (Object[] test : tests)
+        {
+            LocalConnector connector = (LocalConnector)test[0];
+            String response = connector.getResponse("GET " + test[2] + " HTTP/1.0\nHost: " + test[1] + "\n\n");
+            assertThat(test[1] + "" + test[2] + "@" + connector.getName(), response, endsWith((String)test[3]));
+        }
+    }
+
     private void checkWildcardHost(boolean succeed, Server server, String[] contextHosts, String[] requestHosts) throws Exception
     {
         LocalConnector connector = (LocalConnector)server.getConnectors()[0];
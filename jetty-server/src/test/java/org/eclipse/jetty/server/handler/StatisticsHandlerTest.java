@@ -24,6 +24,7 @@ import java.util.concurrent.atomic.AtomicReference;
 import javax.servlet.AsyncContext;
 import javax.servlet.AsyncEvent;
 import javax.servlet.AsyncListener;
+import javax.servlet.DispatcherType;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -38,6 +39,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.greaterThanOrEqualTo;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
@@ -231,6 +233,55 @@ public class StatisticsHandlerTest
         assertEquals(2, _statsHandler.getResponses2xx());
     }
 
+    @Test
+    public void testRequestTimeHistograms() throws Exception
+    {
+        _latchHandler.reset(2);
+        _statsHandler.setHandler(new AbstractHandler()
+        {
+            @Override
+            public void handle(String path, Request request, HttpServletRequest httpRequest, HttpServletResponse httpResponse) throws IOException
+            {
+                request.setHandled(true);
+                if (path.equals("/slow"))
+                {
+                    try
+                    {
+                        Thread.sleep(100);
+                    }
+                    catch (InterruptedException x)
+                    {
+                        throw new IOException(x);
+                    }
+                    httpResponse.setStatus(HttpStatus.INTERNAL_SERVER_ERROR_500);
+                }
+            }
+        });
+        _server.start();
+
+        _connector.executeRequest("GET / HTTP/1.1\r\nHost: localhost\r\n\r\n");
+        _connector.executeRequest("GET /slow HTTP/1.1\r\nHost: localhost\r\n\r\n");
+        assertTrue(_latchHandler.await());
+
+        assertEquals(2, _statsHandler.getRequestTimeHistogram().getCount());
+        assertEquals(2, _statsHandler.getDispatchedTimeHistogram(DispatcherType.REQUEST).getCount());
+        assertEquals(0, _statsHandler.getDispatchedTimeHistogram(DispatcherType.ASYNC).getCount());
+        assertEquals(1, _statsHandler.getResponsesTimeHistogram(2).getCount());
+        assertEquals(1, _statsHandler.getResponsesTimeHistogram(5).getCount());
+        assertThat(_statsHandler.getResponsesTimePercentile(5, 50), greaterThanOrEqualTo(100L));
+        assertThat(_statsHandler.getRequestTimePercentile(100), greaterThanOrEqualTo(100L));
+        assertThat(_statsHandler.getRequestTimeP99(), greaterThanOrEqualTo(100L));
+
+        String interval = _statsHandler.takeRequestTimeIntervalSnapshot();
+        assertThat(interval, containsString("count=2"));
+        interval = _statsHandler.takeRequestTimeIntervalSnapshot();
+        assertThat(interval, containsString("count=0"));
+
+        _statsHandler.statsReset();
+        assertEquals(0, _statsHandler.getResponsesTimeHistogram(5).getCount());
+        assertEquals(0, _statsHandler.getRequestTimeP99());
+    }
+
     @Test
     public void testSuspendResume() throws Exception
     {
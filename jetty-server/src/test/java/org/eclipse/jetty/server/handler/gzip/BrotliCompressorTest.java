@@ -0,0 +1,187 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.server.handler.gzip;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import com.aayushatharva.brotli4j.decoder.BrotliInputStream;
+import com.aayushatharva.brotli4j.decoder.DecoderJNI;
+import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.StringUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class BrotliCompressorTest
+{
+    @BeforeEach
+    public void assumeBrotli()
+    {
+        // The build provides the native library on the platforms supported by brotli4j.
+        String platform = System.getProperty("jetty.brotli4j.native.platform");
+        if (StringUtil.isNotBlank(platform))
+            assertTrue(BrotliCompressor.isAvailable(), "brotli native library not available for " + platform);
+        assumeTrue(BrotliCompressor.isAvailable(), "brotli native library not available");
+    }
+
+    private static byte[] text()
+    {
+        Random random = new Random(1234);
+        StringBuilder builder = new StringBuilder("[");
+        for (int i = 0; i < 5000; ++i)
+        {
+            builder.append("{\"id\":").append(i)
+                .append(",\"name\":\"user").append(random.nextInt(1000))
+                .append("\",\"active\":").append(random.nextBoolean())
+                .append("},");
+        }
+        return builder.append("]").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] compress(BrotliCompressor compressor, byte[] data, int inputChunk, int outputChunk, boolean flush) throws Exception
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[outputChunk];
+        int offset = 0;
+        while (offset < data.length)
+        {
+            int length = Math.min(inputChunk, data.length - offset);
+            compressor.setInput(data, offset, length);
+            offset += length;
+            while (!compressor.needsInput())
+            {
+                out.write(buffer, 0, compressor.compress(buffer, 0, buffer.length, flush));
+            }
+            if (flush)
+            {
+                int produced;
+                while ((produced = compressor.compress(buffer, 0, buffer.length, true)) > 0)
+                {
+                    out.write(buffer, 0, produced);
+                }
+            }
+        }
+        compressor.finish();
+        while (!compressor.finished())
+        {
+            out.write(buffer, 0, compressor.compress(buffer, 0, buffer.length, false));
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] decompress(byte[] compressed) throws Exception
+    {
+        try (InputStream input = new BrotliInputStream(new ByteArrayInputStream(compressed)))
+        {
+            return input.readAllBytes();
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, BrotliCompressor.DEFAULT_QUALITY, BrotliCompressor.MAX_QUALITY})
+    public void testRoundTrip(int quality) throws Exception
+    {
+        byte[] data = text();
+        BrotliCompressor compressor = new BrotliCompressor(quality, BrotliCompressor.DEFAULT_INPUT_BUFFER_SIZE);
+
+        byte[] compressed = compress(compressor, data, data.length, 4096, false);
+        assertThat(compressed.length, lessThan(data.length / 3));
+        assertArrayEquals(data, decompress(compressed));
+        compressor.end();
+    }
+
+    @Test
+    public void testSmallChunksWithFlush() throws Exception
+    {
+        byte[] data = text();
+        BrotliCompressor compressor = new BrotliCompressor();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[64];
+        compressor.setInput(data, 0, 1000);
+        int produced;
+        while ((produced = compressor.compress(buffer, 0, buffer.length, true)) > 0)
+        {
+            out.write(buffer, 0, produced);
+        }
+        // The flushed bytes can be decoded before the stream ends.
+        byte[] flushed = out.toByteArray();
+        DecoderJNI.Wrapper decoder = new DecoderJNI.Wrapper(flushed.length);
+        decoder.getInputBuffer().put(flushed);
+        decoder.push(flushed.length);
+        ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+        while (decoder.hasOutput())
+        {
+            decoded.write(BufferUtil.toArray(decoder.pull()));
+        }
+        assertEquals(DecoderJNI.Status.NEEDS_MORE_INPUT, decoder.getStatus());
+        assertArrayEquals(BufferUtil.toArray(ByteBuffer.wrap(data, 0, 1000)), decoded.toByteArray());
+        decoder.destroy();
+        compressor.reset();
+
+        assertArrayEquals(data, decompress(compress(compressor, data, 1000, 64, true)));
+        compressor.end();
+    }
+
+    @Test
+    public void testPooledCompressorIsReusable() throws Exception
+    {
+        BrotliCompressorPool pool = new BrotliCompressorPool(1, 4);
+        byte[] data = text();
+
+        BrotliCompressorPool.Entry entry = pool.acquire();
+        BrotliContentEncoder encoder = new BrotliContentEncoder(entry, 9);
+        byte[] first = encode(encoder, data);
+        assertArrayEquals(data, decompress(first));
+        encoder.release();
+
+        // The pooled compressor is reset to the pool quality.
+        entry = pool.acquire();
+        assertEquals(4, entry.get().getLevel());
+        encoder = new BrotliContentEncoder(entry, -1);
+        byte[] second = encode(encoder, data);
+        assertArrayEquals(data, decompress(second));
+        assertThat(second.length, greaterThan(first.length));
+        encoder.release();
+    }
+
+    private static byte[] encode(ContentEncoder encoder, byte[] data) throws Exception
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteBuffer buffer = BufferUtil.allocate(512);
+        encoder.setInput(data, 0, data.length);
+        encoder.finish();
+        while (!encoder.finished())
+        {
+            BufferUtil.clear(buffer);
+            encoder.encode(buffer, false);
+            out.write(BufferUtil.toArray(buffer));
+        }
+        return out.toByteArray();
+    }
+}
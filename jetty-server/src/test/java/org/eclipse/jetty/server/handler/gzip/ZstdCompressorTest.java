@@ -0,0 +1,211 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.server.handler.gzip;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.compression.ZstdDecompressor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class ZstdCompressorTest
+{
+    @BeforeEach
+    public void assumeZstd()
+    {
+        assumeTrue(ZstdCompressor.isAvailable(), "zstd native library not available");
+    }
+
+    private static byte[] text()
+    {
+        Random random = new Random(1234);
+        StringBuilder builder = new StringBuilder("[");
+        for (int i = 0; i < 5000; ++i)
+        {
+            builder.append("{\"id\":").append(i)
+                .append(",\"name\":\"user").append(random.nextInt(1000))
+                .append("\",\"active\":").append(random.nextBoolean())
+                .append("},");
+        }
+        return builder.append("]").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] compress(ZstdCompressor compressor, byte[] data, int inputChunk, int outputChunk, boolean flush) throws Exception
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[outputChunk];
+        int offset = 0;
+        while (offset < data.length)
+        {
+            int length = Math.min(inputChunk, data.length - offset);
+            compressor.setInput(data, offset, length);
+            offset += length;
+            while (!compressor.needsInput())
+            {
+                out.write(buffer, 0, compressor.compress(buffer, 0, buffer.length, flush));
+            }
+            if (flush)
+            {
+                int produced;
+                while ((produced = compressor.compress(buffer, 0, buffer.length, true)) > 0)
+                {
+                    out.write(buffer, 0, produced);
+                }
+            }
+        }
+        compressor.finish();
+        while (!compressor.finished())
+        {
+            out.write(buffer, 0, compressor.compress(buffer, 0, buffer.length, false));
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] decompress(byte[] compressed, boolean finished) throws Exception
+    {
+        ZstdDecompressor decompressor = new ZstdDecompressor();
+        ByteBuffer input = ByteBuffer.wrap(compressed);
+        ByteBuffer output = ByteBuffer.allocate(8192);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        while (true)
+        {
+            output.clear();
+            int produced = decompressor.decompress(input, output);
+            out.write(output.array(), 0, produced);
+            if (produced == 0 && !input.hasRemaining())
+                break;
+        }
+        assertEquals(finished, decompressor.isFinished());
+        decompressor.end();
+        return out.toByteArray();
+    }
+
+    private static byte[] decompress(byte[] compressed) throws Exception
+    {
+        return decompress(compressed, true);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, ZstdCompressor.DEFAULT_LEVEL, 9, ZstdCompressor.MAX_LEVEL})
+    public void testRoundTrip(int level) throws Exception
+    {
+        byte[] data = text();
+        ZstdCompressor compressor = new ZstdCompressor(level);
+
+        byte[] compressed = compress(compressor, data, data.length, 4096, false);
+        assertThat(compressed.length, lessThan(data.length / 3));
+        assertArrayEquals(data, decompress(compressed));
+        compressor.end();
+    }
+
+    @Test
+    public void testSmallChunksWithFlush() throws Exception
+    {
+        byte[] data = text();
+        ZstdCompressor compressor = new ZstdCompressor();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[64];
+        compressor.setInput(data, 0, 1000);
+        int produced;
+        while ((produced = compressor.compress(buffer, 0, buffer.length, true)) > 0)
+        {
+            out.write(buffer, 0, produced);
+        }
+        // The flushed bytes can be decoded before the frame ends.
+        byte[] flushed = decompress(out.toByteArray(), false);
+        assertArrayEquals(BufferUtil.toArray(ByteBuffer.wrap(data, 0, 1000)), flushed);
+        compressor.reset();
+
+        assertArrayEquals(data, decompress(compress(compressor, data, 1000, 64, true)));
+        compressor.end();
+    }
+
+    @Test
+    public void testIncompressibleAndEmptyContent() throws Exception
+    {
+        ZstdCompressor compressor = new ZstdCompressor();
+        byte[] random = new byte[100_000];
+        new Random(1234).nextBytes(random);
+        assertArrayEquals(random, decompress(compress(compressor, random, 8192, 8192, false)));
+
+        compressor.reset();
+        byte[] empty = new byte[0];
+        assertArrayEquals(empty, decompress(compress(compressor, empty, 1, 16, false)));
+        compressor.end();
+    }
+
+    @Test
+    public void testPooledCompressorIsReusable() throws Exception
+    {
+        ZstdCompressorPool pool = new ZstdCompressorPool(1, 1);
+        byte[] data = text();
+
+        ZstdCompressorPool.Entry entry = pool.acquire();
+        ZstdContentEncoder encoder = new ZstdContentEncoder(entry, 19);
+        byte[] first = encode(encoder, data);
+        assertArrayEquals(data, decompress(first));
+        encoder.release();
+
+        // The pooled compressor is reset to the pool level.
+        entry = pool.acquire();
+        assertEquals(1, entry.get().getLevel());
+        encoder = new ZstdContentEncoder(entry, -1);
+        byte[] second = encode(encoder, data);
+        assertArrayEquals(data, decompress(second));
+        assertThat(second.length, greaterThan(first.length));
+        encoder.release();
+    }
+
+    @Test
+    public void testLevelIsClamped()
+    {
+        ZstdCompressor compressor = new ZstdCompressor(0);
+        assertEquals(1, compressor.getLevel());
+        compressor.setLevel(ZstdCompressor.MAX_LEVEL + 1);
+        assertEquals(ZstdCompressor.MAX_LEVEL, compressor.getLevel());
+        assertFalse(compressor.finished());
+        assertTrue(compressor.needsInput());
+    }
+
+    private static byte[] encode(ContentEncoder encoder, byte[] data) throws Exception
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteBuffer buffer = BufferUtil.allocate(512);
+        encoder.setInput(data, 0, data.length);
+        encoder.finish();
+        while (!encoder.finished())
+        {
+            BufferUtil.clear(buffer);
+            encoder.encode(buffer, false);
+            out.write(BufferUtil.toArray(buffer));
+        }
+        return out.toByteArray();
+    }
+}
@@ -35,6 +35,7 @@ import javax.servlet.http.HttpServletResponse;
 
 import org.eclipse.jetty.http.HttpVersion;
 import org.eclipse.jetty.io.Connection;
+import org.eclipse.jetty.io.ssl.SslHandshakeStatistics;
 import org.eclipse.jetty.server.HttpConfiguration;
 import org.eclipse.jetty.server.HttpConnectionFactory;
 import org.eclipse.jetty.server.Request;
@@ -49,6 +50,8 @@ import org.hamcrest.Matchers;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -183,6 +186,49 @@ public class SslConnectionFactoryTest
         assertEquals(0, history.size());
     }
 
+    @ParameterizedTest
+    @ValueSource(strings = {"TLSv1.2", "TLSv1.3"})
+    public void testHandshakeStatistics(String protocol) throws Exception
+    {
+        SslHandshakeStatistics statistics = new SslHandshakeStatistics();
+        _connector.addBean(statistics);
+        statistics.start();
+
+        SslContextFactory clientContextFactory = new SslContextFactory.Client(true);
+        clientContextFactory.setIncludeProtocols(protocol);
+        clientContextFactory.start();
+        try
+        {
+            for (int i = 0; i < 3; ++i)
+            {
+                String response = getResponse(clientContextFactory, "127.0.0.1", "127.0.0.1", null);
+                assertThat(response, Matchers.startsWith("HTTP/1.1 200 OK"));
+            }
+
+            assertEquals(3, statistics.getHandshakes());
+            assertEquals(1, statistics.getFullHandshakes());
+            assertEquals(2, statistics.getResumedHandshakes());
+            assertEquals(0, statistics.getFailedHandshakes());
+            assertEquals(3L, statistics.getHandshakeDurationHistogram().values().stream().mapToLong(Long::longValue).sum());
+            assertEquals(3L, statistics.getProtocols().get(protocol));
+            assertEquals(3L, statistics.getCipherSuites().values().stream().mapToLong(Long::longValue).sum());
+
+            // Invalidated sessions cannot be resumed; the JDK does not
+            // store its stateless TLS 1.2 session tickets in the cache.
+            if ("TLSv1.3".equals(protocol))
+            {
+                SslContextFactory.Server serverContextFactory = _connector.getBean(SslConnectionFactory.class).getSslContextFactory();
+                assertThat(serverContextFactory.invalidateSslSessions(), Matchers.greaterThan(0));
+                getResponse(clientContextFactory, "127.0.0.1", "127.0.0.1", null);
+                assertEquals(2, statistics.getFullHandshakes());
+            }
+        }
+        finally
+        {
+            clientContextFactory.stop();
+        }
+    }
+
     @Test
     public void testServerWithoutHttpConnectionFactory() throws Exception
     {
@@ -203,9 +249,22 @@ public class SslConnectionFactoryTest
     {
         SslContextFactory clientContextFactory = new SslContextFactory.Client(true);
         clientContextFactory.start();
+        try
+        {
+            return getResponse(clientContextFactory, sniHost, reqHost, cn);
+        }
+        finally
+        {
+            clientContextFactory.stop();
+        }
+    }
+
+    private String getResponse(SslContextFactory clientContextFactory, String sniHost, String reqHost, String cn) throws Exception
+    {
         SSLSocketFactory factory = clientContextFactory.getSslContext().getSocketFactory();
 
         SSLSocket sslSocket = (SSLSocket)factory.createSocket("127.0.0.1", _port);
+        sslSocket.setEnabledProtocols(clientContextFactory.getSelectedProtocols());
 
         if (cn != null)
         {
@@ -229,7 +288,6 @@ public class SslConnectionFactoryTest
         String response = IO.toString(sslSocket.getInputStream());
 
         sslSocket.close();
-        clientContextFactory.stop();
         return response;
     }
 }
@@ -14,6 +14,7 @@
 package org.eclipse.jetty.servlet;
 
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.StringTokenizer;
@@ -36,6 +37,7 @@ import org.eclipse.jetty.server.ResourceService.WelcomeFactory;
 import org.eclipse.jetty.server.handler.ContextHandler;
 import org.eclipse.jetty.server.handler.ResourceHandler;
 import org.eclipse.jetty.util.URIUtil;
+import org.eclipse.jetty.util.compression.DeflaterPool;
 import org.eclipse.jetty.util.resource.Resource;
 import org.eclipse.jetty.util.resource.ResourceFactory;
 import org.slf4j.Logger;
@@ -81,6 +83,17 @@ import org.slf4j.LoggerFactory;
  *                    If set to a boolean True, then a default set of compressed formats
  *                    will be used, otherwise no precompressed formats.
  *
+ *  generatePrecompressed
+ *                    If set to true, and a cache is configured, the gzip variant of
+ *                    cached static content that has no precompressed file is generated
+ *                    the first time the content is served and then cached, rather
+ *                    than being compressed by the GzipHandler for every request.
+ *                    (default false)
+ *
+ *  precompressedCacheDirectory
+ *                    The directory where the generated precompressed variants are stored.
+ *                    If not set, the generated variants are kept in memory.
+ *
  *  resourceBase      Set to replace the context resource base
  *
  *  resourceCache     If set, this is a context attribute name, which the servlet
@@ -170,7 +183,8 @@ public class DefaultServlet extends HttpServlet implements ResourceFactory, Welc
         _resourceService.setAcceptRanges(getInitBoolean("acceptRanges", _resourceService.isAcceptRanges()));
         _resourceService.setDirAllowed(getInitBoolean("dirAllowed", _resourceService.isDirAllowed()));
         _resourceService.setRedirectWelcome(getInitBoolean("redirectWelcome", _resourceService.isRedirectWelcome()));
-        _resourceService.setPrecompressedFormats(parsePrecompressedFormats(getInitParameter("precompressed"), getInitBoolean("gzip", false)));
+        boolean generatePrecompressed = getInitBoolean("generatePrecompressed", false);
+        _resourceService.setPrecompressedFormats(parsePrecompressedFormats(getInitParameter("precompressed"), getInitBoolean("gzip", false) || generatePrecompressed));
         _resourceService.setPathInfoOnly(getInitBoolean("pathInfoOnly", _resourceService.isPathInfoOnly()));
         _resourceService.setEtags(getInitBoolean("etags", _resourceService.isEtags()));
 
@@ -259,7 +273,18 @@ public class DefaultServlet extends HttpServlet implements ResourceFactory, Welc
                     _cache.setMaxCachedFileSize(maxCachedFileSize);
                 if (maxCachedFiles >= -1)
                     _cache.setMaxCachedFiles(maxCachedFiles);
+                if (generatePrecompressed)
+                {
+                    // Share the deflaters with the GzipHandler.
+                    _cache.setDeflaterPool(DeflaterPool.ensurePool(_contextHandler.getServer()));
+                    String precompressedCacheDirectory = getInitParameter("precompressedCacheDirectory");
+                    if (precompressedCacheDirectory != null)
+                        _cache.setPrecompressedCacheDirectory(Path.of(precompressedCacheDirectory));
+                    _cache.setGeneratePrecompressed(true);
+                }
                 _servletContext.setAttribute(resourceCache == null ? "resourceCache" : resourceCache, _cache);
+                // Expose the cache statistics via JMX.
+                _contextHandler.addBean(_cache);
             }
         }
         catch (Exception e)
@@ -476,7 +501,10 @@ public class DefaultServlet extends HttpServlet implements ResourceFactory, Welc
     public void destroy()
     {
         if (_cache != null)
+        {
             _cache.flushCache();
+            _contextHandler.removeBean(_cache);
+        }
         super.destroy();
     }
 
@@ -39,14 +39,19 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import com.aayushatharva.brotli4j.decoder.BrotliInputStream;
 import org.eclipse.jetty.http.CompressedContentFormat;
 import org.eclipse.jetty.http.HttpTester;
 import org.eclipse.jetty.server.HttpOutput;
 import org.eclipse.jetty.server.LocalConnector;
 import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.handler.gzip.BrotliCompressor;
 import org.eclipse.jetty.server.handler.gzip.GzipHandler;
+import org.eclipse.jetty.server.handler.gzip.ZstdCompressor;
 import org.eclipse.jetty.util.BufferUtil;
 import org.eclipse.jetty.util.IO;
+import org.eclipse.jetty.util.StringUtil;
+import org.eclipse.jetty.util.compression.ZstdDecompressor;
 import org.hamcrest.Matchers;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -60,6 +65,8 @@ import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.nullValue;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
 public class GzipHandlerTest
 {
@@ -504,6 +511,103 @@ public class GzipHandlerTest
         assertEquals(__content, testOut.toString("UTF8"));
     }
 
+    @Test
+    public void testBrotliNegotiatedByQuality() throws Exception
+    {
+        String platform = System.getProperty("jetty.brotli4j.native.platform");
+        if (StringUtil.isNotBlank(platform))
+            assertTrue(BrotliCompressor.isAvailable(), "brotli native library not available for " + platform);
+        assumeTrue(BrotliCompressor.isAvailable(), "brotli native library not available");
+
+        _server.stop();
+        gzipHandler.setEncodings(GzipHandler.GZIP, GzipHandler.BR);
+        _server.start();
+
+        HttpTester.Request request = HttpTester.newRequest();
+        request.setMethod("GET");
+        request.setURI("/ctx/content?vary=Accept-Encoding,Other");
+        request.setVersion("HTTP/1.0");
+        request.setHeader("Host", "tester");
+        request.setHeader("accept-encoding", "gzip;q=0.5, br");
+
+        HttpTester.Response response = HttpTester.parseResponse(_connector.getResponse(request.generate()));
+
+        assertThat(response.getStatus(), is(200));
+        assertThat(response.get("Content-Encoding"), Matchers.equalToIgnoringCase("br"));
+        assertThat(response.get("ETag"), is(String.format("W/\"%x" + CompressedContentFormat.BR.getEtagSuffix() + "\"", __content.hashCode())));
+
+        InputStream testIn = new BrotliInputStream(new ByteArrayInputStream(response.getContentBytes()));
+        ByteArrayOutputStream testOut = new ByteArrayOutputStream();
+        IO.copy(testIn, testOut);
+        assertEquals(__content, testOut.toString("UTF8"));
+
+        // With equal qualities, the configured order wins.
+        request.setHeader("accept-encoding", "br, gzip");
+        response = HttpTester.parseResponse(_connector.getResponse(request.generate()));
+        assertThat(response.getStatus(), is(200));
+        assertThat(response.get("Content-Encoding"), Matchers.equalToIgnoringCase("gzip"));
+    }
+
+    @Test
+    public void testZstdNegotiatedByQuality() throws Exception
+    {
+        assumeTrue(ZstdCompressor.isAvailable(), "zstd native library not available");
+
+        _server.stop();
+        gzipHandler.setEncodings(GzipHandler.GZIP, GzipHandler.ZSTD);
+        gzipHandler.setCompressionLevel(GzipHandler.ZSTD, "*", 9);
+        _server.start();
+
+        HttpTester.Request request = HttpTester.newRequest();
+        request.setMethod("GET");
+        request.setURI("/ctx/content?vary=Accept-Encoding,Other");
+        request.setVersion("HTTP/1.0");
+        request.setHeader("Host", "tester");
+        request.setHeader("accept-encoding", "gzip;q=0.5, zstd");
+
+        HttpTester.Response response = HttpTester.parseResponse(_connector.getResponse(request.generate()));
+
+        assertThat(response.getStatus(), is(200));
+        assertThat(response.get("Content-Encoding"), Matchers.equalToIgnoringCase("zstd"));
+        assertThat(response.get("ETag"), is(String.format("W/\"%x" + CompressedContentFormat.ZSTD.getEtagSuffix() + "\"", __content.hashCode())));
+
+        ZstdDecompressor decompressor = new ZstdDecompressor();
+        ByteBuffer output = ByteBuffer.allocate(2 * __bytes.length);
+        decompressor.decompress(ByteBuffer.wrap(response.getContentBytes()), output);
+        decompressor.decompress(BufferUtil.EMPTY_BUFFER, output);
+        assertTrue(decompressor.isFinished());
+        output.flip();
+        assertEquals(__content, BufferUtil.toString(output, StandardCharsets.UTF_8));
+
+        // With equal qualities, the configured order wins.
+        request.setHeader("accept-encoding", "zstd, gzip");
+        response = HttpTester.parseResponse(_connector.getResponse(request.generate()));
+        assertThat(response.getStatus(), is(200));
+        assertThat(response.get("Content-Encoding"), Matchers.equalToIgnoringCase("gzip"));
+    }
+
+    @Test
+    public void testWildcardDoesNotMatchRefusedEncoding() throws Exception
+    {
+        HttpTester.Request request = HttpTester.newRequest();
+        request.setMethod("GET");
+        request.setURI("/ctx/content?vary=Accept-Encoding,Other");
+        request.setVersion("HTTP/1.0");
+        request.setHeader("Host", "tester");
+        request.setHeader("accept-encoding", "gzip;q=0, *");
+
+        HttpTester.Response response = HttpTester.parseResponse(_connector.getResponse(request.generate()));
+
+        assertThat(response.getStatus(), is(200));
+        assertThat(response.get("Content-Encoding"), nullValue());
+        assertEquals(__content, response.getContent());
+
+        request.setHeader("accept-encoding", "br, *");
+        response = HttpTester.parseResponse(_connector.getResponse(request.generate()));
+        assertThat(response.getStatus(), is(200));
+        assertThat(response.get("Content-Encoding"), Matchers.equalToIgnoringCase("gzip"));
+    }
+
     @Test
     public void testGzipNotMicro() throws Exception
     {
@@ -0,0 +1,144 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.util;
+
+import java.util.AbstractQueue;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>A lock-free, bounded, multiple producers and multiple consumers queue.</p>
+ * <p>Unlike {@link BlockingArrayQueue}, this queue does not take a lock to
+ * {@link #offer(Object) offer} or {@link #poll() poll} elements, so that it
+ * is suitable for queues where many threads contend to add elements.</p>
+ * <p>The capacity is enforced by reserving a slot before an element is added,
+ * and by releasing the slot after an element is removed, so that the number
+ * of elements never exceeds the capacity, although an offer may be rejected
+ * while a concurrent removal has not released its slot yet.</p>
+ * <p>Removal of arbitrary elements via {@link #remove(Object)} is supported,
+ * but it is a linear operation.</p>
+ *
+ * @param <E> the type of the elements
+ */
+public class BoundedConcurrentQueue<E> extends AbstractQueue<E>
+{
+    private final ConcurrentLinkedQueue<E> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final int capacity;
+
+    /**
+     * @param capacity the max number of elements of this queue
+     */
+    public BoundedConcurrentQueue(int capacity)
+    {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("Invalid capacity " + capacity);
+        this.capacity = capacity;
+    }
+
+    /**
+     * @return the max number of elements of this queue
+     */
+    public int getCapacity()
+    {
+        return capacity;
+    }
+
+    @Override
+    public boolean offer(E element)
+    {
+        if (element == null)
+            throw new NullPointerException();
+        while (true)
+        {
+            int current = size.get();
+            if (current >= capacity)
+                return false;
+            if (size.compareAndSet(current, current + 1))
+                break;
+        }
+        queue.offer(element);
+        return true;
+    }
+
+    @Override
+    public E poll()
+    {
+        E element = queue.poll();
+        if (element != null)
+            size.decrementAndGet();
+        return element;
+    }
+
+    @Override
+    public E peek()
+    {
+        return queue.peek();
+    }
+
+    @Override
+    public boolean remove(Object element)
+    {
+        boolean removed = queue.remove(element);
+        if (removed)
+            size.decrementAndGet();
+        return removed;
+    }
+
+    @Override
+    public int size()
+    {
+        return size.get();
+    }
+
+    @Override
+    public boolean isEmpty()
+    {
+        return queue.isEmpty();
+    }
+
+    @Override
+    public Iterator<E> iterator()
+    {
+        Iterator<E> iterator = queue.iterator();
+        return new Iterator<>()
+        {
+            private E last;
+
+            @Override
+            public boolean hasNext()
+            {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public E next()
+            {
+                return last = iterator.next();
+            }
+
+            @Override
+            public void remove()
+            {
+                if (last == null)
+                    throw new IllegalStateException();
+                // Removing via the queue reports whether the element was
+                // still present, as it may have been polled concurrently.
+                BoundedConcurrentQueue.this.remove(last);
+                last = null;
+            }
+        };
+    }
+}
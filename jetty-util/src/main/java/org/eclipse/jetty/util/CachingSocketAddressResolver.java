@@ -0,0 +1,386 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.util;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.thread.AutoLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>A {@link SocketAddressResolver} that caches the addresses resolved by another resolver.</p>
+ * <p>Resolving a host with {@link SocketAddressResolver.Async} requires a thread for each
+ * resolution, even when the JVM has the addresses in its own cache, so that clients that
+ * open many connections to many hosts may have many threads blocked resolving hosts.
+ * This resolver caches the addresses of a bounded number of hosts, so that resolving a
+ * cached host completes immediately in the caller thread:</p>
+ * <ul>
+ * <li>addresses are cached for the configured time to live, and failures for the
+ * configured negative time to live;</li>
+ * <li>concurrent resolutions of the same host are coalesced into a single resolution;</li>
+ * <li>expired addresses are still returned for the configured stale time, while a single
+ * resolution refreshes them in the background, so that callers do not wait for the
+ * resolution of frequently used hosts;</li>
+ * <li>when the cache is full, the least recently used hosts are evicted.</li>
+ * </ul>
+ * <p>The JDK does not expose the time to live of DNS records, so the times to live are
+ * configured on this resolver, and should not be longer than the ones of the records.</p>
+ * <p>Example usage:</p>
+ * <pre>
+ * SocketAddressResolver async = new SocketAddressResolver.Async(executor, scheduler, timeout);
+ * httpClient.setSocketAddressResolver(new CachingSocketAddressResolver(async));
+ * </pre>
+ */
+@ManagedObject("The caching address resolver")
+public class CachingSocketAddressResolver implements SocketAddressResolver
+{
+    private static final Logger LOG = LoggerFactory.getLogger(CachingSocketAddressResolver.class);
+
+    private final AutoLock lock = new AutoLock();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder staleHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final SocketAddressResolver resolver;
+    private final int maxEntries;
+    private final long ttl;
+    private final long staleTtl;
+    private final long negativeTtl;
+    private final Map<String, HostEntry> entries;
+
+    /**
+     * Creates a new instance that caches up to 1024 hosts, whose addresses are cached for 30 seconds,
+     * and returned stale for 30 more seconds, and whose failures are cached for 10 seconds.
+     *
+     * @param resolver the resolver that performs the resolutions
+     */
+    public CachingSocketAddressResolver(SocketAddressResolver resolver)
+    {
+        this(resolver, 1024, 30000, 30000, 10000);
+    }
+
+    /**
+     * @param resolver the resolver that performs the resolutions
+     * @param maxEntries the max number of hosts cached
+     * @param ttl the time, in milliseconds, the addresses of a host are cached
+     * @param staleTtl the time, in milliseconds, expired addresses are returned while they are refreshed
+     * @param negativeTtl the time, in milliseconds, a failed resolution is cached
+     */
+    public CachingSocketAddressResolver(SocketAddressResolver resolver, int maxEntries, long ttl, long staleTtl, long negativeTtl)
+    {
+        this.resolver = resolver;
+        this.maxEntries = maxEntries;
+        this.ttl = ttl;
+        this.staleTtl = staleTtl;
+        this.negativeTtl = negativeTtl;
+        this.entries = new LinkedHashMap<>(16, 0.75F, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, HostEntry> eldest)
+            {
+                boolean evict = size() > getMaxEntries();
+                if (evict)
+                    evictions.increment();
+                return evict;
+            }
+        };
+    }
+
+    public SocketAddressResolver getSocketAddressResolver()
+    {
+        return resolver;
+    }
+
+    @ManagedAttribute(value = "The max number of hosts cached", readonly = true)
+    public int getMaxEntries()
+    {
+        return maxEntries;
+    }
+
+    @ManagedAttribute(value = "The time, in milliseconds, the addresses of a host are cached", readonly = true)
+    public long getTimeToLive()
+    {
+        return ttl;
+    }
+
+    @ManagedAttribute(value = "The time, in milliseconds, expired addresses are returned while they are refreshed", readonly = true)
+    public long getStaleTimeToLive()
+    {
+        return staleTtl;
+    }
+
+    @ManagedAttribute(value = "The time, in milliseconds, a failed resolution is cached", readonly = true)
+    public long getNegativeTimeToLive()
+    {
+        return negativeTtl;
+    }
+
+    @ManagedAttribute("The number of hosts cached")
+    public int getSize()
+    {
+        try (AutoLock l = lock.lock())
+        {
+            return entries.size();
+        }
+    }
+
+    @ManagedAttribute("The number of resolutions completed with cached addresses or failures")
+    public long getHits()
+    {
+        return hits.sum();
+    }
+
+    @ManagedAttribute("The number of resolutions completed with expired addresses being refreshed")
+    public long getStaleHits()
+    {
+        return staleHits.sum();
+    }
+
+    @ManagedAttribute("The number of resolutions that required a resolution")
+    public long getMisses()
+    {
+        return misses.sum();
+    }
+
+    @ManagedAttribute("The number of resolutions that waited for another resolution of the same host")
+    public long getCoalesced()
+    {
+        return coalesced.sum();
+    }
+
+    @ManagedAttribute("The number of failed resolutions")
+    public long getFailures()
+    {
+        return failures.sum();
+    }
+
+    @ManagedAttribute("The number of hosts evicted from the cache")
+    public long getEvictions()
+    {
+        return evictions.sum();
+    }
+
+    @ManagedOperation(value = "Clears the cache and the statistics", impact = "ACTION")
+    public void clear()
+    {
+        try (AutoLock l = lock.lock())
+        {
+            entries.clear();
+        }
+        hits.reset();
+        staleHits.reset();
+        misses.reset();
+        coalesced.reset();
+        failures.reset();
+        evictions.reset();
+    }
+
+    @Override
+    public void resolve(String host, int port, Promise<List<InetSocketAddress>> promise)
+    {
+        long now = System.nanoTime();
+        HostEntry entry;
+        List<InetAddress> addresses = null;
+        Throwable failure = null;
+        boolean resolve = false;
+        try (AutoLock l = lock.lock())
+        {
+            entry = entries.get(host);
+            if (entry == null)
+            {
+                entry = new HostEntry(host);
+                entries.put(host, entry);
+            }
+
+            if (entry.waiters != null)
+            {
+                // A resolution is in progress, and there are no usable results.
+                coalesced.increment();
+                entry.waiters.add(new Waiter(port, promise));
+            }
+            else if (entry.isResolved() && now - entry.expires < 0)
+            {
+                hits.increment();
+                addresses = entry.addresses;
+                failure = entry.failure;
+            }
+            else if (entry.addresses != null && now - entry.stale < 0)
+            {
+                staleHits.increment();
+                addresses = entry.addresses;
+                if (!entry.resolving)
+                {
+                    entry.resolving = true;
+                    resolve = true;
+                }
+            }
+            else
+            {
+                misses.increment();
+                entry.waiters = new ArrayList<>();
+                entry.waiters.add(new Waiter(port, promise));
+                if (!entry.resolving)
+                {
+                    entry.resolving = true;
+                    resolve = true;
+                }
+            }
+        }
+
+        if (LOG.isDebugEnabled())
+            LOG.debug("Resolving {}:{} cached={} failure={} resolve={}", host, port, addresses, failure, resolve);
+
+        if (addresses != null)
+            promise.succeeded(toSocketAddresses(addresses, port));
+        else if (failure != null)
+            promise.failed(failure);
+
+        if (resolve)
+        {
+            HostEntry resolving = entry;
+            resolver.resolve(host, 0, new Promise<>()
+            {
+                @Override
+                public void succeeded(List<InetSocketAddress> result)
+                {
+                    List<InetAddress> resolved = new ArrayList<>(result.size());
+                    for (InetSocketAddress address : result)
+                    {
+                        if (address.getAddress() != null)
+                            resolved.add(address.getAddress());
+                    }
+                    complete(resolving, resolved, null);
+                }
+
+                @Override
+                public void failed(Throwable x)
+                {
+                    complete(resolving, null, x);
+                }
+            });
+        }
+    }
+
+    private void complete(HostEntry entry, List<InetAddress> addresses, Throwable failure)
+    {
+        long now = System.nanoTime();
+        List<Waiter> waiters;
+        try (AutoLock l = lock.lock())
+        {
+            entry.resolving = false;
+            waiters = entry.waiters;
+            entry.waiters = null;
+
+            if (failure == null)
+            {
+                entry.addresses = addresses;
+                entry.failure = null;
+                entry.expires = now + TimeUnit.MILLISECONDS.toNanos(ttl);
+                entry.stale = entry.expires + TimeUnit.MILLISECONDS.toNanos(staleTtl);
+                if (ttl <= 0 && staleTtl <= 0)
+                    entries.remove(entry.host, entry);
+            }
+            else
+            {
+                failures.increment();
+                // Keep returning the stale addresses, if any, until they are too old.
+                if (entry.addresses == null || now - entry.stale >= 0)
+                {
+                    entry.addresses = null;
+                    entry.failure = failure;
+                    entry.expires = now + TimeUnit.MILLISECONDS.toNanos(negativeTtl);
+                    if (negativeTtl <= 0)
+                        entries.remove(entry.host, entry);
+                }
+            }
+        }
+
+        if (LOG.isDebugEnabled())
+            LOG.debug("Resolved {} to {}", entry.host, failure == null ? addresses : failure);
+
+        if (waiters != null)
+        {
+            for (Waiter waiter : waiters)
+            {
+                if (failure == null)
+                    waiter.promise.succeeded(toSocketAddresses(addresses, waiter.port));
+                else
+                    waiter.promise.failed(failure);
+            }
+        }
+    }
+
+    private static List<InetSocketAddress> toSocketAddresses(List<InetAddress> addresses, int port)
+    {
+        List<InetSocketAddress> result = new ArrayList<>(addresses.size());
+        for (InetAddress address : addresses)
+        {
+            result.add(new InetSocketAddress(address, port));
+        }
+        return result;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x[size=%d/%d,hits=%d,stale=%d,misses=%d]", getClass().getSimpleName(), hashCode(),
+            getSize(), getMaxEntries(), getHits(), getStaleHits(), getMisses());
+    }
+
+    private static class HostEntry
+    {
+        private final String host;
+        private List<InetAddress> addresses;
+        private Throwable failure;
+        private long expires;
+        private long stale;
+        private boolean resolving;
+        private List<Waiter> waiters;
+
+        private HostEntry(String host)
+        {
+            this.host = host;
+        }
+
+        private boolean isResolved()
+        {
+            return addresses != null || failure != null;
+        }
+    }
+
+    private static class Waiter
+    {
+        private final int port;
+        private final Promise<List<InetSocketAddress>> promise;
+
+        private Waiter(int port, Promise<List<InetSocketAddress>> promise)
+        {
+            this.port = port;
+            this.promise = promise;
+        }
+    }
+}
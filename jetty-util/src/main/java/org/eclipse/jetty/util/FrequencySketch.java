@@ -0,0 +1,153 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.util;
+
+import java.util.Arrays;
+
+/**
+ * <p>A probabilistic estimator of the popularity of items, within a time window.</p>
+ * <p>This is a Count-Min sketch with 4 bit counters (so that the maximum frequency
+ * is 15), where each item is counted in 4 counters and the estimated frequency of
+ * an item is the minimum value of its counters.
+ * Once a number of increments proportional to the capacity have been recorded,
+ * all the counters are halved, so that the frequencies of items that are not
+ * accessed anymore decay over time.</p>
+ * <p>This class is typically used by caches to decide whether a new entry
+ * is more popular than the entry that would be evicted to make room for it
+ * (the TinyLFU admission policy).</p>
+ * <p>This class is not thread-safe, accesses must be serialized by the caller.</p>
+ */
+public class FrequencySketch
+{
+    private static final long[] SEEDS = {
+        0xC3A5C85C97CB3127L, 0xB492B66FBE98F273L, 0x9AE16A3B2F90404FL, 0xCBF29CE484222325L
+    };
+    private static final long RESET_MASK = 0x7777_7777_7777_7777L;
+    private static final long ONE_MASK = 0x1111_1111_1111_1111L;
+    private static final int MAX_TABLE_LENGTH = 1 << 30;
+
+    private long[] _table = new long[0];
+    private int _sampleSize;
+    private int _size;
+
+    /**
+     * @param capacity the expected maximum number of items, typically the capacity of the cache
+     */
+    public FrequencySketch(int capacity)
+    {
+        ensureCapacity(capacity);
+    }
+
+    /**
+     * <p>Resizes the sketch for the given capacity, if necessary.</p>
+     * <p>If the sketch is resized, the frequencies recorded so far are discarded.</p>
+     *
+     * @param capacity the expected maximum number of items
+     */
+    public void ensureCapacity(int capacity)
+    {
+        _sampleSize = (int)Math.min(Integer.MAX_VALUE, 10L * Math.max(1, capacity));
+        int length = (int)Math.max(16, Math.min(MAX_TABLE_LENGTH, Long.highestOneBit(Math.max(1L, capacity - 1L)) << 1));
+        if (_table.length >= length)
+            return;
+        _table = new long[length];
+        _size = 0;
+    }
+
+    /**
+     * @param item the item to estimate
+     * @return the estimated frequency of the given item, between 0 and 15
+     */
+    public int frequency(Object item)
+    {
+        int hash = spread(item.hashCode());
+        int start = (hash & 3) << 2;
+        int frequency = Integer.MAX_VALUE;
+        for (int i = 0; i < 4; ++i)
+        {
+            int index = indexOf(hash, i);
+            int count = (int)((_table[index] >>> ((start + i) << 2)) & 0xFL);
+            frequency = Math.min(frequency, count);
+        }
+        return frequency;
+    }
+
+    /**
+     * <p>Records an access to the given item.</p>
+     *
+     * @param item the accessed item
+     */
+    public void increment(Object item)
+    {
+        int hash = spread(item.hashCode());
+        int start = (hash & 3) << 2;
+        boolean added = false;
+        for (int i = 0; i < 4; ++i)
+        {
+            added |= incrementAt(indexOf(hash, i), start + i);
+        }
+        if (added && ++_size >= _sampleSize)
+            reset();
+    }
+
+    /**
+     * <p>Discards all the frequencies recorded so far.</p>
+     */
+    public void clear()
+    {
+        Arrays.fill(_table, 0L);
+        _size = 0;
+    }
+
+    private boolean incrementAt(int index, int counter)
+    {
+        int offset = counter << 2;
+        long mask = 0xFL << offset;
+        if ((_table[index] & mask) == mask)
+            return false;
+        _table[index] += 1L << offset;
+        return true;
+    }
+
+    private void reset()
+    {
+        int odd = 0;
+        for (int i = 0; i < _table.length; ++i)
+        {
+            odd += Long.bitCount(_table[i] & ONE_MASK);
+            _table[i] = (_table[i] >>> 1) & RESET_MASK;
+        }
+        _size = (_size - (odd >>> 2)) >>> 1;
+    }
+
+    private int indexOf(int hash, int i)
+    {
+        long h = (hash + SEEDS[i]) * SEEDS[i];
+        h += h >>> 32;
+        return (int)h & (_table.length - 1);
+    }
+
+    private static int spread(int hash)
+    {
+        hash = ((hash >>> 16) ^ hash) * 0x45D9F3B;
+        hash = ((hash >>> 16) ^ hash) * 0x45D9F3B;
+        return (hash >>> 16) ^ hash;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{length=%d,size=%d/%d}", getClass().getSimpleName(), hashCode(), _table.length, _size, _sampleSize);
+    }
+}
@@ -18,6 +18,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.CopyOnWriteArrayList;
@@ -460,6 +461,103 @@ public class Pool<T> implements AutoCloseable, Dumpable
         return entry.enable(value, true) ? entry : null;
     }
 
+    /**
+     * <p>Acquires the better of two entries chosen at random, as determined by the
+     * given comparator (the "power of two choices").</p>
+     * <p>Comparing only two entries is cheap and avoids the herd behavior of always
+     * choosing the best entry, while still steering away from the worst entries.
+     * If neither of the two entries can be acquired, an entry is acquired as
+     * in {@link #acquire()}.</p>
+     *
+     * @param comparator the comparator of pooled values, lesser values being better
+     * @return an entry from the pool or null if none is available.
+     */
+    public Entry acquireBestOfTwo(Comparator<T> comparator)
+    {
+        if (closed)
+            return null;
+
+        int size = entries.size();
+        if (size > 1)
+        {
+            try
+            {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                int index1 = random.nextInt(size);
+                int index2 = (index1 + 1 + random.nextInt(size - 1)) % size;
+                Entry entry1 = entries.get(index1);
+                Entry entry2 = entries.get(index2);
+                T pooled1 = entry1.getPooled();
+                T pooled2 = entry2.getPooled();
+                if (pooled1 == null || (pooled2 != null && comparator.compare(pooled2, pooled1) < 0))
+                {
+                    Entry entry = entry1;
+                    entry1 = entry2;
+                    entry2 = entry;
+                }
+                if (entry1.tryAcquire())
+                    return entry1;
+                if (entry2.tryAcquire())
+                    return entry2;
+            }
+            catch (IndexOutOfBoundsException e)
+            {
+                LOGGER.trace("IGNORED", e);
+            }
+        }
+        return acquire();
+    }
+
+    /**
+     * <p>Acquires the least entry, as determined by the given comparator,
+     * among all the entries that can be acquired.</p>
+     * <p>Unlike {@link #acquireBestOfTwo(Comparator)}, every entry is compared,
+     * so this method is best suited to small pools where the load must be spread
+     * evenly, for example among few multiplexed connections.
+     * The comparator may be evaluated against values that change concurrently.</p>
+     *
+     * @param comparator the comparator of pooled values, lesser values being better
+     * @return an entry from the pool or null if none is available.
+     */
+    public Entry acquireLeast(Comparator<T> comparator)
+    {
+        if (closed)
+            return null;
+
+        while (true)
+        {
+            // Track the least entry that can be acquired, without allocating.
+            Entry least = null;
+            T leastPooled = null;
+            for (int i = 0, size = entries.size(); i < size; i++)
+            {
+                Entry entry;
+                try
+                {
+                    entry = entries.get(i);
+                }
+                catch (IndexOutOfBoundsException e)
+                {
+                    LOGGER.trace("IGNORED", e);
+                    break;
+                }
+                if (!entry.isAcquirable())
+                    continue;
+                T pooled = entry.getPooled();
+                if (pooled != null && (leastPooled == null || comparator.compare(pooled, leastPooled) < 0))
+                {
+                    least = entry;
+                    leastPooled = pooled;
+                }
+            }
+            if (least == null)
+                return null;
+            if (least.tryAcquire())
+                return least;
+            // Another thread acquired the least entry concurrently, scan again.
+        }
+    }
+
     /**
      * <p>Releases an {@link #acquire() acquired} entry to the pool.</p>
      * <p>Entries that are acquired from the pool but never released
@@ -707,6 +805,11 @@ public class Pool<T> implements AutoCloseable, Dumpable
             return false;
         }
 
+        /**
+         * @return whether {@link #tryAcquire()} would succeed, barring concurrent changes
+         */
+        abstract boolean isAcquirable();
+
         // Only for testing.
         int getUsageCount()
         {
@@ -794,6 +897,12 @@ public class Pool<T> implements AutoCloseable, Dumpable
             return state.get() == 1;
         }
 
+        @Override
+        boolean isAcquirable()
+        {
+            return state.get() == 0;
+        }
+
         @Override
         public String toString()
         {
@@ -964,6 +1073,21 @@ public class Pool<T> implements AutoCloseable, Dumpable
             return AtomicBiInteger.getHi(encoded) >= 0 && AtomicBiInteger.getLo(encoded) > 0;
         }
 
+        @Override
+        boolean isAcquirable()
+        {
+            long encoded = state.get();
+            int usageCount = AtomicBiInteger.getHi(encoded);
+            if (usageCount < 0)
+                return false;
+            T pooled = getPooled();
+            int maxUsageCount = getMaxUsageCount(pooled);
+            if (maxUsageCount > 0 && usageCount >= maxUsageCount)
+                return false;
+            int maxMultiplexed = getMaxMultiplex(pooled);
+            return maxMultiplexed <= 0 || AtomicBiInteger.getLo(encoded) < maxMultiplexed;
+        }
+
         @Override
         public boolean isOverUsed()
         {
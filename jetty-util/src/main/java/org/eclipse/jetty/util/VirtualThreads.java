@@ -0,0 +1,183 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.util;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>Utility class to use to query the runtime for virtual thread support,
+ * and, if virtual threads are supported, to create executors that start
+ * virtual threads.</p>
+ * <p>Virtual threads are accessed reflectively, so that this class can be
+ * used on Java runtimes that do not support them.</p>
+ *
+ * @see #areSupported()
+ * @see #newVirtualThreadsExecutor(String)
+ * @see Configurable
+ */
+public class VirtualThreads
+{
+    private static final Logger LOG = LoggerFactory.getLogger(VirtualThreads.class);
+    private static final Method isVirtualThread = probeIsVirtualThread();
+    private static final Method ofVirtual = probeOfVirtual();
+    private static final Method builderName = probeBuilderMethod("name", String.class, long.class);
+    private static final Method builderFactory = probeBuilderMethod("factory");
+    private static final Method newThreadPerTaskExecutor = probeNewThreadPerTaskExecutor();
+
+    private static Method probeIsVirtualThread()
+    {
+        try
+        {
+            return Thread.class.getMethod("isVirtual");
+        }
+        catch (Throwable x)
+        {
+            return null;
+        }
+    }
+
+    private static Method probeOfVirtual()
+    {
+        try
+        {
+            Method method = Thread.class.getMethod("ofVirtual");
+            // Virtual threads may be a preview feature, so actually try to create a builder.
+            method.invoke(null);
+            return method;
+        }
+        catch (Throwable x)
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("Virtual threads are not supported by this runtime", x);
+            return null;
+        }
+    }
+
+    private static Method probeBuilderMethod(String name, Class<?>... parameterTypes)
+    {
+        try
+        {
+            // The builder implementation classes are not public, so the
+            // methods must be looked up on the public Thread.Builder interface.
+            return Class.forName("java.lang.Thread$Builder").getMethod(name, parameterTypes);
+        }
+        catch (Throwable x)
+        {
+            return null;
+        }
+    }
+
+    private static Method probeNewThreadPerTaskExecutor()
+    {
+        try
+        {
+            return Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+        }
+        catch (Throwable x)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * @return whether the runtime supports virtual threads
+     */
+    public static boolean areSupported()
+    {
+        return ofVirtual != null && builderName != null && builderFactory != null && newThreadPerTaskExecutor != null;
+    }
+
+    /**
+     * <p>Creates a new executor that starts a new virtual thread for each task.</p>
+     *
+     * @param namePrefix the prefix of the virtual threads names, or null for unnamed virtual threads
+     * @return a new virtual threads executor, or null if virtual threads are not supported
+     */
+    public static ExecutorService newVirtualThreadsExecutor(String namePrefix)
+    {
+        if (!areSupported())
+            return null;
+        try
+        {
+            Object builder = ofVirtual.invoke(null);
+            if (namePrefix != null)
+                builder = builderName.invoke(builder, namePrefix, 0L);
+            ThreadFactory factory = (ThreadFactory)builderFactory.invoke(builder);
+            return (ExecutorService)newThreadPerTaskExecutor.invoke(null, factory);
+        }
+        catch (Throwable x)
+        {
+            LOG.warn("Unable to create virtual threads executor", x);
+            return null;
+        }
+    }
+
+    /**
+     * @return whether the current thread is a virtual thread
+     */
+    public static boolean isVirtualThread()
+    {
+        try
+        {
+            return isVirtualThread != null && (Boolean)isVirtualThread.invoke(Thread.currentThread());
+        }
+        catch (Throwable x)
+        {
+            LOG.warn("Unable to determine whether the current thread is virtual", x);
+            return false;
+        }
+    }
+
+    /**
+     * @param executor the executor to test
+     * @return the executor to use to run blocking tasks on virtual threads,
+     * or null if the given executor is not configured to use virtual threads
+     * @see Configurable#getVirtualThreadsExecutor()
+     */
+    public static Executor getVirtualThreadsExecutor(Executor executor)
+    {
+        if (executor instanceof Configurable)
+            return ((Configurable)executor).getVirtualThreadsExecutor();
+        return null;
+    }
+
+    /**
+     * <p>Implementations of this interface (typically thread pools) can be
+     * configured to run blocking tasks, such as the invocation of the
+     * application, on virtual threads.</p>
+     * <p>Components that produce tasks (for example execution strategies)
+     * should use {@link VirtualThreads#getVirtualThreadsExecutor(Executor)}
+     * to find the executor for the tasks that may block, while producers
+     * and non-blocking tasks remain on the platform threads of the pool.</p>
+     */
+    public interface Configurable
+    {
+        /**
+         * @return the executor that runs blocking tasks on virtual threads,
+         * or null if blocking tasks should not run on virtual threads
+         */
+        Executor getVirtualThreadsExecutor();
+    }
+
+    private VirtualThreads()
+    {
+    }
+}
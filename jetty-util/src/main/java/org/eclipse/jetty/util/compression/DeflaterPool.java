@@ -41,6 +41,14 @@ public class DeflaterPool extends CompressionPool<Deflater>
         this.nowrap = nowrap;
     }
 
+    /**
+     * @return the default compression level of the pooled Deflaters
+     */
+    public int getCompressionLevel()
+    {
+        return compressionLevel;
+    }
+
     @Override
     protected Deflater newPooled()
     {
@@ -57,6 +65,8 @@ public class DeflaterPool extends CompressionPool<Deflater>
     protected void reset(Deflater deflater)
     {
         deflater.reset();
+        // Restore the level, in case it was changed by the user of the Deflater.
+        deflater.setLevel(compressionLevel);
     }
 
     public static DeflaterPool ensurePool(Container container)
@@ -0,0 +1,1091 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.util.compression;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+
+/**
+ * <p>A streaming, pure Java, decompressor for the Zstandard format (RFC 8878).</p>
+ * <p>Like {@link java.util.zip.Inflater}, a decompressor keeps native-sized state
+ * (the window of decoded bytes and the block buffers) that is expensive to allocate,
+ * so instances should be reused via {@link #reset()}, typically using a
+ * {@link ZstdDecompressorPool}.</p>
+ * <p>Compressed bytes may be split arbitrarily across calls to
+ * {@link #decompress(ByteBuffer, ByteBuffer)}, and concatenated and skippable
+ * frames are supported.
+ * Dictionaries are not supported, and content checksums are not verified.</p>
+ */
+public class ZstdDecompressor
+{
+    public static final int DEFAULT_MAX_WINDOW_SIZE = 8 * 1024 * 1024;
+
+    private static final int MAGIC = 0xFD2FB528;
+    private static final int SKIPPABLE_MAGIC = 0x184D2A50;
+    private static final int MAX_BLOCK_SIZE = 128 * 1024;
+    private static final int MAX_HUFFMAN_BITS = 11;
+
+    private static final int LL_MAX_SYMBOL = 35;
+    private static final int LL_MAX_LOG = 9;
+    private static final int ML_MAX_SYMBOL = 52;
+    private static final int ML_MAX_LOG = 9;
+    private static final int OF_MAX_SYMBOL = 31;
+    private static final int OF_MAX_LOG = 8;
+
+    private static final int[] LL_BASES = {
+        0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15,
+        16, 18, 20, 22, 24, 28, 32, 40, 48, 64, 128, 256, 512, 1024, 2048, 4096,
+        8192, 16384, 32768, 65536
+    };
+    private static final int[] LL_BITS = {
+        0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+        1, 1, 1, 1, 2, 2, 3, 3, 4, 6, 7, 8, 9, 10, 11, 12,
+        13, 14, 15, 16
+    };
+    private static final int[] ML_BASES = {
+        3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17, 18,
+        19, 20, 21, 22, 23, 24, 25, 26, 27, 28, 29, 30, 31, 32, 33, 34,
+        35, 37, 39, 41, 43, 47, 51, 59, 67, 83, 99, 131, 259, 515, 1027, 2051,
+        4099, 8195, 16387, 32771, 65539
+    };
+    private static final int[] ML_BITS = {
+        0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+        0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+        1, 1, 1, 1, 2, 2, 3, 3, 4, 4, 5, 7, 8, 9, 10, 11,
+        12, 13, 14, 15, 16
+    };
+
+    private static final FseTable LL_PREDEFINED = FseTable.predefined(6, new int[]{
+        4, 3, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 1, 1, 1,
+        2, 2, 2, 2, 2, 2, 2, 2, 2, 3, 2, 1, 1, 1, 1, 1,
+        -1, -1, -1, -1
+    });
+    private static final FseTable ML_PREDEFINED = FseTable.predefined(6, new int[]{
+        1, 4, 3, 2, 2, 2, 2, 2, 2, 1, 1, 1, 1, 1, 1, 1,
+        1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1,
+        1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, -1, -1,
+        -1, -1, -1, -1, -1
+    });
+    private static final FseTable OF_PREDEFINED = FseTable.predefined(5, new int[]{
+        1, 1, 1, 1, 1, 1, 2, 2, 2, 1, 1, 1, 1, 1, 1, 1,
+        1, 1, 1, 1, 1, 1, 1, 1, -1, -1, -1, -1, -1
+    });
+
+    private final int maxWindowSize;
+    private final byte[] scratch = new byte[16];
+    private final BitReader reader = new BitReader();
+    private final FseTable llTable = new FseTable(LL_MAX_LOG);
+    private final FseTable mlTable = new FseTable(ML_MAX_LOG);
+    private final FseTable ofTable = new FseTable(OF_MAX_LOG);
+    private final FseTable weightTable = new FseTable(6);
+    private final byte[] weights = new byte[256];
+    private final byte[] huffmanSymbols = new byte[1 << MAX_HUFFMAN_BITS];
+    private final byte[] huffmanBits = new byte[1 << MAX_HUFFMAN_BITS];
+    private final int[] repeatOffsets = new int[3];
+    private State state = State.MAGIC;
+    private int filled;
+    private byte[] block;
+    private byte[] literals;
+    private byte[] window;
+    private int writePos;
+    private int flushPos;
+    private int descriptor;
+    private int windowSize;
+    private int blockMaxSize;
+    private long contentSize;
+    private long frameSize;
+    private boolean checksum;
+    private boolean lastBlock;
+    private int blockType;
+    private int blockSize;
+    private long skip;
+    private FseTable llCurrent;
+    private FseTable mlCurrent;
+    private FseTable ofCurrent;
+    private FseTable selected;
+    private int huffmanMaxBits;
+    private byte[] literalsSource;
+    private int literalsPos;
+    private int literalsEnd;
+
+    public ZstdDecompressor()
+    {
+        this(DEFAULT_MAX_WINDOW_SIZE);
+    }
+
+    /**
+     * @param maxWindowSize the max window size, in bytes, of the frames that can be decompressed
+     */
+    public ZstdDecompressor(int maxWindowSize)
+    {
+        this.maxWindowSize = maxWindowSize;
+    }
+
+    /**
+     * <p>Decompresses bytes from the given input into the given output.</p>
+     * <p>This method returns when the output is full or when the input has been consumed;
+     * in the latter case some decompressed bytes may still be pending, and will be
+     * produced by the next call, even if the input is empty.</p>
+     *
+     * @param input the buffer of compressed bytes
+     * @param output the buffer to fill with decompressed bytes
+     * @return the number of decompressed bytes written to the output
+     * @throws DataFormatException if the compressed bytes are invalid or not supported
+     */
+    public int decompress(ByteBuffer input, ByteBuffer output) throws DataFormatException
+    {
+        int produced = 0;
+        while (true)
+        {
+            int pending = writePos - flushPos;
+            if (pending > 0)
+            {
+                int length = Math.min(pending, output.remaining());
+                output.put(window, flushPos, length);
+                flushPos += length;
+                produced += length;
+                if (flushPos < writePos)
+                    return produced;
+            }
+
+            switch (state)
+            {
+                case MAGIC:
+                {
+                    if (!fill(input, scratch, 4))
+                        return produced;
+                    int magic = readInt(scratch, 0, 4);
+                    if (magic == MAGIC)
+                        state = State.FRAME_DESCRIPTOR;
+                    else if ((magic & 0xFFFFFFF0) == SKIPPABLE_MAGIC)
+                        state = State.SKIPPABLE_SIZE;
+                    else
+                        throw new DataFormatException("Invalid zstd magic number");
+                    break;
+                }
+                case FRAME_DESCRIPTOR:
+                {
+                    if (!fill(input, scratch, 1))
+                        return produced;
+                    descriptor = scratch[0] & 0xFF;
+                    if ((descriptor & 0x08) != 0)
+                        throw new DataFormatException("Invalid zstd frame header");
+                    state = State.FRAME_HEADER;
+                    break;
+                }
+                case FRAME_HEADER:
+                {
+                    if (!fill(input, scratch, frameHeaderLength()))
+                        return produced;
+                    startFrame();
+                    state = State.BLOCK_HEADER;
+                    break;
+                }
+                case BLOCK_HEADER:
+                {
+                    if (!fill(input, scratch, 3))
+                        return produced;
+                    startBlock(readInt(scratch, 0, 3));
+                    break;
+                }
+                case RAW_BLOCK:
+                {
+                    int length = Math.min(blockSize, input.remaining());
+                    if (length == 0 && blockSize > 0)
+                        return produced;
+                    input.get(window, writePos, length);
+                    writePos += length;
+                    frameSize += length;
+                    blockSize -= length;
+                    if (blockSize == 0)
+                        endBlock();
+                    break;
+                }
+                case RLE_BLOCK:
+                {
+                    if (!fill(input, scratch, 1))
+                        return produced;
+                    Arrays.fill(window, writePos, writePos + blockSize, scratch[0]);
+                    writePos += blockSize;
+                    frameSize += blockSize;
+                    endBlock();
+                    break;
+                }
+                case COMPRESSED_BLOCK:
+                {
+                    if (!fill(input, block, blockSize))
+                        return produced;
+                    int start = writePos;
+                    decodeBlock(blockSize);
+                    frameSize += writePos - start;
+                    endBlock();
+                    break;
+                }
+                case CHECKSUM:
+                {
+                    // The XXH64 content checksum is skipped.
+                    if (!fill(input, scratch, 4))
+                        return produced;
+                    endFrame();
+                    break;
+                }
+                case SKIPPABLE_SIZE:
+                {
+                    if (!fill(input, scratch, 4))
+                        return produced;
+                    skip = readInt(scratch, 0, 4) & 0xFFFFFFFFL;
+                    state = State.SKIPPABLE;
+                    break;
+                }
+                case SKIPPABLE:
+                {
+                    int length = (int)Math.min(skip, input.remaining());
+                    if (length == 0 && skip > 0)
+                        return produced;
+                    input.position(input.position() + length);
+                    skip -= length;
+                    if (skip == 0)
+                        state = State.MAGIC;
+                    break;
+                }
+                default:
+                    throw new IllegalStateException(state.toString());
+            }
+        }
+    }
+
+    /**
+     * @return whether the decompressor is between frames, with no pending decompressed bytes
+     */
+    public boolean isFinished()
+    {
+        return state == State.MAGIC && filled == 0 && flushPos == writePos;
+    }
+
+    /**
+     * <p>Resets this decompressor so that it can be reused, retaining its buffers.</p>
+     */
+    public void reset()
+    {
+        state = State.MAGIC;
+        filled = 0;
+        writePos = 0;
+        flushPos = 0;
+    }
+
+    /**
+     * <p>Releases the buffers of this decompressor, that must not be used afterwards.</p>
+     */
+    public void end()
+    {
+        reset();
+        window = null;
+        block = null;
+        literals = null;
+    }
+
+    private boolean fill(ByteBuffer input, byte[] bytes, int length)
+    {
+        int count = Math.min(length - filled, input.remaining());
+        input.get(bytes, filled, count);
+        filled += count;
+        if (filled < length)
+            return false;
+        filled = 0;
+        return true;
+    }
+
+    private int frameHeaderLength()
+    {
+        boolean singleSegment = (descriptor & 0x20) != 0;
+        int length = singleSegment ? 0 : 1;
+        switch (descriptor & 0x03)
+        {
+            case 1:
+                length += 1;
+                break;
+            case 2:
+                length += 2;
+                break;
+            case 3:
+                length += 4;
+                break;
+            default:
+                break;
+        }
+        return length + contentSizeLength(descriptor >>> 6, singleSegment);
+    }
+
+    private static int contentSizeLength(int flag, boolean singleSegment)
+    {
+        switch (flag)
+        {
+            case 0:
+                return singleSegment ? 1 : 0;
+            case 1:
+                return 2;
+            case 2:
+                return 4;
+            default:
+                return 8;
+        }
+    }
+
+    private void startFrame() throws DataFormatException
+    {
+        boolean singleSegment = (descriptor & 0x20) != 0;
+        int index = 0;
+        long size = 0;
+        if (!singleSegment)
+        {
+            int windowDescriptor = scratch[index++] & 0xFF;
+            int windowLog = 10 + (windowDescriptor >>> 3);
+            long windowBase = 1L << windowLog;
+            size = windowBase + (windowBase >>> 3) * (windowDescriptor & 0x07);
+        }
+
+        int dictionaryIdLength = (descriptor & 0x03) == 3 ? 4 : descriptor & 0x03;
+        if (dictionaryIdLength > 0)
+        {
+            if (readInt(scratch, index, dictionaryIdLength) != 0)
+                throw new DataFormatException("Unsupported zstd dictionary");
+            index += dictionaryIdLength;
+        }
+
+        int contentSizeLength = contentSizeLength(descriptor >>> 6, singleSegment);
+        contentSize = -1;
+        if (contentSizeLength > 0)
+        {
+            contentSize = readLong(scratch, index, contentSizeLength);
+            if (contentSizeLength == 2)
+                contentSize += 256;
+        }
+        if (singleSegment)
+            size = contentSize;
+
+        if (size < 0 || size > maxWindowSize)
+            throw new DataFormatException("Unsupported zstd window size " + size);
+        windowSize = (int)size;
+        blockMaxSize = Math.min(windowSize, MAX_BLOCK_SIZE);
+        int capacity = windowSize + blockMaxSize;
+        if (window == null || window.length < capacity)
+            window = new byte[capacity];
+        writePos = 0;
+        flushPos = 0;
+
+        checksum = (descriptor & 0x04) != 0;
+        frameSize = 0;
+        repeatOffsets[0] = 1;
+        repeatOffsets[1] = 4;
+        repeatOffsets[2] = 8;
+        llCurrent = null;
+        mlCurrent = null;
+        ofCurrent = null;
+        huffmanMaxBits = 0;
+    }
+
+    private void startBlock(int header) throws DataFormatException
+    {
+        lastBlock = (header & 0x01) != 0;
+        blockType = (header >>> 1) & 0x03;
+        blockSize = header >>> 3;
+        if (blockType == 3 || blockSize > blockMaxSize)
+            throw new DataFormatException("Invalid zstd block");
+
+        // Make room for the block, retaining the window of previous bytes.
+        if (writePos + blockMaxSize > window.length)
+        {
+            int keep = Math.min(windowSize, writePos);
+            System.arraycopy(window, writePos - keep, window, 0, keep);
+            writePos = keep;
+            flushPos = keep;
+        }
+
+        if (blockType == 0)
+        {
+            state = State.RAW_BLOCK;
+        }
+        else if (blockType == 1)
+        {
+            state = State.RLE_BLOCK;
+        }
+        else
+        {
+            if (block == null)
+            {
+                block = new byte[MAX_BLOCK_SIZE];
+                literals = new byte[MAX_BLOCK_SIZE];
+            }
+            state = State.COMPRESSED_BLOCK;
+        }
+    }
+
+    private void endBlock() throws DataFormatException
+    {
+        if (!lastBlock)
+            state = State.BLOCK_HEADER;
+        else if (checksum)
+            state = State.CHECKSUM;
+        else
+            endFrame();
+    }
+
+    private void endFrame() throws DataFormatException
+    {
+        if (contentSize >= 0 && contentSize != frameSize)
+            throw new DataFormatException("Invalid zstd frame content size");
+        state = State.MAGIC;
+    }
+
+    private void decodeBlock(int size) throws DataFormatException
+    {
+        int index = decodeLiterals(block, size);
+        if (index >= size)
+            throw new DataFormatException("Invalid zstd sequences section");
+
+        int sequences = block[index++] & 0xFF;
+        if (sequences >= 128)
+        {
+            if (sequences == 255)
+            {
+                if (index + 2 > size)
+                    throw new DataFormatException("Invalid zstd sequences section");
+                sequences = (block[index] & 0xFF) + ((block[index + 1] & 0xFF) << 8) + 0x7F00;
+                index += 2;
+            }
+            else
+            {
+                if (index + 1 > size)
+                    throw new DataFormatException("Invalid zstd sequences section");
+                sequences = ((sequences - 128) << 8) + (block[index++] & 0xFF);
+            }
+        }
+
+        int limit = writePos + blockMaxSize;
+        if (sequences > 0)
+        {
+            if (index >= size)
+                throw new DataFormatException("Invalid zstd sequences section");
+            int modes = block[index++] & 0xFF;
+            if ((modes & 0x03) != 0)
+                throw new DataFormatException("Invalid zstd compression modes");
+            index += selectTable(llTable, LL_PREDEFINED, modes >>> 6, index, size, LL_MAX_SYMBOL, LL_MAX_LOG);
+            llCurrent = selected;
+            index += selectTable(ofTable, OF_PREDEFINED, (modes >>> 4) & 0x03, index, size, OF_MAX_SYMBOL, OF_MAX_LOG);
+            ofCurrent = selected;
+            index += selectTable(mlTable, ML_PREDEFINED, (modes >>> 2) & 0x03, index, size, ML_MAX_SYMBOL, ML_MAX_LOG);
+            mlCurrent = selected;
+            decodeSequences(sequences, index, size, limit);
+        }
+        else if (index != size)
+        {
+            throw new DataFormatException("Invalid zstd sequences section");
+        }
+
+        // Copy the literals that follow the last sequence.
+        int length = literalsEnd - literalsPos;
+        if (writePos + length > limit)
+            throw new DataFormatException("Invalid zstd block size");
+        System.arraycopy(literalsSource, literalsPos, window, writePos, length);
+        writePos += length;
+    }
+
+    private int selectTable(FseTable table, FseTable predefined, int mode, int index, int end, int maxSymbol, int maxLog) throws DataFormatException
+    {
+        switch (mode)
+        {
+            case 0:
+                selected = predefined;
+                return 0;
+            case 1:
+            {
+                if (index >= end || (block[index] & 0xFF) > maxSymbol)
+                    throw new DataFormatException("Invalid zstd RLE table");
+                table.rle(block[index] & 0xFF);
+                selected = table;
+                return 1;
+            }
+            case 2:
+            {
+                int length = table.read(block, index, end, maxSymbol, maxLog);
+                selected = table;
+                return length;
+            }
+            default:
+            {
+                selected = table == llTable ? llCurrent : table == ofTable ? ofCurrent : mlCurrent;
+                if (selected == null)
+                    throw new DataFormatException("Invalid zstd repeat table");
+                return 0;
+            }
+        }
+    }
+
+    private void decodeSequences(int sequences, int start, int end, int limit) throws DataFormatException
+    {
+        BitReader reader = this.reader;
+        reader.init(block, start, end);
+        FseTable ll = llCurrent;
+        FseTable of = ofCurrent;
+        FseTable ml = mlCurrent;
+        int llState = reader.read(ll.log);
+        int ofState = reader.read(of.log);
+        int mlState = reader.read(ml.log);
+
+        byte[] window = this.window;
+        int[] repeats = repeatOffsets;
+        for (int i = 0; i < sequences; ++i)
+        {
+            int llCode = ll.symbols[llState];
+            int ofCode = of.symbols[ofState];
+            int mlCode = ml.symbols[mlState];
+            if (ofCode > 30)
+                throw new DataFormatException("Invalid zstd offset code");
+
+            int offsetValue = (1 << ofCode) + reader.read(ofCode);
+            int matchLength = ML_BASES[mlCode] + reader.read(ML_BITS[mlCode]);
+            int literalsLength = LL_BASES[llCode] + reader.read(LL_BITS[llCode]);
+
+            int offset;
+            if (offsetValue > 3)
+            {
+                offset = offsetValue - 3;
+                repeats[2] = repeats[1];
+                repeats[1] = repeats[0];
+                repeats[0] = offset;
+            }
+            else
+            {
+                int repeat = offsetValue - 1 + (literalsLength == 0 ? 1 : 0);
+                if (repeat == 0)
+                {
+                    offset = repeats[0];
+                }
+                else
+                {
+                    offset = repeat == 3 ? repeats[0] - 1 : repeats[repeat];
+                    if (repeat != 1)
+                        repeats[2] = repeats[1];
+                    repeats[1] = repeats[0];
+                    repeats[0] = offset;
+                }
+            }
+
+            if (i < sequences - 1)
+            {
+                llState = ll.bases[llState] + reader.read(ll.bits[llState]);
+                mlState = ml.bases[mlState] + reader.read(ml.bits[mlState]);
+                ofState = of.bases[ofState] + reader.read(of.bits[ofState]);
+            }
+
+            if (literalsPos + literalsLength > literalsEnd || writePos + literalsLength + matchLength > limit)
+                throw new DataFormatException("Invalid zstd sequence");
+            System.arraycopy(literalsSource, literalsPos, window, writePos, literalsLength);
+            literalsPos += literalsLength;
+            writePos += literalsLength;
+
+            if (offset <= 0 || offset > writePos)
+                throw new DataFormatException("Invalid zstd match offset");
+            int from = writePos - offset;
+            if (offset >= matchLength)
+            {
+                System.arraycopy(window, from, window, writePos, matchLength);
+                writePos += matchLength;
+            }
+            else
+            {
+                for (int j = 0; j < matchLength; ++j)
+                {
+                    window[writePos++] = window[from++];
+                }
+            }
+        }
+
+        if (!reader.isFinished() && !reader.isOverflow())
+            throw new DataFormatException("Invalid zstd sequences bitstream");
+    }
+
+    private int decodeLiterals(byte[] src, int end) throws DataFormatException
+    {
+        if (end < 1)
+            throw new DataFormatException("Invalid zstd literals section");
+        int b0 = src[0] & 0xFF;
+        int type = b0 & 0x03;
+        int sizeFormat = (b0 >>> 2) & 0x03;
+
+        if (type < 2)
+        {
+            int headerLength;
+            int size;
+            if ((sizeFormat & 0x01) == 0)
+            {
+                headerLength = 1;
+                size = b0 >>> 3;
+            }
+            else if (sizeFormat == 1)
+            {
+                headerLength = 2;
+                size = (b0 >>> 4) + ((src[1] & 0xFF) << 4);
+            }
+            else
+            {
+                headerLength = 3;
+                size = (b0 >>> 4) + ((src[1] & 0xFF) << 4) + ((src[2] & 0xFF) << 12);
+            }
+            if (size > MAX_BLOCK_SIZE)
+                throw new DataFormatException("Invalid zstd literals size");
+
+            if (type == 0)
+            {
+                if (headerLength + size > end)
+                    throw new DataFormatException("Invalid zstd literals section");
+                literalsSource = src;
+                literalsPos = headerLength;
+                literalsEnd = headerLength + size;
+                return headerLength + size;
+            }
+
+            if (headerLength + 1 > end)
+                throw new DataFormatException("Invalid zstd literals section");
+            Arrays.fill(literals, 0, size, src[headerLength]);
+            literalsSource = literals;
+            literalsPos = 0;
+            literalsEnd = size;
+            return headerLength + 1;
+        }
+
+        int streams = sizeFormat == 0 ? 1 : 4;
+        int headerLength = sizeFormat < 2 ? 3 : sizeFormat + 2;
+        int sizeBits = sizeFormat < 2 ? 10 : sizeFormat == 2 ? 14 : 18;
+        if (headerLength > end)
+            throw new DataFormatException("Invalid zstd literals section");
+        long header = readLong(src, 0, headerLength) >>> 4;
+        int mask = (1 << sizeBits) - 1;
+        int size = (int)(header & mask);
+        int compressedSize = (int)((header >>> sizeBits) & mask);
+        int compressedEnd = headerLength + compressedSize;
+        if (size > MAX_BLOCK_SIZE || compressedEnd > end)
+            throw new DataFormatException("Invalid zstd literals section");
+
+        int index = headerLength;
+        if (type == 2)
+            index += readHuffmanTable(src, index, compressedEnd);
+        else if (huffmanMaxBits == 0)
+            throw new DataFormatException("Invalid zstd treeless literals");
+
+        if (streams == 1)
+        {
+            decodeHuffmanStream(src, index, compressedEnd, 0, size);
+        }
+        else
+        {
+            if (index + 6 > compressedEnd)
+                throw new DataFormatException("Invalid zstd literals jump table");
+            int size1 = readInt(src, index, 2);
+            int size2 = readInt(src, index + 2, 2);
+            int size3 = readInt(src, index + 4, 2);
+            int start1 = index + 6;
+            int start2 = start1 + size1;
+            int start3 = start2 + size2;
+            int start4 = start3 + size3;
+            int segment = (size + 3) / 4;
+            if (start4 > compressedEnd || 3 * segment > size)
+                throw new DataFormatException("Invalid zstd literals jump table");
+            decodeHuffmanStream(src, start1, start2, 0, segment);
+            decodeHuffmanStream(src, start2, start3, segment, segment);
+            decodeHuffmanStream(src, start3, start4, 2 * segment, segment);
+            decodeHuffmanStream(src, start4, compressedEnd, 3 * segment, size - 3 * segment);
+        }
+        literalsSource = literals;
+        literalsPos = 0;
+        literalsEnd = size;
+        return compressedEnd;
+    }
+
+    private void decodeHuffmanStream(byte[] src, int start, int end, int offset, int count) throws DataFormatException
+    {
+        BitReader reader = this.reader;
+        reader.init(src, start, end);
+        int maxBits = huffmanMaxBits;
+        byte[] symbols = huffmanSymbols;
+        byte[] bits = huffmanBits;
+        byte[] literals = this.literals;
+        for (int i = offset, limit = offset + count; i < limit; ++i)
+        {
+            int index = reader.peek(maxBits);
+            literals[i] = symbols[index];
+            reader.skip(bits[index]);
+        }
+        if (!reader.isFinished())
+            throw new DataFormatException("Invalid zstd literals bitstream");
+    }
+
+    private int readHuffmanTable(byte[] src, int start, int end) throws DataFormatException
+    {
+        if (start >= end)
+            throw new DataFormatException("Invalid zstd Huffman table");
+        int header = src[start] & 0xFF;
+        int count;
+        int length;
+        if (header >= 128)
+        {
+            count = header - 127;
+            length = 1 + (count + 1) / 2;
+            if (start + length > end)
+                throw new DataFormatException("Invalid zstd Huffman table");
+            for (int i = 0; i < count; ++i)
+            {
+                int b = src[start + 1 + i / 2] & 0xFF;
+                weights[i] = (byte)((i & 1) == 0 ? b >>> 4 : b & 0x0F);
+            }
+        }
+        else
+        {
+            length = 1 + header;
+            if (start + length > end)
+                throw new DataFormatException("Invalid zstd Huffman table");
+            count = decodeWeights(src, start + 1, start + length);
+        }
+
+        // The weight of the last symbol is implied by the others.
+        int total = 0;
+        for (int i = 0; i < count; ++i)
+        {
+            int weight = weights[i];
+            if (weight > MAX_HUFFMAN_BITS)
+                throw new DataFormatException("Invalid zstd Huffman weight");
+            if (weight > 0)
+                total += 1 << (weight - 1);
+        }
+        if (total == 0)
+            throw new DataFormatException("Invalid zstd Huffman weights");
+        int maxBits = highBit(total) + 1;
+        int rest = (1 << maxBits) - total;
+        if (maxBits > MAX_HUFFMAN_BITS || (rest & (rest - 1)) != 0)
+            throw new DataFormatException("Invalid zstd Huffman weights");
+        weights[count++] = (byte)(highBit(rest) + 1);
+
+        // Codes are assigned by increasing weight, then by increasing symbol.
+        int position = 0;
+        for (int weight = 1; weight <= maxBits; ++weight)
+        {
+            int span = 1 << (weight - 1);
+            byte bits = (byte)(maxBits + 1 - weight);
+            for (int symbol = 0; symbol < count; ++symbol)
+            {
+                if (weights[symbol] == weight)
+                {
+                    Arrays.fill(huffmanSymbols, position, position + span, (byte)symbol);
+                    Arrays.fill(huffmanBits, position, position + span, bits);
+                    position += span;
+                }
+            }
+        }
+        huffmanMaxBits = maxBits;
+        return length;
+    }
+
+    private int decodeWeights(byte[] src, int start, int end) throws DataFormatException
+    {
+        FseTable table = weightTable;
+        int index = start + table.read(src, start, end, 255, 6);
+        BitReader reader = this.reader;
+        reader.init(src, index, end);
+        int state1 = reader.read(table.log);
+        int state2 = reader.read(table.log);
+        int count = 0;
+        while (true)
+        {
+            if (count > 253)
+                throw new DataFormatException("Invalid zstd Huffman weights");
+            weights[count++] = (byte)table.symbols[state1];
+            state1 = table.bases[state1] + reader.read(table.bits[state1]);
+            if (reader.isOverflow())
+            {
+                weights[count++] = (byte)table.symbols[state2];
+                break;
+            }
+            weights[count++] = (byte)table.symbols[state2];
+            state2 = table.bases[state2] + reader.read(table.bits[state2]);
+            if (reader.isOverflow())
+            {
+                weights[count++] = (byte)table.symbols[state1];
+                break;
+            }
+        }
+        return count;
+    }
+
+    private static int readInt(byte[] bytes, int offset, int length)
+    {
+        return (int)readLong(bytes, offset, length);
+    }
+
+    private static long readLong(byte[] bytes, int offset, int length)
+    {
+        long value = 0;
+        for (int i = length - 1; i >= 0; --i)
+        {
+            value = (value << 8) | (bytes[offset + i] & 0xFF);
+        }
+        return value;
+    }
+
+    private static int highBit(int value)
+    {
+        return 31 - Integer.numberOfLeadingZeros(value);
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{%s,window=%d}", getClass().getSimpleName(), hashCode(), state, window == null ? 0 : window.length);
+    }
+
+    private enum State
+    {
+        MAGIC, FRAME_DESCRIPTOR, FRAME_HEADER, BLOCK_HEADER, RAW_BLOCK, RLE_BLOCK, COMPRESSED_BLOCK, CHECKSUM, SKIPPABLE_SIZE, SKIPPABLE
+    }
+
+    /**
+     * <p>Reads a bitstream backwards, from its last bit to its first bit,
+     * producing zeroes once its beginning has been passed.</p>
+     */
+    private static class BitReader
+    {
+        private byte[] bytes;
+        private int start;
+        private int position;
+
+        private void init(byte[] bytes, int start, int end) throws DataFormatException
+        {
+            if (end <= start || bytes[end - 1] == 0)
+                throw new DataFormatException("Invalid zstd bitstream");
+            this.bytes = bytes;
+            this.start = start;
+            // Skip the padding up to, and including, the highest set bit.
+            this.position = (end - 1 - start) * 8 + highBit(bytes[end - 1] & 0xFF);
+        }
+
+        private int peek(int count)
+        {
+            if (count == 0)
+                return 0;
+            int low = position - count;
+            int index = low >> 3;
+            int shift = low & 0x07;
+            long value = 0;
+            for (int i = (shift + count + 7) >> 3; i-- > 0; )
+            {
+                int offset = index + i;
+                value = (value << 8) | (offset < 0 ? 0 : bytes[start + offset] & 0xFF);
+            }
+            return (int)((value >>> shift) & ((1L << count) - 1));
+        }
+
+        private void skip(int count)
+        {
+            position -= count;
+        }
+
+        private int read(int count)
+        {
+            int value = peek(count);
+            position -= count;
+            return value;
+        }
+
+        private boolean isFinished()
+        {
+            return position == 0;
+        }
+
+        private boolean isOverflow()
+        {
+            return position < 0;
+        }
+    }
+
+    /**
+     * <p>A Finite State Entropy decoding table.</p>
+     */
+    private static class FseTable
+    {
+        private final int[] normalized = new int[256];
+        private final int[] next = new int[256];
+        private final int[] symbols;
+        private final int[] bits;
+        private final int[] bases;
+        private int log;
+
+        private FseTable(int maxLog)
+        {
+            int size = 1 << maxLog;
+            symbols = new int[size];
+            bits = new int[size];
+            bases = new int[size];
+        }
+
+        private static FseTable predefined(int log, int[] normalized)
+        {
+            try
+            {
+                FseTable table = new FseTable(log);
+                System.arraycopy(normalized, 0, table.normalized, 0, normalized.length);
+                table.build(normalized.length - 1, log);
+                return table;
+            }
+            catch (DataFormatException x)
+            {
+                throw new IllegalStateException(x);
+            }
+        }
+
+        private void rle(int symbol)
+        {
+            log = 0;
+            symbols[0] = symbol;
+            bits[0] = 0;
+            bases[0] = 0;
+        }
+
+        /**
+         * <p>Reads the normalized distribution of a table, and builds the table.</p>
+         *
+         * @return the number of bytes read
+         */
+        private int read(byte[] src, int start, int end, int maxSymbol, int maxLog) throws DataFormatException
+        {
+            int bit = 0;
+            int tableLog = peek(src, start, end, bit, 4) + 5;
+            bit += 4;
+            if (tableLog > maxLog)
+                throw new DataFormatException("Invalid zstd table accuracy");
+
+            int remaining = (1 << tableLog) + 1;
+            int threshold = 1 << tableLog;
+            int nbBits = tableLog + 1;
+            int symbol = 0;
+            boolean previousZero = false;
+            while (remaining > 1 && symbol <= maxSymbol)
+            {
+                if (previousZero)
+                {
+                    int zeroes = symbol;
+                    int repeat;
+                    while ((repeat = peek(src, start, end, bit, 2)) == 3)
+                    {
+                        zeroes += 3;
+                        bit += 2;
+                    }
+                    zeroes += repeat;
+                    bit += 2;
+                    if (zeroes > maxSymbol)
+                        throw new DataFormatException("Invalid zstd table distribution");
+                    while (symbol < zeroes)
+                    {
+                        normalized[symbol++] = 0;
+                    }
+                }
+
+                int max = (2 * threshold - 1) - remaining;
+                int count = peek(src, start, end, bit, nbBits - 1);
+                if (count < max)
+                {
+                    bit += nbBits - 1;
+                }
+                else
+                {
+                    count = peek(src, start, end, bit, nbBits);
+                    if (count >= threshold)
+                        count -= max;
+                    bit += nbBits;
+                }
+                // The value 0 encodes the "less than 1" probability.
+                count--;
+                remaining -= Math.abs(count);
+                normalized[symbol++] = count;
+                previousZero = count == 0;
+                while (remaining < threshold)
+                {
+                    nbBits--;
+                    threshold >>= 1;
+                }
+            }
+            if (remaining != 1 || bit > (end - start) * 8)
+                throw new DataFormatException("Invalid zstd table distribution");
+
+            build(symbol - 1, tableLog);
+            return (bit + 7) >> 3;
+        }
+
+        private void build(int maxSymbol, int tableLog) throws DataFormatException
+        {
+            int size = 1 << tableLog;
+            int high = size - 1;
+            for (int s = 0; s <= maxSymbol; ++s)
+            {
+                if (normalized[s] == -1)
+                {
+                    symbols[high--] = s;
+                    next[s] = 1;
+                }
+                else
+                {
+                    next[s] = normalized[s];
+                }
+            }
+
+            int step = (size >>> 1) + (size >>> 3) + 3;
+            int mask = size - 1;
+            int position = 0;
+            for (int s = 0; s <= maxSymbol; ++s)
+            {
+                for (int i = 0; i < normalized[s]; ++i)
+                {
+                    symbols[position] = s;
+                    do
+                    {
+                        position = (position + step) & mask;
+                    }
+                    while (position > high);
+                }
+            }
+            if (position != 0)
+                throw new DataFormatException("Invalid zstd table distribution");
+
+            for (int u = 0; u < size; ++u)
+            {
+                int state = next[symbols[u]]++;
+                int nb = tableLog - highBit(state);
+                bits[u] = nb;
+                bases[u] = (state << nb) - size;
+            }
+            log = tableLog;
+        }
+
+        private static int peek(byte[] src, int start, int end, int bit, int count)
+        {
+            int index = start + (bit >> 3);
+            int value = 0;
+            for (int i = 0; i < 4; ++i)
+            {
+                if (index + i < end)
+                    value |= (src[index + i] & 0xFF) << (8 * i);
+            }
+            return (value >>> (bit & 0x07)) & ((1 << count) - 1);
+        }
+    }
+}
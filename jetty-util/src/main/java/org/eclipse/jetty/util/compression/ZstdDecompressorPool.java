@@ -0,0 +1,80 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.util.compression;
+
+import org.eclipse.jetty.util.component.Container;
+import org.eclipse.jetty.util.thread.ThreadPool;
+
+public class ZstdDecompressorPool extends CompressionPool<ZstdDecompressor>
+{
+    private final int maxWindowSize;
+
+    /**
+     * Create a Pool of {@link ZstdDecompressor} instances.
+     * <p>
+     * If given a capacity equal to zero the ZstdDecompressors will not be pooled
+     * and will be created on acquire and ended on release.
+     * If given a negative capacity equal to zero there will be no size restrictions on the ZstdDecompressorPool
+     *
+     * @param capacity maximum number of ZstdDecompressors which can be contained in the pool
+     */
+    public ZstdDecompressorPool(int capacity)
+    {
+        this(capacity, ZstdDecompressor.DEFAULT_MAX_WINDOW_SIZE);
+    }
+
+    /**
+     * @param capacity maximum number of ZstdDecompressors which can be contained in the pool
+     * @param maxWindowSize the max window size, in bytes, of the frames that can be decompressed
+     */
+    public ZstdDecompressorPool(int capacity, int maxWindowSize)
+    {
+        super(capacity);
+        this.maxWindowSize = maxWindowSize;
+    }
+
+    @Override
+    protected ZstdDecompressor newPooled()
+    {
+        return new ZstdDecompressor(maxWindowSize);
+    }
+
+    @Override
+    protected void end(ZstdDecompressor decompressor)
+    {
+        decompressor.end();
+    }
+
+    @Override
+    protected void reset(ZstdDecompressor decompressor)
+    {
+        decompressor.reset();
+    }
+
+    public static ZstdDecompressorPool ensurePool(Container container)
+    {
+        ZstdDecompressorPool pool = container.getBean(ZstdDecompressorPool.class);
+        if (pool != null)
+            return pool;
+
+        int capacity = CompressionPool.DEFAULT_CAPACITY;
+        ThreadPool.SizedThreadPool threadPool = container.getBean(ThreadPool.SizedThreadPool.class);
+        if (threadPool != null)
+            capacity = threadPool.getMaxThreads();
+
+        pool = new ZstdDecompressorPool(capacity);
+        container.addBean(pool, true);
+        return pool;
+    }
+}
@@ -48,6 +48,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -78,6 +80,7 @@ import javax.net.ssl.X509TrustManager;
 import org.eclipse.jetty.util.StringUtil;
 import org.eclipse.jetty.util.annotation.ManagedAttribute;
 import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
 import org.eclipse.jetty.util.component.AbstractLifeCycle;
 import org.eclipse.jetty.util.component.Dumpable;
 import org.eclipse.jetty.util.resource.Resource;
@@ -2207,6 +2210,8 @@ public abstract class SslContextFactory extends AbstractLifeCycle implements Dum
         private boolean _wantClientAuth;
         private boolean _sniRequired;
         private SniX509ExtendedKeyManager.SniSelector _sniSelector;
+        private final AtomicLong _nextSslSessionRotation = new AtomicLong();
+        private int _sslSessionRotationInterval = -1;
 
         public Server()
         {
@@ -2283,6 +2288,95 @@ public abstract class SslContextFactory extends AbstractLifeCycle implements Dum
             _sniRequired = sniRequired;
         }
 
+        /**
+         * @return the interval in seconds after which the cached TLS sessions are invalidated
+         * @see #setSslSessionRotationInterval(int)
+         */
+        @ManagedAttribute("The interval, in seconds, after which the cached TLS sessions are invalidated")
+        public int getSslSessionRotationInterval()
+        {
+            return _sslSessionRotationInterval;
+        }
+
+        /**
+         * <p>Sets the interval after which the TLS sessions in the server session cache are invalidated.</p>
+         * <p>Cached sessions allow clients to resume TLS sessions with an abbreviated handshake,
+         * but the longer a session may be resumed, the longer its secrets must be retained.
+         * Rotating the sessions bounds the exposure of the session secrets independently of
+         * the {@link #setSslSessionTimeout(int) session timeout}, which is renewed on resumption.
+         * The rotation is performed when a new {@link SSLEngine} is created after the interval
+         * elapsed, so that no thread is needed.</p>
+         * <p>Stateless session tickets, when enabled in the JVM, are not cached by the session
+         * cache and their keys are rotated by the JVM, see the
+         * {@code jdk.tls.server.statelessKeyTimeout} system property.</p>
+         *
+         * @param sslSessionRotationInterval the interval in seconds, or a non-positive value to never rotate the sessions
+         */
+        public void setSslSessionRotationInterval(int sslSessionRotationInterval)
+        {
+            _sslSessionRotationInterval = sslSessionRotationInterval;
+            _nextSslSessionRotation.set(0);
+        }
+
+        /**
+         * @return the number of TLS sessions in the server session cache
+         */
+        @ManagedAttribute("The number of TLS sessions in the server session cache")
+        public int getSslSessionCount()
+        {
+            SSLSessionContext sessionContext = isStarted() ? getSslContext().getServerSessionContext() : null;
+            if (sessionContext == null)
+                return 0;
+            return Collections.list(sessionContext.getIds()).size();
+        }
+
+        /**
+         * <p>Invalidates the TLS sessions in the server session cache, so that they cannot be resumed.</p>
+         *
+         * @return the number of sessions invalidated
+         */
+        @ManagedOperation(value = "Invalidates the TLS sessions in the server session cache", impact = "ACTION")
+        public int invalidateSslSessions()
+        {
+            SSLSessionContext sessionContext = isStarted() ? getSslContext().getServerSessionContext() : null;
+            if (sessionContext == null)
+                return 0;
+            int invalidated = 0;
+            for (byte[] id : Collections.list(sessionContext.getIds()))
+            {
+                SSLSession session = sessionContext.getSession(id);
+                if (session != null)
+                {
+                    session.invalidate();
+                    ++invalidated;
+                }
+            }
+            if (LOG.isDebugEnabled())
+                LOG.debug("Invalidated {} TLS sessions of {}", invalidated, this);
+            return invalidated;
+        }
+
+        @Override
+        public void customize(SSLEngine sslEngine)
+        {
+            rotateSslSessions();
+            super.customize(sslEngine);
+        }
+
+        private void rotateSslSessions()
+        {
+            int interval = getSslSessionRotationInterval();
+            if (interval <= 0)
+                return;
+            long now = System.nanoTime();
+            long next = _nextSslSessionRotation.get();
+            long nextRotation = now + TimeUnit.SECONDS.toNanos(interval);
+            if (next == 0)
+                _nextSslSessionRotation.compareAndSet(0, nextRotation);
+            else if (now - next >= 0 && _nextSslSessionRotation.compareAndSet(next, nextRotation))
+                invalidateSslSessions();
+        }
+
         @Override
         protected KeyManager[] getKeyManagers(KeyStore keyStore) throws Exception
         {
@@ -0,0 +1,272 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.util.statistic;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.eclipse.jetty.util.thread.AutoLock;
+
+/**
+ * <p>Statistics on a sampled value, that also records the distribution of the samples
+ * in a histogram, so that the value at a given percentile can be computed.</p>
+ * <p>The histogram buckets are log-linear, in the style of <a href="http://hdrhistogram.org/">HdrHistogram</a>:
+ * values are grouped by the position of their most significant bit, and each group is
+ * divided into a fixed number of linear sub-buckets, so that values are reported with a
+ * relative error bounded by the configured number of significant decimal digits.</p>
+ * <p>The memory used by the histogram is fixed when it is created, and depends only on
+ * the highest trackable value and the number of significant digits; samples larger
+ * than the highest trackable value are counted as the highest trackable value.
+ * Recording a sample is lock-free.</p>
+ * <p>{@link #takeIntervalSnapshot()} returns the distribution of the samples recorded
+ * since its previous invocation, to report percentiles over periodic intervals.</p>
+ */
+public class HistogramStatistic extends SampleStatistic
+{
+    private final AutoLock _lock = new AutoLock();
+    private final long _highestTrackableValue;
+    private final int _subBucketBits;
+    private final int _subBucketHalfCount;
+    private final AtomicLongArray _counts;
+    private final long[] _intervalCounts;
+
+    /**
+     * @param highestTrackableValue the highest sample value that can be tracked
+     */
+    public HistogramStatistic(long highestTrackableValue)
+    {
+        this(highestTrackableValue, 2);
+    }
+
+    /**
+     * @param highestTrackableValue the highest sample value that can be tracked
+     * @param significantDigits the number of significant decimal digits of the reported values, between 1 and 5
+     */
+    public HistogramStatistic(long highestTrackableValue, int significantDigits)
+    {
+        if (highestTrackableValue < 1)
+            throw new IllegalArgumentException("Invalid highest trackable value " + highestTrackableValue);
+        if (significantDigits < 1 || significantDigits > 5)
+            throw new IllegalArgumentException("Invalid number of significant digits " + significantDigits);
+        _highestTrackableValue = highestTrackableValue;
+        // The sub-buckets must count all the values with the given
+        // significant digits at unit resolution, rounded to a power of 2.
+        long singleUnitResolution = 2 * (long)Math.pow(10, significantDigits);
+        _subBucketBits = 64 - Long.numberOfLeadingZeros(singleUnitResolution - 1);
+        _subBucketHalfCount = 1 << (_subBucketBits - 1);
+        _counts = new AtomicLongArray(indexOf(highestTrackableValue) + 1);
+        _intervalCounts = new long[_counts.length()];
+    }
+
+    /**
+     * @return the highest sample value that can be tracked
+     */
+    public long getHighestTrackableValue()
+    {
+        return _highestTrackableValue;
+    }
+
+    @Override
+    public void reset()
+    {
+        try (AutoLock l = _lock.lock())
+        {
+            super.reset();
+            for (int i = 0; i < _counts.length(); ++i)
+            {
+                _counts.set(i, 0);
+                _intervalCounts[i] = 0;
+            }
+        }
+    }
+
+    @Override
+    public void record(long sample)
+    {
+        super.record(sample);
+        long value = Math.max(0, Math.min(sample, _highestTrackableValue));
+        _counts.incrementAndGet(indexOf(value));
+    }
+
+    /**
+     * @param percentile the percentile, between 0 and 100
+     * @return the value below which the given percentile of the recorded samples fall
+     */
+    public long getValueAtPercentile(double percentile)
+    {
+        return snapshot().getValueAtPercentile(percentile);
+    }
+
+    /**
+     * @return the distribution of all the samples recorded since the last {@link #reset()}
+     */
+    public Snapshot snapshot()
+    {
+        long[] counts = new long[_counts.length()];
+        for (int i = 0; i < counts.length; ++i)
+        {
+            counts[i] = _counts.get(i);
+        }
+        return new Snapshot(counts, getMax());
+    }
+
+    /**
+     * @return the distribution of the samples recorded since the previous
+     * invocation of this method, or since the last {@link #reset()}
+     */
+    public Snapshot takeIntervalSnapshot()
+    {
+        long[] counts = new long[_counts.length()];
+        try (AutoLock l = _lock.lock())
+        {
+            for (int i = 0; i < counts.length; ++i)
+            {
+                long count = _counts.get(i);
+                counts[i] = Math.max(0, count - _intervalCounts[i]);
+                _intervalCounts[i] = count;
+            }
+        }
+        return new Snapshot(counts, Long.MAX_VALUE);
+    }
+
+    private int indexOf(long value)
+    {
+        int shift = 64 - Long.numberOfLeadingZeros(value) - _subBucketBits;
+        if (shift <= 0)
+            return (int)value;
+        return shift * _subBucketHalfCount + (int)(value >>> shift);
+    }
+
+    private long lowestValueAt(int index)
+    {
+        int shift = index / _subBucketHalfCount - 1;
+        if (shift <= 0)
+            return index;
+        return (long)(index - shift * _subBucketHalfCount) << shift;
+    }
+
+    private long highestValueAt(int index)
+    {
+        int shift = Math.max(0, index / _subBucketHalfCount - 1);
+        return Math.min(lowestValueAt(index) + (1L << shift) - 1, _highestTrackableValue);
+    }
+
+    @Override
+    public String toString()
+    {
+        Snapshot snapshot = snapshot();
+        return String.format("%s@%x{count=%d,max=%d,mean=%f,total=%d,stddev=%f,p50=%d,p99=%d,p999=%d}",
+            getClass().getSimpleName(),
+            hashCode(),
+            getCount(),
+            getMax(),
+            getMean(),
+            getTotal(),
+            getStdDev(),
+            snapshot.getValueAtPercentile(50),
+            snapshot.getValueAtPercentile(99),
+            snapshot.getValueAtPercentile(99.9));
+    }
+
+    /**
+     * <p>An immutable copy of the distribution of the samples of a {@link HistogramStatistic}.</p>
+     */
+    public class Snapshot
+    {
+        private final long[] _counts;
+        private final long _count;
+        private final long _max;
+
+        private Snapshot(long[] counts, long max)
+        {
+            _counts = counts;
+            long count = 0;
+            int highest = -1;
+            for (int i = 0; i < counts.length; ++i)
+            {
+                count += counts[i];
+                if (counts[i] > 0)
+                    highest = i;
+            }
+            _count = count;
+            _max = highest < 0 ? 0 : Math.min(highestValueAt(highest), max);
+        }
+
+        /**
+         * @return the number of samples in this snapshot
+         */
+        public long getCount()
+        {
+            return _count;
+        }
+
+        /**
+         * @return the max value of the samples in this snapshot
+         */
+        public long getMax()
+        {
+            return _max;
+        }
+
+        /**
+         * @return the average value of the samples in this snapshot, or zero if there are no samples
+         */
+        public double getMean()
+        {
+            if (_count == 0)
+                return 0.0D;
+            double total = 0.0D;
+            for (int i = 0; i < _counts.length; ++i)
+            {
+                if (_counts[i] > 0)
+                    total += _counts[i] * ((lowestValueAt(i) + highestValueAt(i)) / 2.0D);
+            }
+            return total / _count;
+        }
+
+        /**
+         * @param percentile the percentile, between 0 and 100
+         * @return the value below which the given percentile of the samples in this snapshot fall
+         */
+        public long getValueAtPercentile(double percentile)
+        {
+            if (_count == 0)
+                return 0;
+            double ratio = Math.max(0.0D, Math.min(percentile, 100.0D)) / 100.0D;
+            long target = Math.max(1, (long)Math.ceil(ratio * _count));
+            long cumulative = 0;
+            for (int i = 0; i < _counts.length; ++i)
+            {
+                cumulative += _counts[i];
+                if (cumulative >= target)
+                    return Math.min(highestValueAt(i), _max);
+            }
+            return _max;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%s@%x{count=%d,max=%d,mean=%f,p50=%d,p90=%d,p99=%d,p999=%d}",
+                getClass().getSimpleName(),
+                hashCode(),
+                getCount(),
+                getMax(),
+                getMean(),
+                getValueAtPercentile(50),
+                getValueAtPercentile(90),
+                getValueAtPercentile(99),
+                getValueAtPercentile(99.9));
+        }
+    }
+}
@@ -45,6 +45,24 @@ public class AutoLock implements AutoCloseable, Serializable
         return this;
     }
 
+    /**
+     * <p>Acquires the lock only if it is not held by another thread.</p>
+     * <p>Typical usage:</p>
+     * <pre>
+     * try (AutoLock lock = this.lock.tryLock())
+     * {
+     *     if (lock != null)
+     *         // Something
+     * }
+     * </pre>
+     *
+     * @return this AutoLock for unlocking, or null if the lock could not be acquired
+     */
+    public AutoLock tryLock()
+    {
+        return _lock.tryLock() ? this : null;
+    }
+
     /**
      * @see ReentrantLock#isHeldByCurrentThread()
      * @return whether this lock is held by the current thread
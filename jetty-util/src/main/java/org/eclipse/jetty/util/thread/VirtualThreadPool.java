@@ -0,0 +1,306 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.util.thread;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jetty.util.VirtualThreads;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.component.ContainerLifeCycle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>A {@link ThreadPool} that runs blocking tasks on virtual threads.</p>
+ * <p>Tasks submitted with {@link #execute(Runnable)} or {@link #tryExecute(Runnable)},
+ * such as selectors, acceptors and the producers of execution strategies, are run by
+ * the platform threads of a {@link QueuedThreadPool}, which is also used for the
+ * {@link ThreadPoolBudget} accounting.</p>
+ * <p>Blocking tasks, typically the invocation of the application, are run on virtual
+ * threads by the components that look up the executor returned by
+ * {@link #getVirtualThreadsExecutor()} via {@link VirtualThreads#getVirtualThreadsExecutor(Executor)},
+ * for example {@link org.eclipse.jetty.util.thread.strategy.AdaptiveExecutionStrategy}.
+ * Such blocking tasks therefore do not consume platform threads, so that the application
+ * may block (for example on a JDBC call) without the need of a very large thread pool.</p>
+ * <p>If the runtime does not support virtual threads, and no virtual threads executor has been
+ * {@link #setVirtualThreadsExecutor(Executor) configured}, then this pool behaves like the
+ * platform threads pool.</p>
+ */
+@ManagedObject("A thread pool that runs blocking tasks on virtual threads")
+public class VirtualThreadPool extends ContainerLifeCycle implements ThreadPool.SizedThreadPool, TryExecutor, VirtualThreads.Configurable
+{
+    private static final Logger LOG = LoggerFactory.getLogger(VirtualThreadPool.class);
+
+    private final AtomicInteger _virtualTasksActive = new AtomicInteger();
+    private final AtomicInteger _virtualTasksMaxActive = new AtomicInteger();
+    private final LongAdder _virtualTasksCompleted = new LongAdder();
+    private final Executor _virtualTasksExecutor = this::executeOnVirtualThread;
+    private final QueuedThreadPool _threadPool;
+    private Executor _virtualThreadsExecutor;
+    private ExecutorService _ownedVirtualThreadsExecutor;
+    private volatile Executor _executor;
+
+    public VirtualThreadPool()
+    {
+        this(new QueuedThreadPool());
+    }
+
+    public VirtualThreadPool(int maxThreads)
+    {
+        this(new QueuedThreadPool(maxThreads));
+    }
+
+    /**
+     * @param threadPool the pool of platform threads
+     */
+    public VirtualThreadPool(QueuedThreadPool threadPool)
+    {
+        _threadPool = threadPool;
+        addBean(_threadPool);
+    }
+
+    /**
+     * @return the pool of platform threads used to run non-blocking tasks
+     */
+    public QueuedThreadPool getPlatformThreadPool()
+    {
+        return _threadPool;
+    }
+
+    /**
+     * @return the name of this thread pool
+     */
+    @ManagedAttribute("name of this thread pool")
+    public String getName()
+    {
+        return _threadPool.getName();
+    }
+
+    /**
+     * @param name the name of this thread pool, used to name threads
+     */
+    public void setName(String name)
+    {
+        _threadPool.setName(name);
+    }
+
+    /**
+     * <p>Sets the executor used to start virtual threads.</p>
+     * <p>By default a new virtual thread is started for each blocking task,
+     * using the virtual thread support of the runtime.</p>
+     *
+     * @param executor the executor that starts virtual threads, or null to use the default
+     */
+    public void setVirtualThreadsExecutor(Executor executor)
+    {
+        if (isRunning())
+            throw new IllegalStateException(getState());
+        _virtualThreadsExecutor = executor;
+    }
+
+    /**
+     * @return the executor that runs blocking tasks on virtual threads,
+     * or null if virtual threads are not available
+     */
+    @Override
+    public Executor getVirtualThreadsExecutor()
+    {
+        return _executor == null ? null : _virtualTasksExecutor;
+    }
+
+    /**
+     * @return whether blocking tasks are run on virtual threads
+     */
+    @ManagedAttribute("whether blocking tasks are run on virtual threads")
+    public boolean isUseVirtualThreads()
+    {
+        return _executor != null;
+    }
+
+    @ManagedAttribute("number of tasks currently running on virtual threads")
+    public int getVirtualTasksActive()
+    {
+        return _virtualTasksActive.get();
+    }
+
+    @ManagedAttribute("maximum number of tasks concurrently running on virtual threads")
+    public int getVirtualTasksMaxActive()
+    {
+        return _virtualTasksMaxActive.get();
+    }
+
+    @ManagedAttribute("number of tasks completed on virtual threads")
+    public long getVirtualTasksCompleted()
+    {
+        return _virtualTasksCompleted.longValue();
+    }
+
+    @ManagedOperation(value = "resets the virtual tasks statistics", impact = "ACTION")
+    public void resetVirtualTasksStatistics()
+    {
+        _virtualTasksMaxActive.set(_virtualTasksActive.get());
+        _virtualTasksCompleted.reset();
+    }
+
+    @Override
+    @ManagedAttribute("minimum number of platform threads in the pool")
+    public int getMinThreads()
+    {
+        return _threadPool.getMinThreads();
+    }
+
+    @Override
+    public void setMinThreads(int threads)
+    {
+        _threadPool.setMinThreads(threads);
+    }
+
+    @Override
+    @ManagedAttribute("maximum number of platform threads in the pool")
+    public int getMaxThreads()
+    {
+        return _threadPool.getMaxThreads();
+    }
+
+    @Override
+    public void setMaxThreads(int threads)
+    {
+        _threadPool.setMaxThreads(threads);
+    }
+
+    @Override
+    @ManagedAttribute("number of platform threads in the pool")
+    public int getThreads()
+    {
+        return _threadPool.getThreads();
+    }
+
+    @Override
+    @ManagedAttribute("number of idle platform threads in the pool")
+    public int getIdleThreads()
+    {
+        return _threadPool.getIdleThreads();
+    }
+
+    @Override
+    @ManagedAttribute(value = "thread pool is low on platform threads", readonly = true)
+    public boolean isLowOnThreads()
+    {
+        return _threadPool.isLowOnThreads();
+    }
+
+    @Override
+    public ThreadPoolBudget getThreadPoolBudget()
+    {
+        return _threadPool.getThreadPoolBudget();
+    }
+
+    @Override
+    public void execute(Runnable task)
+    {
+        _threadPool.execute(task);
+    }
+
+    @Override
+    public boolean tryExecute(Runnable task)
+    {
+        return _threadPool.tryExecute(task);
+    }
+
+    @Override
+    public void join() throws InterruptedException
+    {
+        _threadPool.join();
+    }
+
+    @Override
+    protected void doStart() throws Exception
+    {
+        Executor executor = _virtualThreadsExecutor;
+        if (executor == null)
+        {
+            _ownedVirtualThreadsExecutor = VirtualThreads.newVirtualThreadsExecutor(getName() + "-virtual-");
+            executor = _ownedVirtualThreadsExecutor;
+            if (executor == null)
+                LOG.warn("Virtual threads are not supported by this runtime, blocking tasks will run on platform threads of {}", this);
+        }
+        _executor = executor;
+        super.doStart();
+    }
+
+    @Override
+    protected void doStop() throws Exception
+    {
+        super.doStop();
+        _executor = null;
+        if (_ownedVirtualThreadsExecutor != null)
+        {
+            _ownedVirtualThreadsExecutor.shutdown();
+            _ownedVirtualThreadsExecutor = null;
+        }
+    }
+
+    private void executeOnVirtualThread(Runnable task)
+    {
+        Executor executor = _executor;
+        if (executor == null)
+            throw new RejectedExecutionException("Virtual threads not available " + this);
+
+        int active = _virtualTasksActive.incrementAndGet();
+        _virtualTasksMaxActive.accumulateAndGet(active, Math::max);
+        try
+        {
+            executor.execute(() ->
+            {
+                try
+                {
+                    task.run();
+                }
+                catch (Throwable x)
+                {
+                    LOG.warn("Task {} failed", task, x);
+                }
+                finally
+                {
+                    _virtualTasksActive.decrementAndGet();
+                    _virtualTasksCompleted.increment();
+                }
+            });
+        }
+        catch (Throwable x)
+        {
+            _virtualTasksActive.decrementAndGet();
+            throw x;
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s[%s]@%x{%s,v=%b,va=%d,%s}",
+            getClass().getSimpleName(),
+            getName(),
+            hashCode(),
+            getState(),
+            isUseVirtualThreads(),
+            getVirtualTasksActive(),
+            _threadPool);
+    }
+}
@@ -21,6 +21,7 @@ import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.LongAdder;
 
 import org.eclipse.jetty.util.IO;
+import org.eclipse.jetty.util.VirtualThreads;
 import org.eclipse.jetty.util.annotation.ManagedAttribute;
 import org.eclipse.jetty.util.annotation.ManagedObject;
 import org.eclipse.jetty.util.annotation.ManagedOperation;
@@ -69,6 +70,12 @@ import org.slf4j.LoggerFactory;
  *     <dd>Otherwise.</dd>
  * </dl>
  *
+ * <p>If the executor is configured to run blocking tasks on virtual threads
+ * (see {@link VirtualThreads#getVirtualThreadsExecutor(Executor)}), then
+ * {@link Invocable.InvocationType#BLOCKING} tasks are always consumed in PEC mode
+ * by a virtual thread, while the producing thread remains a platform thread
+ * that continues to produce.</p>
+ *
  * <p>Because of the preference for {@code PC} mode, on a multicore machine with many
  * many {@link Invocable.InvocationType#NON_BLOCKING} tasks, multiple instances of the strategy may be
  * required to keep all CPUs on the system busy.</p>
@@ -321,6 +328,11 @@ public class AdaptiveExecutionStrategy extends ContainerLifeCycle implements Exe
             case BLOCKING:
                 // The produced task may block.
 
+                // If blocking tasks run on virtual threads, use PEC: the task is
+                // consumed by a virtual thread and the producer continues to produce.
+                if (VirtualThreads.getVirtualThreadsExecutor(_executor) != null)
+                    return SubStrategy.PRODUCE_EXECUTE_CONSUME;
+
                 // If the calling producing thread may also block
                 if (!nonBlocking)
                 {
@@ -453,7 +465,8 @@ public class AdaptiveExecutionStrategy extends ContainerLifeCycle implements Exe
     }
 
     /**
-     * Executes a task via the {@link Executor} used to construct this strategy.
+     * Executes a task via the {@link Executor} used to construct this strategy,
+     * or via its virtual threads executor if the task is blocking.
      * If the execution is rejected and the task is a Closeable, then it is closed.
      *
      * @param task The task to execute.
@@ -462,7 +475,11 @@ public class AdaptiveExecutionStrategy extends ContainerLifeCycle implements Exe
     {
         try
         {
-            _executor.execute(task);
+            Executor virtualExecutor = VirtualThreads.getVirtualThreadsExecutor(_executor);
+            if (virtualExecutor != null && Invocable.getInvocationType(task) == Invocable.InvocationType.BLOCKING)
+                virtualExecutor.execute(task);
+            else
+                _executor.execute(task);
         }
         catch (RejectedExecutionException e)
         {
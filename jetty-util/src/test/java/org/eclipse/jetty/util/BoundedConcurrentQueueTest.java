@@ -0,0 +1,125 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.util;
+
+import java.util.Iterator;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BoundedConcurrentQueueTest
+{
+    @Test
+    public void testInvalidCapacity()
+    {
+        assertThrows(IllegalArgumentException.class, () -> new BoundedConcurrentQueue<>(0));
+    }
+
+    @Test
+    public void testOfferPollCapacity()
+    {
+        BoundedConcurrentQueue<String> queue = new BoundedConcurrentQueue<>(2);
+        assertTrue(queue.isEmpty());
+        assertNull(queue.poll());
+
+        assertTrue(queue.offer("one"));
+        assertTrue(queue.offer("two"));
+        assertFalse(queue.offer("three"));
+        assertThrows(IllegalStateException.class, () -> queue.add("three"));
+        assertEquals(2, queue.size());
+
+        assertEquals("one", queue.peek());
+        assertEquals("one", queue.poll());
+        assertTrue(queue.offer("three"));
+        assertEquals("two", queue.poll());
+        assertEquals("three", queue.poll());
+        assertNull(queue.poll());
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    public void testRemove()
+    {
+        BoundedConcurrentQueue<String> queue = new BoundedConcurrentQueue<>(3);
+        queue.offer("one");
+        queue.offer("two");
+        queue.offer("three");
+
+        assertTrue(queue.remove("two"));
+        assertFalse(queue.remove("two"));
+        assertEquals(2, queue.size());
+
+        Iterator<String> iterator = queue.iterator();
+        assertEquals("one", iterator.next());
+        iterator.remove();
+        assertThrows(IllegalStateException.class, iterator::remove);
+        assertEquals(1, queue.size());
+
+        assertTrue(queue.offer("four"));
+        assertTrue(queue.offer("five"));
+        assertFalse(queue.offer("six"));
+        assertEquals("three", queue.poll());
+    }
+
+    @Test
+    public void testConcurrentProducersConsumers() throws Exception
+    {
+        int threads = 4;
+        int iterations = 10000;
+        BoundedConcurrentQueue<Integer> queue = new BoundedConcurrentQueue<>(16);
+        AtomicInteger consumed = new AtomicInteger();
+        CountDownLatch latch = new CountDownLatch(2 * threads);
+
+        for (int t = 0; t < threads; ++t)
+        {
+            new Thread(() ->
+            {
+                for (int i = 0; i < iterations; ++i)
+                {
+                    while (!queue.offer(i))
+                    {
+                        Thread.yield();
+                    }
+                    assertTrue(queue.size() <= queue.getCapacity());
+                }
+                latch.countDown();
+            }).start();
+            new Thread(() ->
+            {
+                for (int i = 0; i < iterations; ++i)
+                {
+                    while (queue.poll() == null)
+                    {
+                        Thread.yield();
+                    }
+                    consumed.incrementAndGet();
+                }
+                latch.countDown();
+            }).start();
+        }
+
+        assertTrue(latch.await(30, TimeUnit.SECONDS));
+        assertEquals(threads * iterations, consumed.get());
+        assertTrue(queue.isEmpty());
+        assertEquals(0, queue.size());
+    }
+}
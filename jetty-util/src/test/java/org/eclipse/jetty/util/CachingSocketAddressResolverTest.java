@@ -0,0 +1,164 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.util;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CachingSocketAddressResolverTest
+{
+    @Test
+    public void testCachedAddresses() throws Exception
+    {
+        PendingResolver pending = new PendingResolver();
+        CachingSocketAddressResolver resolver = new CachingSocketAddressResolver(pending, 16, 60000, 0, 0);
+
+        FuturePromise<List<InetSocketAddress>> first = resolve(resolver, "host", 80);
+        assertFalse(first.isDone());
+        pending.succeed("127.0.0.1");
+        assertEquals(List.of(new InetSocketAddress(InetAddress.getLoopbackAddress(), 80)), first.get(5, TimeUnit.SECONDS));
+
+        // Cached, also for a different port.
+        FuturePromise<List<InetSocketAddress>> second = resolve(resolver, "host", 8080);
+        assertTrue(second.isDone());
+        assertEquals(8080, second.get().get(0).getPort());
+        assertEquals(1, pending.resolutions);
+        assertEquals(1, resolver.getMisses());
+        assertEquals(1, resolver.getHits());
+    }
+
+    @Test
+    public void testConcurrentResolutionsCoalesced() throws Exception
+    {
+        PendingResolver pending = new PendingResolver();
+        CachingSocketAddressResolver resolver = new CachingSocketAddressResolver(pending, 16, 60000, 0, 0);
+
+        FuturePromise<List<InetSocketAddress>> first = resolve(resolver, "host", 80);
+        FuturePromise<List<InetSocketAddress>> second = resolve(resolver, "host", 81);
+        FuturePromise<List<InetSocketAddress>> third = resolve(resolver, "host", 82);
+        assertEquals(1, pending.resolutions);
+        assertEquals(2, resolver.getCoalesced());
+
+        pending.succeed("127.0.0.1");
+        assertEquals(80, first.get(5, TimeUnit.SECONDS).get(0).getPort());
+        assertEquals(81, second.get(5, TimeUnit.SECONDS).get(0).getPort());
+        assertEquals(82, third.get(5, TimeUnit.SECONDS).get(0).getPort());
+    }
+
+    @Test
+    public void testStaleWhileRevalidate() throws Exception
+    {
+        PendingResolver pending = new PendingResolver();
+        CachingSocketAddressResolver resolver = new CachingSocketAddressResolver(pending, 16, 1, 60000, 0);
+
+        FuturePromise<List<InetSocketAddress>> first = resolve(resolver, "host", 80);
+        pending.succeed("127.0.0.1");
+        first.get(5, TimeUnit.SECONDS);
+
+        Thread.sleep(10);
+
+        // Expired, the stale addresses are returned while they are refreshed.
+        FuturePromise<List<InetSocketAddress>> second = resolve(resolver, "host", 80);
+        assertTrue(second.isDone());
+        assertEquals("127.0.0.1", second.get().get(0).getAddress().getHostAddress());
+        FuturePromise<List<InetSocketAddress>> third = resolve(resolver, "host", 80);
+        assertTrue(third.isDone());
+        assertEquals(2, pending.resolutions);
+        assertEquals(2, resolver.getStaleHits());
+
+        pending.succeed("127.0.0.2");
+        FuturePromise<List<InetSocketAddress>> fourth = resolve(resolver, "host", 80);
+        assertTrue(fourth.isDone());
+        assertEquals("127.0.0.2", fourth.get().get(0).getAddress().getHostAddress());
+    }
+
+    @Test
+    public void testNegativeCaching() throws Exception
+    {
+        PendingResolver pending = new PendingResolver();
+        CachingSocketAddressResolver resolver = new CachingSocketAddressResolver(pending, 16, 60000, 0, 60000);
+
+        FuturePromise<List<InetSocketAddress>> first = resolve(resolver, "unknown", 80);
+        pending.fail(new UnknownHostException("unknown"));
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> first.get(5, TimeUnit.SECONDS));
+        assertThat(failure.getCause(), instanceOf(UnknownHostException.class));
+
+        FuturePromise<List<InetSocketAddress>> second = resolve(resolver, "unknown", 80);
+        assertTrue(second.isDone());
+        assertThrows(ExecutionException.class, second::get);
+        assertEquals(1, pending.resolutions);
+        assertEquals(1, resolver.getFailures());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEvicted() throws Exception
+    {
+        CachingSocketAddressResolver resolver = new CachingSocketAddressResolver(new SocketAddressResolver.Sync(), 2, 60000, 0, 0);
+
+        resolve(resolver, "127.0.0.1", 80).get(5, TimeUnit.SECONDS);
+        resolve(resolver, "127.0.0.2", 80).get(5, TimeUnit.SECONDS);
+        resolve(resolver, "127.0.0.1", 80).get(5, TimeUnit.SECONDS);
+        resolve(resolver, "127.0.0.3", 80).get(5, TimeUnit.SECONDS);
+
+        assertEquals(2, resolver.getSize());
+        assertEquals(1, resolver.getEvictions());
+        resolve(resolver, "127.0.0.1", 80).get(5, TimeUnit.SECONDS);
+        assertEquals(2, resolver.getHits());
+    }
+
+    private static FuturePromise<List<InetSocketAddress>> resolve(SocketAddressResolver resolver, String host, int port)
+    {
+        FuturePromise<List<InetSocketAddress>> promise = new FuturePromise<>();
+        resolver.resolve(host, port, promise);
+        return promise;
+    }
+
+    private static class PendingResolver implements SocketAddressResolver
+    {
+        private final Queue<Promise<List<InetSocketAddress>>> promises = new ConcurrentLinkedQueue<>();
+        private int resolutions;
+
+        @Override
+        public void resolve(String host, int port, Promise<List<InetSocketAddress>> promise)
+        {
+            ++resolutions;
+            promises.offer(promise);
+        }
+
+        private void succeed(String address) throws UnknownHostException
+        {
+            promises.poll().succeeded(List.of(new InetSocketAddress(InetAddress.getByName(address), 0)));
+        }
+
+        private void fail(Throwable failure)
+        {
+            promises.poll().failed(failure);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+
+public class FrequencySketchTest
+{
+    @Test
+    public void testFrequency()
+    {
+        FrequencySketch sketch = new FrequencySketch(512);
+        assertThat(sketch.frequency("item"), is(0));
+        for (int i = 1; i <= 10; i++)
+        {
+            sketch.increment("item");
+            assertThat(sketch.frequency("item"), is(i));
+        }
+        assertThat(sketch.frequency("other"), is(0));
+    }
+
+    @Test
+    public void testFrequencyIsCapped()
+    {
+        FrequencySketch sketch = new FrequencySketch(512);
+        for (int i = 0; i < 100; i++)
+        {
+            sketch.increment("item");
+        }
+        assertThat(sketch.frequency("item"), is(15));
+    }
+
+    @Test
+    public void testFrequencyDecays()
+    {
+        int capacity = 64;
+        FrequencySketch sketch = new FrequencySketch(capacity);
+        for (int i = 0; i < 8; i++)
+        {
+            sketch.increment("old");
+        }
+        assertThat(sketch.frequency("old"), is(8));
+
+        // After enough distinct increments, counters are halved.
+        for (int i = 0; i < 10 * capacity; i++)
+        {
+            sketch.increment("item-" + i);
+        }
+        assertThat(sketch.frequency("old"), lessThan(8));
+    }
+
+    @Test
+    public void testPopularItemsAreDistinguished()
+    {
+        FrequencySketch sketch = new FrequencySketch(1024);
+        for (int i = 0; i < 1000; i++)
+        {
+            sketch.increment("item-" + i);
+            if (i % 100 == 0)
+            {
+                for (int j = 0; j < 5; j++)
+                {
+                    sketch.increment("popular");
+                }
+            }
+        }
+        assertThat(sketch.frequency("popular"), greaterThan(sketch.frequency("item-500")));
+
+        sketch.clear();
+        assertThat(sketch.frequency("popular"), is(0));
+    }
+}
@@ -16,6 +16,7 @@ package org.eclipse.jetty.util;
 import java.io.Closeable;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -662,6 +663,72 @@ public class PoolTest
         assertThat(e4.getPooled().get(), is(2));
     }
 
+    @Test
+    public void testBestOfTwo()
+    {
+        Pool<AtomicInteger> pool = new Pool<>(FIRST, 4);
+        List<Pool<AtomicInteger>.Entry> entries = new ArrayList<>();
+        for (int i = 0; i < 4; i++)
+        {
+            int cost = i;
+            entries.add(pool.acquire(e -> new AtomicInteger(cost)));
+        }
+        entries.forEach(pool::release);
+
+        int[] counts = new int[4];
+        for (int i = 0; i < 400; i++)
+        {
+            Pool<AtomicInteger>.Entry e = pool.acquireBestOfTwo(Comparator.comparingInt(AtomicInteger::get));
+            counts[e.getPooled().get()]++;
+            pool.release(e);
+        }
+
+        // The worst entry is never the better of two distinct entries.
+        assertThat(counts[3], is(0));
+        assertThat(counts[0], greaterThan(counts[1]));
+        assertThat(counts[1], greaterThan(counts[2]));
+
+        // If the better entry is in use, the other one is acquired.
+        Pool<AtomicInteger>.Entry best = pool.acquire();
+        assertThat(best.getPooled().get(), is(0));
+        for (int i = 0; i < 40; i++)
+        {
+            Pool<AtomicInteger>.Entry e = pool.acquireBestOfTwo(Comparator.comparingInt(AtomicInteger::get));
+            assertThat(e, not(sameInstance(best)));
+            pool.release(e);
+        }
+    }
+
+    @Test
+    public void testAcquireLeast()
+    {
+        Pool<AtomicInteger> pool = new Pool<>(FIRST, 4);
+        pool.setMaxMultiplex(2);
+        List<Pool<AtomicInteger>.Entry> entries = new ArrayList<>();
+        for (int i = 0; i < 3; i++)
+        {
+            Pool<AtomicInteger>.Entry entry = pool.reserve();
+            entry.enable(new AtomicInteger(), false);
+            entries.add(entry);
+        }
+
+        // Acquiring the least used entry spreads the acquisitions.
+        for (int i = 0; i < 6; i++)
+        {
+            Pool<AtomicInteger>.Entry e = pool.acquireLeast(Comparator.comparingInt(AtomicInteger::get));
+            assertThat(e.getPooled().incrementAndGet(), is(i / 3 + 1));
+        }
+
+        // All the entries are fully multiplexed.
+        assertNull(pool.acquireLeast(Comparator.comparingInt(AtomicInteger::get)));
+
+        // A released entry is acquired even if it is not the least.
+        Pool<AtomicInteger>.Entry e1 = entries.get(1);
+        e1.getPooled().set(10);
+        pool.release(e1);
+        assertThat(pool.acquireLeast(Comparator.comparingInt(AtomicInteger::get)), sameInstance(e1));
+    }
+
     @Test
     public void testRandomStrategy()
     {
@@ -58,6 +58,7 @@ public class QueueBenchmarkTest
         queues.add(new ConcurrentLinkedQueue<>()); // JDK lock-free queue, allocating nodes
         queues.add(new ArrayBlockingQueue<>(iterations * writers)); // JDK lock-based, circular array queue
         queues.add(new BlockingArrayQueue<>(iterations * writers)); // Jetty lock-based, circular array queue
+        queues.add(new BoundedConcurrentQueue<>(iterations * writers)); // Jetty lock-free, bounded queue
 
         testQueues(readers, writers, iterations, queues, false);
     }
@@ -0,0 +1,102 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.util;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class VirtualThreadsTest
+{
+    @Test
+    public void testUnsupported()
+    {
+        assumeTrue(!VirtualThreads.areSupported());
+        assertThat(VirtualThreads.newVirtualThreadsExecutor("virtual-"), nullValue());
+        assertThat(VirtualThreads.isVirtualThread(), is(false));
+    }
+
+    @Test
+    public void testNamedVirtualThreadsExecutor() throws Exception
+    {
+        assumeTrue(VirtualThreads.areSupported());
+        ExecutorService executor = VirtualThreads.newVirtualThreadsExecutor("virtual-");
+        assertThat(executor, notNullValue());
+        try
+        {
+            AtomicBoolean virtual = new AtomicBoolean();
+            AtomicReference<String> name = new AtomicReference<>();
+            AtomicReference<Throwable> failure = new AtomicReference<>();
+            CountDownLatch latch = new CountDownLatch(1);
+            executor.execute(() ->
+            {
+                Thread thread = Thread.currentThread();
+                try
+                {
+                    virtual.set((Boolean)Thread.class.getMethod("isVirtual").invoke(thread));
+                }
+                catch (Throwable x)
+                {
+                    failure.set(x);
+                }
+                name.set(thread.getName());
+                latch.countDown();
+            });
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+            assertThat(failure.get(), nullValue());
+            assertThat(virtual.get(), is(true));
+            assertThat(name.get(), startsWith("virtual-"));
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testUnnamedVirtualThreadsExecutor() throws Exception
+    {
+        assumeTrue(VirtualThreads.areSupported());
+        ExecutorService executor = VirtualThreads.newVirtualThreadsExecutor(null);
+        assertThat(executor, notNullValue());
+        try
+        {
+            AtomicBoolean virtual = new AtomicBoolean();
+            CountDownLatch latch = new CountDownLatch(1);
+            executor.execute(() ->
+            {
+                virtual.set(VirtualThreads.isVirtualThread());
+                latch.countDown();
+            });
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+            assertThat(virtual.get(), is(true));
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,121 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.util.statistic;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class HistogramStatisticTest
+{
+    @Test
+    public void testSmallValuesAreExact()
+    {
+        HistogramStatistic stats = new HistogramStatistic(1000);
+        for (int i = 1; i <= 100; ++i)
+        {
+            stats.record(i);
+        }
+
+        assertEquals(100, stats.getCount());
+        assertEquals(100, stats.getMax());
+        assertEquals(50.5D, stats.getMean(), 0.001D);
+        assertEquals(1, stats.getValueAtPercentile(0));
+        assertEquals(50, stats.getValueAtPercentile(50));
+        assertEquals(90, stats.getValueAtPercentile(90));
+        assertEquals(99, stats.getValueAtPercentile(99));
+        assertEquals(100, stats.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void testPercentilesWithinRelativeError()
+    {
+        long highest = 3_600_000_000L;
+        HistogramStatistic stats = new HistogramStatistic(highest, 2);
+        Random random = new Random(1234);
+        List<Long> samples = new ArrayList<>();
+        for (int i = 0; i < 100_000; ++i)
+        {
+            // Log-uniform samples over the whole trackable range.
+            long sample = (long)Math.exp(random.nextDouble() * Math.log(highest));
+            samples.add(sample);
+            stats.record(sample);
+        }
+        Collections.sort(samples);
+
+        for (double percentile : new double[]{1, 10, 50, 90, 99, 99.9, 99.99})
+        {
+            long expected = samples.get((int)Math.ceil(percentile / 100 * samples.size()) - 1);
+            long actual = stats.getValueAtPercentile(percentile);
+            assertThat("p" + percentile, actual, greaterThanOrEqualTo(expected));
+            assertThat("p" + percentile, actual, lessThanOrEqualTo(expected + expected / 100));
+        }
+        assertEquals(samples.get(samples.size() - 1), stats.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void testValuesAboveHighestTrackableValue()
+    {
+        HistogramStatistic stats = new HistogramStatistic(1000);
+        stats.record(10);
+        stats.record(5000);
+
+        assertEquals(5000, stats.getMax());
+        assertEquals(10, stats.getValueAtPercentile(50));
+        assertEquals(1000, stats.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void testIntervalSnapshots()
+    {
+        HistogramStatistic stats = new HistogramStatistic(1000);
+        for (int i = 0; i < 10; ++i)
+        {
+            stats.record(10);
+        }
+        HistogramStatistic.Snapshot first = stats.takeIntervalSnapshot();
+        assertEquals(10, first.getCount());
+        assertEquals(10, first.getValueAtPercentile(99));
+
+        for (int i = 0; i < 10; ++i)
+        {
+            stats.record(500);
+        }
+        HistogramStatistic.Snapshot second = stats.takeIntervalSnapshot();
+        assertEquals(10, second.getCount());
+        assertThat(second.getValueAtPercentile(1), greaterThanOrEqualTo(500L));
+        assertThat(second.getMax(), lessThanOrEqualTo(505L));
+
+        assertEquals(0, stats.takeIntervalSnapshot().getCount());
+
+        // The cumulative snapshot is not affected by intervals.
+        HistogramStatistic.Snapshot snapshot = stats.snapshot();
+        assertEquals(20, snapshot.getCount());
+        assertEquals(10, snapshot.getValueAtPercentile(50));
+        assertEquals(500, snapshot.getValueAtPercentile(100));
+
+        stats.reset();
+        assertEquals(0, stats.getCount());
+        assertEquals(0, stats.getValueAtPercentile(99));
+        assertEquals(0, stats.takeIntervalSnapshot().getCount());
+    }
+}
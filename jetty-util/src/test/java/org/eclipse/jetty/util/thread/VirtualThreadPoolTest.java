@@ -0,0 +1,156 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.util.thread;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.eclipse.jetty.util.VirtualThreads;
+import org.eclipse.jetty.util.thread.ThreadPool.SizedThreadPool;
+import org.eclipse.jetty.util.thread.strategy.AdaptiveExecutionStrategy;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class VirtualThreadPoolTest extends AbstractThreadPoolTest
+{
+    private final ExecutorService virtualThreads = Executors.newCachedThreadPool(task -> new Thread(task, "virtual-test"));
+    private VirtualThreadPool pool;
+
+    @Override
+    protected SizedThreadPool newPool(int max)
+    {
+        return new VirtualThreadPool(max);
+    }
+
+    @AfterEach
+    public void dispose() throws Exception
+    {
+        if (pool != null)
+            pool.stop();
+        virtualThreads.shutdownNow();
+    }
+
+    @Test
+    public void testDefaultVirtualThreadsExecutor() throws Exception
+    {
+        pool = new VirtualThreadPool();
+        assertThat(VirtualThreads.getVirtualThreadsExecutor(pool), nullValue());
+        pool.start();
+
+        assertThat(pool.isUseVirtualThreads(), is(VirtualThreads.areSupported()));
+        if (VirtualThreads.areSupported())
+        {
+            AtomicReference<Boolean> virtual = new AtomicReference<>();
+            CountDownLatch latch = new CountDownLatch(1);
+            VirtualThreads.getVirtualThreadsExecutor(pool).execute(() ->
+            {
+                virtual.set(VirtualThreads.isVirtualThread());
+                latch.countDown();
+            });
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+            assertThat(virtual.get(), is(true));
+        }
+        else
+        {
+            assertThat(VirtualThreads.getVirtualThreadsExecutor(pool), nullValue());
+        }
+    }
+
+    @Test
+    public void testExecuteUsesPlatformThreads() throws Exception
+    {
+        pool = new VirtualThreadPool();
+        pool.setName("platform");
+        pool.setVirtualThreadsExecutor(virtualThreads);
+        pool.start();
+
+        AtomicReference<String> name = new AtomicReference<>();
+        CountDownLatch latch = new CountDownLatch(1);
+        pool.execute(() ->
+        {
+            name.set(Thread.currentThread().getName());
+            latch.countDown();
+        });
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertThat(name.get(), startsWith("platform"));
+        assertThat(pool.getThreadPoolBudget(), sameInstance(pool.getPlatformThreadPool().getThreadPoolBudget()));
+    }
+
+    @Test
+    public void testBlockingTasksRunOnVirtualThreads() throws Exception
+    {
+        pool = new VirtualThreadPool();
+        pool.setName("platform");
+        pool.setVirtualThreadsExecutor(virtualThreads);
+        pool.start();
+        assertThat(VirtualThreads.getVirtualThreadsExecutor(pool), notNullValue());
+
+        Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        Queue<String> blocking = new ConcurrentLinkedQueue<>();
+        Queue<String> nonBlocking = new ConcurrentLinkedQueue<>();
+        CountDownLatch latch = new CountDownLatch(20);
+        for (int i = 0; i < 10; ++i)
+        {
+            tasks.offer(new Invocable.ReadyTask(Invocable.InvocationType.BLOCKING, () ->
+            {
+                blocking.offer(Thread.currentThread().getName());
+                latch.countDown();
+            }));
+            tasks.offer(new Invocable.ReadyTask(Invocable.InvocationType.NON_BLOCKING, () ->
+            {
+                nonBlocking.offer(Thread.currentThread().getName());
+                latch.countDown();
+            }));
+        }
+
+        AdaptiveExecutionStrategy strategy = new AdaptiveExecutionStrategy(tasks::poll, pool);
+        strategy.start();
+        try
+        {
+            strategy.dispatch();
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        }
+        finally
+        {
+            strategy.stop();
+        }
+
+        assertThat(blocking.size(), is(10));
+        blocking.forEach(name -> assertThat(name, is("virtual-test")));
+        // Non blocking tasks are consumed by the producing platform thread.
+        assertThat(nonBlocking.size(), is(10));
+        nonBlocking.forEach(name -> assertThat(name, startsWith("platform")));
+        assertThat(strategy.getPECTasksExecuted(), is(10L));
+        assertThat(strategy.getEPCTasksConsumed(), is(0L));
+
+        while (pool.getVirtualTasksActive() > 0)
+        {
+            Thread.sleep(10);
+        }
+        assertThat(pool.getVirtualTasksCompleted(), is(10L));
+    }
+}
@@ -0,0 +1,139 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.client.jmh;
+
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.client.DuplexHttpDestination;
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.HttpDestination;
+import org.eclipse.jetty.client.HttpExchange;
+import org.eclipse.jetty.client.Origin;
+import org.eclipse.jetty.client.api.ContentResponse;
+import org.eclipse.jetty.client.http.HttpClientTransportOverHTTP;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.eclipse.jetty.util.BlockingArrayQueue;
+import org.eclipse.jetty.util.BoundedConcurrentQueue;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * <p>Measures the throughput of many threads sending requests to the same destination,
+ * where the requests contend on the destination exchange queue because the number of
+ * connections is smaller than the number of threads.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class HttpDestinationQueueBenchmark
+{
+    @Param({"blocking", "concurrent"})
+    public static String QUEUE_TYPE;
+
+    private Server server;
+    private HttpClient httpClient;
+    private String uri;
+
+    @Setup
+    public void setUp() throws Exception
+    {
+        server = new Server();
+        ServerConnector connector = new ServerConnector(server);
+        server.addConnector(connector);
+        server.setHandler(new AbstractHandler()
+        {
+            @Override
+            public void handle(String target, Request jettyRequest, HttpServletRequest request, HttpServletResponse response)
+            {
+                jettyRequest.setHandled(true);
+            }
+        });
+        server.start();
+        uri = "http://localhost:" + connector.getLocalPort() + "/";
+
+        httpClient = new HttpClient(new HttpClientTransportOverHTTP(1)
+        {
+            @Override
+            public HttpDestination newHttpDestination(Origin origin)
+            {
+                return new DuplexHttpDestination(getHttpClient(), origin)
+                {
+                    @Override
+                    protected Queue<HttpExchange> newExchangeQueue(HttpClient client)
+                    {
+                        int capacity = client.getMaxRequestsQueuedPerDestination();
+                        switch (QUEUE_TYPE)
+                        {
+                            case "blocking":
+                                return new BlockingArrayQueue<>(capacity);
+                            case "concurrent":
+                                return new BoundedConcurrentQueue<>(capacity);
+                            default:
+                                throw new AssertionError("Unknown queue type: " + QUEUE_TYPE);
+                        }
+                    }
+                };
+            }
+        });
+        httpClient.setMaxConnectionsPerDestination(4);
+        httpClient.setMaxRequestsQueuedPerDestination(1024);
+        httpClient.start();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception
+    {
+        httpClient.stop();
+        server.stop();
+    }
+
+    @Benchmark
+    public int testSend() throws Exception
+    {
+        ContentResponse response = httpClient.newRequest(uri)
+            .timeout(5, TimeUnit.SECONDS)
+            .send();
+        return response.getStatus();
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        Options opt = new OptionsBuilder()
+            .include(HttpDestinationQueueBenchmark.class.getSimpleName())
+            .warmupIterations(3)
+            .measurementIterations(3)
+            .forks(1)
+            .threads(32)
+            .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,209 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.io.jmh;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.io.AbstractConnection;
+import org.eclipse.jetty.io.Connection;
+import org.eclipse.jetty.io.EndPoint;
+import org.eclipse.jetty.io.ManagedSelector;
+import org.eclipse.jetty.io.SelectorManager;
+import org.eclipse.jetty.io.SocketChannelEndPoint;
+import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.IO;
+import org.eclipse.jetty.util.thread.Invocable;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.eclipse.jetty.util.thread.ScheduledExecutorScheduler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * <p>Measures the fan-out of small writes to many endpoints, with and
+ * without gathering the writes in the {@link ManagedSelector}.</p>
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 5, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+public class GatherWritesBenchmark
+{
+    @Param({"false", "true"})
+    boolean gatherWrites;
+
+    @Param({"64"})
+    int connections;
+
+    @Param({"128"})
+    int size;
+
+    private final List<EndPoint> endPoints = new CopyOnWriteArrayList<>();
+    private final List<SocketChannel> clients = new ArrayList<>();
+    private QueuedThreadPool threadPool;
+    private ScheduledExecutorScheduler scheduler;
+    private SelectorManager selectorManager;
+    private ServerSocketChannel server;
+    private Thread drainer;
+    private ByteBuffer content;
+
+    @Setup
+    public void setUp() throws Exception
+    {
+        threadPool = new QueuedThreadPool();
+        threadPool.start();
+        scheduler = new ScheduledExecutorScheduler();
+        scheduler.start();
+
+        CountDownLatch opened = new CountDownLatch(connections);
+        selectorManager = new SelectorManager(threadPool, scheduler, 1)
+        {
+            @Override
+            protected EndPoint newEndPoint(SelectableChannel channel, ManagedSelector selector, SelectionKey selectionKey)
+            {
+                return new SocketChannelEndPoint((SocketChannel)channel, selector, selectionKey, getScheduler());
+            }
+
+            @Override
+            public Connection newConnection(SelectableChannel channel, EndPoint endPoint, Object attachment)
+            {
+                return new AbstractConnection(endPoint, getExecutor())
+                {
+                    @Override
+                    public void onOpen()
+                    {
+                        super.onOpen();
+                        endPoints.add(endPoint);
+                        opened.countDown();
+                    }
+
+                    @Override
+                    public void onFillable()
+                    {
+                    }
+                };
+            }
+        };
+        selectorManager.setGatherWrites(gatherWrites);
+        selectorManager.start();
+
+        server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        Selector clientSelector = Selector.open();
+        for (int i = 0; i < connections; ++i)
+        {
+            SocketChannel client = SocketChannel.open(server.getLocalAddress());
+            client.configureBlocking(false);
+            client.register(clientSelector, SelectionKey.OP_READ);
+            clients.add(client);
+            SocketChannel channel = server.accept();
+            channel.configureBlocking(false);
+            selectorManager.accept(channel);
+        }
+        if (!opened.await(10, TimeUnit.SECONDS))
+            throw new IllegalStateException("Could not open connections");
+
+        // Discard the bytes received by the clients.
+        drainer = new Thread(() -> drain(clientSelector), "drainer");
+        drainer.start();
+
+        content = BufferUtil.toBuffer(new byte[size]);
+    }
+
+    private void drain(Selector selector)
+    {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+        try (Selector s = selector)
+        {
+            while (s.isOpen() && !Thread.currentThread().isInterrupted())
+            {
+                s.select();
+                for (SelectionKey key : s.selectedKeys())
+                {
+                    buffer.clear();
+                    if (((SocketChannel)key.channel()).read(buffer) < 0)
+                        key.cancel();
+                }
+                s.selectedKeys().clear();
+            }
+        }
+        catch (IOException x)
+        {
+            // Stop draining.
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception
+    {
+        drainer.interrupt();
+        drainer.join();
+        clients.forEach(IO::close);
+        clients.clear();
+        endPoints.clear();
+        IO.close(server);
+        selectorManager.stop();
+        scheduler.stop();
+        threadPool.stop();
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput})
+    public void testFanOut() throws Exception
+    {
+        // Each endpoint has at most one write in progress, as each
+        // invocation waits for all the writes to complete.
+        CountDownLatch latch = new CountDownLatch(endPoints.size());
+        Callback callback = Callback.from(Invocable.InvocationType.NON_BLOCKING, latch::countDown, x -> latch.countDown());
+        for (EndPoint endPoint : endPoints)
+        {
+            endPoint.write(callback, content.slice());
+        }
+        latch.await();
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        Options opt = new OptionsBuilder()
+            .include(GatherWritesBenchmark.class.getSimpleName())
+            .forks(1)
+            .build();
+
+        new Runner(opt).run();
+    }
+}
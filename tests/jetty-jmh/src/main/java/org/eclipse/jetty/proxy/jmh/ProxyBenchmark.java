@@ -0,0 +1,139 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.proxy.jmh;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.api.ContentResponse;
+import org.eclipse.jetty.proxy.AsyncProxyServlet;
+import org.eclipse.jetty.proxy.ProxyHandler;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * <p>Measures the throughput of a reverse proxy to a local upstream server,
+ * comparing {@link AsyncProxyServlet} with {@link ProxyHandler}.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ProxyBenchmark
+{
+    @Param({"servlet", "handler"})
+    public static String PROXY_TYPE;
+
+    @Param({"1024", "65536", "1048576"})
+    public static int CONTENT_LENGTH;
+
+    private Server server;
+    private Server proxy;
+    private HttpClient httpClient;
+    private String uri;
+
+    @Setup
+    public void setUp() throws Exception
+    {
+        byte[] content = new byte[CONTENT_LENGTH];
+        server = new Server();
+        ServerConnector serverConnector = new ServerConnector(server);
+        server.addConnector(serverConnector);
+        server.setHandler(new AbstractHandler()
+        {
+            @Override
+            public void handle(String target, Request jettyRequest, HttpServletRequest request, HttpServletResponse response) throws IOException
+            {
+                jettyRequest.setHandled(true);
+                response.setContentLength(content.length);
+                response.getOutputStream().write(content);
+            }
+        });
+        server.start();
+        String upstream = "http://localhost:" + serverConnector.getLocalPort();
+
+        proxy = new Server();
+        ServerConnector proxyConnector = new ServerConnector(proxy);
+        proxy.addConnector(proxyConnector);
+        switch (PROXY_TYPE)
+        {
+            case "servlet":
+                ServletContextHandler context = new ServletContextHandler(proxy, "/");
+                ServletHolder holder = new ServletHolder(new AsyncProxyServlet.Transparent());
+                holder.setInitParameter("proxyTo", upstream);
+                context.addServlet(holder, "/*");
+                break;
+            case "handler":
+                proxy.setHandler(new ProxyHandler.Reverse(upstream));
+                break;
+            default:
+                throw new AssertionError("Unknown proxy type: " + PROXY_TYPE);
+        }
+        proxy.start();
+        uri = "http://localhost:" + proxyConnector.getLocalPort() + "/";
+
+        httpClient = new HttpClient();
+        httpClient.setMaxConnectionsPerDestination(32);
+        httpClient.start();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception
+    {
+        httpClient.stop();
+        proxy.stop();
+        server.stop();
+    }
+
+    @Benchmark
+    public int testProxy() throws Exception
+    {
+        ContentResponse response = httpClient.newRequest(uri)
+            .timeout(5, TimeUnit.SECONDS)
+            .send();
+        return response.getContent().length;
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        Options opt = new OptionsBuilder()
+            .include(ProxyBenchmark.class.getSimpleName())
+            .warmupIterations(3)
+            .measurementIterations(3)
+            .forks(1)
+            .threads(16)
+            .build();
+
+        new Runner(opt).run();
+    }
+}
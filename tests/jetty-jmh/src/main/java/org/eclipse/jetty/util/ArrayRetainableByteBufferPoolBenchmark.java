@@ -0,0 +1,81 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.util;
+
+import org.eclipse.jetty.io.ArrayRetainableByteBufferPool;
+import org.eclipse.jetty.io.RetainableByteBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+@State(Scope.Benchmark)
+public class ArrayRetainableByteBufferPoolBenchmark
+{
+    @Param({"0", "16"})
+    int threadLocalCacheSize;
+
+    private ArrayRetainableByteBufferPool pool;
+
+    @Setup
+    public void setUp() throws Exception
+    {
+        pool = new ArrayRetainableByteBufferPool(0, -1, -1, Integer.MAX_VALUE, -1L, -1L, threadLocalCacheSize);
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        pool = null;
+    }
+
+    @Benchmark
+    public void testAcquireRelease()
+    {
+        RetainableByteBuffer buffer = pool.acquire(2048, true);
+        buffer.release();
+    }
+
+    @Benchmark
+    public void testAcquireReleaseMany()
+    {
+        // Hold several buffers at once, as a connection does with its input and output buffers.
+        RetainableByteBuffer buffer1 = pool.acquire(2048, true);
+        RetainableByteBuffer buffer2 = pool.acquire(4096, true);
+        RetainableByteBuffer buffer3 = pool.acquire(2048, true);
+        buffer1.release();
+        buffer3.release();
+        buffer2.release();
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        Options opt = new OptionsBuilder()
+            .include(ArrayRetainableByteBufferPoolBenchmark.class.getSimpleName())
+            .warmupIterations(3)
+            .measurementIterations(3)
+            .forks(1)
+            .threads(8)
+            // .addProfiler(GCProfiler.class)
+            .build();
+
+        new Runner(opt).run();
+    }
+}
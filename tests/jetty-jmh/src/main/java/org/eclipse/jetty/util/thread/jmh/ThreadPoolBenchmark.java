@@ -15,14 +15,17 @@ package org.eclipse.jetty.util.thread.jmh;
 
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 
 import org.eclipse.jetty.util.BlockingArrayQueue;
+import org.eclipse.jetty.util.VirtualThreads;
 import org.eclipse.jetty.util.component.LifeCycle;
 import org.eclipse.jetty.util.thread.ExecutorThreadPool;
 import org.eclipse.jetty.util.thread.QueuedThreadPool;
 import org.eclipse.jetty.util.thread.ThreadPool;
+import org.eclipse.jetty.util.thread.VirtualThreadPool;
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.BenchmarkMode;
 import org.openjdk.jmh.annotations.Measurement;
@@ -46,16 +49,17 @@ public class ThreadPoolBenchmark
 {
     public enum Type
     {
-        QTP, ETP, LQTP, LETP, AQTP, AETP;
+        QTP, ETP, LQTP, LETP, AQTP, AETP, VTP;
     }
 
-    @Param({"QTP", "ETP" /*, "LQTP", "LETP", "AQTP", "AETP" */})
+    @Param({"QTP", "ETP", "VTP" /*, "LQTP", "LETP", "AQTP", "AETP" */})
     Type type;
 
     @Param({"200"})
     int size;
 
     ThreadPool pool;
+    Executor executor;
 
     @Setup // (Level.Iteration)
     public void buildPool()
@@ -98,10 +102,21 @@ public class ThreadPoolBenchmark
                 pool = new ExecutorThreadPool(size, size, new ArrayBlockingQueue<>(32768));
                 break;
 
+            case VTP:
+            {
+                QueuedThreadPool qtp = new QueuedThreadPool(size, size, new BlockingArrayQueue<>(32768, 32768));
+                qtp.setReservedThreads(0);
+                pool = new VirtualThreadPool(qtp);
+                break;
+            }
+
             default:
                 throw new IllegalStateException();
         }
         LifeCycle.start(pool);
+        // Jobs are blocking tasks, so run them on virtual threads if the pool supports them.
+        Executor virtual = VirtualThreads.getVirtualThreadsExecutor(pool);
+        executor = virtual == null ? pool : virtual;
     }
 
     @Benchmark
@@ -133,12 +148,13 @@ public class ThreadPoolBenchmark
     {
         LifeCycle.stop(pool);
         pool = null;
+        executor = null;
     }
 
     void doJob() throws Exception
     {
         CountDownLatch latch = new CountDownLatch(1);
-        pool.execute(latch::countDown);
+        executor.execute(latch::countDown);
         latch.await();
     }
 